@@ -0,0 +1,624 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.meteoinfo.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.meteoinfo.global.util.ParallelUtil;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+/**
+ * Lazy element-wise array expression. Operations only record a node in the
+ * expression graph, the result array is computed by evaluate() in one fused
+ * pass over the output elements, so no intermediate full size arrays are
+ * created. Array operands are broadcast with the same rules as ArrayMath.
+ * <p>
+ * Values are computed as double, NaN is propagated as in the float and double
+ * ArrayMath operations.
+ *
+ * @author Yaqiang Wang
+ */
+public abstract class ArrayExpression {
+
+    // <editor-fold desc="Variables">
+    //Element number evaluated in one block
+    private static final int BLOCK = 1024;
+
+    /**
+     * Element-wise operators
+     */
+    public enum Operator {
+        ADD, SUB, MUL, DIV, POW, NEG, ABS, SQRT, EXP, LOG, LOG10, SIN, COS, TAN, ASIN, ACOS, ATAN;
+
+        boolean isBinary() {
+            return this.ordinal() <= POW.ordinal();
+        }
+    }
+
+    final int[] shape;
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    private ArrayExpression(int[] shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * Create an expression from an array
+     *
+     * @param a The array
+     * @return Expression
+     */
+    public static ArrayExpression of(Array a) {
+        return new Leaf(a);
+    }
+
+    /**
+     * Create a constant expression
+     *
+     * @param v The value
+     * @return Expression
+     */
+    public static ArrayExpression of(double v) {
+        return new Constant(v);
+    }
+
+    /**
+     * Create an expression from an array, grid data, number or expression object
+     *
+     * @param o The object
+     * @return Expression
+     */
+    public static ArrayExpression of(Object o) {
+        if (o instanceof ArrayExpression) {
+            return (ArrayExpression) o;
+        } else if (o instanceof Array) {
+            return new Leaf((Array) o);
+        } else if (o instanceof GridData) {
+            return ((GridData) o).toExpression();
+        } else if (o instanceof Number) {
+            return new Constant(((Number) o).doubleValue());
+        } else {
+            return new Constant(Double.parseDouble(o.toString()));
+        }
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get result shape
+     *
+     * @return Result shape
+     */
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    /**
+     * Get result element number
+     *
+     * @return Element number
+     */
+    public int getSize() {
+        int n = 1;
+        for (int s : shape) {
+            n *= s;
+        }
+        return n;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    /**
+     * Add
+     *
+     * @param b Array, number or expression
+     * @return Result expression
+     */
+    public ArrayExpression add(Object b) {
+        return new Node(Operator.ADD, this, of(b));
+    }
+
+    /**
+     * Subtract
+     *
+     * @param b Array, number or expression
+     * @return Result expression
+     */
+    public ArrayExpression sub(Object b) {
+        return new Node(Operator.SUB, this, of(b));
+    }
+
+    /**
+     * Multiply
+     *
+     * @param b Array, number or expression
+     * @return Result expression
+     */
+    public ArrayExpression mul(Object b) {
+        return new Node(Operator.MUL, this, of(b));
+    }
+
+    /**
+     * Divide
+     *
+     * @param b Array, number or expression
+     * @return Result expression
+     */
+    public ArrayExpression div(Object b) {
+        return new Node(Operator.DIV, this, of(b));
+    }
+
+    /**
+     * Power
+     *
+     * @param b Array, number or expression
+     * @return Result expression
+     */
+    public ArrayExpression pow(Object b) {
+        return new Node(Operator.POW, this, of(b));
+    }
+
+    /**
+     * Apply an operator
+     *
+     * @param op The operator
+     * @param b The second operand of a binary operator, ignored for unary
+     * operators
+     * @return Result expression
+     */
+    public ArrayExpression apply(Operator op, Object b) {
+        if (op.isBinary()) {
+            return new Node(op, this, of(b));
+        } else {
+            return new Node(op, this, null);
+        }
+    }
+
+    /**
+     * Apply an unary operator
+     *
+     * @param op The operator
+     * @return Result expression
+     */
+    public ArrayExpression apply(Operator op) {
+        return apply(op, null);
+    }
+
+    /**
+     * Negative
+     *
+     * @return Result expression
+     */
+    public ArrayExpression neg() {
+        return new Node(Operator.NEG, this, null);
+    }
+
+    /**
+     * Absolute value
+     *
+     * @return Result expression
+     */
+    public ArrayExpression abs() {
+        return new Node(Operator.ABS, this, null);
+    }
+
+    /**
+     * Square root
+     *
+     * @return Result expression
+     */
+    public ArrayExpression sqrt() {
+        return new Node(Operator.SQRT, this, null);
+    }
+
+    /**
+     * Exponent
+     *
+     * @return Result expression
+     */
+    public ArrayExpression exp() {
+        return new Node(Operator.EXP, this, null);
+    }
+
+    /**
+     * Natural logarithm
+     *
+     * @return Result expression
+     */
+    public ArrayExpression log() {
+        return new Node(Operator.LOG, this, null);
+    }
+
+    /**
+     * Base 10 logarithm
+     *
+     * @return Result expression
+     */
+    public ArrayExpression log10() {
+        return new Node(Operator.LOG10, this, null);
+    }
+
+    /**
+     * Sine
+     *
+     * @return Result expression
+     */
+    public ArrayExpression sin() {
+        return new Node(Operator.SIN, this, null);
+    }
+
+    /**
+     * Cosine
+     *
+     * @return Result expression
+     */
+    public ArrayExpression cos() {
+        return new Node(Operator.COS, this, null);
+    }
+
+    /**
+     * Tangent
+     *
+     * @return Result expression
+     */
+    public ArrayExpression tan() {
+        return new Node(Operator.TAN, this, null);
+    }
+
+    /**
+     * Arc sine
+     *
+     * @return Result expression
+     */
+    public ArrayExpression asin() {
+        return new Node(Operator.ASIN, this, null);
+    }
+
+    /**
+     * Arc cosine
+     *
+     * @return Result expression
+     */
+    public ArrayExpression acos() {
+        return new Node(Operator.ACOS, this, null);
+    }
+
+    /**
+     * Arc tangent
+     *
+     * @return Result expression
+     */
+    public ArrayExpression atan() {
+        return new Node(Operator.ATAN, this, null);
+    }
+
+    /**
+     * Evaluate the expression. The result is a float array if all array
+     * operands are float arrays, otherwise a double array.
+     *
+     * @return Result array
+     */
+    public Array evaluate() {
+        List<ArrayExpression> nodes = this.order();
+        DataType dt = null;
+        for (ArrayExpression e : nodes) {
+            if (e instanceof Leaf) {
+                if (((Leaf) e).array.getDataType() == DataType.FLOAT && dt != DataType.DOUBLE) {
+                    dt = DataType.FLOAT;
+                } else {
+                    dt = DataType.DOUBLE;
+                }
+            }
+        }
+        return evaluate(dt == null ? DataType.DOUBLE : dt);
+    }
+
+    /**
+     * Evaluate the expression
+     *
+     * @param dataType Result data type, FLOAT or DOUBLE
+     * @return Result array
+     */
+    public Array evaluate(DataType dataType) {
+        int n = this.getSize();
+        if (dataType == DataType.FLOAT) {
+            float[] r = new float[n];
+            this.evaluate(null, r);
+            return Array.factory(DataType.FLOAT, this.shape, r);
+        } else {
+            double[] r = new double[n];
+            this.evaluate(r, null);
+            return Array.factory(DataType.DOUBLE, this.shape, r);
+        }
+    }
+
+    /**
+     * Evaluate the expression into a double array
+     *
+     * @param r Result array with the element number of the expression
+     */
+    public void evaluate(double[] r) {
+        evaluate(r, null);
+    }
+
+    private void evaluate(final double[] dr, final float[] fr) {
+        final List<ArrayExpression> nodes = this.order();
+        final int n = this.getSize();
+        final int[] rshape = this.shape;
+        int nb = (n + BLOCK - 1) / BLOCK;
+        ParallelUtil.parallelFor(nb, 16, new ParallelUtil.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                Map<ArrayExpression, double[]> buffers = new IdentityHashMap<>();
+                double[][] bufs = new double[nodes.size()][];
+                for (int i = 0; i < bufs.length; i++) {
+                    ArrayExpression e = nodes.get(i);
+                    bufs[i] = new double[BLOCK];
+                    buffers.put(e, bufs[i]);
+                    if (e instanceof Constant) {
+                        Arrays.fill(bufs[i], ((Constant) e).value);
+                    }
+                }
+                int[] counter = new int[rshape.length];
+                for (int b = start; b < end; b++) {
+                    int from = b * BLOCK;
+                    int len = Math.min(BLOCK, n - from);
+                    for (int i = 0; i < bufs.length; i++) {
+                        ArrayExpression e = nodes.get(i);
+                        if (e instanceof Leaf) {
+                            ((Leaf) e).load(rshape, counter, from, len, bufs[i]);
+                        } else if (e instanceof Node) {
+                            Node node = (Node) e;
+                            node.compute(buffers.get(node.a), node.b == null ? null : buffers.get(node.b),
+                                    bufs[i], len);
+                        }
+                    }
+                    double[] out = bufs[bufs.length - 1];
+                    if (dr != null) {
+                        System.arraycopy(out, 0, dr, from, len);
+                    } else {
+                        for (int i = 0; i < len; i++) {
+                            fr[from + i] = (float) out[i];
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the graph nodes in evaluation order, shared nodes appear once and
+     * this expression is the last one
+     */
+    private List<ArrayExpression> order() {
+        List<ArrayExpression> nodes = new ArrayList<>();
+        addNodes(this, nodes, new IdentityHashMap<ArrayExpression, Boolean>());
+        return nodes;
+    }
+
+    private static void addNodes(ArrayExpression e, List<ArrayExpression> nodes, Map<ArrayExpression, Boolean> visited) {
+        if (visited.containsKey(e)) {
+            return;
+        }
+        if (e instanceof Node) {
+            Node node = (Node) e;
+            addNodes(node.a, nodes, visited);
+            if (node.b != null) {
+                addNodes(node.b, nodes, visited);
+            }
+        }
+        visited.put(e, Boolean.TRUE);
+        nodes.add(e);
+    }
+
+    private static int[] broadcastShape(int[] ashape, int[] bshape) {
+        int n = Math.max(ashape.length, bshape.length);
+        int[] shape = new int[n];
+        for (int i = 0; i < n; i++) {
+            int ia = ashape.length - n + i;
+            int ib = bshape.length - n + i;
+            int na = ia >= 0 ? ashape[ia] : 1;
+            int nb = ib >= 0 ? bshape[ib] : 1;
+            if (na != nb && na != 1 && nb != 1) {
+                throw new IllegalArgumentException("Shapes can not be broadcast together!");
+            }
+            shape[i] = Math.max(na, nb);
+        }
+        return shape;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Nodes">
+
+    private static class Constant extends ArrayExpression {
+
+        final double value;
+
+        Constant(double value) {
+            super(new int[0]);
+            this.value = value;
+        }
+    }
+
+    private static class Leaf extends ArrayExpression {
+
+        final Array array;
+        final double[] ds;
+        final float[] fs;
+
+        Leaf(Array array) {
+            super(array.getShape());
+            this.array = array;
+            if (array.getDataType() == DataType.FLOAT) {
+                this.fs = (float[]) array.get1DJavaArray(float.class);
+                this.ds = null;
+            } else {
+                this.ds = (double[]) array.get1DJavaArray(double.class);
+                this.fs = null;
+            }
+        }
+
+        double get(int i) {
+            return ds != null ? ds[i] : fs[i];
+        }
+
+        /**
+         * Load a block of the leaf values broadcast to the result shape
+         */
+        void load(int[] rshape, int[] counter, int from, int len, double[] buf) {
+            if (Arrays.equals(rshape, shape)) {
+                if (ds != null) {
+                    System.arraycopy(ds, from, buf, 0, len);
+                } else {
+                    for (int i = 0; i < len; i++) {
+                        buf[i] = fs[from + i];
+                    }
+                }
+                return;
+            }
+
+            //Strides of the leaf in the result dimensions, 0 for broadcast dimensions
+            int rank = rshape.length;
+            int[] strides = new int[rank];
+            int stride = 1;
+            for (int i = rank - 1; i >= 0; i--) {
+                int li = shape.length - rank + i;
+                if (li >= 0) {
+                    strides[i] = shape[li] == 1 ? 0 : stride;
+                    stride *= shape[li];
+                }
+            }
+            int idx = from, off = 0;
+            for (int i = rank - 1; i >= 0; i--) {
+                counter[i] = idx % rshape[i];
+                idx /= rshape[i];
+                off += counter[i] * strides[i];
+            }
+            for (int k = 0; k < len; k++) {
+                buf[k] = get(off);
+                for (int i = rank - 1; i >= 0; i--) {
+                    counter[i]++;
+                    off += strides[i];
+                    if (counter[i] < rshape[i]) {
+                        break;
+                    }
+                    off -= counter[i] * strides[i];
+                    counter[i] = 0;
+                }
+            }
+        }
+    }
+
+    private static class Node extends ArrayExpression {
+
+        final Operator op;
+        final ArrayExpression a;
+        final ArrayExpression b;
+
+        Node(Operator op, ArrayExpression a, ArrayExpression b) {
+            super(b == null ? a.shape : broadcastShape(a.shape, b.shape));
+            this.op = op;
+            this.a = a;
+            this.b = b;
+        }
+
+        void compute(double[] x, double[] y, double[] r, int len) {
+            int i;
+            switch (op) {
+                case ADD:
+                    for (i = 0; i < len; i++) {
+                        r[i] = x[i] + y[i];
+                    }
+                    break;
+                case SUB:
+                    for (i = 0; i < len; i++) {
+                        r[i] = x[i] - y[i];
+                    }
+                    break;
+                case MUL:
+                    for (i = 0; i < len; i++) {
+                        r[i] = x[i] * y[i];
+                    }
+                    break;
+                case DIV:
+                    for (i = 0; i < len; i++) {
+                        r[i] = x[i] / y[i];
+                    }
+                    break;
+                case POW:
+                    for (i = 0; i < len; i++) {
+                        r[i] = Math.pow(x[i], y[i]);
+                    }
+                    break;
+                case NEG:
+                    for (i = 0; i < len; i++) {
+                        r[i] = -x[i];
+                    }
+                    break;
+                case ABS:
+                    for (i = 0; i < len; i++) {
+                        r[i] = Math.abs(x[i]);
+                    }
+                    break;
+                case SQRT:
+                    for (i = 0; i < len; i++) {
+                        r[i] = Math.sqrt(x[i]);
+                    }
+                    break;
+                case EXP:
+                    for (i = 0; i < len; i++) {
+                        r[i] = Math.exp(x[i]);
+                    }
+                    break;
+                case LOG:
+                    for (i = 0; i < len; i++) {
+                        r[i] = Math.log(x[i]);
+                    }
+                    break;
+                case LOG10:
+                    for (i = 0; i < len; i++) {
+                        r[i] = Math.log10(x[i]);
+                    }
+                    break;
+                case SIN:
+                    for (i = 0; i < len; i++) {
+                        r[i] = Math.sin(x[i]);
+                    }
+                    break;
+                case COS:
+                    for (i = 0; i < len; i++) {
+                        r[i] = Math.cos(x[i]);
+                    }
+                    break;
+                case TAN:
+                    for (i = 0; i < len; i++) {
+                        r[i] = Math.tan(x[i]);
+                    }
+                    break;
+                case ASIN:
+                    for (i = 0; i < len; i++) {
+                        r[i] = Math.asin(x[i]);
+                    }
+                    break;
+                case ACOS:
+                    for (i = 0; i < len; i++) {
+                        r[i] = Math.acos(x[i]);
+                    }
+                    break;
+                case ATAN:
+                    for (i = 0; i < len; i++) {
+                        r[i] = Math.atan(x[i]);
+                    }
+                    break;
+            }
+        }
+    }
+    // </editor-fold>
+}
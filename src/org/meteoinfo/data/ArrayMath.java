@@ -4089,42 +4089,7 @@ public class ArrayMath {
      * @throws ucar.ma2.InvalidRangeException
      */
     public static Array min(Array a, int axis) throws InvalidRangeException {
-        int[] dataShape = a.getShape();
-        int[] shape = new int[dataShape.length - 1];
-        int idx;
-        for (int i = 0; i < dataShape.length; i++) {
-            idx = i;
-            if (idx == axis) {
-                continue;
-            } else if (idx > axis) {
-                idx -= 1;
-            }
-            shape[idx] = dataShape[i];
-        }
-        Array r = Array.factory(DataType.DOUBLE, shape);
-        double s;
-        Index indexr = r.getIndex();
-        int[] current;
-        for (int i = 0; i < r.getSize(); i++) {
-            current = indexr.getCurrentCounter();
-            List<Range> ranges = new ArrayList<>();
-            for (int j = 0; j < dataShape.length; j++) {
-                if (j == axis) {
-                    ranges.add(new Range(0, dataShape[j] - 1, 1));
-                } else {
-                    idx = j;
-                    if (idx > axis) {
-                        idx -= 1;
-                    }
-                    ranges.add(new Range(current[idx], current[idx], 1));
-                }
-            }
-            s = min(a, ranges);
-            r.setDouble(i, s);
-            indexr.incr();
-        }
-        
-        return r;
+        return AxisReducer.min(a, axis, true);
     }
 
     /**
@@ -4188,42 +4153,7 @@ public class ArrayMath {
      * @throws ucar.ma2.InvalidRangeException
      */
     public static Array max(Array a, int axis) throws InvalidRangeException {
-        int[] dataShape = a.getShape();
-        int[] shape = new int[dataShape.length - 1];
-        int idx;
-        for (int i = 0; i < dataShape.length; i++) {
-            idx = i;
-            if (idx == axis) {
-                continue;
-            } else if (idx > axis) {
-                idx -= 1;
-            }
-            shape[idx] = dataShape[i];
-        }
-        Array r = Array.factory(DataType.DOUBLE, shape);
-        double s;
-        Index indexr = r.getIndex();
-        int[] current;
-        for (int i = 0; i < r.getSize(); i++) {
-            current = indexr.getCurrentCounter();
-            List<Range> ranges = new ArrayList<>();
-            for (int j = 0; j < dataShape.length; j++) {
-                if (j == axis) {
-                    ranges.add(new Range(0, dataShape[j] - 1, 1));
-                } else {
-                    idx = j;
-                    if (idx > axis) {
-                        idx -= 1;
-                    }
-                    ranges.add(new Range(current[idx], current[idx], 1));
-                }
-            }
-            s = max(a, ranges);
-            r.setDouble(i, s);
-            indexr.incr();
-        }
-        
-        return r;
+        return AxisReducer.max(a, axis, true);
     }
 
     /**
@@ -4262,42 +4192,7 @@ public class ArrayMath {
      * @throws ucar.ma2.InvalidRangeException
      */
     public static Array sum(Array a, int axis) throws InvalidRangeException {
-        int[] dataShape = a.getShape();
-        int[] shape = new int[dataShape.length - 1];
-        int idx;
-        for (int i = 0; i < dataShape.length; i++) {
-            idx = i;
-            if (idx == axis) {
-                continue;
-            } else if (idx > axis) {
-                idx -= 1;
-            }
-            shape[idx] = dataShape[i];
-        }
-        Array r = Array.factory(DataType.DOUBLE, shape);
-        double s;
-        Index indexr = r.getIndex();
-        int[] current;
-        for (int i = 0; i < r.getSize(); i++) {
-            current = indexr.getCurrentCounter();
-            List<Range> ranges = new ArrayList<>();
-            for (int j = 0; j < dataShape.length; j++) {
-                if (j == axis) {
-                    ranges.add(new Range(0, dataShape[j] - 1, 1));
-                } else {
-                    idx = j;
-                    if (idx > axis) {
-                        idx -= 1;
-                    }
-                    ranges.add(new Range(current[idx], current[idx], 1));
-                }
-            }
-            s = sum(a, ranges);
-            r.setDouble(i, s);
-            indexr.incr();
-        }
-        
-        return r;
+        return AxisReducer.sum(a, axis, true);
     }
 
     /**
@@ -4613,42 +4508,7 @@ public class ArrayMath {
      * @throws ucar.ma2.InvalidRangeException
      */
     public static Array mean(Array a, int axis) throws InvalidRangeException {
-        int[] dataShape = a.getShape();
-        int[] shape = new int[dataShape.length - 1];
-        int idx;
-        for (int i = 0; i < dataShape.length; i++) {
-            idx = i;
-            if (idx == axis) {
-                continue;
-            } else if (idx > axis) {
-                idx -= 1;
-            }
-            shape[idx] = dataShape[i];
-        }
-        Array r = Array.factory(DataType.DOUBLE, shape);
-        double mean;
-        Index indexr = r.getIndex();
-        int[] current;
-        for (int i = 0; i < r.getSize(); i++) {
-            current = indexr.getCurrentCounter();
-            List<Range> ranges = new ArrayList<>();
-            for (int j = 0; j < dataShape.length; j++) {
-                if (j == axis) {
-                    ranges.add(new Range(0, dataShape[j] - 1, 1));
-                } else {
-                    idx = j;
-                    if (idx > axis) {
-                        idx -= 1;
-                    }
-                    ranges.add(new Range(current[idx], current[idx], 1));
-                }
-            }
-            mean = mean(a, ranges);
-            r.setDouble(i, mean);
-            indexr.incr();
-        }
-        
-        return r;
+        return AxisReducer.mean(a, axis, true);
     }
 
     /**
@@ -4742,42 +4602,7 @@ public class ArrayMath {
      * @throws ucar.ma2.InvalidRangeException
      */
     public static Array std(Array a, int axis) throws InvalidRangeException {
-        int[] dataShape = a.getShape();
-        int[] shape = new int[dataShape.length - 1];
-        int idx;
-        for (int i = 0; i < dataShape.length; i++) {
-            idx = i;
-            if (idx == axis) {
-                continue;
-            } else if (idx > axis) {
-                idx -= 1;
-            }
-            shape[idx] = dataShape[i];
-        }
-        Array r = Array.factory(DataType.DOUBLE, shape);
-        double mean;
-        Index indexr = r.getIndex();
-        int[] current;
-        for (int i = 0; i < r.getSize(); i++) {
-            current = indexr.getCurrentCounter();
-            List<Range> ranges = new ArrayList<>();
-            for (int j = 0; j < dataShape.length; j++) {
-                if (j == axis) {
-                    ranges.add(new Range(0, dataShape[j] - 1, 1));
-                } else {
-                    idx = j;
-                    if (idx > axis) {
-                        idx -= 1;
-                    }
-                    ranges.add(new Range(current[idx], current[idx], 1));
-                }
-            }
-            mean = std(a, ranges);
-            r.setDouble(i, mean);
-            indexr.incr();
-        }
-        
-        return r;
+        return AxisReducer.std(a, axis, true);
     }
 
     /**
@@ -4869,42 +4694,7 @@ public class ArrayMath {
      * @throws ucar.ma2.InvalidRangeException
      */
     public static Array var(Array a, int axis) throws InvalidRangeException {
-        int[] dataShape = a.getShape();
-        int[] shape = new int[dataShape.length - 1];
-        int idx;
-        for (int i = 0; i < dataShape.length; i++) {
-            idx = i;
-            if (idx == axis) {
-                continue;
-            } else if (idx > axis) {
-                idx -= 1;
-            }
-            shape[idx] = dataShape[i];
-        }
-        Array r = Array.factory(DataType.DOUBLE, shape);
-        double mean;
-        Index indexr = r.getIndex();
-        int[] current;
-        for (int i = 0; i < r.getSize(); i++) {
-            current = indexr.getCurrentCounter();
-            List<Range> ranges = new ArrayList<>();
-            for (int j = 0; j < dataShape.length; j++) {
-                if (j == axis) {
-                    ranges.add(new Range(0, dataShape[j] - 1, 1));
-                } else {
-                    idx = j;
-                    if (idx > axis) {
-                        idx -= 1;
-                    }
-                    ranges.add(new Range(current[idx], current[idx], 1));
-                }
-            }
-            mean = std(a, ranges);
-            r.setDouble(i, mean);
-            indexr.incr();
-        }
-        
-        return r;
+        return AxisReducer.var(a, axis, true);
     }
 
     /**
@@ -5202,6 +4992,98 @@ public class ArrayMath {
         }
     }
 
+    /**
+     * Unpack packed data (packed value * scale factor + add offset) in one
+     * pass. The packed values equal to the fill value are set to NaN. Float or
+     * double data of the output data type is unpacked in place.
+     *
+     * @param a Packed array
+     * @param scaleFactor Scale factor
+     * @param addOffset Add offset
+     * @param fillValue Packed fill value, null or NaN if there is no fill value
+     * @param floatOutput Output float array if true, otherwise double array
+     * @return Unpacked array
+     */
+    public static Array unpack(Array a, double scaleFactor, double addOffset, Number fillValue,
+            boolean floatOutput) {
+        DataType type = floatOutput ? DataType.FLOAT : DataType.DOUBLE;
+        Array r = a.getDataType() == type ? a : Array.factory(type, a.getShape());
+        boolean hasFill = fillValue != null && !Double.isNaN(fillValue.doubleValue());
+        double fill = hasFill ? fillValue.doubleValue() : 0;
+        IndexIterator iterA = a.getIndexIterator();
+        IndexIterator iterR = r == a ? null : r.getIndexIterator();
+        double v;
+        switch (a.getDataType()) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                long mask = -1L;
+                if (a.isUnsigned()) {
+                    switch (a.getDataType()) {
+                        case BYTE:
+                            mask = 0xffL;
+                            break;
+                        case SHORT:
+                            mask = 0xffffL;
+                            break;
+                        case INT:
+                            mask = 0xffffffffL;
+                            break;
+                    }
+                }
+                while (iterA.hasNext()) {
+                    long p = iterA.getLongNext();
+                    if (hasFill && (p == fill || (p & mask) == fill)) {
+                        v = Double.NaN;
+                    } else {
+                        v = (p & mask) * scaleFactor + addOffset;
+                    }
+                    if (floatOutput) {
+                        iterR.setFloatNext((float) v);
+                    } else {
+                        iterR.setDoubleNext(v);
+                    }
+                }
+                break;
+            case FLOAT:
+                float ffill = (float) fill;
+                while (iterA.hasNext()) {
+                    float p = iterA.getFloatNext();
+                    if (hasFill && p == ffill) {
+                        v = Double.NaN;
+                    } else {
+                        v = p * scaleFactor + addOffset;
+                    }
+                    if (iterR == null) {
+                        iterA.setFloatCurrent((float) v);
+                    } else {
+                        iterR.setDoubleNext(v);
+                    }
+                }
+                break;
+            default:
+                while (iterA.hasNext()) {
+                    double p = iterA.getDoubleNext();
+                    if (hasFill && p == fill) {
+                        v = Double.NaN;
+                    } else {
+                        v = p * scaleFactor + addOffset;
+                    }
+                    if (iterR == null) {
+                        iterA.setDoubleCurrent(v);
+                    } else if (floatOutput) {
+                        iterR.setFloatNext((float) v);
+                    } else {
+                        iterR.setDoubleNext(v);
+                    }
+                }
+                break;
+        }
+
+        return r;
+    }
+
     /**
      * Set value
      *
@@ -27,6 +27,8 @@ import java.util.Random;
 import java.util.Scanner;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.meteoinfo.data.analysis.StationGridder;
+import org.meteoinfo.data.analysis.WarpPlan;
 import org.meteoinfo.data.mapdata.Field;
 import org.meteoinfo.geoprocess.GeoComputation;
 import org.meteoinfo.geoprocess.analysis.ResampleMethods;
@@ -2084,60 +2086,28 @@ public class ArrayUtil {
      */
     public static Array interpolation_IDW_Radius(List<Number> x_s, List<Number> y_s, Array a,
             List<Number> X, List<Number> Y, int NeededPointNum, double radius) {
-        int rowNum, colNum, pNum;
-        colNum = X.size();
-        rowNum = Y.size();
-        pNum = x_s.size();
-        //double[][] GCoords = new double[rowNum][colNum];
-        Array r = Array.factory(DataType.DOUBLE, new int[]{rowNum, colNum});
-        int i, j, p, vNum;
-        double w, SV, SW;
-        boolean ifPointGrid;
-        double x, y, v;
-
-        //---- Do interpolation
-        for (i = 0; i < rowNum; i++) {
-            for (j = 0; j < colNum; j++) {
-                r.setDouble(i * colNum + j, Double.NaN);
-                ifPointGrid = false;
-                SV = 0;
-                SW = 0;
-                vNum = 0;
-                for (p = 0; p < pNum; p++) {
-                    v = a.getDouble(p);
-                    if (Double.isNaN(v)) {
-                        continue;
-                    }
-                    x = x_s.get(p).doubleValue();
-                    y = y_s.get(p).doubleValue();
-                    if (x < X.get(j).doubleValue() - radius || x > X.get(j).doubleValue() + radius || y < Y.get(i).doubleValue() - radius
-                            || y > Y.get(i).doubleValue() + radius) {
-                        continue;
-                    }
-
-                    if (Math.pow(X.get(j).doubleValue() - x, 2) + Math.pow(Y.get(i).doubleValue() - y, 2) == 0) {
-                        r.setDouble(i * colNum + j, v);
-                        ifPointGrid = true;
-                        break;
-                    } else if (Math.sqrt(Math.pow(X.get(j).doubleValue() - x, 2)
-                            + Math.pow(Y.get(i).doubleValue() - y, 2)) <= radius) {
-                        w = 1 / (Math.pow(X.get(j).doubleValue() - x, 2) + Math.pow(Y.get(i).doubleValue() - y, 2));
-                        SW = SW + w;
-                        SV = SV + v * w;
-                        vNum += 1;
-                    }
-                }
+        StationGridder gridder = new StationGridder(x_s, y_s);
+        return interpolation_IDW_Radius(gridder, a, X, Y, NeededPointNum, radius);
+    }
 
-                if (!ifPointGrid) {
-                    if (vNum >= NeededPointNum) {
-                        r.setDouble(i * colNum + j, SV / SW);
-                    }
-                }
-            }
-        }
+    /**
+     * Interpolation with IDW radius method using a station gridder, which can
+     * be reused for the variables with same station layout
+     *
+     * @param gridder Station gridder
+     * @param a scatter value array
+     * @param X grid X array
+     * @param Y grid Y array
+     * @param NeededPointNum needed at least point number
+     * @param radius search radius
+     * @return interpolated grid data
+     */
+    public static Array interpolation_IDW_Radius(StationGridder gridder, Array a,
+            List<Number> X, List<Number> Y, int NeededPointNum, double radius) {
+        Array r = gridder.interpolation_IDW_Radius(a, X, Y, NeededPointNum, radius);
 
         //---- Smooth with 5 points
-        r = smooth5(r, rowNum, colNum, Double.NaN);
+        r = smooth5(r, Y.size(), X.size(), Double.NaN);
 
         return r;
     }
@@ -2155,89 +2125,27 @@ public class ArrayUtil {
      */
     public static Array interpolation_IDW_Neighbor(List<Number> x_s, List<Number> y_s, Array a,
             List<Number> X, List<Number> Y, int NumberOfNearestNeighbors) {
-        int rowNum, colNum, pNum;
-        colNum = X.size();
-        rowNum = Y.size();
-        pNum = x_s.size();
-        Array r = Array.factory(DataType.DOUBLE, new int[]{rowNum, colNum});
-        int i, j, p, l, aP;
-        double w, SV, SW, aMin;
-        int points;
-        points = NumberOfNearestNeighbors;
-        double[] AllWeights = new double[pNum];
-        double[][] NW = new double[2][points];
-        int NWIdx;
-        double x, y, v;
-
-        //---- Do interpolation with IDW method 
-        for (i = 0; i < rowNum; i++) {
-            for (j = 0; j < colNum; j++) {
-                r.setDouble(i * colNum + j, Double.NaN);
-                SV = 0;
-                SW = 0;
-                NWIdx = 0;
-                for (p = 0; p < pNum; p++) {
-                    v = a.getDouble(p);
-                    if (Double.isNaN(v)) {
-                        AllWeights[p] = -1;
-                        continue;
-                    }
-                    x = x_s.get(p).doubleValue();
-                    y = y_s.get(p).doubleValue();
-                    if (X.get(j).doubleValue() == x && Y.get(i).doubleValue() == y) {
-                        r.setDouble(i * colNum + j, v);
-                        break;
-                    } else {
-                        w = 1 / (Math.pow(X.get(j).doubleValue() - x, 2) + Math.pow(Y.get(i).doubleValue() - y, 2));
-                        AllWeights[p] = w;
-                        if (NWIdx < points) {
-                            NW[0][NWIdx] = w;
-                            NW[1][NWIdx] = p;
-                        }
-                        NWIdx += 1;
-                    }
-                }
-
-                aMin = NW[0][0];
-                aP = 0;
-                for (l = 1; l < points; l++) {
-                    if (NW[0][l] < aMin) {
-                        aMin = NW[0][l];
-                        aP = l;
-                    }
-                }
-
-                if (Double.isNaN(r.getDouble(i * colNum + j))) {
-                    for (p = 0; p < pNum; p++) {
-                        w = AllWeights[p];
-                        if (w == -1) {
-                            continue;
-                        }
+        StationGridder gridder = new StationGridder(x_s, y_s);
+        return interpolation_IDW_Neighbor(gridder, a, X, Y, NumberOfNearestNeighbors);
+    }
 
-                        if (w > aMin) {
-                            NW[0][aP] = w;
-                            NW[1][aP] = p;
-                            aMin = NW[0][0];
-                            aP = 0;
-                            for (l = 1; l < points; l++) {
-                                if (NW[0][l] < aMin) {
-                                    aMin = NW[0][l];
-                                    aP = l;
-                                }
-                            }
-                        }
-                    }
-                    for (p = 0; p < points; p++) {
-                        SV += NW[0][p] * a.getDouble((int) NW[1][p]);
-                        SW += NW[0][p];
-                    }
-                    r.setDouble(i * colNum + j, SV / SW);
-                }
-            }
-        }
+    /**
+     * Interpolation with IDW neighbor method using a station gridder, which
+     * can be reused for the variables with same station layout
+     *
+     * @param gridder Station gridder
+     * @param a scatter value array
+     * @param X grid X array
+     * @param Y grid Y array
+     * @param NumberOfNearestNeighbors
+     * @return interpolated grid data
+     */
+    public static Array interpolation_IDW_Neighbor(StationGridder gridder, Array a,
+            List<Number> X, List<Number> Y, int NumberOfNearestNeighbors) {
+        Array r = gridder.interpolation_IDW_Neighbor(a, X, Y, NumberOfNearestNeighbors);
 
         //---- Smooth with 5 points
-        r = smooth5(r, rowNum, colNum, Double.NaN);
+        r = smooth5(r, Y.size(), X.size(), Double.NaN);
 
         return r;
     }
@@ -2307,44 +2215,8 @@ public class ArrayUtil {
      */
     public static Array interpolation_Nearest(List<Number> x_s, List<Number> y_s, Array a, List<Number> X, List<Number> Y,
             double radius) {
-        int rowNum, colNum, pNum;
-        colNum = X.size();
-        rowNum = Y.size();
-        pNum = x_s.size();
-        Array rdata = Array.factory(DataType.DOUBLE, new int[]{rowNum, colNum});
-        double gx, gy;
-        double x, y, r, v, minr;
-
-        for (int i = 0; i < rowNum; i++) {
-            gy = Y.get(i).doubleValue();
-            for (int j = 0; j < colNum; j++) {
-                rdata.setDouble(i * colNum + j, Double.NaN);
-                gx = X.get(j).doubleValue();
-                minr = Double.MAX_VALUE;
-                for (int p = 0; p < pNum; p++) {
-                    v = a.getDouble(p);
-                    if (Double.isNaN(v)) {
-                        continue;
-                    }
-
-                    x = x_s.get(p).doubleValue();
-                    y = y_s.get(p).doubleValue();
-                    if (Math.abs(gx - x) > radius || Math.abs(gy - y) > radius) {
-                        continue;
-                    }
-
-                    r = Math.sqrt((gx - x) * (gx - x) + (gy - y) * (gy - y));
-                    if (r < radius) {
-                        if (r < minr) {
-                            rdata.setDouble(i * colNum + j, v);
-                            minr = r;
-                        }
-                    }
-                }
-            }
-        }
-
-        return rdata;
+        StationGridder gridder = new StationGridder(x_s, y_s);
+        return gridder.interpolation_Nearest(a, X, Y, radius);
     }
 
     /**
@@ -3495,20 +3367,7 @@ public class ArrayUtil {
      * @return Result arrays
      */
     public static Array[] reproject(Array x, Array y, ProjectionInfo fromProj, ProjectionInfo toProj) {
-        Array rx = Array.factory(DataType.DOUBLE, x.getShape());
-        Array ry = Array.factory(DataType.DOUBLE, x.getShape());
-        int n = (int) x.getSize();
-        double[][] points = new double[n][];
-        for (int i = 0; i < n; i++) {
-            points[i] = new double[]{x.getDouble(i), y.getDouble(i)};
-        }
-        Reproject.reprojectPoints(points, fromProj, toProj, 0, points.length);
-        for (int i = 0; i < n; i++) {
-            rx.setDouble(i, points[i][0]);
-            ry.setDouble(i, points[i][1]);
-        }
-
-        return new Array[]{rx, ry};
+        return Reproject.reprojectPoints(x, y, fromProj, toProj, x.getSize() > 4096);
     }
 
     /**
@@ -4243,133 +4102,7 @@ public class ArrayUtil {
      */
     public static Array reproject(Array data, List<Number> x, List<Number> y, Array rx, Array ry,
             ProjectionInfo fromProj, ProjectionInfo toProj, double fill_value, ResampleMethods resampleMethod) throws InvalidRangeException {
-        int n = (int) rx.getSize();
-        int[] dshape = data.getShape();
-        int[] shape;
-        if (rx.getRank() == 1) {
-            shape = new int[1];
-            shape[0] = rx.getShape()[0];
-        } else {
-            shape = new int[data.getRank()];
-            for (int i = 0; i < shape.length; i++) {
-                if (i == shape.length - 2) {
-                    shape[i] = rx.getShape()[0];
-                } else if (i == shape.length - 1) {
-                    shape[i] = rx.getShape()[1];
-                } else {
-                    shape[i] = data.getShape()[i];
-                }
-            }
-        }
-        Array r = Array.factory(data.getDataType(), shape);
-
-        double[][] points = new double[n][];
-        for (int i = 0; i < n; i++) {
-            points[i] = new double[]{rx.getDouble(i), ry.getDouble(i)};
-        }
-        if (!fromProj.equals(toProj)) {
-            Reproject.reprojectPoints(points, toProj, fromProj, 0, points.length);
-        }
-        double xx, yy;
-        if (resampleMethod == ResampleMethods.Bilinear) {
-            if (shape.length <= 2) {
-                for (int i = 0; i < n; i++) {
-                    xx = points[i][0];
-                    yy = points[i][1];
-                    if (Double.isNaN(xx) || Double.isNaN(yy)) {
-                        r.setObject(i, Double.NaN);
-                    } else {
-                        r.setObject(i, toStation(data, x, y, xx, yy, fill_value));
-                    }
-                }
-            } else {
-                Index indexr = r.getIndex();
-                int[] current, cc = null;
-                boolean isNew;
-                Array ndata = null;
-                int k;
-                for (int i = 0; i < r.getSize(); i++) {
-                    current = indexr.getCurrentCounter();
-                    isNew = true;
-                    if (i > 0) {
-                        for (int j = 0; j < shape.length - 2; j++) {
-                            if (cc[j] != current[j]) {
-                                isNew = false;
-                                break;
-                            }
-                        }
-                    }
-                    cc = Arrays.copyOf(current, current.length);
-                    if (isNew) {
-                        List<Range> ranges = new ArrayList<>();
-                        for (int j = 0; j < shape.length - 2; j++) {
-                            ranges.add(new Range(current[j], current[j], 1));
-                        }
-                        ranges.add(new Range(0, dshape[dshape.length - 2] - 1, 1));
-                        ranges.add(new Range(0, dshape[dshape.length - 1] - 1, 1));
-                        ndata = data.section(ranges).reduce();
-                    }
-                    k = current[shape.length - 2] * shape[shape.length - 1] + current[shape.length - 1];
-                    xx = points[k][0];
-                    yy = points[k][1];
-                    if (Double.isNaN(xx) || Double.isNaN(yy)) {
-                        r.setObject(i, Double.NaN);
-                    } else {
-                        r.setObject(i, toStation(ndata, x, y, xx, yy, fill_value));
-                    }
-                    indexr.incr();
-                }
-            }
-        } else if (shape.length <= 2) {
-            for (int i = 0; i < n; i++) {
-                xx = points[i][0];
-                yy = points[i][1];
-                if (Double.isNaN(xx) || Double.isNaN(yy)) {
-                    r.setObject(i, Double.NaN);
-                } else {
-                    r.setObject(i, toStation_Neighbor(data, x, y, xx, yy, fill_value));
-                }
-            }
-        } else {
-            Index indexr = r.getIndex();
-            int[] current, cc = null;
-            boolean isNew;
-            Array ndata = null;
-            int k;
-            for (int i = 0; i < r.getSize(); i++) {
-                current = indexr.getCurrentCounter();
-                isNew = true;
-                if (i > 0) {
-                    for (int j = 0; j < shape.length - 2; j++) {
-                        if (cc[j] != current[j]) {
-                            isNew = false;
-                            break;
-                        }
-                    }
-                }
-                cc = Arrays.copyOf(current, current.length);
-                if (isNew) {
-                    List<Range> ranges = new ArrayList<>();
-                    for (int j = 0; j < shape.length - 2; j++) {
-                        ranges.add(new Range(current[j], current[j], 1));
-                    }
-                    ranges.add(new Range(0, dshape[dshape.length - 2] - 1, 1));
-                    ranges.add(new Range(0, dshape[dshape.length - 1] - 1, 1));
-                    ndata = data.section(ranges).reduce();
-                }
-                k = current[shape.length - 2] * shape[shape.length - 1] + current[shape.length - 1];
-                xx = points[k][0];
-                yy = points[k][1];
-                if (Double.isNaN(xx) || Double.isNaN(yy)) {
-                    r.setObject(i, Double.NaN);
-                } else {
-                    r.setObject(i, toStation_Neighbor(ndata, x, y, xx, yy, fill_value));
-                }
-                indexr.incr();
-            }
-        }
-
-        return r;
+        return new WarpPlan(x, y, rx, ry, fromProj, toProj, resampleMethod).apply(data, fill_value);
     }
 
     /**
@@ -4388,117 +4121,7 @@ public class ArrayUtil {
      */
     public static Array reproject(Array data, List<Number> x, List<Number> y, Array rx, Array ry,
             ProjectionInfo fromProj, ProjectionInfo toProj, ResampleMethods resampleMethod) throws InvalidRangeException {
-        int n = (int) rx.getSize();
-        int[] dshape = data.getShape();
-        int[] shape;
-        if (rx.getRank() == 1) {
-            shape = new int[1];
-            shape[0] = rx.getShape()[0];
-        } else {
-            shape = new int[data.getRank()];
-            for (int i = 0; i < shape.length; i++) {
-                if (i == shape.length - 2) {
-                    shape[i] = rx.getShape()[0];
-                } else if (i == shape.length - 1) {
-                    shape[i] = rx.getShape()[1];
-                } else {
-                    shape[i] = data.getShape()[i];
-                }
-            }
-        }
-        Array r = Array.factory(data.getDataType(), shape);
-
-        double[][] points = new double[n][];
-        for (int i = 0; i < n; i++) {
-            points[i] = new double[]{rx.getDouble(i), ry.getDouble(i)};
-        }
-        if (!fromProj.equals(toProj)) {
-            Reproject.reprojectPoints(points, toProj, fromProj, 0, points.length);
-        }
-        double xx, yy;
-        if (resampleMethod == ResampleMethods.Bilinear) {
-            if (shape.length <= 2) {
-                for (int i = 0; i < n; i++) {
-                    xx = points[i][0];
-                    yy = points[i][1];
-                    r.setObject(i, toStation(data, x, y, xx, yy));
-                }
-            } else {
-                Index indexr = r.getIndex();
-                int[] current, cc = null;
-                boolean isNew;
-                Array ndata = null;
-                int k;
-                for (int i = 0; i < r.getSize(); i++) {
-                    current = indexr.getCurrentCounter();
-                    isNew = true;
-                    if (i > 0) {
-                        for (int j = 0; j < shape.length - 2; j++) {
-                            if (cc[j] != current[j]) {
-                                isNew = false;
-                                break;
-                            }
-                        }
-                    }
-                    cc = Arrays.copyOf(current, current.length);
-                    if (isNew) {
-                        List<Range> ranges = new ArrayList<>();
-                        for (int j = 0; j < shape.length - 2; j++) {
-                            ranges.add(new Range(current[j], current[j], 1));
-                        }
-                        ranges.add(new Range(0, dshape[dshape.length - 2] - 1, 1));
-                        ranges.add(new Range(0, dshape[dshape.length - 1] - 1, 1));
-                        ndata = data.section(ranges).reduce();
-                    }
-                    k = current[shape.length - 2] * shape[shape.length - 1] + current[shape.length - 1];
-                    xx = points[k][0];
-                    yy = points[k][1];
-                    r.setObject(i, toStation(ndata, x, y, xx, yy));
-                    indexr.incr();
-                }
-            }
-        } else if (shape.length == 2) {
-            for (int i = 0; i < n; i++) {
-                xx = points[i][0];
-                yy = points[i][1];
-                r.setObject(i, toStation_Neighbor(data, x, y, xx, yy));
-            }
-        } else {
-            Index indexr = r.getIndex();
-            int[] current, cc = null;
-            boolean isNew;
-            Array ndata = null;
-            int k;
-            for (int i = 0; i < r.getSize(); i++) {
-                current = indexr.getCurrentCounter();
-                isNew = true;
-                if (i > 0) {
-                    for (int j = 0; j < shape.length - 2; j++) {
-                        if (cc[j] != current[j]) {
-                            isNew = false;
-                            break;
-                        }
-                    }
-                }
-                cc = Arrays.copyOf(current, current.length);
-                if (isNew) {
-                    List<Range> ranges = new ArrayList<>();
-                    for (int j = 0; j < shape.length - 2; j++) {
-                        ranges.add(new Range(current[j], current[j], 1));
-                    }
-                    ranges.add(new Range(0, dshape[dshape.length - 2] - 1, 1));
-                    ranges.add(new Range(0, dshape[dshape.length - 1] - 1, 1));
-                    ndata = data.section(ranges).reduce();
-                }
-                k = current[shape.length - 2] * shape[shape.length - 1] + current[shape.length - 1];
-                xx = points[k][0];
-                yy = points[k][1];
-                r.setObject(i, toStation_Neighbor(ndata, x, y, xx, yy));
-                indexr.incr();
-            }
-        }
-
-        return r;
+        return new WarpPlan(x, y, rx, ry, fromProj, toProj, resampleMethod).apply(data);
     }
 
     /**
@@ -4517,35 +4140,7 @@ public class ArrayUtil {
      */
     public static Array reproject(Array data, List<Number> x, List<Number> y, List<Number> rx, List<Number> ry,
             ProjectionInfo fromProj, ProjectionInfo toProj, double fill_value, ResampleMethods resampleMethod) {
-        int n = rx.size() * ry.size();
-        int[] shape = new int[]{ry.size(), rx.size()};
-        Array r = Array.factory(data.getDataType(), shape);
-
-        double[][] points = new double[n][];
-        for (int i = 0; i < ry.size(); i++) {
-            for (int j = 0; j < rx.size(); j++) {
-                points[i * rx.size() + j] = new double[]{rx.get(j).doubleValue(), ry.get(i).doubleValue()};
-            }
-        }
-        if (!fromProj.equals(toProj)) {
-            Reproject.reprojectPoints(points, toProj, fromProj, 0, points.length);
-        }
-        double xx, yy;
-        if (resampleMethod == ResampleMethods.Bilinear) {
-            for (int i = 0; i < n; i++) {
-                xx = points[i][0];
-                yy = points[i][1];
-                r.setObject(i, toStation(data, x, y, xx, yy, fill_value));
-            }
-        } else {
-            for (int i = 0; i < n; i++) {
-                xx = points[i][0];
-                yy = points[i][1];
-                r.setObject(i, toStation_Neighbor(data, x, y, xx, yy, fill_value));
-            }
-        }
-
-        return r;
+        return new WarpPlan(x, y, rx, ry, fromProj, toProj, resampleMethod).apply(data, fill_value);
     }
 
     /**
@@ -0,0 +1,370 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.meteoinfo.data;
+
+import org.meteoinfo.global.util.ParallelUtil;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+/**
+ * Reductions of an array along one axis. The array is viewed as
+ * [outer, axis, inner] in its logical order and reduced in stripes of
+ * contiguous inner elements, so the data are read sequentially and no
+ * section or index objects are created per output element. Stripes are
+ * processed in parallel with the ParallelUtil thread number.
+ *
+ * @author Yaqiang Wang
+ */
+public class AxisReducer {
+
+    /**
+     * Reduce operation
+     */
+    public enum Operation {
+        SUM,
+        MEAN,
+        STD,
+        VAR,
+        MIN,
+        MAX
+    }
+
+    //Maximum inner element number of one stripe
+    private static final int STRIPE = 1024;
+    //Minimum element number processed by one parallel task
+    private static final int TASK_SIZE = 32768;
+
+    /**
+     * Compute sum value of an array along an axis
+     *
+     * @param a Array a
+     * @param axis Axis
+     * @param skipNaN Skip NaN values or not. If not, any NaN value makes the
+     * result NaN
+     * @return Sum value array
+     */
+    public static Array sum(Array a, int axis, boolean skipNaN) {
+        return reduce(a, axis, Operation.SUM, skipNaN);
+    }
+
+    /**
+     * Compute mean value of an array along an axis
+     *
+     * @param a Array a
+     * @param axis Axis
+     * @param skipNaN Skip NaN values or not. If not, any NaN value makes the
+     * result NaN
+     * @return Mean value array
+     */
+    public static Array mean(Array a, int axis, boolean skipNaN) {
+        return reduce(a, axis, Operation.MEAN, skipNaN);
+    }
+
+    /**
+     * Compute standard deviation value of an array along an axis
+     *
+     * @param a Array a
+     * @param axis Axis
+     * @param skipNaN Skip NaN values or not. If not, any NaN value makes the
+     * result NaN
+     * @return Standard deviation value array
+     */
+    public static Array std(Array a, int axis, boolean skipNaN) {
+        return reduce(a, axis, Operation.STD, skipNaN);
+    }
+
+    /**
+     * Compute variance value of an array along an axis
+     *
+     * @param a Array a
+     * @param axis Axis
+     * @param skipNaN Skip NaN values or not. If not, any NaN value makes the
+     * result NaN
+     * @return Variance value array
+     */
+    public static Array var(Array a, int axis, boolean skipNaN) {
+        return reduce(a, axis, Operation.VAR, skipNaN);
+    }
+
+    /**
+     * Compute minimum value of an array along an axis
+     *
+     * @param a Array a
+     * @param axis Axis
+     * @param skipNaN Skip NaN values or not. If not, any NaN value makes the
+     * result NaN
+     * @return Minimum value array
+     */
+    public static Array min(Array a, int axis, boolean skipNaN) {
+        return reduce(a, axis, Operation.MIN, skipNaN);
+    }
+
+    /**
+     * Compute maximum value of an array along an axis
+     *
+     * @param a Array a
+     * @param axis Axis
+     * @param skipNaN Skip NaN values or not. If not, any NaN value makes the
+     * result NaN
+     * @return Maximum value array
+     */
+    public static Array max(Array a, int axis, boolean skipNaN) {
+        return reduce(a, axis, Operation.MAX, skipNaN);
+    }
+
+    /**
+     * Reduce an array along an axis. A result element with no valid value is
+     * NaN.
+     *
+     * @param a Array a
+     * @param axis Axis
+     * @param op Reduce operation
+     * @param skipNaN Skip NaN values or not. If not, any NaN value makes the
+     * result NaN
+     * @return Result double array
+     */
+    public static Array reduce(Array a, int axis, final Operation op, final boolean skipNaN) {
+        int[] dataShape = a.getShape();
+        if (axis < 0 || axis >= dataShape.length) {
+            throw new IllegalArgumentException("Axis " + axis + " is out of range for an array of rank "
+                    + dataShape.length);
+        }
+        int[] shape = new int[dataShape.length - 1];
+        int outer = 1, inner = 1;
+        for (int i = 0; i < dataShape.length; i++) {
+            if (i < axis) {
+                shape[i] = dataShape[i];
+                outer *= dataShape[i];
+            } else if (i > axis) {
+                shape[i - 1] = dataShape[i];
+                inner *= dataShape[i];
+            }
+        }
+        final int n = dataShape[axis];
+        final int ni = inner;
+        final double[] r = new double[outer * inner];
+        final Source src = Source.of(a);
+
+        final int stripe = Math.min(STRIPE, inner);
+        final int nb = (inner + stripe - 1) / stripe;
+        int taskNum = outer * nb;
+        int minChunk = Math.max(1, TASK_SIZE / Math.max(1, n * stripe));
+        ParallelUtil.parallelFor(taskNum, minChunk, new ParallelUtil.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                double[] acc = new double[stripe];
+                int[] count = new int[stripe];
+                boolean[] hasNaN = new boolean[stripe];
+                for (int t = start; t < end; t++) {
+                    int o = t / nb;
+                    int i0 = (t % nb) * stripe;
+                    int len = Math.min(stripe, ni - i0);
+                    reduceStripe(src, r, o * n * ni + i0, o * ni + i0, len, n, ni, op, skipNaN,
+                            acc, count, hasNaN);
+                }
+            }
+        });
+
+        return Array.factory(DataType.DOUBLE, shape, r);
+    }
+
+    /**
+     * Reduce one stripe of len contiguous inner elements
+     *
+     * @param src Data source
+     * @param r Result storage
+     * @param base Data offset of the first element at axis index 0
+     * @param rbase Result offset
+     * @param len Inner element number of the stripe
+     * @param n Axis length
+     * @param stride Data offset between two successive axis indices
+     */
+    private static void reduceStripe(Source src, double[] r, int base, int rbase, int len, int n, int stride,
+            Operation op, boolean skipNaN, double[] acc, int[] count, boolean[] hasNaN) {
+        if (len == 1) {
+            r[rbase] = reduceLane(src, base, n, stride, op, skipNaN);
+            return;
+        }
+
+        double init;
+        switch (op) {
+            case MIN:
+                init = Double.POSITIVE_INFINITY;
+                break;
+            case MAX:
+                init = Double.NEGATIVE_INFINITY;
+                break;
+            default:
+                init = 0;
+                break;
+        }
+        for (int i = 0; i < len; i++) {
+            acc[i] = init;
+            count[i] = 0;
+            hasNaN[i] = false;
+        }
+
+        int off = base;
+        double v;
+        for (int k = 0; k < n; k++) {
+            switch (op) {
+                case MIN:
+                    for (int i = 0; i < len; i++) {
+                        v = src.get(off + i);
+                        if (Double.isNaN(v)) {
+                            hasNaN[i] = true;
+                        } else {
+                            if (v < acc[i]) {
+                                acc[i] = v;
+                            }
+                            count[i]++;
+                        }
+                    }
+                    break;
+                case MAX:
+                    for (int i = 0; i < len; i++) {
+                        v = src.get(off + i);
+                        if (Double.isNaN(v)) {
+                            hasNaN[i] = true;
+                        } else {
+                            if (v > acc[i]) {
+                                acc[i] = v;
+                            }
+                            count[i]++;
+                        }
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < len; i++) {
+                        v = src.get(off + i);
+                        if (Double.isNaN(v)) {
+                            hasNaN[i] = true;
+                        } else {
+                            acc[i] += v;
+                            count[i]++;
+                        }
+                    }
+                    break;
+            }
+            off += stride;
+        }
+
+        for (int i = 0; i < len; i++) {
+            if (count[i] == 0 || (hasNaN[i] && !skipNaN)) {
+                r[rbase + i] = Double.NaN;
+            } else if (op == Operation.MEAN || op == Operation.STD || op == Operation.VAR) {
+                r[rbase + i] = acc[i] / count[i];
+            } else {
+                r[rbase + i] = acc[i];
+            }
+        }
+        if (op != Operation.STD && op != Operation.VAR) {
+            return;
+        }
+
+        //Second pass for the squared deviations from the mean
+        for (int i = 0; i < len; i++) {
+            acc[i] = 0;
+        }
+        off = base;
+        double d;
+        for (int k = 0; k < n; k++) {
+            for (int i = 0; i < len; i++) {
+                v = src.get(off + i);
+                if (!Double.isNaN(v)) {
+                    d = v - r[rbase + i];
+                    acc[i] += d * d;
+                }
+            }
+            off += stride;
+        }
+        for (int i = 0; i < len; i++) {
+            if (!Double.isNaN(r[rbase + i])) {
+                d = acc[i] / count[i];
+                r[rbase + i] = op == Operation.STD ? Math.sqrt(d) : d;
+            }
+        }
+    }
+
+    /**
+     * Reduce a single lane, used when the reduced axis is the last one
+     */
+    private static double reduceLane(Source src, int base, int n, int stride, Operation op, boolean skipNaN) {
+        double s = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY, v;
+        int count = 0;
+        int end = base + n * stride;
+        for (int off = base; off < end; off += stride) {
+            v = src.get(off);
+            if (Double.isNaN(v)) {
+                if (!skipNaN) {
+                    return Double.NaN;
+                }
+            } else {
+                s += v;
+                if (v < min) {
+                    min = v;
+                }
+                if (v > max) {
+                    max = v;
+                }
+                count++;
+            }
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        switch (op) {
+            case SUM:
+                return s;
+            case MIN:
+                return min;
+            case MAX:
+                return max;
+            case MEAN:
+                return s / count;
+            default:
+                double mean = s / count;
+                double ss = 0, d;
+                for (int off = base; off < end; off += stride) {
+                    v = src.get(off);
+                    if (!Double.isNaN(v)) {
+                        d = v - mean;
+                        ss += d * d;
+                    }
+                }
+                return op == Operation.STD ? Math.sqrt(ss / count) : ss / count;
+        }
+    }
+
+    /**
+     * Flat primitive view of an array in logical order. Double and float
+     * arrays with contiguous storage are read without copying.
+     */
+    private static abstract class Source {
+
+        abstract double get(int i);
+
+        static Source of(Array a) {
+            if (a.getDataType() == DataType.FLOAT) {
+                final float[] fs = (float[]) a.get1DJavaArray(float.class);
+                return new Source() {
+                    @Override
+                    double get(int i) {
+                        return fs[i];
+                    }
+                };
+            } else {
+                final double[] ds = (double[]) a.get1DJavaArray(double.class);
+                return new Source() {
+                    @Override
+                    double get(int i) {
+                        return ds[i];
+                    }
+                };
+            }
+        }
+    }
+}
@@ -35,6 +35,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object add(Object a, Object b) {
+        if (a instanceof ArrayExpression || b instanceof ArrayExpression) {
+            return ArrayExpression.of(a).add(b);
+        }
         if (a.getClass() == GridData.class) {
             if (b.getClass() == GridData.class) {
                 return ((GridData) a).add((GridData) b);
@@ -64,6 +67,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object sub(Object a, Object b) {
+        if (a instanceof ArrayExpression || b instanceof ArrayExpression) {
+            return ArrayExpression.of(a).sub(b);
+        }
         if (a.getClass() == GridData.class) {
             if (b.getClass() == GridData.class) {
                 return ((GridData) a).sub((GridData) b);
@@ -145,6 +151,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object mul(Object a, Object b) {
+        if (a instanceof ArrayExpression || b instanceof ArrayExpression) {
+            return ArrayExpression.of(a).mul(b);
+        }
         if (a.getClass() == GridData.class) {
             if (b.getClass() == GridData.class) {
                 return ((GridData) a).mul((GridData) b);
@@ -174,6 +183,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object div(Object a, Object b) {
+        if (a instanceof ArrayExpression || b instanceof ArrayExpression) {
+            return ArrayExpression.of(a).div(b);
+        }
         if (a.getClass() == GridData.class) {
             if (b.getClass() == GridData.class) {
                 return ((GridData) a).div((GridData) b);
@@ -450,6 +462,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object abs(Object a) {
+        if (a instanceof ArrayExpression) {
+            return ((ArrayExpression) a).abs();
+        }
         if (a.getClass() == GridData.class) {
             return ((GridData) a).abs();
         }
@@ -467,6 +482,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object asin(Object a) {
+        if (a instanceof ArrayExpression) {
+            return ((ArrayExpression) a).asin();
+        }
         if (a.getClass() == GridData.class) {
             return ((GridData) a).asin();
         }
@@ -484,6 +502,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object acos(Object a) {
+        if (a instanceof ArrayExpression) {
+            return ((ArrayExpression) a).acos();
+        }
         if (a.getClass() == GridData.class) {
             return ((GridData) a).acos();
         }
@@ -501,6 +522,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object atan(Object a) {
+        if (a instanceof ArrayExpression) {
+            return ((ArrayExpression) a).atan();
+        }
         if (a.getClass() == GridData.class) {
             return ((GridData) a).atan();
         }
@@ -518,6 +542,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object sin(Object a) {
+        if (a instanceof ArrayExpression) {
+            return ((ArrayExpression) a).sin();
+        }
         if (a.getClass() == GridData.class) {
             return ((GridData) a).sin();
         }
@@ -535,6 +562,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object cos(Object a) {
+        if (a instanceof ArrayExpression) {
+            return ((ArrayExpression) a).cos();
+        }
         if (a.getClass() == GridData.class) {
             return ((GridData) a).cos();
         }
@@ -552,6 +582,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object tan(Object a) {
+        if (a instanceof ArrayExpression) {
+            return ((ArrayExpression) a).tan();
+        }
         if (a.getClass() == GridData.class) {
             return ((GridData) a).tan();
         }
@@ -569,6 +602,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object exp(Object a) {
+        if (a instanceof ArrayExpression) {
+            return ((ArrayExpression) a).exp();
+        }
         if (a.getClass() == GridData.class) {
             return ((GridData) a).exp();
         }
@@ -587,6 +623,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object pow(Object a, double p) {
+        if (a instanceof ArrayExpression) {
+            return ((ArrayExpression) a).pow(p);
+        }
         if (a.getClass() == GridData.class) {
             return ((GridData) a).pow(p);
         }
@@ -604,6 +643,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object log(Object a) {
+        if (a instanceof ArrayExpression) {
+            return ((ArrayExpression) a).log();
+        }
         if (a.getClass() == GridData.class) {
             return ((GridData) a).log();
         }
@@ -621,6 +663,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object log10(Object a) {
+        if (a instanceof ArrayExpression) {
+            return ((ArrayExpression) a).log10();
+        }
         if (a.getClass() == GridData.class) {
             return ((GridData) a).log10();
         }
@@ -638,6 +683,9 @@ public abstract class DataMath {
      * @return Result object
      */
     public static Object sqrt(Object a) {
+        if (a instanceof ArrayExpression) {
+            return ((ArrayExpression) a).sqrt();
+        }
         if (a.getClass() == GridData.class) {
             return ((GridData) a).sqrt();
         }
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JOptionPane;
+import org.meteoinfo.data.mapdata.geotiff.GeoTiffWriter;
 import org.meteoinfo.data.meteodata.Dimension;
 import org.meteoinfo.data.meteodata.DimensionType;
 import org.meteoinfo.data.meteodata.GridDataSetting;
@@ -780,6 +781,45 @@ public class GridArray {
         }
     }
 
+    /**
+     * Save as tiled and Deflate compressed GeoTIFF file with internal
+     * overviews
+     *
+     * @param fileName File path
+     * @throws java.io.IOException
+     */
+    public void saveAsGeoTiffFile(String fileName) throws IOException {
+        final int xn = this.getXNum();
+        final int yn = this.getYNum();
+        GeoTiffWriter writer = new GeoTiffWriter(fileName, xn, yn);
+        switch (this.data.getDataType()) {
+            case SHORT:
+            case INT:
+                writer.setDataType(this.data.getDataType());
+                break;
+            case BYTE:
+                writer.setDataType(DataType.SHORT);
+                break;
+            default:
+                writer.setDataType(DataType.FLOAT);
+                break;
+        }
+        writer.setTransform(xArray[0], yArray[yn - 1], this.getXDelt(), this.getYDelt());
+        writer.setProjInfo(this.projInfo);
+        writer.setMissingValue(this.missingValue);
+        writer.write(new GeoTiffWriter.RowSource() {
+            @Override
+            public void read(int row, int rowNum, double[] values) {
+                for (int i = 0; i < rowNum; i++) {
+                    int start = (yn - 1 - row - i) * xn;
+                    for (int j = 0; j < xn; j++) {
+                        values[i * xn + j] = data.getDouble(start + j);
+                    }
+                }
+            }
+        });
+    }
+
     /**
      * Save as MICAPS 4 data file
      * @param aFile File path
@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -38,6 +39,7 @@ import org.meteoinfo.data.meteodata.GridDataSetting;
 import org.meteoinfo.geoprocess.analysis.ResampleMethods;
 import org.meteoinfo.global.DataConvert;
 import org.meteoinfo.global.util.BigDecimalUtil;
+import org.meteoinfo.global.util.ParallelUtil;
 import org.meteoinfo.layer.VectorLayer;
 import org.meteoinfo.projection.KnownCoordinateSystems;
 import org.meteoinfo.projection.ProjectionInfo;
@@ -341,6 +343,62 @@ public class GridData {
     // </editor-fold>
     // <editor-fold desc="Methods">
     // <editor-fold desc="Operation">
+    /**
+     * Get a lazy expression of the grid data. Missing values become NaN, so
+     * they propagate through the expression. Combine expressions of grid data
+     * with the same grid and use fromExpression to compute the result in one
+     * pass.
+     *
+     * @return Array expression
+     */
+    public ArrayExpression toExpression() {
+        int yNum = this.getYNum();
+        int xNum = this.getXNum();
+        double[] values = new double[yNum * xNum];
+        for (int i = 0; i < yNum; i++) {
+            for (int j = 0; j < xNum; j++) {
+                if (MIMath.doubleEquals(data[i][j], missingValue)) {
+                    values[i * xNum + j] = java.lang.Double.NaN;
+                } else {
+                    values[i * xNum + j] = data[i][j];
+                }
+            }
+        }
+        return ArrayExpression.of(Array.factory(DataType.DOUBLE, new int[]{yNum, xNum}, values));
+    }
+
+    /**
+     * Evaluate an expression to a new grid data with the grid of this grid
+     * data. NaN and infinite results (e.g. divided by zero) are set as missing
+     * value.
+     *
+     * @param expr The expression
+     * @return Result grid data
+     */
+    public GridData fromExpression(ArrayExpression expr) {
+        int yNum = this.getYNum();
+        int xNum = this.getXNum();
+        if (expr.getSize() != yNum * xNum) {
+            throw new IllegalArgumentException("The expression shape does not match the grid!");
+        }
+        double[] values = new double[yNum * xNum];
+        expr.evaluate(values);
+        GridData cGrid = new GridData(this);
+        double v;
+        for (int i = 0; i < yNum; i++) {
+            for (int j = 0; j < xNum; j++) {
+                v = values[i * xNum + j];
+                if (java.lang.Double.isNaN(v) || java.lang.Double.isInfinite(v)) {
+                    cGrid.data[i][j] = missingValue;
+                } else {
+                    cGrid.data[i][j] = v;
+                }
+            }
+        }
+
+        return cGrid;
+    }
+
     /**
      * Add operation with another grid data
      *
@@ -560,17 +618,26 @@ public class GridData {
      * @return Interpolated value
      */
     public double toStation(double x, double y) {
-        double iValue = missingValue;
         if (x < xArray[0] || x > xArray[this.getXNum() - 1] || y < yArray[0] || y > yArray[this.getYNum() - 1]) {
-            return iValue;
+            return missingValue;
         }
 
+        return this.bilinear(x, y, this.getXDelt(), this.getYDelt());
+    }
+
+    /**
+     * Bilinear interpolation of a point inside the grid without allocation
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @param DX X delta
+     * @param DY Y delta
+     * @return Interpolated value
+     */
+    private double bilinear(double x, double y, double DX, double DY) {
         //Get x/y index
-        double DX = this.getXDelt();
-        double DY = this.getYDelt();
-        int xIdx = 0, yIdx = 0;
-        xIdx = (int) ((x - xArray[0]) / DX);
-        yIdx = (int) ((y - yArray[0]) / DY);
+        int xIdx = (int) ((x - xArray[0]) / DX);
+        int yIdx = (int) ((y - yArray[0]) / DY);
         if (xIdx == this.getXNum() - 1) {
             xIdx = this.getXNum() - 2;
         }
@@ -587,37 +654,34 @@ public class GridData {
         double b = data[i1][j2];
         double c = data[i2][j1];
         double d = data[i2][j2];
-        List<java.lang.Double> dList = new ArrayList<>();
+        int n = 0;
+        double aSum = 0;
         if (!MIMath.doubleEquals(a, missingValue)) {
-            dList.add(a);
+            aSum += a;
+            n += 1;
         }
         if (!MIMath.doubleEquals(b, missingValue)) {
-            dList.add(b);
+            aSum += b;
+            n += 1;
         }
         if (!MIMath.doubleEquals(c, missingValue)) {
-            dList.add(c);
+            aSum += c;
+            n += 1;
         }
         if (!MIMath.doubleEquals(d, missingValue)) {
-            dList.add(d);
+            aSum += d;
+            n += 1;
         }
 
-        if (dList.isEmpty()) {
-            return iValue;
-        } else if (dList.size() == 1) {
-            iValue = dList.get(0);
-        } else if (dList.size() <= 3) {
-            double aSum = 0;
-            for (double dd : dList) {
-                aSum += dd;
-            }
-            iValue = aSum / dList.size();
+        if (n == 0) {
+            return missingValue;
+        } else if (n <= 3) {
+            return aSum / n;
         } else {
             double x1val = a + (c - a) * (y - yArray[i1]) / DY;
             double x2val = b + (d - b) * (y - yArray[i1]) / DY;
-            iValue = x1val + (x2val - x1val) * (x - xArray[j1]) / DX;
+            return x1val + (x2val - x1val) * (x - xArray[j1]) / DX;
         }
-
-        return iValue;
     }
 
     /**
@@ -2446,7 +2510,8 @@ public class GridData {
     }
 
     /**
-     * Resample grid data
+     * Resample grid data. Output rows are processed in parallel, the thread
+     * number is set by ParallelUtil.setThreadNum (1 for serial).
      *
      * @param toGridData The grid data
      * @param method The resample method
@@ -2472,28 +2537,22 @@ public class GridData {
         return gridData;
     }
 
-    private GridData resample_Neighbor(double[] newX, double[] newY) {
-        double[][] newdata = new double[newY.length][newX.length];
-        int i, j, xIdx, yIdx;
-        double x, y;
-
-        double[][] points = new double[1][];
-        for (i = 0; i < newY.length; i++) {
-            y = newY[i];
-            for (j = 0; j < newX.length; j++) {
-                points[0] = new double[]{newX[j], newY[i]};
-                x = newX[j];
-                if (x < xArray[0] || x > xArray[xArray.length - 1]) {
-                    newdata[i][j] = missingValue;
-                } else if (y < yArray[0] || y > yArray[yArray.length - 1]) {
-                    newdata[i][j] = missingValue;
-                } else {
-                    xIdx = (int) ((x - xArray[0]) / getXDelt());
-                    yIdx = (int) ((y - yArray[0]) / getYDelt());
-                    newdata[i][j] = data[yIdx][xIdx];
+    private GridData resample_Neighbor(final double[] newX, final double[] newY) {
+        final double[][] newdata = new double[newY.length][newX.length];
+        final double DX = getXDelt();
+        final double DY = getYDelt();
+        ParallelUtil.parallelFor(newY.length, 8, new ParallelUtil.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int i = start; i < end; i++) {
+                    double y = newY[i];
+                    double[] row = newdata[i];
+                    for (int j = 0; j < newX.length; j++) {
+                        row[j] = neighbor(newX[j], y, DX, DY);
+                    }
                 }
             }
-        }
+        });
 
         GridData gData = new GridData(this);
         gData.data = newdata;
@@ -2503,27 +2562,22 @@ public class GridData {
         return gData;
     }
 
-    private GridData resample_Bilinear(double[] newX, double[] newY) {
-        //PointD[][] pos = new PointD[newY.length][newX.length];
-        double[][] newdata = new double[newY.length][newX.length];
-        int i, j;
-        double x, y;
-
-        double[][] points = new double[1][];
-        for (i = 0; i < newY.length; i++) {
-            y = newY[i];
-            for (j = 0; j < newX.length; j++) {
-                points[0] = new double[]{newX[j], newY[i]};
-                x = newX[j];
-                if (x < xArray[0] || x > xArray[xArray.length - 1]) {
-                    newdata[i][j] = missingValue;
-                } else if (y < yArray[0] || y > yArray[yArray.length - 1]) {
-                    newdata[i][j] = missingValue;
-                } else {
-                    newdata[i][j] = this.toStation(x, y);
+    private GridData resample_Bilinear(final double[] newX, final double[] newY) {
+        final double[][] newdata = new double[newY.length][newX.length];
+        final double DX = getXDelt();
+        final double DY = getYDelt();
+        ParallelUtil.parallelFor(newY.length, 8, new ParallelUtil.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int i = start; i < end; i++) {
+                    double y = newY[i];
+                    double[] row = newdata[i];
+                    for (int j = 0; j < newX.length; j++) {
+                        row[j] = inside(newX[j], y) ? bilinear(newX[j], y, DX, DY) : missingValue;
+                    }
                 }
             }
-        }
+        });
 
         GridData gData = new GridData(this);
         gData.data = newdata;
@@ -2533,6 +2587,19 @@ public class GridData {
         return gData;
     }
 
+    private boolean inside(double x, double y) {
+        return !(x < xArray[0] || x > xArray[xArray.length - 1]
+                || y < yArray[0] || y > yArray[yArray.length - 1]);
+    }
+
+    private double neighbor(double x, double y, double DX, double DY) {
+        if (inside(x, y)) {
+            return data[(int) ((y - yArray[0]) / DY)][(int) ((x - xArray[0]) / DX)];
+        } else {
+            return missingValue;
+        }
+    }
+
     /**
      * Interpolate grid data
      *
@@ -2847,71 +2914,48 @@ public class GridData {
     }
 
     private GridData project_Neighbor(ProjectionInfo fromProj, ProjectionInfo toProj, double[] newX, double[] newY) {
-        double[][] newdata = new double[newY.length][newX.length];
-        int i, j, xIdx, yIdx;
-        double x, y;
-
-        double[][] points = new double[1][];
-        for (i = 0; i < newY.length; i++) {
-            for (j = 0; j < newX.length; j++) {
-                points[0] = new double[]{newX[j], newY[i]};
-                try {
-                    Reproject.reprojectPoints(points, toProj, fromProj, 0, 1);
-                    x = points[0][0];
-                    y = points[0][1];
-
-                    if (x < xArray[0] || x > xArray[xArray.length - 1]) {
-                        newdata[i][j] = missingValue;
-                    } else if (y < yArray[0] || y > yArray[yArray.length - 1]) {
-                        newdata[i][j] = missingValue;
-                    } else {
-                        xIdx = (int) ((x - xArray[0]) / getXDelt());
-                        yIdx = (int) ((y - yArray[0]) / getYDelt());
-                        newdata[i][j] = data[yIdx][xIdx];
-                    }
-                } catch (Exception e) {
-                    newdata[i][j] = missingValue;
-                    j++;
-                }
-            }
-        }
-
-        GridData gData = new GridData(this);
-        gData.data = newdata;
-        gData.xArray = newX;
-        gData.yArray = newY;
-
-        return gData;
+        return project_Rows(fromProj, toProj, newX, newY, false);
     }
 
     private GridData project_Bilinear(ProjectionInfo fromProj, ProjectionInfo toProj, double[] newX, double[] newY) {
-        //PointD[][] pos = new PointD[newY.length][newX.length];
-        double[][] newdata = new double[newY.length][newX.length];
-        int i, j;
-        double x, y;
-
-        double[][] points = new double[1][];
-        for (i = 0; i < newY.length; i++) {
-            for (j = 0; j < newX.length; j++) {
-                points[0] = new double[]{newX[j], newY[i]};
-                try {
-                    Reproject.reprojectPoints(points, toProj, fromProj, 0, 1);
-                    x = points[0][0];
-                    y = points[0][1];
-
-                    if (x < xArray[0] || x > xArray[xArray.length - 1]) {
-                        newdata[i][j] = missingValue;
-                    } else if (y < yArray[0] || y > yArray[yArray.length - 1]) {
-                        newdata[i][j] = missingValue;
-                    } else {
-                        newdata[i][j] = this.toStation(x, y);
+        return project_Rows(fromProj, toProj, newX, newY, true);
+    }
+
+    /**
+     * Project grid data row by row. The rows are processed in parallel with
+     * ParallelUtil thread number, each task reuses its own coordinate buffers,
+     * so the result is identical to the serial run.
+     */
+    private GridData project_Rows(final ProjectionInfo fromProj, final ProjectionInfo toProj,
+            final double[] newX, final double[] newY, final boolean bilinear) {
+        final double[][] newdata = new double[newY.length][newX.length];
+        final double DX = getXDelt();
+        final double DY = getYDelt();
+        final int xn = newX.length;
+        ParallelUtil.parallelFor(newY.length, 4, new ParallelUtil.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                double[] xs = new double[xn];
+                double[] ys = new double[xn];
+                for (int i = start; i < end; i++) {
+                    System.arraycopy(newX, 0, xs, 0, xn);
+                    Arrays.fill(ys, newY[i]);
+                    Reproject.reprojectPoints(xs, ys, toProj, fromProj);
+                    double[] row = newdata[i];
+                    for (int j = 0; j < xn; j++) {
+                        double x = xs[j];
+                        double y = ys[j];
+                        if (java.lang.Double.isNaN(x) || java.lang.Double.isNaN(y)) {
+                            row[j] = missingValue;
+                        } else if (bilinear) {
+                            row[j] = inside(x, y) ? bilinear(x, y, DX, DY) : missingValue;
+                        } else {
+                            row[j] = neighbor(x, y, DX, DY);
+                        }
                     }
-                } catch (Exception e) {
-                    newdata[i][j] = missingValue;
-                    j++;
                 }
             }
-        }
+        });
 
         GridData gData = new GridData(this);
         gData.data = newdata;
@@ -0,0 +1,494 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.meteoinfo.data.analysis;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.meteoinfo.jts.geom.Coordinate;
+import org.meteoinfo.jts.index.kdtree.KdNode;
+import org.meteoinfo.jts.index.kdtree.KdTree;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+/**
+ * Gridding engine for scattered station data. The station coordinates are
+ * indexed by a KD-tree once, so one gridder can be used to interpolate any
+ * number of variables sharing the same station layout. Missing (NaN) station
+ * values are skipped during each query.
+ *
+ * @author Yaqiang Wang
+ */
+public class StationGridder {
+
+    // <editor-fold desc="Variables">
+    private final double[] xs;
+    private final double[] ys;
+    private final int[] next;
+    private final KdTree tree;
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor
+     *
+     * @param x_s Station x coordinates
+     * @param y_s Station y coordinates
+     */
+    public StationGridder(List<Number> x_s, List<Number> y_s) {
+        this(toDoubles(x_s), toDoubles(y_s));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param x_s Station x coordinates
+     * @param y_s Station y coordinates
+     */
+    public StationGridder(Array x_s, Array y_s) {
+        this((double[]) x_s.get1DJavaArray(double.class), (double[]) y_s.get1DJavaArray(double.class));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param xs Station x coordinates
+     * @param ys Station y coordinates
+     */
+    public StationGridder(double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("Station x and y coordinates have different lengths!");
+        }
+        this.xs = xs;
+        this.ys = ys;
+        this.next = new int[xs.length];
+        Arrays.fill(this.next, -1);
+        this.tree = new KdTree();
+
+        Integer[] order = new Integer[xs.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        this.insertBalanced(order, 0, order.length, true);
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get station number
+     *
+     * @return Station number
+     */
+    public int getStationNumber() {
+        return this.xs.length;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    private static double[] toDoubles(List<Number> values) {
+        double[] r = new double[values.size()];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = values.get(i).doubleValue();
+        }
+        return r;
+    }
+
+    /**
+     * Insert the stations median first, so the tree depth stays close to
+     * log2(n) even if the stations are ordered spatially.
+     */
+    private void insertBalanced(Integer[] order, int from, int to, final boolean byX) {
+        if (from >= to) {
+            return;
+        }
+        Arrays.sort(order, from, to, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return byX ? Double.compare(xs[a], xs[b]) : Double.compare(ys[a], ys[b]);
+            }
+        });
+        int mid = (from + to) >>> 1;
+        int idx = order[mid];
+        KdNode node = tree.insert(new Coordinate(xs[idx], ys[idx]), idx);
+        int first = (Integer) node.getData();
+        if (first != idx) {
+            //Coincident station - chain it to the station owning the node
+            next[idx] = next[first];
+            next[first] = idx;
+        }
+        this.insertBalanced(order, from, mid, !byX);
+        this.insertBalanced(order, mid + 1, to, !byX);
+    }
+
+    private double[] getValues(Array a) {
+        if (a.getSize() != xs.length) {
+            throw new IllegalArgumentException("Station value number is not equal to station number!");
+        }
+        return (double[]) a.get1DJavaArray(double.class);
+    }
+
+    /**
+     * Find the k nearest stations with valid values
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @param k Neighbor number
+     * @param values Station values, NaN values are skipped
+     * @return Station indices ordered by distance
+     */
+    public int[] nearest(double x, double y, int k, double[] values) {
+        Neighbors nb = new Neighbors(k);
+        this.searchNearest(tree.getRoot(), true, x, y, values, nb);
+        return nb.sortedIndices();
+    }
+
+    /**
+     * Find the stations with valid values within a radius
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @param radius Search radius
+     * @param values Station values, NaN values are skipped
+     * @return Station indices
+     */
+    public int[] withinRadius(double x, double y, double radius, double[] values) {
+        int[] buf = new int[16];
+        int n = 0;
+        KdNode[] stack = new KdNode[64];
+        boolean[] odds = new boolean[64];
+        int top = 0;
+        double r2 = radius * radius;
+        if (tree.getRoot() != null) {
+            stack[top] = tree.getRoot();
+            odds[top++] = true;
+        }
+        while (top > 0) {
+            KdNode node = stack[--top];
+            boolean odd = odds[top];
+            double dx = x - node.getX();
+            double dy = y - node.getY();
+            if (dx * dx + dy * dy <= r2) {
+                for (int p = (Integer) node.getData(); p >= 0; p = next[p]) {
+                    if (values == null || !Double.isNaN(values[p])) {
+                        if (n == buf.length) {
+                            buf = Arrays.copyOf(buf, n * 2);
+                        }
+                        buf[n++] = p;
+                    }
+                }
+            }
+            double q = odd ? x : y;
+            double disc = odd ? node.getX() : node.getY();
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+                odds = Arrays.copyOf(odds, odds.length * 2);
+            }
+            if (q - radius < disc && node.getLeft() != null) {
+                stack[top] = node.getLeft();
+                odds[top++] = !odd;
+            }
+            if (disc <= q + radius && node.getRight() != null) {
+                stack[top] = node.getRight();
+                odds[top++] = !odd;
+            }
+        }
+        int[] r = Arrays.copyOf(buf, n);
+        Arrays.sort(r);
+        return r;
+    }
+
+    private void searchNearest(KdNode node, boolean odd, double x, double y, double[] values,
+            Neighbors nb) {
+        while (node != null) {
+            double dx = x - node.getX();
+            double dy = y - node.getY();
+            double d2 = dx * dx + dy * dy;
+            for (int p = (Integer) node.getData(); p >= 0; p = next[p]) {
+                if (values == null || !Double.isNaN(values[p])) {
+                    nb.offer(d2, p);
+                }
+            }
+            double diff = odd ? dx : dy;
+            KdNode near = diff < 0 ? node.getLeft() : node.getRight();
+            KdNode far = diff < 0 ? node.getRight() : node.getLeft();
+            this.searchNearest(near, !odd, x, y, values, nb);
+            if (!nb.isFull() || diff * diff < nb.worst()) {
+                //Continue with the far side as a loop to keep recursion shallow
+                node = far;
+                odd = !odd;
+            } else {
+                node = null;
+            }
+        }
+    }
+
+    private void accumulateRadius(KdNode node, boolean odd, double x, double y, double radius,
+            double r2, double[] values, RadiusSum sum) {
+        while (node != null) {
+            double dx = x - node.getX();
+            double dy = y - node.getY();
+            double d2 = dx * dx + dy * dy;
+            if (d2 <= r2) {
+                for (int p = (Integer) node.getData(); p >= 0; p = next[p]) {
+                    double v = values[p];
+                    if (Double.isNaN(v)) {
+                        continue;
+                    }
+                    if (d2 == 0) {
+                        if (sum.exactIdx < 0 || p < sum.exactIdx) {
+                            sum.exactIdx = p;
+                        }
+                    } else {
+                        double w = 1 / d2;
+                        sum.sw += w;
+                        sum.sv += v * w;
+                        sum.num += 1;
+                    }
+                }
+            }
+            double q = odd ? x : y;
+            double disc = odd ? node.getX() : node.getY();
+            boolean searchLeft = q - radius < disc;
+            boolean searchRight = disc <= q + radius;
+            if (searchLeft && searchRight) {
+                this.accumulateRadius(node.getLeft(), !odd, x, y, radius, r2, values, sum);
+                node = node.getRight();
+            } else if (searchLeft) {
+                node = node.getLeft();
+            } else if (searchRight) {
+                node = node.getRight();
+            } else {
+                node = null;
+            }
+            odd = !odd;
+        }
+    }
+
+    /**
+     * Interpolation with IDW neighbor method
+     *
+     * @param a Station value array
+     * @param X Grid X array
+     * @param Y Grid Y array
+     * @param neighborNum Number of nearest neighbors
+     * @return Interpolated grid data (not smoothed)
+     */
+    public Array interpolation_IDW_Neighbor(Array a, List<Number> X, List<Number> Y, int neighborNum) {
+        double[] values = this.getValues(a);
+        double[] gx = toDoubles(X);
+        double[] gy = toDoubles(Y);
+        int colNum = gx.length;
+        int rowNum = gy.length;
+        double[] r = new double[rowNum * colNum];
+        Neighbors nb = new Neighbors(neighborNum);
+        KdNode root = tree.getRoot();
+        for (int i = 0; i < rowNum; i++) {
+            for (int j = 0; j < colNum; j++) {
+                nb.clear();
+                this.searchNearest(root, true, gx[j], gy[i], values, nb);
+                r[i * colNum + j] = nb.idw(values);
+            }
+        }
+
+        return Array.factory(DataType.DOUBLE, new int[]{rowNum, colNum}, r);
+    }
+
+    /**
+     * Interpolation with IDW radius method
+     *
+     * @param a Station value array
+     * @param X Grid X array
+     * @param Y Grid Y array
+     * @param neededPointNum Needed at least point number
+     * @param radius Search radius
+     * @return Interpolated grid data (not smoothed)
+     */
+    public Array interpolation_IDW_Radius(Array a, List<Number> X, List<Number> Y, int neededPointNum,
+            double radius) {
+        double[] values = this.getValues(a);
+        double[] gx = toDoubles(X);
+        double[] gy = toDoubles(Y);
+        int colNum = gx.length;
+        int rowNum = gy.length;
+        double[] r = new double[rowNum * colNum];
+        double r2 = radius * radius;
+        RadiusSum sum = new RadiusSum();
+        KdNode root = tree.getRoot();
+        for (int i = 0; i < rowNum; i++) {
+            for (int j = 0; j < colNum; j++) {
+                sum.clear();
+                this.accumulateRadius(root, true, gx[j], gy[i], radius, r2, values, sum);
+                if (sum.exactIdx >= 0) {
+                    r[i * colNum + j] = values[sum.exactIdx];
+                } else if (sum.num >= neededPointNum && sum.num > 0) {
+                    r[i * colNum + j] = sum.sv / sum.sw;
+                } else {
+                    r[i * colNum + j] = Double.NaN;
+                }
+            }
+        }
+
+        return Array.factory(DataType.DOUBLE, new int[]{rowNum, colNum}, r);
+    }
+
+    /**
+     * Interpolation with nearest method
+     *
+     * @param a Station value array
+     * @param X Grid X array
+     * @param Y Grid Y array
+     * @param radius Search radius
+     * @return Interpolated grid data
+     */
+    public Array interpolation_Nearest(Array a, List<Number> X, List<Number> Y, double radius) {
+        double[] values = this.getValues(a);
+        double[] gx = toDoubles(X);
+        double[] gy = toDoubles(Y);
+        int colNum = gx.length;
+        int rowNum = gy.length;
+        double[] r = new double[rowNum * colNum];
+        double r2 = radius * radius;
+        Neighbors nb = new Neighbors(1);
+        KdNode root = tree.getRoot();
+        for (int i = 0; i < rowNum; i++) {
+            for (int j = 0; j < colNum; j++) {
+                nb.clear();
+                this.searchNearest(root, true, gx[j], gy[i], values, nb);
+                if (nb.size > 0 && nb.d2[0] < r2) {
+                    r[i * colNum + j] = values[nb.idx[0]];
+                } else {
+                    r[i * colNum + j] = Double.NaN;
+                }
+            }
+        }
+
+        return Array.factory(DataType.DOUBLE, new int[]{rowNum, colNum}, r);
+    }
+    // </editor-fold>
+    // <editor-fold desc="Classes">
+
+    /**
+     * Bounded max-heap of the nearest stations found so far
+     */
+    private static class Neighbors {
+
+        final double[] d2;
+        final int[] idx;
+        int size;
+
+        Neighbors(int k) {
+            d2 = new double[Math.max(k, 1)];
+            idx = new int[d2.length];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isFull() {
+            return size == d2.length;
+        }
+
+        double worst() {
+            return d2[0];
+        }
+
+        void offer(double d, int p) {
+            if (size < d2.length) {
+                //Sift up
+                int c = size++;
+                while (c > 0) {
+                    int parent = (c - 1) >> 1;
+                    if (d2[parent] >= d) {
+                        break;
+                    }
+                    d2[c] = d2[parent];
+                    idx[c] = idx[parent];
+                    c = parent;
+                }
+                d2[c] = d;
+                idx[c] = p;
+            } else if (d < d2[0]) {
+                //Replace the root and sift down
+                int c = 0;
+                while (true) {
+                    int l = 2 * c + 1;
+                    if (l >= size) {
+                        break;
+                    }
+                    int m = (l + 1 < size && d2[l + 1] > d2[l]) ? l + 1 : l;
+                    if (d2[m] <= d) {
+                        break;
+                    }
+                    d2[c] = d2[m];
+                    idx[c] = idx[m];
+                    c = m;
+                }
+                d2[c] = d;
+                idx[c] = p;
+            }
+        }
+
+        double idw(double[] values) {
+            if (size == 0) {
+                return Double.NaN;
+            }
+            int exact = -1;
+            for (int n = 0; n < size; n++) {
+                if (d2[n] == 0 && (exact < 0 || idx[n] < exact)) {
+                    exact = idx[n];
+                }
+            }
+            if (exact >= 0) {
+                return values[exact];
+            }
+            double sv = 0, sw = 0, w;
+            for (int n = 0; n < size; n++) {
+                w = 1 / d2[n];
+                sv += w * values[idx[n]];
+                sw += w;
+            }
+            return sv / sw;
+        }
+
+        int[] sortedIndices() {
+            Integer[] order = new Integer[size];
+            for (int n = 0; n < size; n++) {
+                order[n] = n;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int c = Double.compare(d2[a], d2[b]);
+                    return c != 0 ? c : Integer.compare(idx[a], idx[b]);
+                }
+            });
+            int[] r = new int[size];
+            for (int n = 0; n < size; n++) {
+                r[n] = idx[order[n]];
+            }
+            return r;
+        }
+    }
+
+    /**
+     * Accumulator of the IDW radius sums
+     */
+    private static class RadiusSum {
+
+        double sv, sw;
+        int num;
+        int exactIdx;
+
+        void clear() {
+            sv = 0;
+            sw = 0;
+            num = 0;
+            exactIdx = -1;
+        }
+    }
+    // </editor-fold>
+}
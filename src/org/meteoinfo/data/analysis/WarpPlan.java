@@ -0,0 +1,358 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.meteoinfo.data.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.List;
+import org.meteoinfo.geoprocess.analysis.ResampleMethods;
+import org.meteoinfo.global.MIMath;
+import org.meteoinfo.global.util.ParallelUtil;
+import org.meteoinfo.projection.ProjectionInfo;
+import org.meteoinfo.projection.Reproject;
+import ucar.ma2.Array;
+import ucar.ma2.IndexIterator;
+
+/**
+ * Precomputed grid to grid reprojection. The destination points are inverse
+ * projected and located in the source grid once, so one plan can be applied to
+ * any number of data arrays sharing the same source and destination grids.
+ * The last two dimensions of the data array are the source y/x dimensions,
+ * leading dimensions (time, level...) are kept in the result.
+ *
+ * @author Yaqiang Wang
+ */
+public class WarpPlan implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // <editor-fold desc="Variables">
+    private final int nx;
+    private final int ny;
+    private final int[] shape;
+    private final ResampleMethods method;
+    //Source flat index of each destination point, -1 means out of the source grid.
+    //Lower left cell corner for bilinear method, nearest grid point otherwise.
+    private final int[] index;
+    //Fractional x/y offsets within the cell for bilinear method
+    private final double[] fx;
+    private final double[] fy;
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor
+     *
+     * @param x Source x coordinates
+     * @param y Source y coordinates
+     * @param rx Destination x coordinates (1 or 2 dimension)
+     * @param ry Destination y coordinates (1 or 2 dimension)
+     * @param fromProj Source projection
+     * @param toProj Destination projection
+     * @param method Resample method
+     */
+    public WarpPlan(List<Number> x, List<Number> y, Array rx, Array ry, ProjectionInfo fromProj,
+            ProjectionInfo toProj, ResampleMethods method) {
+        this(toDoubles(x), toDoubles(y), toDoubles(rx), toDoubles(ry), rx.getShape(), fromProj, toProj, method);
+    }
+
+    /**
+     * Constructor with destination grid defined by x/y coordinate lists
+     *
+     * @param x Source x coordinates
+     * @param y Source y coordinates
+     * @param rx Destination x coordinates
+     * @param ry Destination y coordinates
+     * @param fromProj Source projection
+     * @param toProj Destination projection
+     * @param method Resample method
+     */
+    public WarpPlan(List<Number> x, List<Number> y, List<Number> rx, List<Number> ry, ProjectionInfo fromProj,
+            ProjectionInfo toProj, ResampleMethods method) {
+        this(toDoubles(x), toDoubles(y), meshX(rx, ry.size()), meshY(rx.size(), ry),
+                new int[]{ry.size(), rx.size()}, fromProj, toProj, method);
+    }
+
+    private WarpPlan(double[] x, double[] y, double[] pxs, double[] pys, int[] shape, ProjectionInfo fromProj,
+            ProjectionInfo toProj, ResampleMethods method) {
+        if (x.length < 2 || y.length < 2) {
+            throw new IllegalArgumentException("Source grid needs at least 2 points in each dimension!");
+        }
+        this.nx = x.length;
+        this.ny = y.length;
+        this.shape = shape;
+        this.method = method == ResampleMethods.Bilinear ? ResampleMethods.Bilinear : ResampleMethods.NearestNeighbor;
+        int n = pxs.length;
+        if (!fromProj.equals(toProj)) {
+            Reproject.reprojectPoints(pxs, pys, toProj, fromProj, n > 4096);
+        }
+
+        this.index = new int[n];
+        if (this.method == ResampleMethods.Bilinear) {
+            this.fx = new double[n];
+            this.fy = new double[n];
+        } else {
+            this.fx = null;
+            this.fy = null;
+        }
+        for (int k = 0; k < n; k++) {
+            double xx = pxs[k];
+            double yy = pys[k];
+            if (Double.isNaN(xx) || Double.isNaN(yy) || xx < x[0] || xx > x[nx - 1]
+                    || yy < y[0] || yy > y[ny - 1]) {
+                index[k] = -1;
+                continue;
+            }
+            int j1 = cellIndex(x, xx);
+            int i1 = cellIndex(y, yy);
+            int j2 = j1 + 1;
+            int i2 = i1 + 1;
+            if (fx != null) {
+                index[k] = i1 * nx + j1;
+                fx[k] = (xx - x[j1]) / (x[j2] - x[j1]);
+                fy[k] = (yy - y[i1]) / (y[i2] - y[i1]);
+            } else {
+                int j = Math.abs(xx - x[j1]) < Math.abs(x[j2] - xx) ? j1 : j2;
+                int i = Math.abs(yy - y[i1]) < Math.abs(y[i2] - yy) ? i1 : i2;
+                index[k] = i * nx + j;
+            }
+        }
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get destination shape
+     *
+     * @return Destination shape
+     */
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    /**
+     * Get source x number
+     *
+     * @return Source x number
+     */
+    public int getXNum() {
+        return nx;
+    }
+
+    /**
+     * Get source y number
+     *
+     * @return Source y number
+     */
+    public int getYNum() {
+        return ny;
+    }
+
+    /**
+     * Get resample method
+     *
+     * @return Resample method
+     */
+    public ResampleMethods getResampleMethod() {
+        return method;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    private static double[] toDoubles(List<Number> values) {
+        double[] r = new double[values.size()];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = values.get(i).doubleValue();
+        }
+        return r;
+    }
+
+    private static double[] toDoubles(Array values) {
+        double[] r = new double[(int) values.getSize()];
+        IndexIterator iter = values.getIndexIterator();
+        for (int i = 0; i < r.length; i++) {
+            r[i] = iter.getDoubleNext();
+        }
+        return r;
+    }
+
+    private static double[] meshX(List<Number> rx, int ny) {
+        int nx = rx.size();
+        double[] r = new double[nx * ny];
+        for (int i = 0; i < ny; i++) {
+            for (int j = 0; j < nx; j++) {
+                r[i * nx + j] = rx.get(j).doubleValue();
+            }
+        }
+        return r;
+    }
+
+    private static double[] meshY(int nx, List<Number> ry) {
+        int ny = ry.size();
+        double[] r = new double[nx * ny];
+        for (int i = 0; i < ny; i++) {
+            double v = ry.get(i).doubleValue();
+            for (int j = 0; j < nx; j++) {
+                r[i * nx + j] = v;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Get the cell index containing the value in an ascending coordinate
+     * array. The last cell is used for the value of the last coordinate.
+     */
+    private static int cellIndex(double[] dim, double v) {
+        int lo = 1, hi = dim.length - 1;
+        //First index with v < dim[i]
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (v < dim[mid]) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        if (v < dim[lo]) {
+            return lo - 1;
+        }
+        return dim.length - 2;
+    }
+
+    /**
+     * Apply the plan to a data array
+     *
+     * @param data Data array, the last two dimensions are source y/x
+     * @return Reprojected array
+     */
+    public Array apply(Array data) {
+        return apply(data, Double.NaN);
+    }
+
+    /**
+     * Apply the plan to a data array
+     *
+     * @param data Data array, the last two dimensions are source y/x
+     * @param missingValue Missing value
+     * @return Reprojected array
+     */
+    public Array apply(Array data, final double missingValue) {
+        int[] dshape = data.getShape();
+        int rank = dshape.length;
+        if (rank < 2 || dshape[rank - 2] != ny || dshape[rank - 1] != nx) {
+            throw new IllegalArgumentException("Data shape does not match the source grid of the warp plan!");
+        }
+        int[] rshape = new int[rank - 2 + shape.length];
+        int sliceNum = 1;
+        for (int i = 0; i < rank - 2; i++) {
+            rshape[i] = dshape[i];
+            sliceNum *= dshape[i];
+        }
+        System.arraycopy(shape, 0, rshape, rank - 2, shape.length);
+        Array r = Array.factory(data.getDataType(), rshape);
+
+        final int n = index.length;
+        final double[] src = new double[nx * ny];
+        final double[] dst = new double[n];
+        IndexIterator iter = data.getIndexIterator();
+        int offset = 0;
+        for (int s = 0; s < sliceNum; s++) {
+            for (int i = 0; i < src.length; i++) {
+                src[i] = iter.getDoubleNext();
+            }
+            ParallelUtil.parallelFor(n, 4096, new ParallelUtil.RangeTask() {
+                @Override
+                public void run(int start, int end) {
+                    if (fx == null) {
+                        applyNeighbor(src, dst, start, end);
+                    } else {
+                        applyBilinear(src, dst, missingValue, start, end);
+                    }
+                }
+            });
+            for (int i = 0; i < n; i++) {
+                r.setDouble(offset + i, dst[i]);
+            }
+            offset += n;
+        }
+
+        return r;
+    }
+
+    private void applyNeighbor(double[] src, double[] dst, int start, int end) {
+        for (int k = start; k < end; k++) {
+            int idx = index[k];
+            dst[k] = idx < 0 ? Double.NaN : src[idx];
+        }
+    }
+
+    private void applyBilinear(double[] src, double[] dst, double missingValue, int start, int end) {
+        boolean hasMissing = !Double.isNaN(missingValue);
+        double[] vs = new double[4];
+        for (int k = start; k < end; k++) {
+            int idx = index[k];
+            if (idx < 0) {
+                dst[k] = Double.NaN;
+                continue;
+            }
+            vs[0] = src[idx];
+            vs[1] = src[idx + 1];
+            vs[2] = src[idx + nx];
+            vs[3] = src[idx + nx + 1];
+            int vn = 0;
+            double sum = 0;
+            for (double v : vs) {
+                if (!Double.isNaN(v) && !(hasMissing && MIMath.doubleEquals(v, missingValue))) {
+                    vn += 1;
+                    sum += v;
+                }
+            }
+            if (vn == 4) {
+                double x1val = vs[0] + (vs[2] - vs[0]) * fy[k];
+                double x2val = vs[1] + (vs[3] - vs[1]) * fy[k];
+                dst[k] = x1val + (x2val - x1val) * fx[k];
+            } else if (vn == 0) {
+                dst[k] = Double.NaN;
+            } else {
+                dst[k] = sum / vn;
+            }
+        }
+    }
+
+    /**
+     * Save the plan to a file
+     *
+     * @param fileName File name
+     * @throws IOException
+     */
+    public void save(String fileName) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeObject(this);
+        }
+    }
+
+    /**
+     * Load a plan from a file
+     *
+     * @param fileName File name
+     * @return The plan
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    public static WarpPlan load(String fileName) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(fileName)))) {
+            return (WarpPlan) in.readObject();
+        }
+    }
+    // </editor-fold>
+}
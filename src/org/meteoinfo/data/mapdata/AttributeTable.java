@@ -17,6 +17,7 @@ import org.meteoinfo.table.DataColumn;
 import org.meteoinfo.table.DataRow;
 import org.meteoinfo.table.DataTable;
 import org.meteoinfo.data.DataTypes;
+import org.meteoinfo.data.meteodata.MappedFile;
 import org.meteoinfo.io.EndianDataOutputStream;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
@@ -203,6 +204,7 @@ public final class AttributeTable implements Cloneable {
     public void openDBF(String fileName) throws FileNotFoundException, IOException, Exception {
         _attributesPopulated = false; // we had a file, but have not read the dbf content into memory yet.
         _dataTable = new DataTable();
+        _dataTable.setColumnar(true);
         _file = new File(fileName);
         if (!_file.exists()) {
             System.out.println("The dbf file for this shapefile was not found.");
@@ -382,7 +384,7 @@ public final class AttributeTable implements Cloneable {
         }
         //_dataRowWatch = new Stopwatch();
 
-        _dataTable.getRows().clear(); // if we have already loaded data, clear the data.
+        _dataTable.clearRows(); // if we have already loaded data, clear the data.
 
         //File aFile = new File(_fileName);
         if (!_file.exists()) {
@@ -406,7 +408,7 @@ public final class AttributeTable implements Cloneable {
             // --------- DATABASE --------- CurrentFeature = ReadTableRow(myReader);
             try {
                 //_dataTable.Rows.Add(ReadTableRowFromChars(row));
-                _dataTable.addRow(readTableRowFromBytes(row));
+                _dataTable.addRow(readTableRowFromBytes(_byteContent, rowStart(row)));
             } catch (Exception ex) {
                 System.out.println(ex.getMessage());
                 _dataTable.addRow(_dataTable.newRow());
@@ -421,15 +423,56 @@ public final class AttributeTable implements Cloneable {
         //onAttributesFilled();
     }
 
-    private DataRow readTableRowFromBytes(int currentRow) throws Exception {
-        DataRow result = _dataTable.newRow();
+    /**
+     * Populates the Table with some records read directly from the file, the
+     * other records are not loaded. It is used to show a small part of a large
+     * file.
+     *
+     * @param records Record indexes
+     * @throws java.io.IOException
+     */
+    public void fill(List<Integer> records) throws IOException, Exception {
+        _dataTable.clearRows();
+        if (_file == null || !_file.exists()) {
+            if (!_dataTable.getColumnNames().contains("FID")) {
+                _dataTable.addColumn("FID", DataTypes.Integer);
+            }
+            for (int record : records) {
+                DataRow dr = _dataTable.newRow();
+                dr.setValue("FID", record);
+                _dataTable.addRow(dr);
+            }
+            return;
+        }
+
+        byte[] bytes = new byte[_recordLength];
+        try (MappedFile mf = new MappedFile(_file.getAbsolutePath())) {
+            for (int record : records) {
+                //Skip the deletion flag of the record
+                long pos = _headerLength + 1 + (long) record * _recordLength;
+                int n = (int) Math.min(_recordLength, mf.length() - pos);
+                try {
+                    mf.readBytes(pos, bytes, 0, n);
+                    _dataTable.addRow(readTableRowFromBytes(bytes, 0));
+                } catch (Exception ex) {
+                    System.out.println(ex.getMessage());
+                    _dataTable.addRow(_dataTable.newRow());
+                }
+            }
+        }
+        _attributesPopulated = true;
+    }
 
-        long start;
+    private long rowStart(int currentRow) {
         if (_hasDeletedRecords == false) {
-            start = currentRow * _recordLength;
+            return (long) currentRow * _recordLength;
         } else {
-            start = _offsets[currentRow];
+            return _offsets[currentRow];
         }
+    }
+
+    private DataRow readTableRowFromBytes(byte[] bytes, long start) throws Exception {
+        DataRow result = _dataTable.newRow();
 
         for (int col = 0; col < _dataTable.getColumns().size(); col++) {
             // find the length of the field.
@@ -440,7 +483,7 @@ public final class AttributeTable implements Cloneable {
 
             // read the data.
             //char[] cBuffer = new char[CurrentField.Length];
-            byte[] cBuffer = Arrays.copyOfRange(_byteContent, (int) start, (int) start + CurrentField.getLength());
+            byte[] cBuffer = Arrays.copyOfRange(bytes, (int) start, (int) start + CurrentField.getLength());
             //Array.copy(_byteContent, start, cBuffer, 0, CurrentField.getLength());
             //Array.Copy(_characterContent, start, bBuffer, 0, CurrentField.Length);
             start += CurrentField.getLength();
@@ -19,6 +19,8 @@ import org.meteoinfo.io.EndianDataOutputStream;
 import org.meteoinfo.layer.LayerDrawType;
 import org.meteoinfo.layer.VectorLayer;
 import org.meteoinfo.legend.LegendManage;
+import org.meteoinfo.legend.LegendScheme;
+import org.meteoinfo.shape.PackedPointList;
 import org.meteoinfo.shape.PointShape;
 import org.meteoinfo.shape.PointZ;
 import org.meteoinfo.shape.PolygonShape;
@@ -72,6 +74,10 @@ public class ShapeFileManage {
      * @throws java.io.FileNotFoundException
      */
     public static VectorLayer loadShapeFile(String shpfilepath) throws IOException, FileNotFoundException, Exception {
+        return loadShapeFile(shpfilepath, getEncoding(shpfilepath));
+    }
+
+    private static String getEncoding(String shpfilepath) throws IOException {
         String cpgfilepath = shpfilepath.replaceFirst(shpfilepath.substring(shpfilepath.lastIndexOf(".")), ".cpg");
         File cpgFile = new File(cpgfilepath);
         String encoding = ENCODING;
@@ -81,7 +87,44 @@ public class ShapeFileManage {
             sr.close();
             encoding = ec;
         }
-        return loadShapeFile(shpfilepath, encoding);
+        return encoding;
+    }
+
+    /**
+     * Load shape file in lazy mode. Only the headers and the shx index are
+     * read, and the shapes and attribute rows intersecting the extent are
+     * loaded. Use VectorLayer.loadExtent to load the shapes of another extent.
+     *
+     * @param shpfilepath Shape file path
+     * @param extent The extent, null for all shapes
+     * @param spatialIndex If build the spatial index of the record bounding
+     * boxes for fast extent queries
+     * @return Vector layer
+     * @throws IOException
+     * @throws Exception
+     */
+    public static VectorLayer loadShapeFile(String shpfilepath, Extent extent, boolean spatialIndex) throws IOException, Exception {
+        ShapeFileReader reader = new ShapeFileReader(shpfilepath, getEncoding(shpfilepath));
+        if (spatialIndex) {
+            reader.buildSpatialIndex();
+        }
+
+        VectorLayer aLayer = new VectorLayer(reader.getShapeType());
+        aLayer.setShapeFileReader(reader);
+        aLayer.loadExtent(extent == null ? reader.getExtent() : extent);
+        aLayer.setLegendScheme(createLegendScheme(reader.getShapeType()));
+        aLayer.setExtent((Extent) reader.getExtent().clone());
+
+        //Layer property
+        aLayer.setLayerDrawType(LayerDrawType.Map);
+        aLayer.setFileName(shpfilepath);
+        aLayer.setLayerName(new File(shpfilepath).getName());
+        aLayer.setVisible(true);
+        if (reader.getProjInfo() != null) {
+            aLayer.setProjInfo(reader.getProjInfo());
+        }
+
+        return aLayer;
     }
     
     /**
@@ -147,33 +190,13 @@ public class ShapeFileManage {
         //br.skipBytes(32);  //   shp中尚未使用的边界盒     
         //buffer.position(buffer.position() + 32);
 
-        //Get Shape Data             
-        switch (aST) {
-            case Point://single point                                                              
-                aLayer = readPointShapes(br, shapeNum);
-                break;
-            case PointZ:
-                aLayer = readPointZShapes(br, shapeNum);
-                break;
-            case Polyline:    //Polyline layer       
-                aLayer = readPolylineShapes(br, shapeNum);
-                break;
-            case PolylineZ:
-                aLayer = readPolylineZShapes(br, shapeNum);
-                break;
-            case Polygon:    //Polygon layer                                                               
-                aLayer = readPolygonShapes(br, shapeNum);
-                break;
-            case PolygonM:
-                aLayer = readPolygonMShapes(br, shapeNum);
-                break;
-            case PolygonZ:
-                aLayer = readPolygonZShapes(br, shapeNum);
-                break;
-            default:
-                System.out.println("The shape type is not supported: " + aST.toString());
-                return null;
-        }        
+        //Get Shape Data
+        if (!isSupported(aST)) {
+            System.out.println("The shape type is not supported: " + aST.toString());
+            br.close();
+            return null;
+        }
+        aLayer = readShapes(br, shapeNum, aST);
         br.close();
 
         if (aLayer != null) {
@@ -219,452 +242,242 @@ public class ShapeFileManage {
         }
     }
 
-    private static VectorLayer readPointShapes(DataInputStream br, int shapeNum) throws IOException {
-        int RecordNum, ContentLength, aShapeType;
-        double x, y;
-        VectorLayer aLayer = new VectorLayer(ShapeTypes.Point);
-        byte[] bytes = new byte[28 * shapeNum];
-        br.read(bytes);
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        
-        for (int i = 0; i < shapeNum; i++) {
-
-            //br.ReadBytes(12); //记录头8个字节和一个int(4个字节)的shapetype 
-            buffer.order(ByteOrder.BIG_ENDIAN);
-            RecordNum = buffer.getInt();
-            ContentLength = buffer.getInt();
-            
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            aShapeType = buffer.getInt();
-
-            x = buffer.getDouble();
-            y = buffer.getDouble();
-
-            PointShape aP = new PointShape();
-            PointD aPoint = new PointD();
-            aPoint.X = x;
-            aPoint.Y = y;
-            aP.setPoint(aPoint);
-            aLayer.addShape(aP);
+    /**
+     * Check if a shape type can be read
+     *
+     * @param shapeType Shape type
+     * @return Boolean
+     */
+    static boolean isSupported(ShapeTypes shapeType) {
+        switch (shapeType) {
+            case Point:
+            case PointZ:
+            case Polyline:
+            case PolylineZ:
+            case Polygon:
+            case PolygonM:
+            case PolygonZ:
+                return true;
+            default:
+                return false;
         }
-
-        //Create legend scheme            
-        aLayer.setLegendScheme(LegendManage.createSingleSymbolLegendScheme(ShapeTypes.Point, Color.black, 5));
-        return aLayer;
     }
-    
-    private static VectorLayer readPointZShapes(DataInputStream br, int shapeNum) throws IOException {
-        int RecordNum, ContentLength, aShapeType;
-        double x, y, z, m;
-        VectorLayer aLayer = new VectorLayer(ShapeTypes.PointZ);
-        byte[] bytes = new byte[44 * shapeNum];
-        br.read(bytes);
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        
-        for (int i = 0; i < shapeNum; i++) {
 
-            //br.ReadBytes(12); //记录头8个字节和一个int(4个字节)的shapetype 
-            buffer.order(ByteOrder.BIG_ENDIAN);
-            RecordNum = buffer.getInt();
-            ContentLength = buffer.getInt();
-            
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            aShapeType = buffer.getInt();
-
-            x = buffer.getDouble();
-            y = buffer.getDouble();
-            z = buffer.getDouble();
-            m = buffer.getDouble();
-
-            PointZShape aP = new PointZShape();
-            PointZ aPoint = new PointZ();
-            aPoint.X = x;
-            aPoint.Y = y;
-            aPoint.Z = z;
-            aPoint.M = m;
-            aP.setPoint(aPoint);
-            aLayer.addShape(aP);
+    /**
+     * Create default legend scheme of a shape type
+     *
+     * @param shapeType Shape type
+     * @return Legend scheme
+     */
+    static LegendScheme createLegendScheme(ShapeTypes shapeType) {
+        switch (shapeType) {
+            case Point:
+            case PointZ:
+                return LegendManage.createSingleSymbolLegendScheme(ShapeTypes.Point, Color.black, 5);
+            case Polyline:
+            case PolylineZ:
+                return LegendManage.createSingleSymbolLegendScheme(ShapeTypes.Polyline, Color.darkGray, 1.0F);
+            default:
+                return LegendManage.createSingleSymbolLegendScheme(ShapeTypes.Polygon, new Color(255, 251, 195), 1.0F);
         }
-
-        //Create legend scheme            
-        aLayer.setLegendScheme(LegendManage.createSingleSymbolLegendScheme(ShapeTypes.Point, Color.black, 5));
-        return aLayer;
     }
 
-    private static VectorLayer readPolylineShapes(DataInputStream br, int shapeNum) throws IOException {
-        VectorLayer aLayer = new VectorLayer(ShapeTypes.Polyline);
-        int RecordNum, ContentLength, aShapeType;
-        double x, y;
-        byte[] bytes;
-        ByteBuffer buffer;
-        
-        //PointD aPoint;
+    private static VectorLayer readShapes(DataInputStream br, int shapeNum, ShapeTypes shapeType) throws IOException {
+        VectorLayer aLayer = new VectorLayer(shapeType);
+        byte[] head = new byte[8];
+        ByteBuffer hb = ByteBuffer.wrap(head);
+        hb.order(ByteOrder.BIG_ENDIAN);
+        byte[] bytes = new byte[0];
         for (int i = 0; i < shapeNum; i++) {
-            bytes = new byte[8];
-            br.read(bytes);
-            buffer = ByteBuffer.wrap(bytes);
-            //br.skipBytes(12); 
-            buffer.order(ByteOrder.BIG_ENDIAN);
-            RecordNum = buffer.getInt();
-            ContentLength = buffer.getInt();
-            
-            bytes = new byte[ContentLength * 2];
-            br.read(bytes);
-            buffer = ByteBuffer.wrap(bytes);
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            aShapeType = buffer.getInt();
-
-            PolylineShape aPL = new PolylineShape();
-            Extent extent = new Extent();
-            extent.minX = buffer.getDouble();
-            extent.minY = buffer.getDouble();
-            extent.maxX = buffer.getDouble();
-            extent.maxY = buffer.getDouble();
-            aPL.setExtent(extent);
-
-            aPL.setPartNum(buffer.getInt());
-            int numPoints = buffer.getInt();
-            aPL.parts = new int[aPL.getPartNum()];
-            List<PointD> points = new ArrayList<>();
-
-            //firstly read out parts begin pos in file 
-            for (int j = 0; j < aPL.getPartNum(); j++) {
-                aPL.parts[j] = buffer.getInt();
+            //Record header: record number and content length in 16-bit words
+            br.readFully(head);
+            int contentLength = hb.getInt(4) * 2;
+            if (bytes.length < contentLength) {
+                bytes = new byte[contentLength];
             }
-
-            //read out coordinates 
-            for (int j = 0; j < numPoints; j++) {
-                x = buffer.getDouble();
-                y = buffer.getDouble();
-                PointD aPoint = new PointD();
-                aPoint.X = x;
-                aPoint.Y = y;
-                points.add(aPoint);
-            }
-            aPL.setPoints(points);
-            aLayer.addShape(aPL);
+            br.readFully(bytes, 0, contentLength);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, contentLength);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            aLayer.addShape(readShape(buffer, shapeType));
         }
 
-        //Create legend scheme            
-        aLayer.setLegendScheme(LegendManage.createSingleSymbolLegendScheme(ShapeTypes.Polyline, Color.darkGray, 1.0F));
+        //Create legend scheme
+        aLayer.setLegendScheme(createLegendScheme(shapeType));
 
         return aLayer;
     }
 
-    private static VectorLayer readPolylineZShapes(DataInputStream br, int shapeNum) throws IOException {
-        VectorLayer aLayer = new VectorLayer(ShapeTypes.PolylineZ);
-        int RecordNum, ContentLength, aShapeType;
-        double x, y;
-        byte[] bytes;
-        ByteBuffer buffer;
-        
-        //PointD aPoint;
-        for (int i = 0; i < shapeNum; i++) {
-            //br.skipBytes(12);
-            bytes = new byte[8];
-            br.read(bytes);
-            buffer = ByteBuffer.wrap(bytes);
-            //br.skipBytes(12); 
-            buffer.order(ByteOrder.BIG_ENDIAN);
-            RecordNum = buffer.getInt();
-            ContentLength = buffer.getInt();
-            
-            bytes = new byte[ContentLength * 2];
-            br.read(bytes);
-            buffer = ByteBuffer.wrap(bytes);
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            aShapeType = buffer.getInt();
-
-            //Read bounding box
-            PolylineZShape aPL = new PolylineZShape();
-            Extent extent = new Extent();
-            extent.minX = buffer.getDouble();
-            extent.minY = buffer.getDouble();
-            extent.maxX = buffer.getDouble();
-            extent.maxY = buffer.getDouble();
-            aPL.setExtent(extent);
-
-            aPL.setPartNum(buffer.getInt());
-            int numPoints = buffer.getInt();
-            aPL.parts = new int[aPL.getPartNum()];
-            List<PointD> points = new ArrayList<>();
-
-            //firstly read out parts begin position in file 
-            for (int j = 0; j < aPL.getPartNum(); j++) {
-                aPL.parts[j] = buffer.getInt();
-            }
-
-            //read out coordinates 
-            for (int j = 0; j < numPoints; j++) {
-                x = buffer.getDouble();
-                y = buffer.getDouble();
-                PointD aPoint = new PointD();
-                aPoint.X = x;
-                aPoint.Y = y;
-                points.add(aPoint);
-            }
-            //aPL.Points = points;
-
-            //Read Z
-            double zmin = buffer.getDouble();
-            double zmax = buffer.getDouble();
-            double[] zArray = new double[numPoints];
-            for (int j = 0; j < numPoints; j++) {
-                zArray[j] = buffer.getDouble();
-            }
-
-            //Read measure
-            double mmin = buffer.getDouble();
-            double mmax = buffer.getDouble();
-            double[] mArray = new double[numPoints];
-            for (int j = 0; j < numPoints; j++) {
-                mArray[j] = buffer.getDouble();
-            }
-
-            //Get pointZ list
-            List<PointZ> pointZs = new ArrayList<>();
-            for (int j = 0; j < numPoints; j++) {
-                pointZs.add(new PointZ(points.get(j).X, points.get(j).Y, zArray[j], mArray[j]));
-            }
+    /**
+     * Decode the content of a shape record
+     *
+     * @param buffer Little endian buffer positioned at the record content
+     * (after the record header)
+     * @param shapeType Shape type of the file
+     * @return Shape, null for a null shape record
+     */
+    static Shape readShape(ByteBuffer buffer, ShapeTypes shapeType) {
+        return readShape(buffer, shapeType, false);
+    }
 
-            aPL.setPoints(pointZs);
-            aLayer.addShape(aPL);
+    /**
+     * Decode the content of a shape record
+     *
+     * @param buffer Little endian buffer positioned at the record content
+     * (after the record header)
+     * @param shapeType Shape type of the file
+     * @param packed If keep the polyline and polygon coordinates packed
+     * in an array without Z and M values
+     * @return Shape, null for a null shape record
+     */
+    static Shape readShape(ByteBuffer buffer, ShapeTypes shapeType, boolean packed) {
+        int aShapeType = buffer.getInt();
+        if (aShapeType == 0) {
+            return null;
         }
 
-        //Create legend scheme            
-        aLayer.setLegendScheme(LegendManage.createSingleSymbolLegendScheme(ShapeTypes.Polyline, Color.darkGray, 1.0F));
+        switch (shapeType) {
+            case Point:
+                PointShape aP = new PointShape();
+                aP.setPoint(new PointD(buffer.getDouble(), buffer.getDouble()));
+                return aP;
+            case PointZ:
+                PointZShape aPZ = new PointZShape();
+                PointZ aPoint = new PointZ();
+                aPoint.X = buffer.getDouble();
+                aPoint.Y = buffer.getDouble();
+                aPoint.Z = buffer.getDouble();
+                //Measure is optional
+                aPoint.M = buffer.remaining() >= 8 ? buffer.getDouble() : 0;
+                aPZ.setPoint(aPoint);
+                return aPZ;
+        }
 
-        return aLayer;
-    }
+        Shape aShape;
+        switch (shapeType) {
+            case Polyline:
+                aShape = new PolylineShape();
+                break;
+            case PolylineZ:
+                aShape = new PolylineZShape();
+                break;
+            case PolygonM:
+                aShape = new PolygonMShape();
+                break;
+            case PolygonZ:
+                aShape = new PolygonZShape();
+                break;
+            default:
+                aShape = new PolygonShape();
+                break;
+        }
+        Extent extent = new Extent();
+        extent.minX = buffer.getDouble();
+        extent.minY = buffer.getDouble();
+        extent.maxX = buffer.getDouble();
+        extent.maxY = buffer.getDouble();
+        aShape.setExtent(extent);
+        int partNum = buffer.getInt();
+        int numPoints = buffer.getInt();
+        int[] parts = new int[partNum];
+
+        //firstly read out parts begin pos in file
+        for (int j = 0; j < partNum; j++) {
+            parts[j] = buffer.getInt();
+        }
 
-    private static VectorLayer readPolygonShapes(DataInputStream br, int shapeNum) throws IOException {
-        VectorLayer aLayer = new VectorLayer(ShapeTypes.Polygon);
-        int RecordNum, ContentLength, aShapeType;
-        double x, y;
-        byte[] bytes;
-        ByteBuffer buffer;
-
-        for (int i = 0; i < shapeNum; i++) {            
-            //br.skipBytes(12);
-            bytes = new byte[8];
-            br.read(bytes);
-            buffer = ByteBuffer.wrap(bytes);
-            //br.skipBytes(12); 
-            buffer.order(ByteOrder.BIG_ENDIAN);
-            RecordNum = buffer.getInt();
-            ContentLength = buffer.getInt();
-            
-            bytes = new byte[ContentLength * 2];
-            br.read(bytes);
-            buffer = ByteBuffer.wrap(bytes);
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            aShapeType = buffer.getInt();
-
-            PolygonShape aSPG = new PolygonShape();
-            Extent extent = new Extent();
-            extent.minX = buffer.getDouble();
-            extent.minY = buffer.getDouble();
-            extent.maxX = buffer.getDouble();
-            extent.maxY = buffer.getDouble();
-            aSPG.setExtent(extent);
-            aSPG.setPartNum(buffer.getInt());
-            int numPoints = buffer.getInt();
-            aSPG.parts = new int[aSPG.getPartNum()];
-            List<PointD> points = new ArrayList<>();
-
-            //firstly read out parts begin pos in file 
-            for (int j = 0; j < aSPG.getPartNum(); j++) {
-                aSPG.parts[j] = buffer.getInt();
-            }
+        //read out coordinates
+        double[] xy = new double[numPoints * 2];
+        for (int j = 0; j < xy.length; j++) {
+            xy[j] = buffer.getDouble();
+        }
 
-            //read out coordinates 
+        //Read Z
+        double[] zArray = null;
+        if (shapeType == ShapeTypes.PolylineZ || shapeType == ShapeTypes.PolygonZ) {
+            buffer.position(buffer.position() + 16);
+            zArray = new double[numPoints];
             for (int j = 0; j < numPoints; j++) {
-                x = buffer.getDouble();
-                y = buffer.getDouble();
-                PointD aPoint = new PointD();
-                aPoint.X = x;
-                aPoint.Y = y;
-                points.add(aPoint);
+                zArray[j] = buffer.getDouble();
             }
-            aSPG.setPoints(points);
-            aLayer.addShape(aSPG);
         }
 
-        //Create legend scheme            
-        aLayer.setLegendScheme(LegendManage.createSingleSymbolLegendScheme(ShapeTypes.Polygon, new Color(255, 251, 195), 1.0F));
-
-        return aLayer;
-    }
-    
-    private static VectorLayer readPolygonMShapes(DataInputStream br, int shapeNum) throws IOException {
-        VectorLayer aLayer = new VectorLayer(ShapeTypes.PolygonM);
-        int RecordNum, ContentLength, aShapeType;
-        double x, y;
-        byte[] bytes;
-        ByteBuffer buffer;
-
-        for (int i = 0; i < shapeNum; i++) {            
-            //br.skipBytes(12);
-            bytes = new byte[8];
-            br.read(bytes);
-            buffer = ByteBuffer.wrap(bytes);
-            //br.skipBytes(12); 
-            buffer.order(ByteOrder.BIG_ENDIAN);
-            RecordNum = buffer.getInt();
-            ContentLength = buffer.getInt();
-            
-            bytes = new byte[ContentLength * 2];
-            br.read(bytes);
-            buffer = ByteBuffer.wrap(bytes);
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            aShapeType = buffer.getInt();
-
-            PolygonMShape aSPG = new PolygonMShape();
-            Extent extent = new Extent();
-            extent.minX = buffer.getDouble();
-            extent.minY = buffer.getDouble();
-            extent.maxX = buffer.getDouble();
-            extent.maxY = buffer.getDouble();
-            aSPG.setExtent(extent);
-            aSPG.setPartNum(buffer.getInt());
-            int numPoints = buffer.getInt();
-            aSPG.parts = new int[aSPG.getPartNum()];
-            List<PointD> points = new ArrayList<>();
-
-            //firstly read out parts begin pos in file 
-            for (int j = 0; j < aSPG.getPartNum(); j++) {
-                aSPG.parts[j] = buffer.getInt();
-            }
-
-            //read out coordinates 
-            for (int j = 0; j < numPoints; j++) {
-                x = buffer.getDouble();
-                y = buffer.getDouble();
-                PointD aPoint = new PointD();
-                aPoint.X = x;
-                aPoint.Y = y;
-                points.add(aPoint);
-            }
-            
-            //Read measure
-            double mmin = buffer.getDouble();
-            double mmax = buffer.getDouble();
-            double[] mArray = new double[numPoints];
+        //Read measure, it is optional for Z shapes
+        double[] mArray = null;
+        if (shapeType != ShapeTypes.Polyline && shapeType != ShapeTypes.Polygon
+                && buffer.remaining() >= 16 + numPoints * 8) {
+            buffer.position(buffer.position() + 16);
+            mArray = new double[numPoints];
             for (int j = 0; j < numPoints; j++) {
                 mArray[j] = buffer.getDouble();
             }
-            
-            //Get pointM list
-            List<PointM> pointMs = new ArrayList<>();
-            for (int j = 0; j < numPoints; j++) {
-                pointMs.add(new PointM(points.get(j).X, points.get(j).Y, mArray[j]));
-            }
-            
-            aSPG.setPoints(pointMs);
-            aLayer.addShape(aSPG);
         }
 
-        //Create legend scheme            
-        aLayer.setLegendScheme(LegendManage.createSingleSymbolLegendScheme(ShapeTypes.Polygon, new Color(255, 251, 195), 1.0F));
-
-        return aLayer;
-    }
-    
-    private static VectorLayer readPolygonZShapes(DataInputStream br, int shapeNum) throws IOException {
-        VectorLayer aLayer = new VectorLayer(ShapeTypes.PolygonZ);
-        int RecordNum, ContentLength, aShapeType;
-        double x, y;
-        byte[] bytes;
-        ByteBuffer buffer;
-
-        for (int i = 0; i < shapeNum; i++) {            
-            //br.skipBytes(12);
-            bytes = new byte[8];
-            br.read(bytes);
-            buffer = ByteBuffer.wrap(bytes);
-            //br.skipBytes(12); 
-            buffer.order(ByteOrder.BIG_ENDIAN);
-            RecordNum = buffer.getInt();
-            ContentLength = buffer.getInt();
-            
-            bytes = new byte[ContentLength * 2];
-            br.read(bytes);
-            buffer = ByteBuffer.wrap(bytes);
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            aShapeType = buffer.getInt();
-
-            PolygonZShape aSPG = new PolygonZShape();
-            Extent extent = new Extent();
-            extent.minX = buffer.getDouble();
-            extent.minY = buffer.getDouble();
-            extent.maxX = buffer.getDouble();
-            extent.maxY = buffer.getDouble();
-            aSPG.setExtent(extent);
-            aSPG.setPartNum(buffer.getInt());
-            int numPoints = buffer.getInt();
-            aSPG.parts = new int[aSPG.getPartNum()];
-            List<PointD> points = new ArrayList<>();
-
-            //firstly read out parts begin pos in file 
-            for (int j = 0; j < aSPG.getPartNum(); j++) {
-                aSPG.parts[j] = buffer.getInt();
-            }
-
-            //read out coordinates 
-            for (int j = 0; j < numPoints; j++) {
-                x = buffer.getDouble();
-                y = buffer.getDouble();
-                PointD aPoint = new PointD();
-                aPoint.X = x;
-                aPoint.Y = y;
-                points.add(aPoint);
-            }
-            
-            //Read Z
-            double zmin = buffer.getDouble();
-            double zmax = buffer.getDouble();
-            double[] zArray = new double[numPoints];
-            for (int j = 0; j < numPoints; j++) {
-                zArray[j] = buffer.getDouble();
-            }
-            
-            //Read measure
-            double mmin = buffer.getDouble();
-            double mmax = buffer.getDouble();
-            double[] mArray = new double[numPoints];
+        List<PointD> points;
+        if (packed && zArray == null && mArray == null) {
+            points = new PackedPointList(xy);
+        } else {
+            points = new ArrayList<>(numPoints);
             for (int j = 0; j < numPoints; j++) {
-                mArray[j] = buffer.getDouble();
-            }
-            
-            //Get pointZ list
-            List<PointZ> pointZs = new ArrayList<>();
-            for (int j = 0; j < numPoints; j++) {
-                pointZs.add(new PointZ(points.get(j).X, points.get(j).Y, zArray[j], mArray[j]));
+                double x = xy[j * 2];
+                double y = xy[j * 2 + 1];
+                double m = mArray == null ? 0 : mArray[j];
+                if (zArray != null) {
+                    points.add(new PointZ(x, y, zArray[j], m));
+                } else if (shapeType == ShapeTypes.PolygonM) {
+                    points.add(new PointM(x, y, m));
+                } else {
+                    points.add(new PointD(x, y));
+                }
             }
-            
-            aSPG.setPoints(pointZs);
-            aLayer.addShape(aSPG);
         }
 
-        //Create legend scheme            
-        aLayer.setLegendScheme(LegendManage.createSingleSymbolLegendScheme(ShapeTypes.Polygon, new Color(255, 251, 195), 1.0F));
+        switch (shapeType) {
+            case Polyline:
+            case PolylineZ:
+                PolylineShape aPL = (PolylineShape) aShape;
+                aPL.setPartNum(partNum);
+                aPL.parts = parts;
+                break;
+            default:
+                PolygonShape aPG = (PolygonShape) aShape;
+                aPG.setPartNum(partNum);
+                aPG.parts = parts;
+                break;
+        }
+        aShape.setPoints(points);
 
-        return aLayer;
+        return aShape;
     }
 
-    private static void loadShxFile(File shxFile) throws FileNotFoundException, IOException {
+    /**
+     * Load shx file
+     *
+     * @param shxFile The shx file
+     * @return Record file offsets and content lengths in bytes
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    static long[][] loadShxFile(File shxFile) throws FileNotFoundException, IOException {
         DataInputStream bridx = new DataInputStream(new BufferedInputStream(new FileInputStream(shxFile)));
         long BytesSum = shxFile.length();  //Get file byte length   
         int shapeNum = (int) (BytesSum - 100) / 8;  //Get total number of records   
         readHeader(bridx);
 
-        int OffSet = 0, ContentLength = 0;
+        byte[] bytes = new byte[shapeNum * 8];
+        bridx.readFully(bytes);
+        bridx.close();
+
+        //Offsets and lengths are big endian in 16-bit words
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        long[] offsets = new long[shapeNum];
+        long[] lengths = new long[shapeNum];
         for (int i = 0; i < shapeNum; i++) {
-            OffSet = swapByteOrder(bridx.readInt());
-            ContentLength = swapByteOrder(bridx.readInt());
+            offsets[i] = (buffer.getInt() & 0xFFFFFFFFL) * 2;
+            lengths[i] = (buffer.getInt() & 0xFFFFFFFFL) * 2;
         }
 
-        bridx.close();
+        return new long[][]{offsets, lengths};
     }
     
 //    /**
@@ -0,0 +1,365 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.data.mapdata;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.meteoinfo.data.meteodata.MappedFile;
+import org.meteoinfo.global.Extent;
+import org.meteoinfo.jts.geom.Envelope;
+import org.meteoinfo.jts.index.strtree.STRtree;
+import org.meteoinfo.projection.ProjectionInfo;
+import org.meteoinfo.shape.Shape;
+import org.meteoinfo.shape.ShapeTypes;
+
+/**
+ * Random access reader of a shape file. Only the headers and the record
+ * offsets of the shx file are read when the file is opened. The shapes and
+ * the attribute rows are read on demand from the memory mapped shp and dbf
+ * files, and the decoded shapes are kept in a least recently used cache.
+ *
+ * @author Yaqiang Wang
+ */
+public class ShapeFileReader implements Closeable {
+
+    // <editor-fold desc="Variables">
+    private final String fileName;
+    private final String encoding;
+    private final ShapeTypes shapeType;
+    private final Extent extent;
+    private final long[] offsets;
+    private final long[] lengths;
+    private final MappedFile shpFile;
+    private final String dbfFileName;
+    private ProjectionInfo projInfo;
+    private STRtree spatialIndex;
+    private int cacheSize = 10000;
+    private boolean packedPoints = false;
+    private final Map<Integer, Shape> cache = new LinkedHashMap<Integer, Shape>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Shape> eldest) {
+            return size() > cacheSize;
+        }
+    };
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor
+     *
+     * @param shpfilepath Shape file path
+     * @param encoding Encoding of the dbf file
+     * @throws IOException
+     */
+    public ShapeFileReader(String shpfilepath, String encoding) throws IOException {
+        this.fileName = shpfilepath;
+        this.encoding = encoding;
+        File shxFile = getFile(shpfilepath, ".shx");
+        if (!shxFile.exists()) {
+            throw new IOException("The shx file was not found: " + shxFile.getPath());
+        }
+        long[][] shx = ShapeFileManage.loadShxFile(shxFile);
+        this.offsets = shx[0];
+        this.lengths = shx[1];
+
+        this.shpFile = new MappedFile(shpfilepath);
+        byte[] head = new byte[100];
+        shpFile.readBytes(0, head, 0, head.length);
+        ByteBuffer buffer = ByteBuffer.wrap(head);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.shapeType = ShapeTypes.valueOf(buffer.getInt(32));
+        this.extent = new Extent();
+        extent.minX = buffer.getDouble(36);
+        extent.minY = buffer.getDouble(44);
+        extent.maxX = buffer.getDouble(52);
+        extent.maxY = buffer.getDouble(60);
+        if (!ShapeFileManage.isSupported(shapeType)) {
+            shpFile.close();
+            throw new IOException("The shape type is not supported: " + shapeType.toString());
+        }
+
+        this.dbfFileName = getFile(shpfilepath, ".dbf").getPath();
+        File prjFile = getFile(shpfilepath, ".prj");
+        if (prjFile.exists()) {
+            this.projInfo = ShapeFileManage.loadProjFile(prjFile);
+        }
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get shape file name
+     *
+     * @return File name
+     */
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    /**
+     * Get shape type
+     *
+     * @return Shape type
+     */
+    public ShapeTypes getShapeType() {
+        return this.shapeType;
+    }
+
+    /**
+     * Get extent of all shapes
+     *
+     * @return Extent
+     */
+    public Extent getExtent() {
+        return this.extent;
+    }
+
+    /**
+     * Get shape number
+     *
+     * @return Shape number
+     */
+    public int getShapeNum() {
+        return this.offsets.length;
+    }
+
+    /**
+     * Get projection info
+     *
+     * @return Projection info, null if there is no prj file
+     */
+    public ProjectionInfo getProjInfo() {
+        return this.projInfo;
+    }
+
+    /**
+     * Get maximum number of cached shapes
+     *
+     * @return Cache size
+     */
+    public int getCacheSize() {
+        return this.cacheSize;
+    }
+
+    /**
+     * Set maximum number of cached shapes
+     *
+     * @param value Cache size
+     */
+    public synchronized void setCacheSize(int value) {
+        this.cacheSize = Math.max(0, value);
+        if (cache.size() > cacheSize) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Get if the polyline and polygon coordinates are kept packed in arrays
+     *
+     * @return Boolean
+     */
+    public boolean isPackedPoints() {
+        return this.packedPoints;
+    }
+
+    /**
+     * Set if the polyline and polygon coordinates are kept packed in arrays.
+     * Packed shapes take much less memory, shapes with Z or M values are not packed.
+     *
+     * @param value Boolean
+     */
+    public synchronized void setPackedPoints(boolean value) {
+        if (this.packedPoints != value) {
+            this.packedPoints = value;
+            cache.clear();
+        }
+    }
+
+    /**
+     * Get if the spatial index was built
+     *
+     * @return Boolean
+     */
+    public boolean hasSpatialIndex() {
+        return this.spatialIndex != null;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    private static File getFile(String shpfilepath, String ext) {
+        String path = shpfilepath.substring(0, shpfilepath.lastIndexOf(".")) + ext;
+        File file = new File(path);
+        if (!file.exists()) {
+            File upper = new File(shpfilepath.substring(0, shpfilepath.lastIndexOf(".")) + ext.toUpperCase());
+            if (upper.exists()) {
+                file = upper;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Read the bounding box of a shape record without decoding the shape
+     *
+     * @param idx Record index
+     * @return Extent, null for a null shape record
+     * @throws IOException
+     */
+    public Extent getRecordExtent(int idx) throws IOException {
+        byte[] bytes = new byte[36];
+        int n = (int) Math.min(bytes.length, lengths[idx]);
+        if (n < 20) {
+            return null;
+        }
+        shpFile.readBytes(offsets[idx] + 8, bytes, 0, n);
+        return readRecordExtent(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    private Extent readRecordExtent(ByteBuffer buffer) {
+        if (buffer.getInt(0) == 0) {
+            return null;
+        }
+        Extent ext = new Extent();
+        if (shapeType.isPoint()) {
+            ext.minX = ext.maxX = buffer.getDouble(4);
+            ext.minY = ext.maxY = buffer.getDouble(12);
+        } else {
+            ext.minX = buffer.getDouble(4);
+            ext.minY = buffer.getDouble(12);
+            ext.maxX = buffer.getDouble(20);
+            ext.maxY = buffer.getDouble(28);
+        }
+        return ext;
+    }
+
+    /**
+     * Build the spatial index of the record bounding boxes. Only the record
+     * headers are read from the shp file.
+     *
+     * @throws IOException
+     */
+    public synchronized void buildSpatialIndex() throws IOException {
+        if (spatialIndex != null) {
+            return;
+        }
+        STRtree tree = new STRtree();
+        for (int i = 0; i < offsets.length; i++) {
+            Extent ext = getRecordExtent(i);
+            if (ext != null) {
+                tree.insert(new Envelope(ext.minX, ext.maxX, ext.minY, ext.maxY), i);
+            }
+        }
+        tree.build();
+        spatialIndex = tree;
+    }
+
+    /**
+     * Get the indexes of the records whose bounding boxes intersect an extent.
+     * The spatial index is used if it was built, otherwise the record headers
+     * are scanned.
+     *
+     * @param ext The extent
+     * @return Record indexes in ascending order
+     * @throws IOException
+     */
+    public List<Integer> query(Extent ext) throws IOException {
+        List<Integer> records = new ArrayList<>();
+        if (spatialIndex != null) {
+            for (Object o : spatialIndex.query(new Envelope(ext.minX, ext.maxX, ext.minY, ext.maxY))) {
+                records.add((Integer) o);
+            }
+            Collections.sort(records);
+        } else {
+            for (int i = 0; i < offsets.length; i++) {
+                Extent rext = getRecordExtent(i);
+                if (rext != null && rext.intersects(ext)) {
+                    records.add(i);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Get a shape
+     *
+     * @param idx Record index
+     * @return Shape, null for a null shape record
+     * @throws IOException
+     */
+    public synchronized Shape getShape(int idx) throws IOException {
+        Shape shape = cache.get(idx);
+        if (shape == null && !cache.containsKey(idx)) {
+            byte[] bytes = new byte[(int) lengths[idx]];
+            shpFile.readBytes(offsets[idx] + 8, bytes, 0, bytes.length);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            shape = ShapeFileManage.readShape(buffer, shapeType, packedPoints);
+            if (cacheSize > 0) {
+                cache.put(idx, shape);
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * Get shapes
+     *
+     * @param records Record indexes
+     * @return Shapes
+     * @throws IOException
+     */
+    public List<Shape> getShapes(List<Integer> records) throws IOException {
+        List<Shape> shapes = new ArrayList<>(records.size());
+        for (int idx : records) {
+            shapes.add(getShape(idx));
+        }
+        return shapes;
+    }
+
+    /**
+     * Read the attribute rows of some records
+     *
+     * @param records Record indexes
+     * @return Attribute table
+     * @throws Exception
+     */
+    public AttributeTable readAttributes(List<Integer> records) throws Exception {
+        AttributeTable attrTable = new AttributeTable();
+        attrTable.setEncoding(encoding);
+        attrTable.openDBF(dbfFileName);
+        attrTable.fill(records);
+        return attrTable;
+    }
+
+    /**
+     * Close the shape file
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        cache.clear();
+        shpFile.close();
+    }
+    // </editor-fold>
+}
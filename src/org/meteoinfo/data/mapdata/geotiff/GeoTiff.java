@@ -24,22 +24,20 @@ import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.meteoinfo.data.ArrayMath;
 import org.meteoinfo.data.GridArray;
-import org.meteoinfo.data.mapdata.geotiff.compression.CompressionDecoder;
-import org.meteoinfo.data.mapdata.geotiff.compression.DeflateCompression;
-import org.meteoinfo.data.mapdata.geotiff.compression.LZWCompression;
-import org.meteoinfo.global.DataConvert;
+import org.meteoinfo.global.Extent;
 import org.meteoinfo.global.util.BigDecimalUtil;
+import org.meteoinfo.global.util.ParallelUtil;
 import org.meteoinfo.projection.KnownCoordinateSystems;
 import org.meteoinfo.projection.ProjectionInfo;
 import ucar.ma2.Array;
-import ucar.ma2.DataType;
-import ucar.ma2.Index;
+import ucar.ma2.InvalidRangeException;
 
 /**
  *
@@ -52,6 +50,8 @@ public class GeoTiff {
     private RandomAccessFile file;
     private FileChannel channel;
     private List<IFDEntry> tags = new ArrayList();
+    private List<List<IFDEntry>> ifds = new ArrayList<>();
+    private List<TiffImage> images;
     private ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
     private boolean readonly;
     private boolean showBytes = false;
@@ -144,14 +144,27 @@ public class GeoTiff {
      * Write geo keys
      */
     private void writeGeoKeys() {
-        if (this.geokeys.isEmpty()) {
-            return;
+        for (IFDEntry ifd : createGeoKeyTags(this.geokeys)) {
+            addTag(ifd);
+        }
+    }
+
+    /**
+     * Create the geo key directory tag and the geo parameter tags
+     *
+     * @param geokeys Geo keys
+     * @return Tags
+     */
+    static List<IFDEntry> createGeoKeyTags(List<GeoKey> geokeys) {
+        List<IFDEntry> tags = new ArrayList<>();
+        if (geokeys.isEmpty()) {
+            return tags;
         }
 
         int extra_chars = 0;
         int extra_ints = 0;
         int extra_doubles = 0;
-        for (GeoKey geokey : this.geokeys) {
+        for (GeoKey geokey : geokeys) {
             if (geokey.isDouble) {
                 extra_doubles += geokey.count();
             } else if (geokey.isString) {
@@ -160,7 +173,7 @@ public class GeoTiff {
                 extra_ints += geokey.count();
             }
         }
-        int n = (this.geokeys.size() + 1) * 4;
+        int n = (geokeys.size() + 1) * 4;
         int[] values = new int[n + extra_ints];
         double[] dvalues = new double[extra_doubles];
         char[] cvalues = new char[extra_chars];
@@ -171,9 +184,9 @@ public class GeoTiff {
         values[0] = 1;
         values[1] = 1;
         values[2] = 0;
-        values[3] = this.geokeys.size();
+        values[3] = geokeys.size();
         int count = 4;
-        for (GeoKey geokey : this.geokeys) {
+        for (GeoKey geokey : geokeys) {
             values[(count++)] = geokey.tagCode();
 
             if (geokey.isDouble) {
@@ -206,13 +219,14 @@ public class GeoTiff {
             }
         }
 
-        addTag(new IFDEntry(Tag.GeoKeyDirectoryTag, FieldType.SHORT).setValue(values));
+        tags.add(new IFDEntry(Tag.GeoKeyDirectoryTag, FieldType.SHORT).setValue(values));
         if (extra_doubles > 0) {
-            addTag(new IFDEntry(Tag.GeoDoubleParamsTag, FieldType.DOUBLE).setValue(dvalues));
+            tags.add(new IFDEntry(Tag.GeoDoubleParamsTag, FieldType.DOUBLE).setValue(dvalues));
         }
         if (extra_chars > 0) {
-            addTag(new IFDEntry(Tag.GeoAsciiParamsTag, FieldType.ASCII).setValue(new String(cvalues)));
+            tags.add(new IFDEntry(Tag.GeoAsciiParamsTag, FieldType.ASCII).setValue(new String(cvalues)));
         }
+        return tags;
     }
 
     /**
@@ -433,7 +447,7 @@ public class GeoTiff {
      * @param ifd IFDEntry
      * @return Int
      */
-    private int writeValues(ByteBuffer buffer, IFDEntry ifd) {
+    static int writeValues(ByteBuffer buffer, IFDEntry ifd) {
         int done = 0;
 
         if (ifd.type == FieldType.ASCII) {
@@ -469,7 +483,7 @@ public class GeoTiff {
      * @param v Int value
      * @return Int
      */
-    private int writeIntValue(ByteBuffer buffer, IFDEntry ifd, int v) {
+    private static int writeIntValue(ByteBuffer buffer, IFDEntry ifd, int v) {
         switch (ifd.type.code) {
             case 1:
                 buffer.put((byte) v);
@@ -495,7 +509,7 @@ public class GeoTiff {
      * @param ifd IFDEntry
      * @return Int
      */
-    private int writeSValue(ByteBuffer buffer, IFDEntry ifd) {
+    private static int writeSValue(ByteBuffer buffer, IFDEntry ifd) {
         buffer.put(ifd.valueS.getBytes());
         int size = ifd.valueS.length();
         if (size % 2 == 1) {
@@ -931,264 +945,311 @@ public class GeoTiff {
     }
 
     /**
-     * Test read data
+     * Get the images of the file: the full resolution image first and then
+     * the reduced resolution overviews from the largest to the smallest.
+     *
+     * @return Images
+     * @throws IOException
+     */
+    private synchronized List<TiffImage> getImages() throws IOException {
+        if (this.images == null) {
+            TiffImage main = new TiffImage(this.ifds.get(0));
+            List<TiffImage> overviews = new ArrayList<>();
+            for (int i = 1; i < this.ifds.size(); i++) {
+                TiffImage image;
+                try {
+                    image = new TiffImage(this.ifds.get(i));
+                } catch (IOException ex) {
+                    continue;
+                }
+                if (image.isReducedResolution() && !image.isMask() && image.width < main.width
+                        && image.samplesPerPixel == main.samplesPerPixel
+                        && image.bitsPerSample == main.bitsPerSample
+                        && image.sampleFormat == main.sampleFormat) {
+                    overviews.add(image);
+                }
+            }
+            Collections.sort(overviews, new Comparator<TiffImage>() {
+                @Override
+                public int compare(TiffImage a, TiffImage b) {
+                    return Integer.compare(b.width, a.width);
+                }
+            });
+            List<TiffImage> list = new ArrayList<>();
+            list.add(main);
+            list.addAll(overviews);
+            this.images = list;
+        }
+        return this.images;
+    }
+
+    /**
+     * Get number of the internal overviews (reduced resolution images)
+     *
+     * @return Overview number
+     * @throws IOException
+     */
+    public int getOverviewNum() throws IOException {
+        return getImages().size() - 1;
+    }
+
+    /**
+     * Read data array
      *
      * @return Data
      * @throws IOException
      */
     public Array readArray() throws IOException {
-        IFDEntry widthIFD = this.findTag(Tag.ImageWidth);
-        IFDEntry heightIFD = this.findTag(Tag.ImageLength);
-        int width = widthIFD.value[0];
-        int height = heightIFD.value[0];
-        IFDEntry samplesPerPixelTag = findTag(Tag.SamplesPerPixel);
-        int samplesPerPixel = samplesPerPixelTag.value[0];    //Number of bands
-        //int[] values = new int[width * height];
-        IFDEntry bitsPerSampleTag = findTag(Tag.BitsPerSample);
-        int bitsPerSample = bitsPerSampleTag.value[0];
-        int[] shape;
-        if (samplesPerPixel == 1) {
-            shape = new int[]{height, width};
+        TiffImage image = getImages().get(0);
+        int[] size;
+        if (image.samplesPerPixel == 1) {
+            size = new int[]{image.height, image.width};
         } else {
-            shape = new int[]{height, width, samplesPerPixel};
+            size = new int[]{image.height, image.width, image.samplesPerPixel};
         }
-//        if (samplesPerPixel == 1) {
-//            shape = new int[]{width, height};
-//        } else {
-//            shape = new int[]{width, height, samplesPerPixel};
-//        }
-        DataType dataType = DataType.INT;
-        IFDEntry sampleFormatTag = findTag(Tag.SampleFormat);
-        int sampleFormat = 0;
-        if (sampleFormatTag != null) {
-            sampleFormat = sampleFormatTag.value[0];
+        int[] stride = new int[size.length];
+        Arrays.fill(stride, 1);
+        try {
+            return readArray(new int[size.length], size, stride, false);
+        } catch (InvalidRangeException ex) {
+            throw new IOException(ex);
         }
-        switch (bitsPerSample) {
-            case 32:
-                switch (sampleFormat) {
-                    case 3:
-                        dataType = DataType.FLOAT;
-                        break;
-                }
-                break;
+    }
+
+    /**
+     * Read a section of the data array. Overviews are used if the strides
+     * allow it.
+     *
+     * @param origin The origin array
+     * @param size The size array
+     * @param stride The stride array
+     * @return Data
+     * @throws IOException
+     * @throws InvalidRangeException
+     */
+    public Array readArray(int[] origin, int[] size, int[] stride) throws IOException, InvalidRangeException {
+        return readArray(origin, size, stride, true);
+    }
+
+    /**
+     * Read a section of the data array. The dimensions are (y, x) or (y, x,
+     * band) with y from south to north, the same as readArray(). Only the
+     * tiles or strips intersecting the section are read, and they are
+     * decompressed in parallel into the result array. If overviews are used,
+     * the coarsest overview whose reduction factor is not larger than the x
+     * and y strides is read instead of the full resolution image, so the
+     * values are the overview values at the strided positions.
+     *
+     * @param origin The origin array
+     * @param size The size array
+     * @param stride The stride array
+     * @param useOverviews Use the overviews or not
+     * @return Data
+     * @throws IOException
+     * @throws InvalidRangeException
+     */
+    public Array readArray(int[] origin, int[] size, int[] stride, boolean useOverviews)
+            throws IOException, InvalidRangeException {
+        List<TiffImage> list = getImages();
+        TiffImage main = list.get(0);
+        int bandNum = main.samplesPerPixel;
+        int[] dimLen;
+        if (bandNum == 1) {
+            dimLen = new int[]{main.height, main.width};
+        } else {
+            dimLen = new int[]{main.height, main.width, bandNum};
         }
-        Array r = Array.factory(dataType, shape);
-        IFDEntry compressionTag = findTag(Tag.Compression);
-        CompressionDecoder cDecoder = null;
-        if (compressionTag != null){
-            int compression = compressionTag.value[0];
-            if (compression > 1){
-                switch (compression) {
-                    case 5:
-                        cDecoder = new LZWCompression();
-                        break;
-                    case 8:
-                        cDecoder = new DeflateCompression();
-                        break;
+        int rank = dimLen.length;
+        if (origin.length != rank || size.length != rank || stride.length != rank) {
+            throw new InvalidRangeException("The section rank should be " + rank);
+        }
+        int[] shape = new int[rank];
+        for (int i = 0; i < rank; i++) {
+            if (origin[i] < 0 || size[i] < 1 || stride[i] < 1 || origin[i] + size[i] > dimLen[i]) {
+                throw new InvalidRangeException("Invalid section of dimension " + i);
+            }
+            shape[i] = (size[i] + stride[i] - 1) / stride[i];
+        }
+        if (main.bitsPerSample % 8 != 0 || main.bitsPerSample > 64) {
+            throw new IOException("Unsupported bits per sample: " + main.bitsPerSample);
+        }
+
+        //Choose the image
+        TiffImage image = main;
+        if (useOverviews) {
+            int maxFactor = Math.min(stride[0], stride[1]);
+            int factor = 1;
+            for (TiffImage ov : list) {
+                int f = (int) Math.round((double) main.width / ov.width);
+                if (f > factor && f <= maxFactor) {
+                    image = ov;
+                    factor = f;
                 }
             }
         }
-        IFDEntry tileOffsetTag = findTag(Tag.TileOffsets);
-        ByteBuffer buffer;
-        if (tileOffsetTag != null) {
-            Index index = r.getIndex();
-            int tileOffset;
-            IFDEntry tileSizeTag = findTag(Tag.TileByteCounts);
-            IFDEntry tileLengthTag = findTag(Tag.TileLength);
-            IFDEntry tileWidthTag = findTag(Tag.TileWidth);
-            int tileWidth = tileWidthTag.value[0];
-            int tileHeight = tileLengthTag.value[0];
-            int hTileNum = (width + tileWidth - 1) / tileWidth;
-            int vTileNum = (height + tileHeight - 1) / tileHeight;
-            int tileSize;
-            //System.out.println("tileOffset =" + tileOffset + " tileSize=" + tileSize);
-            int tileIdx, vIdx, hIdx;
-            switch (bitsPerSample) {
-                case 8:
-                    for (int i = 0; i < vTileNum; i++) {
-                        for (int j = 0; j < hTileNum; j++) {
-                            tileIdx = i * hTileNum + j;
-                            tileOffset = tileOffsetTag.value[tileIdx];
-                            tileSize = tileSizeTag.value[tileIdx];
-                            buffer = testReadData(tileOffset, tileSize);
-                            for (int h = 0; h < tileHeight; h++) {
-                                vIdx = i * tileHeight + h;
-                                if (vIdx == height) {
-                                    break;
-                                }
-                                for (int w = 0; w < tileWidth; w++) {
-                                    hIdx = j * tileWidth + w;
-                                    if (hIdx == width) {
-                                        break;
-                                    }
-                                    index.set0(vIdx);
-                                    index.set1(hIdx);
-                                    if (samplesPerPixel == 1) {
-                                        r.setInt(index, DataConvert.byte2Int(buffer.get()));
-                                    } else {
-                                        for (int k = 0; k < samplesPerPixel; k++) {
-                                            index.set2(k);
-                                            r.setInt(index, DataConvert.byte2Int(buffer.get()));
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    break;
-                case 16:
-                    for (int i = 0; i < vTileNum; i++) {
-                        for (int j = 0; j < hTileNum; j++) {
-                            tileIdx = i * hTileNum + j;
-                            tileOffset = tileOffsetTag.value[tileIdx];
-                            tileSize = tileSizeTag.value[tileIdx];
-                            buffer = testReadData(tileOffset, tileSize);
-                            for (int h = 0; h < tileHeight; h++) {
-                                vIdx = i * tileHeight + h;
-                                if (vIdx == height) {
-                                    break;
-                                }
-                                for (int w = 0; w < tileWidth; w++) {
-                                    hIdx = j * tileWidth + w;
-                                    if (hIdx == width) {
-                                        break;
-                                    }
-                                    index.set0(vIdx);
-                                    index.set1(hIdx);
-                                    if (samplesPerPixel == 1) {
-                                        r.setInt(index, buffer.getShort());
-                                    } else {
-                                        for (int k = 0; k < samplesPerPixel; k++) {
-                                            index.set2(k);
-                                            r.setInt(index, buffer.getShort());
-                                        }
-                                    }
-                                }
+
+        //Image rows, columns and bands of the result
+        final int ny = shape[0];
+        final int nx = shape[1];
+        final int nb = rank == 3 ? shape[2] : 1;
+        final int[] rows = new int[ny];
+        for (int i = 0; i < ny; i++) {
+            int row = main.height - 1 - (origin[0] + i * stride[0]);
+            rows[i] = (int) Math.min(image.height - 1, (long) row * image.height / main.height);
+        }
+        final int[] cols = new int[nx];
+        for (int j = 0; j < nx; j++) {
+            int col = origin[1] + j * stride[1];
+            cols[j] = (int) Math.min(image.width - 1, (long) col * image.width / main.width);
+        }
+        final int[] bands = new int[nb];
+        for (int k = 0; k < nb; k++) {
+            bands[k] = rank == 3 ? origin[2] + k * stride[2] : 0;
+        }
+
+        //Read the blocks
+        final TiffImage img = image;
+        final List<int[]> rowGroups = groupByBlock(rows, img.blockHeight);
+        final List<int[]> colGroups = groupByBlock(cols, img.blockWidth);
+        final int planeNum = img.planar ? nb : 1;
+        final Array r = Array.factory(img.getDataType(), shape);
+        final IOException[] error = new IOException[1];
+        int taskNum = rowGroups.size() * colGroups.size() * planeNum;
+        ParallelUtil.parallelFor(taskNum, 1, new ParallelUtil.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                int bps = img.getBytesPerSample();
+                int spp = img.getBlockSamples();
+                for (int t = start; t < end; t++) {
+                    int[] rg = rowGroups.get(t / (colGroups.size() * planeNum));
+                    int[] cg = colGroups.get(t / planeNum % colGroups.size());
+                    int plane = t % planeNum;
+                    int blockRow = rows[rg[0]] / img.blockHeight;
+                    int blockCol = cols[cg[0]] / img.blockWidth;
+                    ByteBuffer buffer;
+                    try {
+                        buffer = img.readBlock(channel, img.getBlockIndex(blockRow, blockCol, bands[plane]),
+                                byteOrder);
+                    } catch (IOException ex) {
+                        synchronized (error) {
+                            if (error[0] == null) {
+                                error[0] = ex;
                             }
                         }
+                        return;
                     }
-                    break;
-                case 32:
-                    int size = tileHeight * tileWidth * 4;
-                    for (int i = 0; i < vTileNum; i++) {
-                        for (int j = 0; j < hTileNum; j++) {
-                            tileIdx = i * hTileNum + j;
-                            tileOffset = tileOffsetTag.value[tileIdx];
-                            tileSize = tileSizeTag.value[tileIdx];
-                            if (tileSize == 0)
-                                continue;
-
-                            buffer = testReadData(tileOffset, tileSize);
-                            if (cDecoder != null){
-                                buffer = ByteBuffer.wrap(cDecoder.decode(buffer.array(), byteOrder));
-                                if (buffer.limit() < size){
-                                    ByteBuffer nbuffer = ByteBuffer.allocate(size);
-                                    nbuffer.put(buffer.array());
-                                    buffer = nbuffer;
-                                    ((Buffer)buffer).position(0);
-                                }
-                                buffer.order(byteOrder);
-                            }
-                            for (int h = 0; h < tileHeight; h++) {
-                                vIdx = i * tileHeight + h;
-                                if (vIdx == height) {
-                                    break;
-                                }
-                                index.set0(vIdx);
-                                for (int w = 0; w < tileWidth; w++) {
-                                    hIdx = j * tileWidth + w;
-                                    if (hIdx == width) {
-                                        buffer.get(new byte[(tileWidth - w) * 4]);
-                                        break;
-                                    }
-                                    index.set1(hIdx);
-                                    if (samplesPerPixel == 1) {
-                                        if (dataType == DataType.FLOAT) {
-                                            r.setFloat(index, buffer.getFloat());
-                                        } else {
-                                            r.setInt(index, buffer.getInt());
-                                        }
-                                    } else {
-                                        for (int k = 0; k < samplesPerPixel; k++) {
-                                            index.set2(k);
-                                            if (dataType == DataType.FLOAT) {
-                                                r.setFloat(index, buffer.getFloat());
-                                            } else {
-                                                r.setInt(index, buffer.getInt());
-                                            }
-                                        }
-                                    }
+                    for (int i = rg[0]; i < rg[1]; i++) {
+                        int rowStart = (rows[i] - blockRow * img.blockHeight) * img.blockWidth
+                                - blockCol * img.blockWidth;
+                        for (int j = cg[0]; j < cg[1]; j++) {
+                            int pixel = rowStart + cols[j];
+                            int idx = (i * nx + j) * nb;
+                            if (img.planar) {
+                                setSample(r, idx + plane, buffer, pixel * bps, img);
+                            } else {
+                                for (int k = 0; k < nb; k++) {
+                                    setSample(r, idx + k, buffer, (pixel * spp + bands[k]) * bps, img);
                                 }
                             }
                         }
                     }
-                    break;
-                default:
-                    break;
+                }
             }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+
+        return r;
+    }
+
+    /**
+     * Read the data array in an extent
+     *
+     * @param extent The extent
+     * @param decimation Decimation factor of x and y
+     * @return Data
+     * @throws IOException
+     * @throws InvalidRangeException
+     */
+    public Array readArray(Extent extent, int decimation) throws IOException, InvalidRangeException {
+        List<double[]> xy = this.readXY();
+        int[] xRange = getIndexRange(xy.get(0), extent.minX, extent.maxX);
+        int[] yRange = getIndexRange(xy.get(1), extent.minY, extent.maxY);
+        if (xRange == null || yRange == null) {
+            throw new InvalidRangeException("The extent is outside of the image");
+        }
+        int bandNum = this.getBandNum();
+        int[] origin, size, stride;
+        if (bandNum == 1) {
+            origin = new int[]{yRange[0], xRange[0]};
+            size = new int[]{yRange[1] - yRange[0] + 1, xRange[1] - xRange[0] + 1};
+            stride = new int[]{decimation, decimation};
         } else {
-            IFDEntry stripOffsetTag = findTag(Tag.StripOffsets);
-            if (stripOffsetTag != null) {
-                int stripNum = stripOffsetTag.count;
-                int stripOffset;
-                IFDEntry stripSizeTag = findTag(Tag.StripByteCounts);
-                int stripSize = stripSizeTag.value[0];
-                IFDEntry rowsPerStripTag = findTag(Tag.RowsPerStrip);
-                int rowNum = rowsPerStripTag.value[0];
-                //System.out.println("stripOffset =" + stripOffset + " stripSize=" + stripSize);
-                int idx = 0;
-                switch (bitsPerSample) {
-                    case 8:
-                        for (int i = 0; i < stripNum; i++) {
-                            stripOffset = stripOffsetTag.value[i];
-                            buffer = testReadData(stripOffset, stripSize);
-                            for (int j = 0; j < width * rowNum; j++) {
-                                for (int k = 0; k < samplesPerPixel; k++) {
-                                    r.setInt(idx, DataConvert.byte2Int(buffer.get()));
-                                    idx += 1;
-                                }
-                            }
-                        }
-                        break;
-                    case 16:
-                        for (int i = 0; i < stripNum; i++) {
-                            stripOffset = stripOffsetTag.value[i];
-                            buffer = testReadData(stripOffset, stripSize);
-                            for (int j = 0; j < width * rowNum; j++) {
-                                for (int k = 0; k < samplesPerPixel; k++) {
-                                    if (dataType == DataType.FLOAT) {
-                                        r.setFloat(idx, buffer.getFloat());
-                                    } else {
-                                        r.setInt(idx, buffer.getInt());
-                                    }
-                                    idx += 1;
-                                }
-                            }
-                        }
-                        break;
-                    case 32:
-                        for (int i = 0; i < stripNum; i++) {
-                            stripOffset = stripOffsetTag.value[i];
-                            stripSize = stripSizeTag.value[i];
-                            buffer = testReadData(stripOffset, stripSize);
-                            if (cDecoder != null){
-                                buffer = ByteBuffer.wrap(cDecoder.decode(buffer.array(), byteOrder));
-                                buffer.order(byteOrder);
-                            }
-                            for (int j = 0; j < width * rowNum; j++) {
-                                for (int k = 0; k < samplesPerPixel; k++) {
-                                    r.setFloat(idx, buffer.getFloat());
-                                    idx += 1;
-                                }
-                            }
-                        }
-                        break;
+            origin = new int[]{yRange[0], xRange[0], 0};
+            size = new int[]{yRange[1] - yRange[0] + 1, xRange[1] - xRange[0] + 1, bandNum};
+            stride = new int[]{decimation, decimation, 1};
+        }
+        return readArray(origin, size, stride, true);
+    }
+
+    private static int[] getIndexRange(double[] values, double min, double max) {
+        int start = -1;
+        int end = -1;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] >= min && values[i] <= max) {
+                if (start < 0) {
+                    start = i;
                 }
+                end = i;
+            }
+        }
+        return start < 0 ? null : new int[]{start, end};
+    }
+
+    /**
+     * Group the continuous result indexes with the pixels in the same block
+     *
+     * @param pixels Image pixels of the result indexes
+     * @param blockSize Block size
+     * @return Start and end result indexes of the groups
+     */
+    private static List<int[]> groupByBlock(int[] pixels, int blockSize) {
+        List<int[]> groups = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= pixels.length; i++) {
+            if (i == pixels.length || pixels[i] / blockSize != pixels[start] / blockSize) {
+                groups.add(new int[]{start, i});
+                start = i;
             }
         }
+        return groups;
+    }
 
-        r = ArrayMath.flip(r, 0);
-        return r;
+    private static void setSample(Array r, int idx, ByteBuffer buffer, int pos, TiffImage image) {
+        switch (image.bitsPerSample) {
+            case 8:
+                r.setInt(idx, buffer.get(pos) & 0xFF);
+                break;
+            case 16:
+                short v = buffer.getShort(pos);
+                r.setInt(idx, image.sampleFormat == 1 ? v & 0xFFFF : v);
+                break;
+            case 32:
+                if (image.sampleFormat == 3) {
+                    r.setFloat(idx, buffer.getFloat(pos));
+                } else {
+                    r.setInt(idx, buffer.getInt(pos));
+                }
+                break;
+            case 64:
+                if (image.sampleFormat == 3) {
+                    r.setDouble(idx, buffer.getDouble(pos));
+                } else {
+                    r.setInt(idx, (int) buffer.getLong(pos));
+                }
+                break;
+        }
     }
 
     /**
@@ -1270,6 +1331,7 @@ public class GeoTiff {
         }
 
         start += 2;
+        List<IFDEntry> ifdTags = new ArrayList<>();
         for (int i = 0; i < nentries; i++) {
             IFDEntry ifd = readIFDEntry(channel, start);
             if (this.debugRead) {
@@ -1277,9 +1339,12 @@ public class GeoTiff {
             }
 
             this.tags.add(ifd);
+            ifdTags.add(ifd);
             start += 12;
         }
 
+        this.ifds.add(ifdTags);
+
         if (this.debugRead) {
             System.out.println(" looking for nextIFD at pos == " + channel.position() + " start = " + start);
         }
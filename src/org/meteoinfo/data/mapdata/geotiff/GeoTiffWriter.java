@@ -0,0 +1,668 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.data.mapdata.geotiff;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.meteoinfo.data.mapdata.geotiff.compression.DeflateCompression;
+import org.meteoinfo.data.mapdata.geotiff.compression.LZWCompression;
+import org.meteoinfo.global.util.ParallelUtil;
+import org.meteoinfo.projection.ProjectionInfo;
+import ucar.ma2.DataType;
+
+/**
+ * Writer of tiled and compressed single band GeoTIFF files with internal
+ * overviews. The image rows are pulled from a row source from north to
+ * south by rows of tiles, and each overview is averaged from the rows of the
+ * previous level as they arrive, so only one row of tiles of each level is
+ * kept in memory. The tiles of a tile row are compressed in parallel.
+ *
+ * @author Yaqiang Wang
+ */
+public class GeoTiffWriter {
+
+    /**
+     * Tile compression
+     */
+    public enum Compression {
+        NONE(1),
+        LZW(5),
+        DEFLATE(8);
+
+        private final int code;
+
+        private Compression(int code) {
+            this.code = code;
+        }
+
+        /**
+         * Get TIFF compression code
+         *
+         * @return Code
+         */
+        public int getCode() {
+            return this.code;
+        }
+    }
+
+    /**
+     * Source of the image rows
+     */
+    public interface RowSource {
+
+        /**
+         * Read image rows, row 0 is the north row
+         *
+         * @param row Start row index
+         * @param rowNum Row number
+         * @param data Data array of rowNum * width values to fill
+         * @throws IOException
+         */
+        void read(int row, int rowNum, double[] data) throws IOException;
+    }
+
+    // <editor-fold desc="Variables">
+    private final String fileName;
+    private final int width;
+    private final int height;
+    private DataType dataType = DataType.FLOAT;
+    private Compression compression = Compression.DEFLATE;
+    private boolean predictor = true;
+    private int tileSize = 256;
+    private int overviewNum = -1;
+    private double xStart = 0;
+    private double yStart = 0;
+    private double xDelta = 1;
+    private double yDelta = 1;
+    private ProjectionInfo projInfo;
+    private Double missingValue;
+    private FileChannel channel;
+    private long position;
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor
+     *
+     * @param fileName File name
+     * @param width Image width
+     * @param height Image height
+     */
+    public GeoTiffWriter(String fileName, int width, int height) {
+        this.fileName = fileName;
+        this.width = width;
+        this.height = height;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get data type
+     *
+     * @return Data type
+     */
+    public DataType getDataType() {
+        return this.dataType;
+    }
+
+    /**
+     * Set data type: BYTE (unsigned), SHORT, INT, FLOAT or DOUBLE
+     *
+     * @param value Data type
+     */
+    public void setDataType(DataType value) {
+        switch (value) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case FLOAT:
+            case DOUBLE:
+                this.dataType = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + value);
+        }
+    }
+
+    /**
+     * Get compression
+     *
+     * @return Compression
+     */
+    public Compression getCompression() {
+        return this.compression;
+    }
+
+    /**
+     * Set compression
+     *
+     * @param value Compression
+     */
+    public void setCompression(Compression value) {
+        this.compression = value;
+    }
+
+    /**
+     * Get if the predictor is used with compression
+     *
+     * @return Boolean
+     */
+    public boolean isPredictor() {
+        return this.predictor;
+    }
+
+    /**
+     * Set if the predictor is used with compression: the horizontal
+     * differencing predictor for integer data and the floating point
+     * predictor for float data
+     *
+     * @param value Boolean
+     */
+    public void setPredictor(boolean value) {
+        this.predictor = value;
+    }
+
+    /**
+     * Get tile size
+     *
+     * @return Tile size
+     */
+    public int getTileSize() {
+        return this.tileSize;
+    }
+
+    /**
+     * Set tile width and height, should be a multiple of 16
+     *
+     * @param value Tile size
+     */
+    public void setTileSize(int value) {
+        if (value <= 0 || value % 16 != 0) {
+            throw new IllegalArgumentException("The tile size should be a multiple of 16");
+        }
+        this.tileSize = value;
+    }
+
+    /**
+     * Get overview number
+     *
+     * @return Overview number, -1 means the overviews are added until the
+     * image fits in one tile
+     */
+    public int getOverviewNum() {
+        return this.overviewNum;
+    }
+
+    /**
+     * Set overview number. Each overview halves the size of the previous
+     * level.
+     *
+     * @param value Overview number, -1 means the overviews are added until
+     * the image fits in one tile
+     */
+    public void setOverviewNum(int value) {
+        this.overviewNum = value;
+    }
+
+    /**
+     * Set the coordinates of the north west pixel center and the pixel size
+     *
+     * @param xStart X coordinate of the north west pixel
+     * @param yStart Y coordinate of the north west pixel
+     * @param xDelta X pixel size
+     * @param yDelta Y pixel size
+     */
+    public void setTransform(double xStart, double yStart, double xDelta, double yDelta) {
+        this.xStart = xStart;
+        this.yStart = yStart;
+        this.xDelta = xDelta;
+        this.yDelta = yDelta;
+    }
+
+    /**
+     * Get projection info
+     *
+     * @return Projection info
+     */
+    public ProjectionInfo getProjInfo() {
+        return this.projInfo;
+    }
+
+    /**
+     * Set projection info
+     *
+     * @param value Projection info
+     */
+    public void setProjInfo(ProjectionInfo value) {
+        this.projInfo = value;
+    }
+
+    /**
+     * Get missing value
+     *
+     * @return Missing value, null if not set
+     */
+    public Double getMissingValue() {
+        return this.missingValue;
+    }
+
+    /**
+     * Set missing value. Missing values are excluded from the overview
+     * averages.
+     *
+     * @param value Missing value, null if not set
+     */
+    public void setMissingValue(Double value) {
+        this.missingValue = value;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    /**
+     * Write the file
+     *
+     * @param source Row source
+     * @throws IOException
+     */
+    public void write(RowSource source) throws IOException {
+        List<Level> levels = new ArrayList<>();
+        levels.add(new Level(width, height));
+        Level last = levels.get(0);
+        while (overviewNum < 0 ? (last.width > tileSize || last.height > tileSize)
+                : levels.size() <= overviewNum) {
+            if (last.width == 1 && last.height == 1) {
+                break;
+            }
+            last = new Level((last.width + 1) / 2, (last.height + 1) / 2);
+            levels.add(last);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+            file.setLength(0);
+            this.channel = file.getChannel();
+            this.position = 8;
+            double[] rows = new double[tileSize * width];
+            for (int row = 0; row < height; row += tileSize) {
+                int n = Math.min(tileSize, height - row);
+                source.read(row, n, rows);
+                addRows(levels, 0, rows, n);
+            }
+
+            //Image file directories
+            long firstIFD = align(position);
+            long ifd = firstIFD;
+            for (int i = 0; i < levels.size(); i++) {
+                ifd = writeIFD(createTags(levels.get(i), i == 0), ifd, i < levels.size() - 1);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.put((byte) 77);
+            header.put((byte) 77);
+            header.putShort((short) 42);
+            header.putInt((int) firstIFD);
+            ((Buffer) header).flip();
+            writeFully(header, 0);
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    private static long align(long pos) {
+        return pos + (pos & 1);
+    }
+
+    private void writeFully(ByteBuffer buffer, long pos) throws IOException {
+        while (buffer.hasRemaining()) {
+            pos += channel.write(buffer, pos);
+        }
+    }
+
+    private void checkSize(long pos) throws IOException {
+        if (pos > 0xFFFFFFFFL) {
+            throw new IOException("The file size exceeds 4GB which is not supported by classic TIFF");
+        }
+    }
+
+    private void addRows(List<Level> levels, int idx, double[] rows, int n) throws IOException {
+        Level level = levels.get(idx);
+        int copied = 0;
+        while (copied < n) {
+            int m = Math.min(n - copied, tileSize - level.bandRows);
+            System.arraycopy(rows, copied * level.width, level.band, level.bandRows * level.width,
+                    m * level.width);
+            level.bandRows += m;
+            level.rowNum += m;
+            copied += m;
+            if (level.bandRows == tileSize || level.rowNum == level.height) {
+                flush(levels, idx);
+            }
+        }
+    }
+
+    /**
+     * Compress and write the tiles of the current tile row of a level, and
+     * pass the averaged rows to the next level
+     */
+    private void flush(List<Level> levels, int idx) throws IOException {
+        final Level level = levels.get(idx);
+        final byte[][] tiles = new byte[level.tilesAcross][];
+        ParallelUtil.parallelFor(level.tilesAcross, 1, new ParallelUtil.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int t = start; t < end; t++) {
+                    tiles[t] = encodeTile(level, t);
+                }
+            }
+        });
+        for (int t = 0; t < tiles.length; t++) {
+            int tileIdx = level.tileRow * level.tilesAcross + t;
+            checkSize(position + tiles[t].length);
+            level.offsets[tileIdx] = position;
+            level.byteCounts[tileIdx] = tiles[t].length;
+            writeFully(ByteBuffer.wrap(tiles[t]), position);
+            position = align(position + tiles[t].length);
+        }
+
+        if (idx < levels.size() - 1) {
+            double[] rows = downsample(level);
+            addRows(levels, idx + 1, rows, (level.bandRows + 1) / 2);
+        }
+        level.bandRows = 0;
+        level.tileRow++;
+    }
+
+    /**
+     * Average 2 * 2 pixels of the current tile row of a level
+     */
+    private double[] downsample(final Level level) {
+        final int w = (level.width + 1) / 2;
+        final int n = (level.bandRows + 1) / 2;
+        final double[] r = new double[w * n];
+        final double[] band = level.band;
+        final double missing = missingValue == null ? Double.NaN : missingValue;
+        ParallelUtil.parallelFor(n, 8, new ParallelUtil.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int i = start; i < end; i++) {
+                    int r0 = 2 * i * level.width;
+                    int r1 = Math.min(2 * i + 1, level.bandRows - 1) * level.width;
+                    for (int j = 0; j < w; j++) {
+                        int c0 = 2 * j;
+                        int c1 = Math.min(2 * j + 1, level.width - 1);
+                        double sum = 0;
+                        int count = 0;
+                        for (int p = 0; p < 4; p++) {
+                            double v = band[(p < 2 ? r0 : r1) + (p % 2 == 0 ? c0 : c1)];
+                            if (!Double.isNaN(v) && v != missing) {
+                                sum += v;
+                                count++;
+                            }
+                        }
+                        r[i * w + j] = count == 0 ? missing : sum / count;
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    private int getBytesPerSample() {
+        return dataType.getSize();
+    }
+
+    private boolean isFloat() {
+        return dataType == DataType.FLOAT || dataType == DataType.DOUBLE;
+    }
+
+    private boolean usePredictor() {
+        return predictor && compression != Compression.NONE;
+    }
+
+    /**
+     * Encode a tile of the current tile row of a level
+     */
+    private byte[] encodeTile(Level level, int tileCol) {
+        int bps = getBytesPerSample();
+        int rowBytes = tileSize * bps;
+        byte[] bytes = new byte[rowBytes * tileSize];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        double fill = missingValue == null ? (isFloat() ? Double.NaN : 0) : missingValue;
+        int col0 = tileCol * tileSize;
+        for (int i = 0; i < tileSize; i++) {
+            for (int j = 0; j < tileSize; j++) {
+                int col = col0 + j;
+                double v = (i < level.bandRows && col < level.width) ? level.band[i * level.width + col] : fill;
+                switch (dataType) {
+                    case BYTE:
+                        buffer.put((byte) Math.round(v));
+                        break;
+                    case SHORT:
+                        buffer.putShort((short) Math.round(v));
+                        break;
+                    case INT:
+                        buffer.putInt((int) Math.round(v));
+                        break;
+                    case FLOAT:
+                        buffer.putFloat((float) v);
+                        break;
+                    default:
+                        buffer.putDouble(v);
+                        break;
+                }
+            }
+        }
+
+        if (usePredictor()) {
+            if (isFloat()) {
+                applyFloatingPointPredictor(bytes, rowBytes, bps);
+            } else {
+                applyHorizontalPredictor(buffer, rowBytes, bps);
+            }
+        }
+        switch (compression) {
+            case LZW:
+                return new LZWCompression().encode(bytes, buffer.order());
+            case DEFLATE:
+                return new DeflateCompression().encode(bytes, buffer.order());
+            default:
+                return bytes;
+        }
+    }
+
+    private void applyHorizontalPredictor(ByteBuffer buffer, int rowBytes, int bps) {
+        byte[] bytes = buffer.array();
+        for (int i = 0; i < tileSize; i++) {
+            int start = i * rowBytes;
+            for (int p = start + rowBytes - bps; p > start; p -= bps) {
+                switch (bps) {
+                    case 1:
+                        bytes[p] -= bytes[p - 1];
+                        break;
+                    case 2:
+                        buffer.putShort(p, (short) (buffer.getShort(p) - buffer.getShort(p - 2)));
+                        break;
+                    default:
+                        buffer.putInt(p, buffer.getInt(p) - buffer.getInt(p - 4));
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Floating point predictor: the bytes of the samples of a row are
+     * grouped from the most significant to the least significant and then
+     * differenced.
+     */
+    private void applyFloatingPointPredictor(byte[] bytes, int rowBytes, int bps) {
+        byte[] row = new byte[rowBytes];
+        for (int i = 0; i < tileSize; i++) {
+            int start = i * rowBytes;
+            for (int k = 0; k < tileSize; k++) {
+                for (int b = 0; b < bps; b++) {
+                    row[b * tileSize + k] = bytes[start + k * bps + b];
+                }
+            }
+            for (int p = rowBytes - 1; p > 0; p--) {
+                row[p] -= row[p - 1];
+            }
+            System.arraycopy(row, 0, bytes, start, rowBytes);
+        }
+    }
+
+    private List<IFDEntry> createTags(Level level, boolean main) {
+        List<IFDEntry> tags = new ArrayList<>();
+        int sampleFormat = isFloat() ? 3 : (dataType == DataType.BYTE ? 1 : 2);
+        tags.add(new IFDEntry(Tag.NewSubfileType, FieldType.LONG).setValue(main ? 0 : 1));
+        tags.add(new IFDEntry(Tag.ImageWidth, FieldType.LONG).setValue(level.width));
+        tags.add(new IFDEntry(Tag.ImageLength, FieldType.LONG).setValue(level.height));
+        tags.add(new IFDEntry(Tag.BitsPerSample, FieldType.SHORT).setValue(getBytesPerSample() * 8));
+        tags.add(new IFDEntry(Tag.Compression, FieldType.SHORT).setValue(compression.getCode()));
+        tags.add(new IFDEntry(Tag.PhotometricInterpretation, FieldType.SHORT).setValue(1));
+        tags.add(new IFDEntry(Tag.SamplesPerPixel, FieldType.SHORT).setValue(1));
+        tags.add(new IFDEntry(Tag.PlanarConfiguration, FieldType.SHORT).setValue(1));
+        if (usePredictor()) {
+            tags.add(new IFDEntry(Tag.Predictor, FieldType.SHORT).setValue(isFloat() ? 3 : 2));
+        }
+        tags.add(new IFDEntry(Tag.TileWidth, FieldType.SHORT).setValue(tileSize));
+        tags.add(new IFDEntry(Tag.TileLength, FieldType.SHORT).setValue(tileSize));
+        int[] offsets = new int[level.offsets.length];
+        int[] byteCounts = new int[level.offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = (int) level.offsets[i];
+            byteCounts[i] = (int) level.byteCounts[i];
+        }
+        tags.add(new IFDEntry(Tag.TileOffsets, FieldType.LONG).setValue(offsets));
+        tags.add(new IFDEntry(Tag.TileByteCounts, FieldType.LONG).setValue(byteCounts));
+        tags.add(new IFDEntry(Tag.SampleFormat, FieldType.SHORT).setValue(sampleFormat));
+        if (main) {
+            tags.add(new IFDEntry(Tag.ModelTiepointTag, FieldType.DOUBLE).setValue(
+                    new double[]{0.0D, 0.0D, 0.0D, xStart, yStart, 0.0D}));
+            tags.add(new IFDEntry(Tag.ModelPixelScaleTag, FieldType.DOUBLE).setValue(
+                    new double[]{xDelta, yDelta, 0.0D}));
+            List<GeoKey> geokeys = new ArrayList<>();
+            geokeys.add(new GeoKey(GeoKey.Tag.GTRasterTypeGeoKey, GeoKey.TagValue.RasterType_Point));
+            if (projInfo == null || projInfo.isLonLat()) {
+                geokeys.add(new GeoKey(GeoKey.Tag.GTModelTypeGeoKey, GeoKey.TagValue.ModelType_Geographic));
+                geokeys.add(new GeoKey(GeoKey.Tag.GeographicTypeGeoKey, GeoKey.TagValue.GeographicType_WGS_84));
+            } else {
+                geokeys.add(new GeoKey(GeoKey.Tag.GTModelTypeGeoKey, GeoKey.TagValue.ModelType_Projected));
+                geokeys.add(new GeoKey(GeoKey.Tag.GTCitationGeoKey, projInfo.toProj4String()));
+                geokeys.add(new GeoKey(GeoKey.Tag.ProjectedCSTypeGeoKey, GeoKey.TagValue.ProjectedCSType_UserDefined));
+            }
+            Collections.sort(geokeys, new Comparator<GeoKey>() {
+                @Override
+                public int compare(GeoKey a, GeoKey b) {
+                    return Integer.compare(a.tagCode(), b.tagCode());
+                }
+            });
+            tags.addAll(GeoTiff.createGeoKeyTags(geokeys));
+            if (missingValue != null) {
+                String s = isFloat() ? String.valueOf(missingValue) : String.valueOf(Math.round(missingValue));
+                tags.add(new IFDEntry(Tag.GDALNoData, FieldType.ASCII).setValue(s + "\0"));
+            }
+        }
+        Collections.sort(tags, new Comparator<IFDEntry>() {
+            @Override
+            public int compare(IFDEntry a, IFDEntry b) {
+                return a.tag.compareTo(b.tag);
+            }
+        });
+        return tags;
+    }
+
+    /**
+     * Write an image file directory
+     *
+     * @param tags Tags
+     * @param start Start position
+     * @param hasNext If another image file directory follows
+     * @return Start position of the next image file directory
+     * @throws IOException
+     */
+    private long writeIFD(List<IFDEntry> tags, long start, boolean hasNext) throws IOException {
+        int n = tags.size();
+        long overflow = start + 2 + 12 * n + 4;
+        int overflowSize = 0;
+        for (IFDEntry ifd : tags) {
+            int size = ifd.count * ifd.type.size;
+            if (size > 4) {
+                overflowSize += size + (size & 1);
+            }
+        }
+        long next = align(overflow + overflowSize);
+        checkSize(next);
+
+        ByteBuffer buffer = ByteBuffer.allocate(2 + 12 * n + 4);
+        ByteBuffer values = ByteBuffer.allocate(overflowSize);
+        buffer.putShort((short) n);
+        for (IFDEntry ifd : tags) {
+            buffer.putShort((short) ifd.tag.getCode());
+            buffer.putShort((short) ifd.type.code);
+            buffer.putInt(ifd.count);
+            int size = ifd.count * ifd.type.size;
+            if (size <= 4) {
+                int done = GeoTiff.writeValues(buffer, ifd);
+                for (int k = done; k < 4; k++) {
+                    buffer.put((byte) 0);
+                }
+            } else {
+                int pos = values.position();
+                buffer.putInt((int) (overflow + pos));
+                GeoTiff.writeValues(values, ifd);
+                ((Buffer) values).position(pos + size + (size & 1));
+            }
+        }
+        buffer.putInt(hasNext ? (int) next : 0);
+        ((Buffer) buffer).flip();
+        writeFully(buffer, start);
+        ((Buffer) values).flip();
+        writeFully(values, overflow);
+        return next;
+    }
+    // </editor-fold>
+
+    /**
+     * Resolution level of the image
+     */
+    private class Level {
+
+        final int width;
+        final int height;
+        final int tilesAcross;
+        final long[] offsets;
+        final long[] byteCounts;
+        final double[] band;
+        int bandRows = 0;
+        int rowNum = 0;
+        int tileRow = 0;
+
+        Level(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.tilesAcross = (width + tileSize - 1) / tileSize;
+            int tilesDown = (height + tileSize - 1) / tileSize;
+            this.offsets = new long[tilesAcross * tilesDown];
+            this.byteCounts = new long[tilesAcross * tilesDown];
+            this.band = new double[tileSize * width];
+        }
+    }
+}
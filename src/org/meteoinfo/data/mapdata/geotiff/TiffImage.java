@@ -0,0 +1,296 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.data.mapdata.geotiff;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import org.meteoinfo.data.mapdata.geotiff.compression.DeflateCompression;
+import org.meteoinfo.data.mapdata.geotiff.compression.LZWCompression;
+import ucar.ma2.DataType;
+
+/**
+ * Layout of the image of one image file directory (IFD): the full
+ * resolution image or a reduced resolution overview. Tiles and strips are
+ * both handled as blocks, a strip is a block with the image width.
+ *
+ * @author Yaqiang Wang
+ */
+class TiffImage {
+
+    // <editor-fold desc="Variables">
+    final int width;
+    final int height;
+    final int blockWidth;
+    final int blockHeight;
+    final int blocksAcross;
+    final int blocksDown;
+    final int bitsPerSample;
+    final int samplesPerPixel;
+    final int sampleFormat;
+    final int compression;
+    final int predictor;
+    final int subfileType;
+    final boolean planar;
+    private final long[] offsets;
+    private final long[] byteCounts;
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor
+     *
+     * @param tags Tags of the image file directory
+     * @throws IOException
+     */
+    TiffImage(List<IFDEntry> tags) throws IOException {
+        this.width = getInt(tags, Tag.ImageWidth, 0);
+        this.height = getInt(tags, Tag.ImageLength, 0);
+        this.bitsPerSample = getInt(tags, Tag.BitsPerSample, 1);
+        this.samplesPerPixel = getInt(tags, Tag.SamplesPerPixel, 1);
+        //Unsigned integer data by default as the TIFF specification
+        this.sampleFormat = getInt(tags, Tag.SampleFormat, 1);
+        this.compression = getInt(tags, Tag.Compression, 1);
+        this.predictor = getInt(tags, Tag.Predictor, 1);
+        this.subfileType = getInt(tags, Tag.NewSubfileType, 0);
+        this.planar = getInt(tags, Tag.PlanarConfiguration, 1) == 2;
+
+        IFDEntry offsetTag = findTag(tags, Tag.TileOffsets);
+        IFDEntry countTag;
+        if (offsetTag != null) {
+            this.blockWidth = getInt(tags, Tag.TileWidth, width);
+            this.blockHeight = getInt(tags, Tag.TileLength, height);
+            countTag = findTag(tags, Tag.TileByteCounts);
+        } else {
+            offsetTag = findTag(tags, Tag.StripOffsets);
+            this.blockWidth = width;
+            this.blockHeight = Math.min(height, getInt(tags, Tag.RowsPerStrip, height));
+            countTag = findTag(tags, Tag.StripByteCounts);
+        }
+        if (offsetTag == null || countTag == null || width <= 0 || height <= 0) {
+            throw new IOException("The image data locations are not defined");
+        }
+        this.blocksAcross = (width + blockWidth - 1) / blockWidth;
+        this.blocksDown = (height + blockHeight - 1) / blockHeight;
+        this.offsets = toUnsigned(offsetTag.value);
+        this.byteCounts = toUnsigned(countTag.value);
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    static IFDEntry findTag(List<IFDEntry> tags, Tag tag) {
+        for (IFDEntry ifd : tags) {
+            if (ifd.tag == tag) {
+                return ifd;
+            }
+        }
+        return null;
+    }
+
+    private static int getInt(List<IFDEntry> tags, Tag tag, int defaultValue) {
+        IFDEntry ifd = findTag(tags, tag);
+        if (ifd == null || ifd.value == null || ifd.value.length == 0) {
+            return defaultValue;
+        }
+        return ifd.value[0];
+    }
+
+    private static long[] toUnsigned(int[] values) {
+        long[] r = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            r[i] = values[i] & 0xFFFFFFFFL;
+        }
+        return r;
+    }
+
+    /**
+     * Get if the image is a reduced resolution version of another image
+     *
+     * @return Boolean
+     */
+    boolean isReducedResolution() {
+        return (subfileType & 1) != 0;
+    }
+
+    /**
+     * Get if the image is a transparency mask
+     *
+     * @return Boolean
+     */
+    boolean isMask() {
+        return (subfileType & 4) != 0;
+    }
+
+    /**
+     * Get bytes per sample
+     *
+     * @return Bytes per sample
+     */
+    int getBytesPerSample() {
+        return bitsPerSample / 8;
+    }
+
+    /**
+     * Get number of samples per pixel stored in one block
+     *
+     * @return Sample number
+     */
+    int getBlockSamples() {
+        return planar ? 1 : samplesPerPixel;
+    }
+
+    /**
+     * Get the data type of the sample values
+     *
+     * @return Data type
+     */
+    DataType getDataType() {
+        if (sampleFormat == 3) {
+            switch (bitsPerSample) {
+                case 32:
+                    return DataType.FLOAT;
+                case 64:
+                    return DataType.DOUBLE;
+            }
+        }
+        return DataType.INT;
+    }
+
+    /**
+     * Get block index
+     *
+     * @param blockRow Block row
+     * @param blockCol Block column
+     * @param band Band index, only used for separate band planes
+     * @return Block index
+     */
+    int getBlockIndex(int blockRow, int blockCol, int band) {
+        int idx = blockRow * blocksAcross + blockCol;
+        if (planar) {
+            idx += band * blocksAcross * blocksDown;
+        }
+        return idx;
+    }
+
+    /**
+     * Read and decode a block. The positional channel read is used so several
+     * blocks can be read by different threads at the same time. The returned
+     * buffer always has the full block size, a missing (sparse) block is
+     * filled with zero.
+     *
+     * @param channel File channel
+     * @param idx Block index
+     * @param byteOrder Byte order
+     * @return Decoded block data
+     * @throws IOException
+     */
+    ByteBuffer readBlock(FileChannel channel, int idx, ByteOrder byteOrder) throws IOException {
+        int rowBytes = blockWidth * getBlockSamples() * getBytesPerSample();
+        int blockSize = rowBytes * blockHeight;
+        byte[] data;
+        if (idx >= offsets.length || byteCounts[idx] == 0) {
+            data = new byte[blockSize];
+        } else {
+            ByteBuffer buffer = ByteBuffer.allocate((int) byteCounts[idx]);
+            long pos = offsets[idx];
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, pos + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            data = buffer.array();
+            switch (compression) {
+                case 1:
+                    break;
+                case 5:
+                    data = new LZWCompression().decode(data, byteOrder);
+                    break;
+                case 8:
+                case 32946:
+                    data = new DeflateCompression().decode(data, byteOrder);
+                    break;
+                default:
+                    throw new IOException("Unsupported compression: " + compression);
+            }
+            if (data.length < blockSize) {
+                byte[] full = new byte[blockSize];
+                System.arraycopy(data, 0, full, 0, data.length);
+                data = full;
+            }
+            switch (predictor) {
+                case 2:
+                    undoHorizontalPredictor(data, rowBytes, byteOrder);
+                    break;
+                case 3:
+                    undoFloatingPointPredictor(data, rowBytes, byteOrder);
+                    break;
+            }
+        }
+        return ByteBuffer.wrap(data).order(byteOrder);
+    }
+
+    private void undoHorizontalPredictor(byte[] data, int rowBytes, ByteOrder byteOrder) {
+        int spp = getBlockSamples();
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(byteOrder);
+        for (int row = 0; row < blockHeight; row++) {
+            int start = row * rowBytes;
+            switch (bitsPerSample) {
+                case 8:
+                    for (int i = start + spp; i < start + rowBytes; i++) {
+                        data[i] += data[i - spp];
+                    }
+                    break;
+                case 16:
+                    for (int i = start + spp * 2; i < start + rowBytes; i += 2) {
+                        buffer.putShort(i, (short) (buffer.getShort(i) + buffer.getShort(i - spp * 2)));
+                    }
+                    break;
+                case 32:
+                    for (int i = start + spp * 4; i < start + rowBytes; i += 4) {
+                        buffer.putInt(i, buffer.getInt(i) + buffer.getInt(i - spp * 4));
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Undo the floating point predictor: the bytes of a row were differenced
+     * and then grouped from the most significant byte of all samples to the
+     * least significant.
+     */
+    private void undoFloatingPointPredictor(byte[] data, int rowBytes, ByteOrder byteOrder) {
+        int spp = getBlockSamples();
+        int bps = getBytesPerSample();
+        int n = rowBytes / bps;
+        byte[] row = new byte[rowBytes];
+        boolean bigEndian = byteOrder == ByteOrder.BIG_ENDIAN;
+        for (int r = 0; r < blockHeight; r++) {
+            int start = r * rowBytes;
+            System.arraycopy(data, start, row, 0, rowBytes);
+            for (int i = spp; i < rowBytes; i++) {
+                row[i] += row[i - spp];
+            }
+            for (int k = 0; k < n; k++) {
+                for (int b = 0; b < bps; b++) {
+                    int o = bigEndian ? b : bps - 1 - b;
+                    data[start + k * bps + o] = row[b * n + k];
+                }
+            }
+        }
+    }
+    // </editor-fold>
+}
@@ -5,6 +5,7 @@
  */
 package org.meteoinfo.data.mapdata.geotiff.compression;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -40,6 +41,17 @@ public class LZWCompression implements CompressionDecoder, CompressionEncoder {
      */
     private static final int MIN_BITS = 9;
 
+    /**
+     * Max code number of 12 bits codes
+     */
+    private static final int MAX_CODE = 4095;
+
+    /**
+     * Hash table size of the encoder
+     */
+    private static final int HASH_BITS = 13;
+    private static final int HASH_SIZE = 1 << HASH_BITS;
+
     /**
      * Table entries
      */
@@ -281,7 +293,100 @@ public class LZWCompression implements CompressionDecoder, CompressionEncoder {
      */
     @Override
     public byte[] encode(byte[] bytes, ByteOrder byteOrder) {
-        throw new TiffException("LZW encoder is not yet implemented");
+
+        // Hash table of the (prefix code, byte) strings
+        int[] keys = new int[HASH_SIZE];
+        int[] codes = new int[HASH_SIZE];
+        Arrays.fill(keys, -1);
+        CodeWriter writer = new CodeWriter(bytes.length / 2 + 16);
+        int bits = MIN_BITS;
+        int nextCode = EOI_CODE + 1;
+        writer.write(CLEAR_CODE, bits);
+        if (bytes.length == 0) {
+            writer.write(EOI_CODE, bits);
+            return writer.toByteArray();
+        }
+
+        int prefix = bytes[0] & 0xFF;
+        for (int i = 1; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            int key = (prefix << 8) | b;
+            int h = (key * 0x9E3779B1) >>> (32 - HASH_BITS);
+            while (keys[h] != -1 && keys[h] != key) {
+                h = (h + 1) & (HASH_SIZE - 1);
+            }
+            if (keys[h] == key) {
+                prefix = codes[h];
+                continue;
+            }
+
+            // Write the prefix and add the new string to the table
+            writer.write(prefix, bits);
+            keys[h] = key;
+            codes[h] = nextCode++;
+            prefix = b;
+            if (nextCode == MAX_CODE - 1) {
+                writer.write(CLEAR_CODE, bits);
+                Arrays.fill(keys, -1);
+                bits = MIN_BITS;
+                nextCode = EOI_CODE + 1;
+            } else if (nextCode > (1 << bits) - 1) {
+                bits++;
+            }
+        }
+
+        // The decoder adds a table entry after the last code too
+        writer.write(prefix, bits);
+        nextCode++;
+        if (nextCode == MAX_CODE - 1) {
+            bits = MIN_BITS;
+        } else if (nextCode > (1 << bits) - 1) {
+            bits++;
+        }
+        writer.write(EOI_CODE, bits);
+
+        return writer.toByteArray();
+    }
+
+    /**
+     * Writer of variable length codes with the most significant bit first
+     */
+    private static class CodeWriter {
+
+        private byte[] bytes;
+        private int length;
+        private int bitBuffer;
+        private int bitCount;
+
+        CodeWriter(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void write(int code, int bits) {
+            bitBuffer = (bitBuffer << bits) | code;
+            bitCount += bits;
+            while (bitCount >= 8) {
+                bitCount -= 8;
+                put((byte) (bitBuffer >>> bitCount));
+            }
+            bitBuffer &= (1 << bitCount) - 1;
+        }
+
+        private void put(byte b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[length++] = b;
+        }
+
+        byte[] toByteArray() {
+            if (bitCount > 0) {
+                put((byte) (bitBuffer << (8 - bitCount)));
+                bitCount = 0;
+                bitBuffer = 0;
+            }
+            return Arrays.copyOf(bytes, length);
+        }
     }
 
 }
@@ -15,6 +15,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Stack;
+import org.meteoinfo.data.ArrayExpression;
+import org.meteoinfo.data.GridData;
 import org.meteoinfo.data.meteodata.MeteoDataInfo;
 import org.meteoinfo.global.MIMath;
 
@@ -35,6 +37,8 @@ public class MathParser {
     private List<String> _variables = new ArrayList<String>();
     private StringReader _expressionReader;
     private MeteoDataInfo _meteoDataInfo = null;
+    private boolean _lazy = false;
+    private GridData _templateGrid = null;
     // </editor-fold>
     // <editor-fold desc="Constructor">
 
@@ -56,6 +60,26 @@ public class MathParser {
     }
     // </editor-fold>
     // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get if grid data are evaluated lazily
+     *
+     * @return Boolean
+     */
+    public boolean isLazy() {
+        return _lazy;
+    }
+
+    /**
+     * Set if grid data are evaluated lazily. In lazy mode the operators and
+     * functions on grid data are recorded as an array expression, and the
+     * result grid data is computed in one pass at the end of the evaluation.
+     *
+     * @param value Boolean
+     */
+    public void setLazy(boolean value) {
+        _lazy = value;
+    }
     // </editor-fold>
     // <editor-fold desc="Methods">
 
@@ -73,10 +97,14 @@ public class MathParser {
         _expressionReader = new StringReader(expression);
         _symbolStack.clear();
         _expressionQueue.clear();
+        _templateGrid = null;
 
         parseExpressionToQueue();
 
         Object result = calculateFromQueue();
+        if (result instanceof ArrayExpression && _templateGrid != null) {
+            result = _templateGrid.fromExpression((ArrayExpression) result);
+        }
 
         //_variables[AnswerVariable] = result;
         return result;
@@ -321,7 +349,14 @@ public class MathParser {
             return 100;
         } else {
             if (_isGridData) {
-                return _meteoDataInfo.getGridData(varName);
+                GridData grid = _meteoDataInfo.getGridData(varName);
+                if (_lazy && grid != null) {
+                    if (_templateGrid == null) {
+                        _templateGrid = grid;
+                    }
+                    return grid.toExpression();
+                }
+                return grid;
             } else {
                 return _meteoDataInfo.getStationData(varName);
             }
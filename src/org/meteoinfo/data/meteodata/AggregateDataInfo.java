@@ -0,0 +1,649 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.data.meteodata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.meteoinfo.data.meteodata.arl.ARLDataInfo;
+import org.meteoinfo.data.meteodata.grads.GrADSDataInfo;
+import org.meteoinfo.data.meteodata.netcdf.NetCDFDataInfo;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.nc2.Attribute;
+
+/**
+ * Virtual data aggregated from many data files along the time (or ensemble)
+ * dimension. The first file defines the variables and the other dimensions.
+ * Only the first and the last files are opened to build the index: each file
+ * is assumed to have the same length of the aggregated dimension, and the
+ * times are assumed regular across the files. The index is checked when a
+ * file is read, and the files are scanned to build an exact index if the
+ * uniform option is off.
+ * <p>
+ * The member files are opened on demand and the least recently used ones are
+ * closed when more than the maximum number of members are open. A member
+ * being read is not closed.
+ *
+ * @author Yaqiang Wang
+ */
+public class AggregateDataInfo extends DataInfo {
+
+    // <editor-fold desc="Variables">
+    private List<String> fileNames = new ArrayList<>();
+    private DimensionType aggType = DimensionType.T;
+    private boolean uniform = true;
+    private int maxOpenMembers = 8;
+    private DataInfo template = null;
+    private Dimension aggDim = null;
+    //Start index of each member in the aggregated dimension, with the total length at the end
+    private int[] memberStarts;
+    //Members are opened and length checked
+    private boolean[] checked;
+    private final LinkedHashMap<Integer, Member> members = new LinkedHashMap<>(16, 0.75f, true);
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor
+     */
+    public AggregateDataInfo() {
+        this.setDataType(MeteoDataType.Aggregate);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param aggType Aggregated dimension type - T or E
+     */
+    public AggregateDataInfo(DimensionType aggType) {
+        this();
+        this.aggType = aggType;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get member file names
+     *
+     * @return File names
+     */
+    public List<String> getFileNames() {
+        return this.fileNames;
+    }
+
+    /**
+     * Get aggregated dimension type
+     *
+     * @return Dimension type
+     */
+    public DimensionType getAggregateType() {
+        return this.aggType;
+    }
+
+    /**
+     * Get if the member files are assumed to have the same length of the
+     * aggregated dimension and regular times
+     *
+     * @return Boolean
+     */
+    public boolean isUniform() {
+        return this.uniform;
+    }
+
+    /**
+     * Set if the member files are assumed to have the same length of the
+     * aggregated dimension and regular times. If not, each member file is
+     * opened to build the index.
+     *
+     * @param value Boolean
+     */
+    public void setUniform(boolean value) {
+        this.uniform = value;
+    }
+
+    /**
+     * Get maximum open member number
+     *
+     * @return Maximum open member number
+     */
+    public int getMaxOpenMembers() {
+        return this.maxOpenMembers;
+    }
+
+    /**
+     * Set maximum open member number
+     *
+     * @param value Maximum open member number
+     */
+    public void setMaxOpenMembers(int value) {
+        this.maxOpenMembers = Math.max(1, value);
+    }
+
+    /**
+     * Get aggregated dimension
+     *
+     * @return Aggregated dimension
+     */
+    public Dimension getAggregateDimension() {
+        return this.aggDim;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    /**
+     * List the files matching a file name pattern with '*' or '?' wildcards
+     * in the file name part, sorted by name
+     *
+     * @param pattern File name pattern
+     * @return File names
+     */
+    public static List<String> listFiles(String pattern) {
+        List<String> names = new ArrayList<>();
+        File file = new File(pattern);
+        if (!file.getName().contains("*") && !file.getName().contains("?")) {
+            names.add(pattern);
+            return names;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + file.getName());
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.isFile() && matcher.matches(Paths.get(f.getName()))) {
+                    names.add(f.getPath());
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Read data info of the files matching a file name pattern
+     *
+     * @param fileName File name pattern
+     */
+    @Override
+    public void readDataInfo(String fileName) {
+        this.readDataInfo(listFiles(fileName));
+    }
+
+    /**
+     * Read data info of member files
+     *
+     * @param fileNames Member file names in aggregated order
+     */
+    public void readDataInfo(List<String> fileNames) {
+        try {
+            this.open(fileNames);
+        } catch (IOException ex) {
+            Logger.getLogger(AggregateDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Open member files and build the index
+     *
+     * @param fileNames Member file names in aggregated order
+     * @throws IOException
+     */
+    public void open(List<String> fileNames) throws IOException {
+        if (fileNames.isEmpty()) {
+            throw new IOException("No data file to aggregate");
+        }
+        this.close();
+        this.fileNames = new ArrayList<>(fileNames);
+        this.setFileName(fileNames.get(0));
+        int n = fileNames.size();
+        template = openMember(fileNames.get(0));
+        Dimension tDim = this.findAggregateDimension(template);
+        if (tDim == null) {
+            throw new IOException("No " + aggType + " dimension: " + fileNames.get(0));
+        }
+
+        //Build index
+        memberStarts = new int[n + 1];
+        checked = new boolean[n];
+        List<Double> values = new ArrayList<>();
+        if (uniform) {
+            int len = tDim.getLength();
+            double delta = tDim.getLength() > 1 ? tDim.getDeltaValue() : 0;
+            if (n > 1 && aggType == DimensionType.T) {
+                DataInfo last = openMember(fileNames.get(n - 1));
+                Dimension lDim = this.findAggregateDimension(last);
+                if (lDim == null || lDim.getLength() != len) {
+                    throw new IOException("The last file is not uniform with the first one, "
+                            + "turn off the uniform option: " + fileNames.get(n - 1));
+                }
+                delta = (lDim.getDimValue().get(0) - tDim.getDimValue().get(0)) / ((n - 1) * len);
+                closeMember(last);
+            }
+            for (int i = 0; i < n; i++) {
+                memberStarts[i] = i * len;
+                for (int j = 0; j < len; j++) {
+                    if (aggType == DimensionType.T) {
+                        values.add(tDim.getDimValue().get(0) + (i * len + j) * delta);
+                    } else {
+                        values.add((double) (i * len + j));
+                    }
+                }
+            }
+            memberStarts[n] = n * len;
+        } else {
+            for (int i = 0; i < n; i++) {
+                DataInfo m = i == 0 ? template : openMember(fileNames.get(i));
+                Dimension mDim = this.findAggregateDimension(m);
+                if (mDim == null) {
+                    throw new IOException("No " + aggType + " dimension: " + fileNames.get(i));
+                }
+                memberStarts[i] = values.size();
+                for (int j = 0; j < mDim.getLength(); j++) {
+                    values.add(aggType == DimensionType.T ? mDim.getDimValue().get(j) : values.size());
+                }
+                checked[i] = true;
+                if (i > 0) {
+                    closeMember(m);
+                }
+            }
+            memberStarts[n] = values.size();
+        }
+        checked[0] = true;
+        synchronized (members) {
+            members.put(0, new Member(template));
+        }
+
+        //Aggregated dimension and variables
+        aggDim = new Dimension(tDim.getShortName(), values.size(), aggType);
+        aggDim.setValues(values);
+        List<Dimension> dims = new ArrayList<>();
+        for (Dimension dim : template.getDimensions()) {
+            dims.add(dim.getShortName().equals(tDim.getShortName()) ? aggDim : dim);
+        }
+        this.setDimensions(dims);
+        if (aggType == DimensionType.T) {
+            this.setTimeDimension(aggDim);
+        } else {
+            this.setTimeDimension(template.getTimeDimension());
+        }
+        this.setXDimension(template.getXDimension());
+        this.setYDimension(template.getYDimension());
+        this.setZDimension(template.getZDimension());
+        this.setXReverse(template.isXReverse());
+        this.setYReverse(template.isYReverse());
+        this.setGlobal(template.isGlobal());
+        this.setMissingValue(template.getMissingValue());
+        this.setProjectionInfo(template.getProjectionInfo());
+        List<Variable> vars = new ArrayList<>();
+        for (Variable var : template.getVariables()) {
+            Variable nvar = new Variable();
+            nvar.Number = var.Number;
+            nvar.setShortName(var.getShortName());
+            nvar.setDataType(var.getDataType());
+            nvar.setUnits(var.getUnits());
+            nvar.setDescription(var.getDescription());
+            nvar.setLevelType(var.getLevelType());
+            nvar.setStation(var.isStation());
+            nvar.setDimVar(var.isDimVar());
+            nvar.setVarId(var.getVarId());
+            nvar.setFillValue(var.getFillValue());
+            nvar.setScaleFactor(var.getScaleFactor());
+            nvar.setAddOffset(var.getAddOffset());
+            int idx = aggregateIndex(var);
+            for (int i = 0; i < var.getDimNumber(); i++) {
+                nvar.addDimension(i == idx ? aggDim : (Dimension) var.getDimension(i));
+            }
+            for (Attribute attr : var.getAttributes()) {
+                nvar.addAttribute(attr);
+            }
+            vars.add(nvar);
+        }
+        this.setVariables(vars);
+    }
+
+    private Dimension findAggregateDimension(DataInfo di) {
+        if (aggType == DimensionType.T) {
+            return di.getTimeDimension();
+        }
+        for (Dimension dim : di.getDimensions()) {
+            if (dim.getDimType() == aggType) {
+                return dim;
+            }
+        }
+        return null;
+    }
+
+    private int aggregateIndex(Variable var) {
+        for (int i = 0; i < var.getDimNumber(); i++) {
+            Dimension dim = (Dimension) var.getDimension(i);
+            if (dim != null && dim.getDimType() == aggType) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Open a member data file
+     *
+     * @param fileName File name
+     * @return Member data info
+     * @throws IOException
+     */
+    protected DataInfo openMember(String fileName) throws IOException {
+        MeteoDataInfo mdi = new MeteoDataInfo();
+        if (fileName.toLowerCase().endsWith(".ctl")) {
+            mdi.openGrADSData(fileName);
+        } else {
+            mdi.openData(fileName);
+        }
+        DataInfo di = mdi.getDataInfo();
+        if (di == null || di.getVariableNum() == 0) {
+            throw new IOException("Can not open data file: " + fileName);
+        }
+        return di;
+    }
+
+    private static void closeMember(DataInfo di) {
+        if (di instanceof NetCDFDataInfo) {
+            ((NetCDFDataInfo) di).close();
+        } else if (di instanceof GrADSDataInfo) {
+            ((GrADSDataInfo) di).closeMappedFiles();
+        } else if (di instanceof ARLDataInfo) {
+            ((ARLDataInfo) di).closeMappedFile();
+        }
+    }
+
+    /**
+     * Get a member data info, the member file is opened if it is not open.
+     * The member may be closed by later reads when more than the maximum
+     * number of members are open.
+     *
+     * @param idx Member index
+     * @return Member data info
+     * @throws IOException
+     */
+    public DataInfo getMember(int idx) throws IOException {
+        Member member = acquireMember(idx);
+        synchronized (members) {
+            member.users -= 1;
+        }
+        return member.dataInfo;
+    }
+
+    /**
+     * Get a member and mark it in use, so it is not closed until it is
+     * released. The member file is opened if it is not open.
+     *
+     * @param idx Member index
+     * @return Member
+     * @throws IOException
+     */
+    private Member acquireMember(int idx) throws IOException {
+        synchronized (members) {
+            Member member = members.get(idx);
+            if (member != null) {
+                member.users += 1;
+                return member;
+            }
+        }
+
+        DataInfo di = openMember(fileNames.get(idx));
+        Dimension mDim = this.findAggregateDimension(di);
+        int len = memberStarts[idx + 1] - memberStarts[idx];
+        if (mDim == null || mDim.getLength() != len) {
+            closeMember(di);
+            throw new IOException("The file is not uniform with the first one, "
+                    + "turn off the uniform option: " + fileNames.get(idx));
+        }
+        List<DataInfo> closing = new ArrayList<>();
+        Member member;
+        synchronized (members) {
+            member = members.get(idx);
+            if (member != null) {
+                //Opened by another thread at the same time
+                member.users += 1;
+                closing.add(di);
+            } else {
+                member = new Member(di);
+                member.users = 1;
+                members.put(idx, member);
+                closing.addAll(evictMembers());
+            }
+            if (!checked[idx]) {
+                //Replace the estimated times by the times of the file
+                if (aggType == DimensionType.T) {
+                    for (int j = 0; j < len; j++) {
+                        aggDim.getDimValue().set(memberStarts[idx] + j, mDim.getDimValue().get(j));
+                    }
+                }
+                checked[idx] = true;
+            }
+        }
+        for (DataInfo c : closing) {
+            closeMember(c);
+        }
+        return member;
+    }
+
+    /**
+     * Release a member acquired for reading
+     *
+     * @param member The member
+     */
+    private void releaseMember(Member member) {
+        List<DataInfo> closing;
+        synchronized (members) {
+            member.users -= 1;
+            closing = evictMembers();
+        }
+        for (DataInfo c : closing) {
+            closeMember(c);
+        }
+    }
+
+    /**
+     * Remove the least recently used members while more than the maximum
+     * number of members are open. The template and the members in use are
+     * kept. Must be called holding the members lock.
+     *
+     * @return Data infos to be closed
+     */
+    private List<DataInfo> evictMembers() {
+        List<DataInfo> closing = new ArrayList<>();
+        Iterator<Member> it = members.values().iterator();
+        while (members.size() > maxOpenMembers && it.hasNext()) {
+            Member member = it.next();
+            if (member.dataInfo != template && member.users == 0) {
+                closing.add(member.dataInfo);
+                it.remove();
+            }
+        }
+        return closing;
+    }
+
+    /**
+     * Get member index of an index of the aggregated dimension
+     *
+     * @param idx Index of the aggregated dimension
+     * @return Member index
+     */
+    public int getMemberIndex(int idx) {
+        int i = Arrays.binarySearch(memberStarts, idx);
+        if (i < 0) {
+            i = -i - 2;
+        } else {
+            //Skip empty members
+            while (i + 1 < memberStarts.length - 1 && memberStarts[i + 1] == idx) {
+                i += 1;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Close the open member files
+     */
+    public void close() {
+        List<DataInfo> closing = new ArrayList<>();
+        synchronized (members) {
+            for (Member member : members.values()) {
+                closing.add(member.dataInfo);
+            }
+            members.clear();
+        }
+        for (DataInfo di : closing) {
+            closeMember(di);
+        }
+    }
+
+    /**
+     * Get global attributes of the first member file
+     *
+     * @return Global attributes
+     */
+    @Override
+    public List<Attribute> getGlobalAttributes() {
+        return template == null ? new ArrayList<Attribute>() : template.getGlobalAttributes();
+    }
+
+    /**
+     * Read array data of a variable
+     *
+     * @param varName Variable name
+     * @return Array data
+     */
+    @Override
+    public Array read(String varName) {
+        Variable var = this.getVariable(varName);
+        if (var == null) {
+            return null;
+        }
+        int n = var.getDimNumber();
+        int[] origin = new int[n];
+        int[] size = new int[n];
+        int[] stride = new int[n];
+        for (int i = 0; i < n; i++) {
+            size[i] = var.getDimLength(i);
+            stride[i] = 1;
+        }
+        return this.read(varName, origin, size, stride);
+    }
+
+    /**
+     * Read array data of a variable. The section may span many member files,
+     * each member file is read once.
+     *
+     * @param varName Variable name
+     * @param origin The origin array
+     * @param size The size array
+     * @param stride The stride array
+     * @return Array data, null if the variable does not exist
+     */
+    @Override
+    public Array read(String varName, int[] origin, int[] size, int[] stride) {
+        Variable var = this.getVariable(varName);
+        if (var == null) {
+            return null;
+        }
+        int a = aggregateIndex(var);
+        if (a < 0) {
+            return template.read(varName, origin, size, stride);
+        }
+
+        try {
+            int s = Math.abs(stride[a]);
+            int count = (size[a] - 1) / s + 1;
+            int first = origin[a];
+            Array r = null;
+            int k = 0;
+            while (k < count) {
+                //The indexes of the aggregated dimension in one member
+                int idx = first + k * s;
+                int m = getMemberIndex(idx);
+                int mEnd = memberStarts[m + 1];
+                int n = Math.min(count - k, (mEnd - idx + s - 1) / s);
+                int[] mOrigin = origin.clone();
+                int[] mSize = size.clone();
+                int[] mStride = stride.clone();
+                mOrigin[a] = idx - memberStarts[m];
+                mSize[a] = (n - 1) * s + 1;
+                mStride[a] = s;
+                Member member = acquireMember(m);
+                Array data;
+                try {
+                    data = member.dataInfo.read(varName, mOrigin, mSize, mStride);
+                } finally {
+                    releaseMember(member);
+                }
+                if (data == null) {
+                    throw new IOException("Read data error: " + fileNames.get(m));
+                }
+                if (r == null) {
+                    int[] shape = new int[origin.length];
+                    for (int i = 0; i < shape.length; i++) {
+                        shape[i] = (size[i] - 1) / Math.abs(stride[i]) + 1;
+                    }
+                    r = Array.factory(data.getDataType(), shape);
+                }
+                int[] dOrigin = new int[origin.length];
+                int[] dShape = r.getShape().clone();
+                dOrigin[a] = k;
+                dShape[a] = n;
+                Array dest = r.sectionNoReduce(dOrigin, dShape, null);
+                if (data.getElementType() == r.getElementType()) {
+                    MAMath.copy(dest, data.reshape(dShape));
+                } else {
+                    MAMath.copyDouble(dest, data.reshape(dShape));
+                }
+                k += n;
+            }
+            if (stride[a] < 0) {
+                Array f = r.flip(a);
+                r = Array.factory(f.getDataType(), f.getShape());
+                MAMath.copy(r, f);
+            }
+
+            return r;
+        } catch (IOException | InvalidRangeException ex) {
+            Logger.getLogger(AggregateDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+    }
+    // </editor-fold>
+
+    /**
+     * An open member with the number of readers using it
+     */
+    private static class Member {
+
+        final DataInfo dataInfo;
+        int users = 0;
+
+        Member(DataInfo dataInfo) {
+            this.dataInfo = dataInfo;
+        }
+    }
+}
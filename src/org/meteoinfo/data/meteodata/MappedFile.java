@@ -0,0 +1,197 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.data.meteodata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read only memory mapped binary data file. The file is mapped in segments on
+ * demand, so files larger than 2 GB can be read, and values are decoded in
+ * bulk through typed buffer views. The reading methods may be called from
+ * several threads.
+ *
+ * @author Yaqiang Wang
+ */
+public class MappedFile implements Closeable {
+
+    // <editor-fold desc="Variables">
+    private static final int SEGMENT_SHIFT = 28;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private final String fileName;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long length;
+    private final MappedByteBuffer[] segments;
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor
+     *
+     * @param fileName File name
+     * @throws IOException
+     */
+    public MappedFile(String fileName) throws IOException {
+        this.fileName = fileName;
+        this.file = new RandomAccessFile(fileName, "r");
+        this.channel = file.getChannel();
+        this.length = channel.size();
+        this.segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >> SEGMENT_SHIFT)];
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get file name
+     *
+     * @return File name
+     */
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    /**
+     * Get file length
+     *
+     * @return File length in bytes
+     */
+    public long length() {
+        return this.length;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    private synchronized ByteBuffer getSegment(int idx) throws IOException {
+        if (segments[idx] == null) {
+            long start = (long) idx << SEGMENT_SHIFT;
+            segments[idx] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(SEGMENT_SIZE, length - start));
+        }
+        return segments[idx].duplicate();
+    }
+
+    /**
+     * Read bytes
+     *
+     * @param pos File position
+     * @param dst Destination array
+     * @param off Destination offset
+     * @param n Byte number
+     * @throws IOException
+     */
+    public void readBytes(long pos, byte[] dst, int off, int n) throws IOException {
+        if (pos < 0 || pos + n > length) {
+            throw new IOException("Read beyond the end of file: " + fileName);
+        }
+        while (n > 0) {
+            ByteBuffer buf = getSegment((int) (pos >> SEGMENT_SHIFT));
+            int p = (int) (pos & (SEGMENT_SIZE - 1));
+            int len = Math.min(n, buf.limit() - p);
+            buf.position(p);
+            buf.get(dst, off, len);
+            pos += len;
+            off += len;
+            n -= len;
+        }
+    }
+
+    /**
+     * Read bytes at a regular interval
+     *
+     * @param pos File position of the first byte
+     * @param stride Distance in bytes between two bytes
+     * @param dst Destination array
+     * @param off Destination offset
+     * @param n Byte number
+     * @throws IOException
+     */
+    public void readBytes(long pos, long stride, byte[] dst, int off, int n) throws IOException {
+        if (n <= 0) {
+            return;
+        }
+        if (pos < 0 || stride <= 0 || pos + (n - 1) * stride >= length) {
+            throw new IOException("Read beyond the end of file: " + fileName);
+        }
+        int idx = -1;
+        ByteBuffer buf = null;
+        for (int i = 0; i < n; i++) {
+            int segIdx = (int) (pos >> SEGMENT_SHIFT);
+            if (segIdx != idx) {
+                buf = getSegment(segIdx);
+                idx = segIdx;
+            }
+            dst[off + i] = buf.get((int) (pos & (SEGMENT_SIZE - 1)));
+            pos += stride;
+        }
+    }
+
+    /**
+     * Read float values
+     *
+     * @param pos File position
+     * @param dst Destination array
+     * @param off Destination offset
+     * @param n Value number
+     * @param order Byte order
+     * @throws IOException
+     */
+    public void readFloats(long pos, float[] dst, int off, int n, ByteOrder order) throws IOException {
+        if (pos < 0 || pos + 4L * n > length) {
+            throw new IOException("Read beyond the end of file: " + fileName);
+        }
+        byte[] bytes = null;
+        while (n > 0) {
+            ByteBuffer buf = getSegment((int) (pos >> SEGMENT_SHIFT));
+            int p = (int) (pos & (SEGMENT_SIZE - 1));
+            int len = Math.min(n, (buf.limit() - p) / 4);
+            if (len == 0) {
+                //The value crosses the segment boundary
+                if (bytes == null) {
+                    bytes = new byte[4];
+                }
+                this.readBytes(pos, bytes, 0, 4);
+                dst[off] = ByteBuffer.wrap(bytes).order(order).getFloat();
+                len = 1;
+            } else {
+                buf.position(p);
+                buf.order(order).asFloatBuffer().get(dst, off, len);
+            }
+            pos += 4L * len;
+            off += len;
+            n -= len;
+        }
+    }
+
+    /**
+     * Close the file. The mapped segments are released by the garbage
+     * collector.
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = null;
+        }
+        channel.close();
+        file.close();
+    }
+    // </editor-fold>
+}
@@ -29,6 +29,7 @@ import org.meteoinfo.data.meteodata.micaps.MICAPS3DataInfo;
 import org.meteoinfo.data.meteodata.micaps.MICAPS4DataInfo;
 import org.meteoinfo.data.meteodata.micaps.MICAPSDataInfo;
 import org.meteoinfo.data.meteodata.netcdf.NetCDFDataInfo;
+import org.meteoinfo.data.meteodata.netcdf.NetCDFReadPlanner;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
@@ -472,14 +473,13 @@ public class MeteoDataInfo {
      */
     public void close() {
         if (this._dataInfo.getDataType() == MeteoDataType.NetCDF) {
-            NetCDFDataInfo dinfo = (NetCDFDataInfo) this._dataInfo;
-            if (dinfo.getFile() != null) {
-                try {
-                    dinfo.getFile().close();
-                } catch (IOException ex) {
-                    Logger.getLogger(MeteoDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            ((NetCDFDataInfo) this._dataInfo).close();
+        } else if (this._dataInfo.getDataType() == MeteoDataType.GrADS_Grid) {
+            ((GrADSDataInfo) this._dataInfo).closeMappedFiles();
+        } else if (this._dataInfo.getDataType() == MeteoDataType.ARL_Grid) {
+            ((ARLDataInfo) this._dataInfo).closeMappedFile();
+        } else if (this._dataInfo.getDataType() == MeteoDataType.Aggregate) {
+            ((AggregateDataInfo) this._dataInfo).close();
         }
     }
 
@@ -736,6 +736,27 @@ public class MeteoDataInfo {
         _infoText = aDataInfo.generateInfoText();
     }
     
+    /**
+     * Open data files aggregated along time dimension
+     *
+     * @param fileName File name pattern with '*' or '?' wildcards
+     */
+    public void openAggregateData(String fileName) {
+        this.openAggregateData(AggregateDataInfo.listFiles(fileName));
+    }
+
+    /**
+     * Open data files aggregated along time dimension
+     *
+     * @param fileNames File names in time order
+     */
+    public void openAggregateData(List<String> fileNames) {
+        AggregateDataInfo aDataInfo = new AggregateDataInfo();
+        aDataInfo.readDataInfo(fileNames);
+        _dataInfo = aDataInfo;
+        _infoText = aDataInfo.generateInfoText();
+    }
+
     /**
      * Open GRIB data by predifined version - for mixed GRIB-1 and GRIB-2 data file.
      *
@@ -897,6 +918,25 @@ public class MeteoDataInfo {
     public Array read(String varName, int[] origin, int[] size, int[] stride) {
         return this._dataInfo.read(varName, origin, size, stride);
     }
+
+    /**
+     * Read array data of the variable. NetCDF data is read in parallel by
+     * chunks, the listener gets the progress and may cancel the reading.
+     *
+     * @param varName Variable name
+     * @param origin The origin array
+     * @param size The size array
+     * @param stride The stride array
+     * @param listener Read listener, may be null
+     * @return Array data, null if the reading is cancelled
+     */
+    public Array read(String varName, int[] origin, int[] size, int[] stride,
+            NetCDFReadPlanner.ReadListener listener) {
+        if (this._dataInfo instanceof NetCDFDataInfo) {
+            return ((NetCDFDataInfo) this._dataInfo).read(varName, origin, size, stride, listener);
+        }
+        return this._dataInfo.read(varName, origin, size, stride);
+    }
     
     /**
      * Read array data from a variable
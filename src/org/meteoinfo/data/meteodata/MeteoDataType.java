@@ -123,7 +123,8 @@ public enum MeteoDataType {
         MM5,
         MM5IM,
         GEOTIFF,
-        BIL;
+        BIL,
+        Aggregate;    //Virtual data aggregated from many files
         
         /**
          * If is MICAPS data
@@ -0,0 +1,190 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.data.meteodata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Record index of a data file kept in a sidecar file (data file name with
+ * ".midx" extension). The index holds named long arrays, such as record
+ * positions or times found by scanning the data file, so the scan is not
+ * needed the next time the file is opened. The sidecar file is only used if
+ * the size and the modified time of the data file are the same as when the
+ * index was saved.
+ * <p>
+ * The index files are only read and written when they are enabled.
+ *
+ * @author Yaqiang Wang
+ */
+public class RecordIndex {
+
+    // <editor-fold desc="Variables">
+    private static final int MAGIC = 0x4d494458;    //MIDX
+    private static final int VERSION = 1;
+    private static boolean enabled = false;
+    private final String fileName;
+    private final Map<String, long[]> entries = new LinkedHashMap<>();
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor
+     *
+     * @param fileName Data file name
+     */
+    public RecordIndex(String fileName) {
+        this.fileName = fileName;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get if the index files are enabled
+     *
+     * @return Boolean
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set if the index files are enabled
+     *
+     * @param value Boolean
+     */
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Get data file name
+     *
+     * @return Data file name
+     */
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    /**
+     * Get index file name of a data file
+     *
+     * @param fileName Data file name
+     * @return Index file name
+     */
+    public static String getIndexFileName(String fileName) {
+        return fileName + ".midx";
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    /**
+     * Get an entry
+     *
+     * @param key The key
+     * @return Entry values, null if the index has no such entry
+     */
+    public long[] get(String key) {
+        return this.entries.get(key);
+    }
+
+    /**
+     * Set an entry
+     *
+     * @param key The key
+     * @param values Entry values
+     */
+    public void put(String key, long[] values) {
+        this.entries.put(key, values);
+    }
+
+    /**
+     * Load the index of a data file. The index is empty if the index files are
+     * not enabled, or the index file does not exist or is out of date.
+     *
+     * @param fileName Data file name
+     * @return The index
+     */
+    public static RecordIndex load(String fileName) {
+        RecordIndex index = new RecordIndex(fileName);
+        if (!enabled) {
+            return index;
+        }
+        File dataFile = new File(fileName);
+        File indexFile = new File(getIndexFileName(fileName));
+        if (!indexFile.isFile()) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return index;
+            }
+            if (in.readLong() != dataFile.length() || in.readLong() != dataFile.lastModified()) {
+                return index;
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String key = in.readUTF();
+                long[] values = new long[in.readInt()];
+                for (int j = 0; j < values.length; j++) {
+                    values[j] = in.readLong();
+                }
+                index.entries.put(key, values);
+            }
+        } catch (IOException ex) {
+            index.entries.clear();
+        }
+
+        return index;
+    }
+
+    /**
+     * Save the index file if the index files are enabled
+     */
+    public void save() {
+        if (!enabled) {
+            return;
+        }
+        File dataFile = new File(fileName);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(getIndexFileName(fileName))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dataFile.length());
+            out.writeLong(dataFile.lastModified());
+            out.writeInt(entries.size());
+            for (Map.Entry<String, long[]> e : entries.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeInt(e.getValue().length);
+                for (long v : e.getValue()) {
+                    out.writeLong(v);
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(RecordIndex.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+    // </editor-fold>
+}
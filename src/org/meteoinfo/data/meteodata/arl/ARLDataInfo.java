@@ -18,6 +18,8 @@ import org.meteoinfo.data.meteodata.DataInfo;
 import org.meteoinfo.data.meteodata.Dimension;
 import org.meteoinfo.data.meteodata.DimensionType;
 import org.meteoinfo.data.meteodata.IGridDataInfo;
+import org.meteoinfo.data.meteodata.MappedFile;
+import org.meteoinfo.data.meteodata.RecordIndex;
 import org.meteoinfo.data.meteodata.Variable;
 import org.meteoinfo.global.DataConvert;
 import org.meteoinfo.global.util.GlobalUtil;
@@ -129,6 +131,7 @@ public class ARLDataInfo extends DataInfo implements IGridDataInfo {
     //private DataOutputStream _bw = null;
     private RandomAccessFile _bw = null;
     private long indexRecPos = 0;
+    private MappedFile mappedFile = null;
     // </editor-fold>
     // <editor-fold desc="Constructor">
 
@@ -232,6 +235,7 @@ public class ARLDataInfo extends DataInfo implements IGridDataInfo {
      */
     @Override
     public void readDataInfo(String fileName) {
+        this.closeMappedFile();
         this.setFileName(fileName);
         try {
             RandomAccessFile br = new RandomAccessFile(fileName, "r");
@@ -457,49 +461,65 @@ public class ARLDataInfo extends DataInfo implements IGridDataInfo {
             this.setYDimension(yDim);
             this.addDimension(yDim);
 
-            //Reopen            
-            byte[] dataBytes = new byte[NXY];
+            //Times and records per time, from the index file or by reading
+            //the labels of all records
             Date aTime, oldTime;
             int recNum, timeNum;
-            br.seek(0);
-            recNum = 0;
-            timeNum = 0;
-            int year = aDL.getYear();
-            if (year < 50) {
-                year = 2000 + year;
-            } else {
-                year = 1900 + year;
-            }
-            Calendar cal = new GregorianCalendar(year, aDL.getMonth() - 1, aDL.getDay(), aDL.getHour(), 0, 0);
-            oldTime = cal.getTime();
             List<Date> times = new ArrayList<>();
-            times.add((Date) oldTime.clone());
-
-            do {
-                if (br.getFilePointer() >= br.length() - 1) {
-                    break;
+            RecordIndex index = RecordIndex.load(fileName);
+            long[] indexTimes = index.get("ARL.times");
+            long[] indexRecs = index.get("ARL.recNum");
+            if (indexTimes != null && indexRecs != null) {
+                for (long t : indexTimes) {
+                    times.add(new Date(t));
                 }
+                recNum = (int) indexRecs[0];
+            } else {
+                br.seek(0);
+                recNum = 0;
+                timeNum = 0;
+                int year = aDL.getYear();
+                if (year < 50) {
+                    year = 2000 + year;
+                } else {
+                    year = 1900 + year;
+                }
+                Calendar cal = new GregorianCalendar(year, aDL.getMonth() - 1, aDL.getDay(), aDL.getHour(), 0, 0);
+                oldTime = cal.getTime();
+                times.add((Date) oldTime.clone());
 
-                //Read label
-                aDL = readDataLabel(br);
+                do {
+                    if (br.getFilePointer() >= br.length() - 1) {
+                        break;
+                    }
 
-                //Read Data
-                br.read(dataBytes);
+                    //Read label and skip data
+                    aDL = readDataLabel(br);
+                    br.seek(br.getFilePointer() + NXY);
 
-                if (!aDL.getVarName().equalsIgnoreCase("INDX")) {
-                    cal = new GregorianCalendar(year, aDL.getMonth() - 1, aDL.getDay(), aDL.getHour(), 0, 0);
-                    aTime = cal.getTime();
-                    if (aTime.getTime() != oldTime.getTime()) {
-                        times.add(aTime);
-                        oldTime.setTime(aTime.getTime());
-                        timeNum += 1;
-                    }
-                    if (timeNum == 0) {
-                        recNum += 1;
+                    if (!aDL.getVarName().equalsIgnoreCase("INDX")) {
+                        cal = new GregorianCalendar(year, aDL.getMonth() - 1, aDL.getDay(), aDL.getHour(), 0, 0);
+                        aTime = cal.getTime();
+                        if (aTime.getTime() != oldTime.getTime()) {
+                            times.add(aTime);
+                            oldTime.setTime(aTime.getTime());
+                            timeNum += 1;
+                        }
+                        if (timeNum == 0) {
+                            recNum += 1;
+                        }
                     }
-                }
 
-            } while (true);
+                } while (true);
+
+                indexTimes = new long[times.size()];
+                for (i = 0; i < indexTimes.length; i++) {
+                    indexTimes[i] = times.get(i).getTime();
+                }
+                index.put("ARL.times", indexTimes);
+                index.put("ARL.recNum", new long[]{recNum});
+                index.save();
+            }
 
             br.close();
 
@@ -576,45 +596,37 @@ public class ARLDataInfo extends DataInfo implements IGridDataInfo {
 
     private static DataLabel readDataLabel(RandomAccessFile br) {
         try {
-            DataLabel aDL = new DataLabel();
-            byte[] bytes = new byte[2];
+            byte[] bytes = new byte[50];
             br.read(bytes);
-            aDL.setYear(Short.parseShort(new String(bytes).trim()));
-            br.read(bytes);
-            aDL.setMonth(Short.parseShort(new String(bytes).trim()));
-            br.read(bytes);
-            aDL.setDay(Short.parseShort(new String(bytes).trim()));
-            br.read(bytes);
-            aDL.setHour(Short.parseShort(new String(bytes).trim()));
-            br.read(bytes);
-            aDL.setForecast(Short.parseShort(new String(bytes).trim()));
-            br.read(bytes);
-            aDL.setLevel(Short.parseShort(new String(bytes).trim()));
-            br.read(bytes);
-            String gridStr = new String(bytes).trim();
-            if (MIMath.isNumeric(gridStr)) {
-                aDL.setGrid(Short.parseShort(gridStr));
-            } else {
-                aDL.XGPT = true;
-                aDL.IGC = gridStr;
-            }
-            bytes = new byte[4];
-            br.read(bytes);
-            aDL.setVarName(new String(bytes).trim());
-            br.read(bytes);
-            aDL.setExponent(Integer.parseInt(new String(bytes).trim()));
-            bytes = new byte[14];
-            br.read(bytes);
-            aDL.setPrecision(Double.parseDouble(new String(bytes).trim()));
-            br.read(bytes);
-            aDL.setValue(Double.parseDouble(new String(bytes).trim()));
-            return aDL;
+            return readDataLabel(bytes);
         } catch (IOException ex) {
             Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         }
     }
 
+    private static DataLabel readDataLabel(byte[] bytes) {
+        DataLabel aDL = new DataLabel();
+        aDL.setYear(Short.parseShort(new String(bytes, 0, 2).trim()));
+        aDL.setMonth(Short.parseShort(new String(bytes, 2, 2).trim()));
+        aDL.setDay(Short.parseShort(new String(bytes, 4, 2).trim()));
+        aDL.setHour(Short.parseShort(new String(bytes, 6, 2).trim()));
+        aDL.setForecast(Short.parseShort(new String(bytes, 8, 2).trim()));
+        aDL.setLevel(Short.parseShort(new String(bytes, 10, 2).trim()));
+        String gridStr = new String(bytes, 12, 2).trim();
+        if (MIMath.isNumeric(gridStr)) {
+            aDL.setGrid(Short.parseShort(gridStr));
+        } else {
+            aDL.XGPT = true;
+            aDL.IGC = gridStr;
+        }
+        aDL.setVarName(new String(bytes, 14, 4).trim());
+        aDL.setExponent(Integer.parseInt(new String(bytes, 18, 4).trim()));
+        aDL.setPrecision(Double.parseDouble(new String(bytes, 22, 14).trim()));
+        aDL.setValue(Double.parseDouble(new String(bytes, 36, 14).trim()));
+        return aDL;
+    }
+
     private void getProjectedXY(ProjectionInfo projInfo, float size,
             float sync_XP, float sync_YP, float sync_Lon, float sync_Lat,
             double[] X, double[] Y) {
@@ -728,6 +740,31 @@ public class ARLDataInfo extends DataInfo implements IGridDataInfo {
         return gridData;
     }
 
+    /**
+     * Unpack the value of one grid point. The differences are packed along
+     * the first column and then along each row, so only the first column up
+     * to the point row and the point row up to the point column are needed.
+     *
+     * @param colBytes Packed bytes of the first column from the first row to
+     * the point row
+     * @param rowBytes Packed bytes of the point row from the second column to
+     * the point column
+     * @param aDL Data label
+     * @return The value
+     */
+    private static double unpackARLPoint(byte[] colBytes, byte[] rowBytes, DataLabel aDL) {
+        double SCALE = Math.pow(2.0, (7 - aDL.getExponent()));
+        double VOLD = aDL.getValue();
+        for (byte b : colBytes) {
+            VOLD = (DataConvert.byte2Int(b) - 127) / SCALE + VOLD;
+        }
+        for (byte b : rowBytes) {
+            VOLD = (DataConvert.byte2Int(b) - 127) / SCALE + VOLD;
+        }
+
+        return VOLD;
+    }
+
     private float[] unpackARLData(byte[] dataBytes, int xNum, int yNum, DataLabel aDL) {
         int n = dataBytes.length;
         float[] data = new float[n];
@@ -1160,52 +1197,141 @@ public class ARLDataInfo extends DataInfo implements IGridDataInfo {
 
     }
 
-    @Override
-    public GridData getGridData_LevelTime(int latIdx, int varIdx, int lonIdx) {
-        try {
-            int xNum, yNum, lNum, nvarIdx, levIdx, t, tNum;
-            xNum = dataHead.NX;
-            yNum = dataHead.NY;
-            lNum = this.getVariables().get(varIdx).getLevelNum();
-            tNum = this.getTimeNum();
-            double[][] theData;
-            RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r");
-            byte[] dataBytes;
-            DataLabel aDL;
-            double[][] newGridData = new double[lNum][tNum];
-            long aLevPosition;
+    /**
+     * Get the file position of a data record
+     *
+     * @param timeIdx Time index
+     * @param levIdx Level index in the file
+     * @param nvarIdx Variable index in the level
+     * @return File position of the data label
+     */
+    private long getRecordPosition(int timeIdx, int levIdx, int nvarIdx) {
+        long pos = timeIdx * recsPerTime * recLen + indexLen;
+        for (int j = 0; j < levIdx; j++) {
+            pos += LevelVarList.get(j).size() * recLen;
+        }
+        pos += nvarIdx * recLen;
+        return pos;
+    }
 
-            for (t = 0; t < tNum; t++) {
-                br.seek(t * recsPerTime * recLen);
-                br.seek(br.getFilePointer() + indexLen);
-                aLevPosition = br.getFilePointer();
-                //levIdx = this.getVariables().get(varIdx).getLevelIdxs().get(0);
-                for (int i = 0; i < lNum; i++) {
-                    nvarIdx = this.getVariables().get(varIdx).getVarInLevelIdxs().get(i);
-                    levIdx = this.getVariables().get(varIdx).getLevelIdxs().get(i);
-                    br.seek(aLevPosition);
-                    for (int j = 0; j < levIdx; j++) {
-                        br.seek(br.getFilePointer() + LevelVarList.get(j).size() * recLen);
-                    }
-                    br.seek(br.getFilePointer() + nvarIdx * recLen);
+    /**
+     * Get the mapped data file, the file is mapped on the first use
+     *
+     * @return Mapped file
+     * @throws IOException
+     */
+    private synchronized MappedFile getMappedFile() throws IOException {
+        if (mappedFile == null) {
+            mappedFile = new MappedFile(this.getFileName());
+        }
+        return mappedFile;
+    }
 
-                    //Read label
-                    aDL = ARLDataInfo.readDataLabel(br);
+    /**
+     * Close the mapped data file
+     */
+    public synchronized void closeMappedFile() {
+        if (mappedFile != null) {
+            try {
+                mappedFile.close();
+            } catch (IOException ex) {
+                Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            mappedFile = null;
+        }
+    }
 
-                    //Read Data
-                    dataBytes = new byte[(int)recLen - 50];
-                    br.read(dataBytes);
-                    theData = unpackARLGridData(dataBytes, xNum, yNum, aDL);
+    /**
+     * Read the values of a variable at one grid point for all levels of the
+     * variable and a range of times, such as a sounding or a meteogram. The
+     * records are read in one pass through the file, and of each record only
+     * the label and the packed bytes needed to unpack the grid point value are
+     * read.
+     *
+     * @param lonIdx Longitude (x) index
+     * @param latIdx Latitude (y) index
+     * @param varIdx Variable index
+     * @param tFirst First time index
+     * @param tLast Last time index
+     * @return Values, the first dimension is level and the second is time
+     * @throws IOException
+     */
+    public double[][] readPointData(int lonIdx, int latIdx, int varIdx, int tFirst, int tLast) throws IOException {
+        int lNum = this.getVariables().get(varIdx).getLevelIdxs().size();
+        return readPointData(lonIdx, latIdx, varIdx, 0, lNum - 1, tFirst, tLast);
+    }
 
-                    newGridData[i][t] = theData[latIdx][lonIdx];
+    /**
+     * Read the values of a variable at one grid point for one level and a
+     * range of times
+     *
+     * @param lonIdx Longitude (x) index
+     * @param latIdx Latitude (y) index
+     * @param varIdx Variable index
+     * @param levelIdx Level index
+     * @param tFirst First time index
+     * @param tLast Last time index
+     * @return Values of the times
+     * @throws IOException
+     */
+    public double[] readPointData(int lonIdx, int latIdx, int varIdx, int levelIdx, int tFirst, int tLast) throws IOException {
+        return readPointData(lonIdx, latIdx, varIdx, levelIdx, levelIdx, tFirst, tLast)[0];
+    }
 
-                }
+    private double[][] readPointData(int lonIdx, int latIdx, int varIdx, int lFirst, int lLast,
+            int tFirst, int tLast) throws IOException {
+        Variable aVar = this.getVariables().get(varIdx);
+        int xNum = dataHead.NX;
+        double[][] data = new double[lLast - lFirst + 1][tLast - tFirst + 1];
+        byte[] labelBytes = new byte[50];
+        byte[] colBytes = new byte[latIdx + 1];
+        byte[] rowBytes = new byte[lonIdx];
+        MappedFile mf = this.getMappedFile();
+        for (int t = tFirst; t <= tLast; t++) {
+            for (int i = lFirst; i <= lLast; i++) {
+                long pos = getRecordPosition(t, aVar.getLevelIdxs().get(i),
+                        aVar.getVarInLevelIdxs().get(i));
+                mf.readBytes(pos, labelBytes, 0, 50);
+                DataLabel aDL = ARLDataInfo.readDataLabel(labelBytes);
+                pos += 50;
+                mf.readBytes(pos, xNum, colBytes, 0, colBytes.length);
+                mf.readBytes(pos + (long) latIdx * xNum + 1, rowBytes, 0, rowBytes.length);
+                data[i - lFirst][t - tFirst] = unpackARLPoint(colBytes, rowBytes, aDL);
             }
+        }
 
-            br.close();
+        return data;
+    }
+
+    /**
+     * Get the vertical profile of a variable at one grid point
+     *
+     * @param lonIdx Longitude (x) index
+     * @param latIdx Latitude (y) index
+     * @param varIdx Variable index
+     * @param timeIdx Time index
+     * @return Values of the variable levels
+     * @throws IOException
+     */
+    public double[] getProfile(int lonIdx, int latIdx, int varIdx, int timeIdx) throws IOException {
+        double[][] data = readPointData(lonIdx, latIdx, varIdx, timeIdx, timeIdx);
+        double[] r = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            r[i] = data[i][0];
+        }
+
+        return r;
+    }
+
+    @Override
+    public GridData getGridData_LevelTime(int latIdx, int varIdx, int lonIdx) {
+        try {
+            int lNum, tNum;
+            lNum = this.getVariables().get(varIdx).getLevelIdxs().size();
+            tNum = this.getTimeNum();
 
             GridData gridData = new GridData();
-            gridData.data = newGridData;
+            gridData.data = readPointData(lonIdx, latIdx, varIdx, 0, tNum - 1);
             gridData.missingValue = missingValue;
             gridData.xArray = new double[tNum];
             for (int i = 0; i < tNum; i++) {
@@ -1227,53 +1353,20 @@ public class ARLDataInfo extends DataInfo implements IGridDataInfo {
     @Override
     public GridData getGridData_Time(int lonIdx, int latIdx, int varIdx, int levelIdx) {
         try {
-            RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r");
-            byte[] dataBytes;
-            DataLabel aDL;
-            int xNum, yNum, t;
-            xNum = dataHead.NX;
-            yNum = dataHead.NY;
-            double[][] gridData;
-            double aValue;
+            int t;
 
             GridData aGridData = new GridData();
             aGridData.missingValue = missingValue;
             aGridData.xArray = new double[this.getTimeNum()];
             aGridData.yArray = new double[1];
             aGridData.yArray[0] = 0;
-            aGridData.data = new double[1][this.getTimeNum()];
-
-            //Update level and variable index
-            Variable aVar = this.getVariables().get(varIdx);
-            if (aVar.getLevelNum() > 1) {
-                levelIdx += 1;
-            }
-
-            varIdx = LevelVarList.get(levelIdx).indexOf(aVar.getName());
+            aGridData.data = new double[1][];
 
+            aGridData.data[0] = readPointData(lonIdx, latIdx, varIdx, levelIdx, 0, this.getTimeNum() - 1);
             for (t = 0; t < this.getTimeNum(); t++) {
-                br.seek(t * recsPerTime * recLen);
-                br.seek(br.getFilePointer() + indexLen);
-                for (int i = 0; i < levelIdx; i++) {
-                    br.seek(br.getFilePointer() + LevelVarList.get(i).size() * recLen);
-                }
-                br.seek(br.getFilePointer() + varIdx * recLen);
-
-                //Read label
-                aDL = ARLDataInfo.readDataLabel(br);
-
-                //Read Data
-                dataBytes = new byte[(int)recLen - 50];
-                br.read(dataBytes);
-                gridData = unpackARLGridData(dataBytes, xNum, yNum, aDL);
-
-                aValue = gridData[latIdx][lonIdx];
                 aGridData.xArray[t] = DateUtil.toOADate(this.getTimes().get(t));
-                aGridData.data[0][t] = aValue;
             }
 
-            br.close();
-
             return aGridData;
         } catch (IOException ex) {
             Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
@@ -1284,50 +1377,21 @@ public class ARLDataInfo extends DataInfo implements IGridDataInfo {
     @Override
     public GridData getGridData_Level(int lonIdx, int latIdx, int varIdx, int timeIdx) {
         try {
-            RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r");
-            byte[] dataBytes;
-            DataLabel aDL;
-            int xNum, yNum, nvarIdx, levIdx, lNum;
-            xNum = dataHead.NX;
-            yNum = dataHead.NY;
-            lNum = this.getVariables().get(varIdx).getLevelNum();
-            double[][] gridData;
-            double aValue;
+            int lNum;
+            lNum = this.getVariables().get(varIdx).getLevelIdxs().size();
 
             GridData aGridData = new GridData();
             aGridData.missingValue = missingValue;
             aGridData.xArray = new double[lNum];
             aGridData.yArray = new double[1];
             aGridData.yArray[0] = 0;
-            aGridData.data = new double[1][lNum];
+            aGridData.data = new double[1][];
 
-            br.seek(timeIdx * recsPerTime * recLen);
-            br.seek(br.getFilePointer() + indexLen);
-            long aLevPosition = br.getFilePointer();
-            //levIdx = this.getVariables().get(varIdx).getLevelIdxs().get(0);
+            aGridData.data[0] = getProfile(lonIdx, latIdx, varIdx, timeIdx);
             for (int i = 0; i < lNum; i++) {
-                nvarIdx = this.getVariables().get(varIdx).getVarInLevelIdxs().get(i);
-                levIdx = this.getVariables().get(varIdx).getLevelIdxs().get(i);
-                br.seek(aLevPosition);
-                for (int j = 0; j < levIdx; j++) {
-                    br.seek(br.getFilePointer() + LevelVarList.get(j).size() * recLen);
-                }
-                br.seek(br.getFilePointer() + nvarIdx * recLen);
-
-                //Read label
-                aDL = ARLDataInfo.readDataLabel(br);
-
-                //Read Data
-                dataBytes = new byte[(int)recLen - 50];
-                br.read(dataBytes);
-                gridData = unpackARLGridData(dataBytes, xNum, yNum, aDL);
-                aValue = gridData[latIdx][lonIdx];
-                aGridData.xArray[i] = levels.get(levIdx);
-                aGridData.data[0][i] = aValue;
+                aGridData.xArray[i] = levels.get(this.getVariables().get(varIdx).getLevelIdxs().get(i));
             }
 
-            br.close();
-
             return aGridData;
         } catch (IOException ex) {
             Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
@@ -18,7 +18,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.meteoinfo.data.ArrayMath;
 import org.meteoinfo.data.GridArray;
 import org.meteoinfo.data.GridData;
 import org.meteoinfo.data.mapdata.geotiff.GeoTiff;
@@ -43,6 +42,7 @@ public class GeoTiffDataInfo extends DataInfo implements IGridDataInfo {
     // <editor-fold desc="Variables">
     private GeoTiff geoTiff;
     private int bandNum;
+    private boolean useOverviews = true;
 
     // </editor-fold>
     // <editor-fold desc="Constructor">
@@ -54,6 +54,23 @@ public class GeoTiffDataInfo extends DataInfo implements IGridDataInfo {
     }
     // </editor-fold>
     // <editor-fold desc="Get Set Methods">
+    /**
+     * Get if the internal overviews are used to read the data with strides
+     *
+     * @return Boolean
+     */
+    public boolean isUseOverviews() {
+        return this.useOverviews;
+    }
+
+    /**
+     * Set if the internal overviews are used to read the data with strides
+     *
+     * @param value Boolean
+     */
+    public void setUseOverviews(boolean value) {
+        this.useOverviews = value;
+    }
     // </editor-fold>
     // <editor-fold desc="Methods">
 
@@ -148,10 +165,8 @@ public class GeoTiffDataInfo extends DataInfo implements IGridDataInfo {
     @Override
     public Array read(String varName, int[] origin, int[] size, int[] stride) {
         try {
-            Array array = read(varName);
-            array = ArrayMath.section(array, origin, size, stride);            
-            return array;
-        } catch (InvalidRangeException ex) {
+            return this.geoTiff.readArray(origin, size, stride, this.useOverviews);
+        } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(GeoTiffDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         }        
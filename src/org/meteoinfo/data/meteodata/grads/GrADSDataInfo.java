@@ -18,6 +18,8 @@ import org.meteoinfo.data.meteodata.DataInfo;
 import org.meteoinfo.data.meteodata.Dimension;
 import org.meteoinfo.data.meteodata.DimensionType;
 import org.meteoinfo.data.meteodata.IGridDataInfo;
+import org.meteoinfo.data.meteodata.MappedFile;
+import org.meteoinfo.data.meteodata.RecordIndex;
 import org.meteoinfo.data.meteodata.Variable;
 import org.meteoinfo.global.DataConvert;
 import org.meteoinfo.io.EndianDataOutputStream;
@@ -41,8 +43,11 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.meteoinfo.data.GridArray;
@@ -169,6 +174,24 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
     public int YNum;
     private DataOutputStream _bw = null;
     private ByteOrder _byteOrder = ByteOrder.LITTLE_ENDIAN;
+    //Memory mapped data files (DSET or template files) by path
+    private final Map<String, MappedFile> mappedFiles = new LinkedHashMap<String, MappedFile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MappedFile> eldest) {
+            if (size() > MAX_MAPPED_FILES) {
+                try {
+                    eldest.getValue().close();
+                } catch (IOException ex) {
+                    Logger.getLogger(GrADSDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+                }
+                return true;
+            }
+            return false;
+        }
+    };
+    private static final int MAX_MAPPED_FILES = 8;
+    //File positions of the time series of station data files by path
+    private final Map<String, long[]> stationTimePositions = new HashMap<>();
     // </editor-fold>
     // <editor-fold desc="Constructor">
 
@@ -1350,23 +1373,16 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
             Range xRange = section.getRange(rangeIdx);
 
             IndexIterator ii = dataArray.getIndexIterator();
-
-            for (int eIdx = eRange.first(); eIdx <= eRange.last(); eIdx += eRange.stride()) {
-                for (int timeIdx = timeRange.first(); timeIdx <= timeRange.last();
-                        timeIdx += timeRange.stride()) {
-                    int levelIdx = levRange.first();
-
-                    for (; levelIdx <= levRange.last();
-                            levelIdx += levRange.stride()) {
-                        readXY(varName, eIdx, timeIdx, levelIdx, yRange, xRange, ii);
-                    }
-                }
-            }
+            int varIdx = this.getVariableNames().indexOf(varName);
+            readSection(varIdx, eRange, timeRange, levRange, yRange, xRange, ii);
 
             return dataArray;
         } catch (InvalidRangeException ex) {
             Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
+        } catch (IOException ex) {
+            Logger.getLogger(GrADSDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
         }
     }
     
@@ -1376,126 +1392,151 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
         }
     }
 
-    private void readXY(String varName, int timeIdx, int levelIdx, Range yRange, Range xRange, IndexIterator ii) {
-        try {
-            int varIdx = this.getVariableNames().indexOf(varName);
-            int xNum, yNum;
-            xNum = XNum;
-            yNum = YNum;
-            float[] data = new float[yNum * xNum];
-
-            String filePath = DSET;
-            int tIdx = timeIdx;
-            if (OPTIONS.template) {
-                Object[] result = getFilePath_Template(timeIdx);
-                filePath = (String) result[0];
-                tIdx = (int) result[1];
-            }
-            RandomAccessFile br = new RandomAccessFile(filePath, "r");
-            int i, lNum;
-            byte[] aBytes;
-
-            br.seek(FILEHEADER);
-            br.seek(br.getFilePointer() + tIdx * RecLenPerTime);
-            for (i = 0; i < varIdx; i++) {
-                lNum = VARDEF.getVars().get(i).getLevelNum();
-                if (lNum == 0) {
-                    lNum = 1;
+    /**
+     * Read a data section of a variable. Only the needed values are read from
+     * their computed file positions, the time steps are read in one pass with
+     * the data file kept open.
+     *
+     * @param varIdx Variable index
+     * @param eRange Ensemble range
+     * @param tRange Time range
+     * @param levRange Level range
+     * @param yRange Y range
+     * @param xRange X range
+     * @param ii Index iterator of the destination array
+     * @throws IOException
+     */
+    private void readSection(int varIdx, Range eRange, Range tRange, Range levRange,
+            Range yRange, Range xRange, IndexIterator ii) throws IOException {
+        int x0 = xRange.first();
+        int xn = xRange.last() - x0 + 1;
+        int xStride = xRange.stride();
+        //Read the x span of a row at once unless the values are sparse
+        boolean span = xStride <= 4;
+        float[] buf = new float[span ? xn : 1];
+        String curPath = null;
+        MappedFile mf = null;
+        for (int eIdx = eRange.first(); eIdx <= eRange.last(); eIdx += eRange.stride()) {
+            for (int timeIdx = tRange.first(); timeIdx <= tRange.last();
+                    timeIdx += tRange.stride()) {
+                String filePath = DSET;
+                int tIdx = timeIdx;
+                if (OPTIONS.template) {
+                    Object[] result = getFilePath_Template(timeIdx);
+                    filePath = (String) result[0];
+                    tIdx = (int) result[1];
                 }
-                br.seek(br.getFilePointer() + lNum * RecordLen);
-            }
-            br.seek(br.getFilePointer() + levelIdx * RecordLen);
-
-            if (OPTIONS.sequential) {
-                br.seek(br.getFilePointer() + 4);
-            }
-
-            //Read X/Y data
-            byte[] byteData = new byte[xNum * yNum * 4];
-            br.read(byteData);
-            int start = 0;
-            for (i = 0; i < yNum * xNum; i++) {
-                aBytes = new byte[4];
-                System.arraycopy(byteData, start, aBytes, 0, 4);
-                start += 4;
-                data[i] = DataConvert.bytes2Float(aBytes, _byteOrder);
-            }
-
-            br.close();
-            for (int y = yRange.first(); y <= yRange.last();
-                    y += yRange.stride()) {
-                for (int x = xRange.first(); x <= xRange.last();
-                        x += xRange.stride()) {
-                    int index = y * xNum + x;
-                    ii.setFloatNext(data[index]);
+                if (!filePath.equals(curPath)) {
+                    mf = this.getMappedFile(filePath);
+                    curPath = filePath;
+                }
+                for (int levelIdx = levRange.first(); levelIdx <= levRange.last();
+                        levelIdx += levRange.stride()) {
+                    long pos = this.getRecordPosition(eIdx, tIdx, varIdx, levelIdx);
+                    for (int y = yRange.first(); y <= yRange.last();
+                            y += yRange.stride()) {
+                        long rowPos = pos + (long) y * XNum * 4;
+                        if (span) {
+                            mf.readFloats(rowPos + x0 * 4L, buf, 0, xn, _byteOrder);
+                            for (int x = 0; x < xn; x += xStride) {
+                                ii.setFloatNext(buf[x]);
+                            }
+                        } else {
+                            for (int x = x0; x <= xRange.last(); x += xStride) {
+                                mf.readFloats(rowPos + x * 4L, buf, 0, 1, _byteOrder);
+                                ii.setFloatNext(buf[0]);
+                            }
+                        }
+                    }
                 }
             }
-        } catch (FileNotFoundException ex) {
-            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
-            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
-    
-    private void readXY(String varName, int eIdx, int timeIdx, int levelIdx, Range yRange, Range xRange, IndexIterator ii) {
-        try {
-            int varIdx = this.getVariableNames().indexOf(varName);
-            int xNum, yNum;
-            xNum = XNum;
-            yNum = YNum;
-            float[] data = new float[yNum * xNum];
-
-            String filePath = DSET;
-            int tIdx = timeIdx;
-            if (OPTIONS.template) {
-                Object[] result = getFilePath_Template(timeIdx);
-                filePath = (String) result[0];
-                tIdx = (int) result[1];
-            }
-            RandomAccessFile br = new RandomAccessFile(filePath, "r");
-            int i, lNum;
-            byte[] aBytes;
 
-            br.seek(FILEHEADER);
-            br.seek(br.getFilePointer() + eIdx * this.getTimeNum() * RecLenPerTime);
-            br.seek(br.getFilePointer() + tIdx * RecLenPerTime);
-            for (i = 0; i < varIdx; i++) {
-                lNum = VARDEF.getVars().get(i).getLevelNum();
-                if (lNum == 0) {
-                    lNum = 1;
-                }
-                br.seek(br.getFilePointer() + lNum * RecordLen);
-            }
-            br.seek(br.getFilePointer() + levelIdx * RecordLen);
+    /**
+     * Read a data section of a variable of the first ensemble
+     *
+     * @param varIdx Variable index
+     * @param tFirst First time index
+     * @param tLast Last time index
+     * @param lFirst First level index
+     * @param lLast Last level index
+     * @param yFirst First y index
+     * @param yLast Last y index
+     * @param xFirst First x index
+     * @param xLast Last x index
+     * @return Data values in time, level, y, x order
+     * @throws IOException
+     * @throws InvalidRangeException
+     */
+    private float[] readSection(int varIdx, int tFirst, int tLast, int lFirst, int lLast,
+            int yFirst, int yLast, int xFirst, int xLast) throws IOException, InvalidRangeException {
+        Range tRange = new Range(tFirst, tLast);
+        Range levRange = new Range(lFirst, lLast);
+        Range yRange = new Range(yFirst, yLast);
+        Range xRange = new Range(xFirst, xLast);
+        Array a = Array.factory(DataType.FLOAT, new int[]{tRange.length() * levRange.length()
+            * yRange.length() * xRange.length()});
+        readSection(varIdx, new Range(0, 0), tRange, levRange, yRange, xRange, a.getIndexIterator());
+        return (float[]) a.getStorage();
+    }
 
-            if (OPTIONS.sequential) {
-                br.seek(br.getFilePointer() + 4);
+    /**
+     * Get the file position of the data of a x/y record
+     *
+     * @param eIdx Ensemble index
+     * @param tIdx Time index in the file
+     * @param varIdx Variable index
+     * @param levelIdx Level index
+     * @return File position
+     */
+    private long getRecordPosition(int eIdx, int tIdx, int varIdx, int levelIdx) {
+        long pos = FILEHEADER + (long) eIdx * this.getTimeNum() * RecLenPerTime + tIdx * RecLenPerTime;
+        for (int i = 0; i < varIdx; i++) {
+            int lNum = VARDEF.getVars().get(i).getLevelNum();
+            if (lNum == 0) {
+                lNum = 1;
             }
+            pos += (long) lNum * RecordLen;
+        }
+        pos += (long) levelIdx * RecordLen;
+        if (OPTIONS.sequential) {
+            pos += 4;
+        }
+        return pos;
+    }
 
-            //Read X/Y data
-            byte[] byteData = new byte[xNum * yNum * 4];
-            br.read(byteData);
-            int start = 0;
-            for (i = 0; i < yNum * xNum; i++) {
-                aBytes = new byte[4];
-                System.arraycopy(byteData, start, aBytes, 0, 4);
-                start += 4;
-                data[i] = DataConvert.bytes2Float(aBytes, _byteOrder);
+    /**
+     * Get the mapped data file, the most recently used files are kept open
+     *
+     * @param filePath File path
+     * @return Mapped file
+     * @throws IOException
+     */
+    private MappedFile getMappedFile(String filePath) throws IOException {
+        synchronized (mappedFiles) {
+            MappedFile mf = mappedFiles.get(filePath);
+            if (mf == null) {
+                mf = new MappedFile(filePath);
+                mappedFiles.put(filePath, mf);
             }
+            return mf;
+        }
+    }
 
-            br.close();
-            for (int y = yRange.first(); y <= yRange.last();
-                    y += yRange.stride()) {
-                for (int x = xRange.first(); x <= xRange.last();
-                        x += xRange.stride()) {
-                    int index = y * xNum + x;
-                    ii.setFloatNext(data[index]);
+    /**
+     * Close the mapped data files
+     */
+    public void closeMappedFiles() {
+        synchronized (mappedFiles) {
+            for (MappedFile mf : mappedFiles.values()) {
+                try {
+                    mf.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(GrADSDataInfo.class.getName()).log(Level.SEVERE, null, ex);
                 }
             }
-        } catch (FileNotFoundException ex) {
-            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
-            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            mappedFiles.clear();
         }
     }
 
@@ -1566,40 +1607,18 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
                 tIdx = this.getTimeNum() - 1;
             }
         }
-        RandomAccessFile br = new RandomAccessFile(filePath, "r");
-        int i, j, lNum;
-        byte[] aBytes;
-
-        br.seek(FILEHEADER);
-        br.seek(br.getFilePointer() + tIdx * RecLenPerTime);
-        for (i = 0; i < varIdx; i++) {
-            lNum = VARDEF.getVars().get(i).getLevelNum();
-            if (lNum == 0) {
-                lNum = 1;
-            }
-            br.seek(br.getFilePointer() + lNum * RecordLen);
-        }
-        br.seek(br.getFilePointer() + levelIdx * RecordLen);
-
-        if (OPTIONS.sequential) {
-            br.seek(br.getFilePointer() + 4);
-        }
+        MappedFile mf = this.getMappedFile(filePath);
+        long pos = this.getRecordPosition(0, tIdx, varIdx, levelIdx);
 
         //Read X/Y data
-        byte[] byteData = new byte[xNum * yNum * 4];
-        br.read(byteData);
-        int start = 0;
-        for (i = 0; i < yNum; i++) {
-            for (j = 0; j < xNum; j++) {
-                aBytes = new byte[4];
-                System.arraycopy(byteData, start, aBytes, 0, 4);
-                start += 4;
-                gridData[i][j] = DataConvert.bytes2Float(aBytes, _byteOrder);
+        float[] row = new float[xNum];
+        for (int i = 0; i < yNum; i++) {
+            mf.readFloats(pos + (long) i * xNum * 4, row, 0, xNum, _byteOrder);
+            for (int j = 0; j < xNum; j++) {
+                gridData[i][j] = row[j];
             }
         }
 
-        br.close();
-
         return gridData;
     }
 
@@ -1610,80 +1629,13 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
             xNum = YNum;
             yNum = TDEF.getTimeNum();
             double[][] gridData = new double[yNum][xNum];
-            int i, j, lNum, t;
-            long aTPosition;
-
-            if (OPTIONS.template) {
-                byte[] aBytes = new byte[4];
-                for (t = 0; t < TDEF.getTimeNum(); t++) {
-                    Object[] result = getFilePath_Template(t);
-                    String filePath = (String) result[0];
-                    int tIdx = (int) result[1];
-                    RandomAccessFile br = new RandomAccessFile(filePath, "r");
-                    br.seek(FILEHEADER + tIdx * RecLenPerTime);
-
-                    for (i = 0; i < varIdx; i++) {
-                        lNum = VARDEF.getVars().get(i).getLevelNum();
-                        if (lNum == 0) {
-                            lNum = 1;
-                        }
-                        br.seek(br.getFilePointer() + lNum * RecordLen);
-                    }
-                    br.seek(br.getFilePointer() + levelIdx * RecordLen);
-                    if (OPTIONS.sequential) {
-                        br.seek(br.getFilePointer() + 4);
-                    }
-
-                    if (br.getFilePointer() >= br.length()) {
-                        System.out.println("Erro");
-                    }
-
-                    for (i = 0; i < YNum; i++) {
-                        for (j = 0; j < XNum; j++) {
-                            br.read(aBytes);
-                            if (j == lonIdx) {
-                                gridData[t][i] = DataConvert.bytes2Float(aBytes, _byteOrder);
-                            }
-                        }
-                    }
-                    br.close();
-                }
-            } else {
-                RandomAccessFile br = new RandomAccessFile(DSET, "r");
-                for (t = 0; t < TDEF.getTimeNum(); t++) {
-                    br.seek(FILEHEADER + t * RecLenPerTime);
-                    aTPosition = br.getFilePointer();
-
-                    for (i = 0; i < varIdx; i++) {
-                        lNum = VARDEF.getVars().get(i).getLevelNum();
-                        if (lNum == 0) {
-                            lNum = 1;
-                        }
-                        br.seek(br.getFilePointer() + lNum * RecordLen);
-                    }
-                    br.seek(br.getFilePointer() + levelIdx * RecordLen);
+            int i, j;
 
-                    if (OPTIONS.sequential) {
-                        br.seek(br.getFilePointer() + 4);
-                    }
-
-                    if (br.getFilePointer() >= br.length()) {
-                        System.out.println("Erro");
-                    }
-
-                    byte[] aBytes = new byte[4];
-                    for (i = 0; i < YNum; i++) {
-                        for (j = 0; j < XNum; j++) {
-                            br.read(aBytes);
-                            if (j == lonIdx) {
-                                gridData[t][i] = DataConvert.bytes2Float(aBytes, _byteOrder);
-                            }
-                        }
-                    }
-                    br.seek(aTPosition);
+            float[] data = readSection(varIdx, 0, yNum - 1, levelIdx, levelIdx, 0, xNum - 1, lonIdx, lonIdx);
+            for (i = 0; i < yNum; i++) {
+                for (j = 0; j < xNum; j++) {
+                    gridData[i][j] = data[i * xNum + j];
                 }
-
-                br.close();
             }
 
             GridData aGridData = new GridData();
@@ -1696,7 +1648,7 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
             }
 
             return aGridData;
-        } catch (IOException ex) {
+        } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(GrADSDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
 
@@ -1710,73 +1662,13 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
             xNum = XNum;
             yNum = TDEF.getTimeNum();
             double[][] gridData = new double[yNum][xNum];
-            int i, j, lNum, t;
-            long aTPosition;
-
-            if (OPTIONS.template) {
-                byte[] aBytes = new byte[4];
-                for (t = 0; t < TDEF.getTimeNum(); t++) {
-                    Object[] result = getFilePath_Template(t);
-                    String filePath = (String) result[0];
-                    int tIdx = (int) result[1];
-                    RandomAccessFile br = new RandomAccessFile(filePath, "r");
-                    br.seek(FILEHEADER + tIdx * RecLenPerTime);
-
-                    for (i = 0; i < varIdx; i++) {
-                        lNum = VARDEF.getVars().get(i).getLevelNum();
-                        if (lNum == 0) {
-                            lNum = 1;
-                        }
-                        br.seek(br.getFilePointer() + lNum * RecordLen);
-                    }
-                    br.seek(br.getFilePointer() + levelIdx * RecordLen);
-                    if (OPTIONS.sequential) {
-                        br.seek(br.getFilePointer() + 4);
-                    }
-                    br.seek(br.getFilePointer() + latIdx * xNum * 4);
+            int i, j;
 
-                    if (br.getFilePointer() >= br.length()) {
-                        System.out.println("Erro");
-                    }
-
-                    for (j = 0; j < xNum; j++) {
-                        br.read(aBytes);
-                        gridData[t][j] = DataConvert.bytes2Float(aBytes, _byteOrder);
-                    }
-                    br.close();
-                }
-            } else {
-                RandomAccessFile br = new RandomAccessFile(DSET, "r");
-                for (t = 0; t < TDEF.getTimeNum(); t++) {
-                    br.seek(FILEHEADER + t * RecLenPerTime);
-                    aTPosition = br.getFilePointer();
-
-                    for (i = 0; i < varIdx; i++) {
-                        lNum = VARDEF.getVars().get(i).getLevelNum();
-                        if (lNum == 0) {
-                            lNum = 1;
-                        }
-                        br.seek(br.getFilePointer() + lNum * RecordLen);
-                    }
-                    br.seek(br.getFilePointer() + levelIdx * RecordLen);
-                    if (OPTIONS.sequential) {
-                        br.seek(br.getFilePointer() + 4);
-                    }
-                    br.seek(br.getFilePointer() + latIdx * xNum * 4);
-
-                    if (br.getFilePointer() >= br.length()) {
-                        System.out.println("Erro");
-                    }
-
-                    byte[] aBytes = new byte[4];
-                    for (j = 0; j < xNum; j++) {
-                        br.read(aBytes);
-                        gridData[t][j] = DataConvert.bytes2Float(aBytes, _byteOrder);
-                    }
-                    br.seek(aTPosition);
+            float[] data = readSection(varIdx, 0, yNum - 1, levelIdx, levelIdx, latIdx, latIdx, 0, xNum - 1);
+            for (i = 0; i < yNum; i++) {
+                for (j = 0; j < xNum; j++) {
+                    gridData[i][j] = data[i * xNum + j];
                 }
-
-                br.close();
             }
 
             GridData aGridData = new GridData();
@@ -1789,7 +1681,7 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
             }
 
             return aGridData;
-        } catch (IOException ex) {
+        } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(GrADSDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
 
@@ -1801,62 +1693,30 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
         try {
             int xNum, yNum;
             xNum = YNum;
-            yNum = VARDEF.getVars().get(varIdx).getLevelNum();
+            //A surface variable has one level record
+            yNum = Math.max(1, VARDEF.getVars().get(varIdx).getLevelNum());
             double[][] gridData = new double[yNum][xNum];
+            int i, j;
 
-            String filePath = DSET;
-            int tIdx = timeIdx;
-            if (OPTIONS.template) {
-                Object[] result = getFilePath_Template(timeIdx);
-                filePath = (String) result[0];
-                tIdx = (int) result[1];
-            }
-
-            RandomAccessFile br = new RandomAccessFile(filePath, "r");
-            int i, j, lNum;
-
-            br.seek(FILEHEADER + tIdx * RecLenPerTime);
-
-            for (i = 0; i < varIdx; i++) {
-                lNum = VARDEF.getVars().get(i).getLevelNum();
-                if (lNum == 0) {
-                    lNum = 1;
-                }
-                br.seek(br.getFilePointer() + lNum * RecordLen);
-            }
-
-            if (br.getFilePointer() >= br.length()) {
-                System.out.println("Erro");
-            }
-
-            for (i = 0; i < yNum; i++) //Levels
-            {
-                if (OPTIONS.sequential) {
-                    br.seek(br.getFilePointer() + 4);
-                }
-
-                byte[] aBytes = new byte[4];
-                for (j = 0; j < YNum; j++) {
-                    br.skipBytes(lonIdx * 4);
-                    br.read(aBytes);
-                    gridData[i][j] = DataConvert.bytes2Float(aBytes, _byteOrder);
-                    br.skipBytes((XNum - lonIdx - 1) * 4);
+            float[] data = readSection(varIdx, timeIdx, timeIdx, 0, yNum - 1, 0, xNum - 1, lonIdx, lonIdx);
+            for (i = 0; i < yNum; i++) {
+                for (j = 0; j < xNum; j++) {
+                    gridData[i][j] = data[i * xNum + j];
                 }
             }
-            br.close();
 
             GridData aGridData = new GridData();
             aGridData.data = gridData;
             aGridData.missingValue = this.getMissingValue();
             aGridData.xArray = Y;
-            double[] levels = new double[VARDEF.getVars().get(varIdx).getLevelNum()];
+            double[] levels = new double[yNum];
             for (i = 0; i < levels.length; i++) {
                 levels[i] = ZDEF.ZLevels[i];
             }
             aGridData.yArray = levels;
 
             return aGridData;
-        } catch (IOException ex) {
+        } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(GrADSDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
 
@@ -1868,62 +1728,30 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
         try {
             int xNum, yNum;
             xNum = XNum;
-            yNum = VARDEF.getVars().get(varIdx).getLevelNum();
+            //A surface variable has one level record
+            yNum = Math.max(1, VARDEF.getVars().get(varIdx).getLevelNum());
             double[][] gridData = new double[yNum][xNum];
+            int i, j;
 
-            String filePath = DSET;
-            int tIdx = timeIdx;
-            if (OPTIONS.template) {
-                Object[] result = getFilePath_Template(timeIdx);
-                filePath = (String) result[0];
-                tIdx = (int) result[1];
-            }
-
-            RandomAccessFile br = new RandomAccessFile(filePath, "r");
-            int i, j, lNum;
-
-            br.seek(FILEHEADER + tIdx * RecLenPerTime);
-
-            for (i = 0; i < varIdx; i++) {
-                lNum = VARDEF.getVars().get(i).getLevelNum();
-                if (lNum == 0) {
-                    lNum = 1;
-                }
-                br.seek(br.getFilePointer() + lNum * RecordLen);
-            }
-
-            if (br.getFilePointer() >= br.length()) {
-                System.out.println("Erro");
-            }
-
-            for (i = 0; i < yNum; i++) //Levels
-            {
-                if (OPTIONS.sequential) {
-                    br.seek(br.getFilePointer() + 4);
-                }
-                br.seek(br.getFilePointer() + latIdx * xNum * 4);
-
-                byte[] aBytes = new byte[4];
+            float[] data = readSection(varIdx, timeIdx, timeIdx, 0, yNum - 1, latIdx, latIdx, 0, xNum - 1);
+            for (i = 0; i < yNum; i++) {
                 for (j = 0; j < xNum; j++) {
-                    br.read(aBytes);
-                    gridData[i][j] = DataConvert.bytes2Float(aBytes, _byteOrder);
+                    gridData[i][j] = data[i * xNum + j];
                 }
-                br.seek(br.getFilePointer() + (YNum - latIdx - 1) * xNum * 4);
             }
-            br.close();
 
             GridData aGridData = new GridData();
             aGridData.data = gridData;
             aGridData.missingValue = this.getMissingValue();
             aGridData.xArray = X;
-            double[] levels = new double[VARDEF.getVars().get(varIdx).getLevelNum()];
+            double[] levels = new double[yNum];
             for (i = 0; i < levels.length; i++) {
                 levels[i] = ZDEF.ZLevels[i];
             }
             aGridData.yArray = levels;
 
             return aGridData;
-        } catch (IOException ex) {
+        } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(GrADSDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
 
@@ -1935,78 +1763,17 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
         try {
             int xNum, yNum;
             xNum = TDEF.getTimeNum();
-            yNum = VARDEF.getVars().get(varIdx).getLevelNum();
+            //A surface variable has one level record
+            yNum = Math.max(1, VARDEF.getVars().get(varIdx).getLevelNum());
             double[][] gridData = new double[yNum][xNum];
-            int i, lNum, t;
-            long aTPosition;
-
-            if (OPTIONS.template) {
-                byte[] aBytes = new byte[4];
-                for (t = 0; t < TDEF.getTimeNum(); t++) {
-                    Object[] result = getFilePath_Template(t);
-                    String filePath = (String) result[0];
-                    int tIdx = (int) result[1];
-                    RandomAccessFile br = new RandomAccessFile(filePath, "r");
-                    br.seek(FILEHEADER + tIdx * RecLenPerTime);
-
-                    for (i = 0; i < varIdx; i++) {
-                        lNum = VARDEF.getVars().get(i).getLevelNum();
-                        if (lNum == 0) {
-                            lNum = 1;
-                        }
-                        br.seek(br.getFilePointer() + lNum * RecordLen);
-                    }
-
-                    if (br.getFilePointer() >= br.length()) {
-                        System.out.println("Erro");
-                    }
-
-                    for (i = 0; i < yNum; i++) //Levels
-                    {
-                        if (OPTIONS.sequential) {
-                            br.seek(br.getFilePointer() + 4);
-                        }
-                        br.seek(br.getFilePointer() + latIdx * xNum * 4 + lonIdx * 4);
-                        br.read(aBytes);
-                        gridData[i][t] = DataConvert.bytes2Float(aBytes, _byteOrder);
-                        br.seek(br.getFilePointer() + (XNum - lonIdx - 1) * 4 + (YNum - latIdx - 1) * xNum * 4);
-                    }
-                    br.close();
-                }
-            } else {
-                RandomAccessFile br = new RandomAccessFile(DSET, "r");
-                for (t = 0; t < xNum; t++) {
-                    br.seek(FILEHEADER + t * RecLenPerTime);
-                    aTPosition = br.getFilePointer();
-
-                    for (i = 0; i < varIdx; i++) {
-                        lNum = VARDEF.getVars().get(i).getLevelNum();
-                        if (lNum == 0) {
-                            lNum = 1;
-                        }
-                        br.seek(br.getFilePointer() + lNum * RecordLen);
-                    }
+            int i, t;
 
-                    if (br.getFilePointer() >= br.length()) {
-                        System.out.println("Erro");
-                    }
-
-                    byte[] aBytes = new byte[4];
-                    for (i = 0; i < yNum; i++) //Levels
-                    {
-                        if (OPTIONS.sequential) {
-                            br.seek(br.getFilePointer() + 4);
-                        }
-                        br.seek(br.getFilePointer() + latIdx * xNum * 4 + lonIdx * 4);
-                        br.read(aBytes);
-                        gridData[i][t] = DataConvert.bytes2Float(aBytes, _byteOrder);
-                        br.seek(br.getFilePointer() + (XNum - lonIdx - 1) * 4 + (YNum - latIdx - 1) * xNum * 4);
-                    }
-
-                    br.seek(aTPosition);
+            //The values are read in time, level order
+            float[] data = readSection(varIdx, 0, xNum - 1, 0, yNum - 1, latIdx, latIdx, lonIdx, lonIdx);
+            for (t = 0; t < xNum; t++) {
+                for (i = 0; i < yNum; i++) {
+                    gridData[i][t] = data[t * yNum + i];
                 }
-
-                br.close();
             }
 
             GridData aGridData = new GridData();
@@ -2016,14 +1783,14 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
             for (i = 0; i < this.getTimeNum(); i++) {
                 aGridData.xArray[i] = DateUtil.toOADate(this.getTimes().get(i));
             }
-            double[] levels = new double[VARDEF.getVars().get(varIdx).getLevelNum()];
+            double[] levels = new double[yNum];
             for (i = 0; i < levels.length; i++) {
                 levels[i] = ZDEF.ZLevels[i];
             }
             aGridData.yArray = levels;
 
             return aGridData;
-        } catch (IOException ex) {
+        } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(GrADSDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
 
@@ -2033,9 +1800,7 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
     @Override
     public GridData getGridData_Time(int lonIdx, int latIdx, int varIdx, int levelIdx) {
         try {
-            int i, lNum, t;
-            byte[] aBytes = new byte[4];
-            float aValue;
+            int t;
 
             GridData aGridData = new GridData();
             aGridData.missingValue = this.getMissingValue();
@@ -2044,74 +1809,15 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
             aGridData.yArray[0] = 0;
             aGridData.data = new double[1][TDEF.getTimeNum()];
 
-            if (OPTIONS.template) {
-                for (t = 0; t < TDEF.getTimeNum(); t++) {
-                    Object[] result = getFilePath_Template(t);
-                    String filePath = (String) result[0];
-                    int tIdx = (int) result[1];
-                    RandomAccessFile br = new RandomAccessFile(filePath, "r");
-                    br.seek(FILEHEADER + tIdx * RecLenPerTime);
-
-                    for (i = 0; i < varIdx; i++) {
-                        lNum = VARDEF.getVars().get(i).getLevelNum();
-                        if (lNum == 0) {
-                            lNum = 1;
-                        }
-                        br.seek(br.getFilePointer() + lNum * RecordLen);
-                    }
-                    br.seek(br.getFilePointer() + levelIdx * RecordLen);
-                    if (OPTIONS.sequential) {
-                        br.seek(br.getFilePointer() + 4);
-                    }
-                    br.seek(br.getFilePointer() + latIdx * XNum * 4);
-
-                    if (br.getFilePointer() >= br.length()) {
-                        System.out.println("Erro");
-                    }
-
-                    br.seek(br.getFilePointer() + lonIdx * 4);
-
-                    br.read(aBytes);
-                    aValue = DataConvert.bytes2Float(aBytes, _byteOrder);
-                    aGridData.xArray[t] = DateUtil.toOADate(TDEF.times.get(t));
-                    aGridData.data[0][t] = aValue;
-
-                    br.close();
-                }
-            } else {
-                RandomAccessFile br = new RandomAccessFile(DSET, "r");
-                for (t = 0; t < TDEF.getTimeNum(); t++) {
-                    br.seek(FILEHEADER + t * RecLenPerTime);
-                    for (i = 0; i < varIdx; i++) {
-                        lNum = VARDEF.getVars().get(i).getLevelNum();
-                        if (lNum == 0) {
-                            lNum = 1;
-                        }
-                        br.seek(br.getFilePointer() + lNum * RecordLen);
-                    }
-                    br.seek(br.getFilePointer() + levelIdx * RecordLen);
-                    if (OPTIONS.sequential) {
-                        br.seek(br.getFilePointer() + 4);
-                    }
-                    br.seek(br.getFilePointer() + latIdx * XNum * 4);
-
-                    if (br.getFilePointer() >= br.length()) {
-                        System.out.println("Erro");
-                    }
-
-                    br.seek(br.getFilePointer() + lonIdx * 4);
-
-                    br.read(aBytes);
-                    aValue = DataConvert.bytes2Float(aBytes, _byteOrder);
-                    aGridData.xArray[t] = DateUtil.toOADate(TDEF.times.get(t));
-                    aGridData.data[0][t] = aValue;
-                }
-
-                br.close();
+            float[] data = readSection(varIdx, 0, TDEF.getTimeNum() - 1, levelIdx, levelIdx,
+                    latIdx, latIdx, lonIdx, lonIdx);
+            for (t = 0; t < TDEF.getTimeNum(); t++) {
+                aGridData.xArray[t] = DateUtil.toOADate(TDEF.times.get(t));
+                aGridData.data[0][t] = data[t];
             }
 
             return aGridData;
-        } catch (IOException ex) {
+        } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(GrADSDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
 
@@ -2121,18 +1827,7 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
     @Override
     public GridData getGridData_Level(int lonIdx, int latIdx, int varIdx, int timeIdx) {
         try {
-            String filePath = DSET;
-            int tIdx = timeIdx;
-            if (OPTIONS.template) {
-                Object[] result = getFilePath_Template(timeIdx);
-                filePath = (String) result[0];
-                tIdx = (int) result[1];
-            }
-
-            RandomAccessFile br = new RandomAccessFile(filePath, "r");
-            int i, lNum;
-            byte[] aBytes = new byte[4];
-            float aValue;
+            int i;
 
             GridData aGridData = new GridData();
             aGridData.missingValue = this.getMissingValue();
@@ -2141,35 +1836,15 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
             aGridData.yArray[0] = 0;
             aGridData.data = new double[1][ZDEF.ZNum];
 
-            br.seek(FILEHEADER + tIdx * RecLenPerTime);
-
-            for (i = 0; i < varIdx; i++) {
-                lNum = VARDEF.getVars().get(i).getLevelNum();
-                if (lNum == 0) {
-                    lNum = 1;
-                }
-                br.seek(br.getFilePointer() + lNum * RecordLen);
-            }
-
-            long aPosition = br.getFilePointer();
-
+            float[] data = readSection(varIdx, timeIdx, timeIdx, 0, ZDEF.ZNum - 1,
+                    latIdx, latIdx, lonIdx, lonIdx);
             for (i = 0; i < ZDEF.ZNum; i++) {
-                br.seek(aPosition + i * RecordLen);
-                if (OPTIONS.sequential) {
-                    br.seek(br.getFilePointer() + 4);
-                }
-                br.seek(br.getFilePointer() + latIdx * XNum * 4 + lonIdx * 4);
-
-                br.read(aBytes);
-                aValue = DataConvert.bytes2Float(aBytes, _byteOrder);
                 aGridData.xArray[i] = ZDEF.ZLevels[i];
-                aGridData.data[0][i] = aValue;
+                aGridData.data[0][i] = data[i];
             }
 
-            br.close();
-
             return aGridData;
-        } catch (IOException ex) {
+        } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(GrADSDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
 
@@ -2179,17 +1854,7 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
     @Override
     public GridData getGridData_Lon(int timeIdx, int latIdx, int varIdx, int levelIdx) {
         try {
-            String filePath = DSET;
-            int tIdx = timeIdx;
-            if (OPTIONS.template) {
-                Object[] result = getFilePath_Template(timeIdx);
-                filePath = (String) result[0];
-                tIdx = (int) result[1];
-            }
-            RandomAccessFile br = new RandomAccessFile(filePath, "r");
-            int i, lNum;
-            byte[] aBytes = new byte[4];
-            float aValue;
+            int i;
 
             GridData aGridData = new GridData();
             aGridData.missingValue = this.getMissingValue();
@@ -2198,30 +1863,14 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
             aGridData.yArray[0] = 0;
             aGridData.data = new double[1][X.length];
 
-            br.seek(FILEHEADER + tIdx * RecLenPerTime);
-            for (i = 0; i < varIdx; i++) {
-                lNum = VARDEF.getVars().get(i).getLevelNum();
-                if (lNum == 0) {
-                    lNum = 1;
-                }
-                br.seek(br.getFilePointer() + lNum * RecordLen);
-            }
-            br.seek(br.getFilePointer() + levelIdx * RecordLen);
-            if (OPTIONS.sequential) {
-                br.seek(br.getFilePointer() + 4);
-            }
-            br.seek(br.getFilePointer() + latIdx * XNum * 4);
-
+            float[] data = readSection(varIdx, timeIdx, timeIdx, levelIdx, levelIdx,
+                    latIdx, latIdx, 0, XNum - 1);
             for (i = 0; i < XNum; i++) {
-                br.read(aBytes);
-                aValue = DataConvert.bytes2Float(aBytes, _byteOrder);
-                aGridData.data[0][i] = aValue;
+                aGridData.data[0][i] = data[i];
             }
 
-            br.close();
-
             return aGridData;
-        } catch (IOException ex) {
+        } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(GrADSDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
 
@@ -2231,17 +1880,7 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
     @Override
     public GridData getGridData_Lat(int timeIdx, int lonIdx, int varIdx, int levelIdx) {
         try {
-            String filePath = DSET;
-            int tIdx = timeIdx;
-            if (OPTIONS.template) {
-                Object[] result = getFilePath_Template(timeIdx);
-                filePath = (String) result[0];
-                tIdx = (int) result[1];
-            }
-            RandomAccessFile br = new RandomAccessFile(filePath, "r");
-            int i, lNum;
-            byte[] aBytes = new byte[4];
-            float aValue;
+            int i;
 
             GridData aGridData = new GridData();
             aGridData.missingValue = this.getMissingValue();
@@ -2250,31 +1889,14 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
             aGridData.yArray[0] = 0;
             aGridData.data = new double[1][Y.length];
 
-            br.seek(FILEHEADER + tIdx * RecLenPerTime);
-            for (i = 0; i < varIdx; i++) {
-                lNum = VARDEF.getVars().get(i).getLevelNum();
-                if (lNum == 0) {
-                    lNum = 1;
-                }
-                br.seek(br.getFilePointer() + lNum * RecordLen);
-            }
-            br.seek(br.getFilePointer() + levelIdx * RecordLen);
-            if (OPTIONS.sequential) {
-                br.seek(br.getFilePointer() + 4);
-            }
-            long aPosition = br.getFilePointer();
-
+            float[] data = readSection(varIdx, timeIdx, timeIdx, levelIdx, levelIdx,
+                    0, YNum - 1, lonIdx, lonIdx);
             for (i = 0; i < YNum; i++) {
-                br.seek(aPosition + i * XNum * 4 + lonIdx * 4);
-                br.read(aBytes);
-                aValue = DataConvert.bytes2Float(aBytes, _byteOrder);
-                aGridData.data[0][i] = aValue;
+                aGridData.data[0][i] = data[i];
             }
 
-            br.close();
-
             return aGridData;
-        } catch (IOException ex) {
+        } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(GrADSDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
 
@@ -2430,8 +2052,13 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
             tIdx = (Integer) result[1];
         }
 
+        long[] timePositions = this.getStationTimePositions(filePath);
+        if (tIdx < 0 || tIdx >= timePositions.length) {
+            return stDataList;
+        }
+
         RandomAccessFile br = new RandomAccessFile(filePath, "r");
-        int i, j, tNum;
+        int i, j;
         STDataHead aSTDH;
         STLevData aSTLevData;
         STData aSTData;
@@ -2442,10 +2069,7 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
         }
         byte[] aBytes;
 
-        tNum = 0;
-        if (OPTIONS.template) {
-            timeIdx = 0;
-        }
+        br.seek(timePositions[tIdx]);
         do {
             aSTDH = new STDataHead();
             aBytes = getByteArray(br, 8);
@@ -2495,26 +2119,80 @@ public class GrADSDataInfo extends DataInfo implements IGridDataInfo, IStationDa
                     }
                 }
 
-                if (tNum == tIdx) {
-                    stDataList.add(aSTData);
-                }
+                stDataList.add(aSTData);
             } else //End of time seriel
             {
-                if (tNum == tIdx) {
-                    break;
-                }
-                tNum += 1;
-                if (br.getFilePointer() + 28 >= br.length()) {
-                    break;
-                }
+                break;
             }
-        } while (true);
+        } while (br.getFilePointer() + 28 <= br.length());
 
         br.close();
 
         return stDataList;
     }
 
+    /**
+     * Get the file positions of the time series of a station data file. The
+     * positions are found by reading the station headers of the file, and are
+     * kept in memory and in the record index file.
+     *
+     * @param filePath Data file path
+     * @return File positions
+     * @throws IOException
+     */
+    private long[] getStationTimePositions(String filePath) throws IOException {
+        synchronized (stationTimePositions) {
+            long[] positions = stationTimePositions.get(filePath);
+            if (positions != null) {
+                return positions;
+            }
+
+            RecordIndex index = RecordIndex.load(filePath);
+            positions = index.get("GrADS.station.times");
+            if (positions == null) {
+                int varNum = VARDEF.getVNum();
+                int uVarNum = this.getUpperVariables().size();
+                if (uVarNum > 0) {
+                    varNum = varNum - uVarNum;
+                }
+                List<Long> posList = new ArrayList<>();
+                RandomAccessFile br = new RandomAccessFile(filePath, "r");
+                long length = br.length();
+                long pos = 0;
+                byte[] aBytes = new byte[4];
+                posList.add(pos);
+                while (pos + 28 <= length) {
+                    br.seek(pos + 20);
+                    br.read(aBytes);
+                    int nLev = DataConvert.bytes2Int(aBytes, _byteOrder);
+                    br.read(aBytes);
+                    int flag = DataConvert.bytes2Int(aBytes, _byteOrder);
+                    pos += 28;
+                    if (nLev > 0) {
+                        if (flag == 1) {
+                            pos += varNum * 4;
+                        }
+                        pos += (long) (nLev - flag) * (uVarNum + 1) * 4;
+                    } else if (pos + 28 < length) {
+                        //End of time seriel
+                        posList.add(pos);
+                    }
+                }
+                br.close();
+
+                positions = new long[posList.size()];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = posList.get(i);
+                }
+                index.put("GrADS.station.times", positions);
+                index.save();
+            }
+            stationTimePositions.put(filePath, positions);
+
+            return positions;
+        }
+    }
+
     /**
      * Get ground station data
      *
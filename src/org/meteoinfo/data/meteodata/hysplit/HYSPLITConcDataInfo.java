@@ -21,9 +21,9 @@ import org.meteoinfo.data.meteodata.DimensionType;
 import org.meteoinfo.data.meteodata.IGridDataInfo;
 import org.meteoinfo.data.meteodata.Variable;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -34,7 +34,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.meteoinfo.data.GridArray;
 import org.meteoinfo.data.meteodata.MeteoDataType;
-import org.meteoinfo.data.meteodata.arl.ARLDataInfo;
 import org.meteoinfo.global.DataConvert;
 import org.meteoinfo.global.util.BigDecimalUtil;
 import org.meteoinfo.global.util.DateUtil;
@@ -56,6 +55,8 @@ public class HYSPLITConcDataInfo extends DataInfo implements IGridDataInfo {
     private int _pack_flag;
     private int _loc_num;
     private ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+    //File position of each time/pollutant/level data record
+    private List<Long> _recPositions = new ArrayList<>();
     // </editor-fold>
     // <editor-fold desc="Constructor">
     /**
@@ -275,6 +276,7 @@ public class HYSPLITConcDataInfo extends DataInfo implements IGridDataInfo {
             //Record Data
             int k, tNum;
             tNum = 0;
+            _recPositions = new ArrayList<>();
             int[] sampleTimes = new int[6];
             String dStr;
             Date aDateTime;
@@ -328,6 +330,7 @@ public class HYSPLITConcDataInfo extends DataInfo implements IGridDataInfo {
                 String aType;
                 for (i = 0; i < pollutant_num; i++) {
                     for (j = 0; j < level_num; j++) {
+                        _recPositions.add(br.getFilePointer());
                         if (_pack_flag == 1) {
                             br.skipBytes(8);
                             br.read(aBytes);
@@ -531,161 +534,8 @@ public class HYSPLITConcDataInfo extends DataInfo implements IGridDataInfo {
     private void readXY(String varName, int timeIdx, int levelIdx, Range yRange, Range xRange, IndexIterator ii) {
         try {
             int varIdx = this.getVariableNames().indexOf(varName);
-            RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r");
-            int i, j, nBytes;
-            byte[] aBytes = new byte[4];
             int xNum = this.getXDimension().getLength();
-            int yNum = this.getYDimension().getLength();
-            double[][] dataArray = new double[xNum][yNum];
-            double[] data = new double[yNum * xNum];
-
-            //Record #1            
-            br.skipBytes(36);
-
-            //Record #2
-            nBytes = (8 * 4 + 8) * _loc_num;
-            br.skipBytes(nBytes);
-
-            //Record #3
-            String fName = new File(this.getFileName()).getName().toLowerCase();
-            if (fName.contains("gemzint")) {
-                br.skipBytes(28);   //For vertical concentration file gemzint
-            } else {
-                br.skipBytes(32);
-            }
-
-            //Record #4
-            nBytes = 12 + this.getZDimension().getLength() * 4;
-            br.skipBytes(nBytes);
-
-            //Record #5
-            nBytes = 12 + this.getVariableNum() * 4;
-            br.skipBytes(nBytes);
-
-            //Record Data
-            int t, k;
-            int aLevel, aN, IP, JP;
-            String aType;
-            double aConc;
-            byte[] bytes;
-            byte[] sbytes = new byte[2];
-            int start = 0;
-            for (t = 0; t < this.getTimeNum(); t++) {
-                br.skipBytes(64);
-
-                for (i = 0; i < this.getVariableNum(); i++) {
-                    for (j = 0; j < this.getZDimension().getLength(); j++) {
-                        if (t == timeIdx && i == varIdx && j == levelIdx) {
-                            if (br.getFilePointer() + 28 > br.length()) {
-                                break;
-                            }
-                            if (_pack_flag == 1) {
-                                br.skipBytes(8);
-                                br.read(aBytes);
-                                aType = new String(aBytes);
-                                //aLevel = br.readInt();
-                                br.read(aBytes);
-                                aLevel = DataConvert.bytes2Int(aBytes, byteOrder);
-                                //aN = br.readInt();
-                                br.read(aBytes);
-                                aN = DataConvert.bytes2Int(aBytes, byteOrder);
-                                bytes = new byte[aN * 8];
-                                br.read(bytes);
-                                start = 0;
-                                for (k = 0; k < aN; k++) {
-//                                    if (br.getFilePointer() + 8 > br.length()) {
-//                                        break;
-//                                    }
-                                    //IP = br.readShort();
-                                    //JP = br.readShort();
-                                    //aConc = br.readFloat();
-                                    System.arraycopy(bytes, start, sbytes, 0, 2);
-                                    IP = DataConvert.bytes2Short(sbytes, byteOrder);
-                                    start += 2;
-                                    System.arraycopy(bytes, start, sbytes, 0, 2);                                    
-                                    JP = DataConvert.bytes2Short(sbytes, byteOrder);
-                                    start += 2;
-                                    System.arraycopy(bytes, start, aBytes, 0, 4);
-                                    aConc = DataConvert.bytes2Float(aBytes, byteOrder);
-                                    start += 4;
-                                    if (IP >= 0 && IP < xNum && JP >= 0 && JP < yNum) {
-                                        dataArray[IP][JP] = aConc;
-                                    }
-                                }
-                            } else {
-                                br.skipBytes(8);
-                                br.read(aBytes);
-                                aType = new String(aBytes);
-                                //aLevel = br.readInt();
-                                br.read(aBytes);
-                                aLevel = DataConvert.bytes2Int(aBytes, byteOrder);
-                                bytes = new byte[yNum * xNum * 4];
-                                br.read(bytes);
-                                start = 0;
-                                for (JP = 0; JP < yNum; JP++) {
-                                    for (IP = 0; IP < xNum; IP++) {
-                                        //aConc = br.readFloat();
-                                        System.arraycopy(bytes, start, aBytes, 0, 4);
-                                        aConc = DataConvert.bytes2Float(aBytes, byteOrder);
-                                        start += 4;
-                                        dataArray[IP][JP] = aConc;
-                                    }
-                                }
-                            }
-                        } else {
-                            if (br.getFilePointer() + 28 > br.length()) {
-                                break;
-                            }
-                            if (_pack_flag == 1) {
-                                br.skipBytes(8);
-                                br.read(aBytes);
-                                aType = new String(aBytes);
-                                //aLevel = br.readInt();
-                                br.read(aBytes);
-                                aLevel = DataConvert.bytes2Int(aBytes, byteOrder);
-                                //aN = br.readInt();
-                                br.read(aBytes);
-                                aN = DataConvert.bytes2Int(aBytes, byteOrder);
-//                                for (k = 0; k < aN; k++) {
-//                                    if (br.getFilePointer() + 8 > br.length()) {
-//                                        break;
-//                                    }
-//                                    IP = br.readShort();
-//                                    JP = br.readShort();
-//                                    br.skipBytes(4);
-//                                }
-                                br.skipBytes(aN * 8);
-                            } else {
-                                br.skipBytes(8);
-                                br.read(aBytes);
-                                aType = new String(aBytes);
-                                //aLevel = br.readInt();
-                                br.read(aBytes);
-                                aLevel = DataConvert.bytes2Int(aBytes, byteOrder);
-//                                for (JP = 0; JP < yNum; JP++) {
-//                                    for (IP = 0; IP < xNum; IP++) {
-//                                        br.skipBytes(4);
-//                                    }
-//                                }
-                                br.skipBytes(yNum * xNum * 4);
-                            }
-                        }
-                    }
-                }
-
-                if (br.getFilePointer() + 10 > br.length()) {
-                    break;
-                }
-            }
-
-            br.close();
-
-            for (i = 0; i < yNum; i++) {
-                for (j = 0; j < xNum; j++) {
-                    data[i * xNum + j] = dataArray[j][i];
-                }
-            }
-            
+            float[] data = this.readGrid(timeIdx, varIdx, levelIdx);
             for (int y = yRange.first(); y <= yRange.last();
                     y += yRange.stride()) {
                 for (int x = xRange.first(); x <= xRange.last();
@@ -694,13 +544,63 @@ public class HYSPLITConcDataInfo extends DataInfo implements IGridDataInfo {
                     ii.setDoubleNext(data[index]);
                 }
             }
-        } catch (FileNotFoundException ex) {
-            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         } catch (IOException ex) {
-            Logger.getLogger(ARLDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            Logger.getLogger(HYSPLITConcDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
-    
+
+    /**
+     * Read the grid of a data record. The record is found by the file
+     * position indexed in readDataInfo and read with one call.
+     *
+     * @param timeIdx Time index
+     * @param varIdx Variable index
+     * @param levelIdx Level index
+     * @return Grid data, y by x
+     * @throws IOException
+     */
+    private float[] readGrid(int timeIdx, int varIdx, int levelIdx) throws IOException {
+        int xNum = this.getXDimension().getLength();
+        int yNum = this.getYDimension().getLength();
+        float[] data = new float[yNum * xNum];
+        int recIdx = (timeIdx * this.getVariableNum() + varIdx) * this.getZDimension().getLength() + levelIdx;
+        if (recIdx >= _recPositions.size()) {
+            return data;
+        }
+
+        try (RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r")) {
+            long pos = _recPositions.get(recIdx);
+            if (pos + 28 > br.length()) {
+                return data;
+            }
+            //Skip record marks, pollutant type and level
+            br.seek(pos + 16);
+            byte[] bytes;
+            if (_pack_flag == 1) {
+                bytes = new byte[4];
+                br.readFully(bytes);
+                int aN = ByteBuffer.wrap(bytes).order(byteOrder).getInt();
+                aN = (int) Math.min(aN, (br.length() - br.getFilePointer()) / 8);
+                bytes = new byte[aN * 8];
+                br.readFully(bytes);
+                ByteBuffer buf = ByteBuffer.wrap(bytes).order(byteOrder);
+                for (int k = 0; k < aN; k++) {
+                    int IP = buf.getShort(k * 8);
+                    int JP = buf.getShort(k * 8 + 2);
+                    if (IP >= 0 && IP < xNum && JP >= 0 && JP < yNum) {
+                        data[JP * xNum + IP] = buf.getFloat(k * 8 + 4);
+                    }
+                }
+            } else {
+                bytes = new byte[yNum * xNum * 4];
+                br.readFully(bytes);
+                ByteBuffer.wrap(bytes).order(byteOrder).asFloatBuffer().get(data);
+            }
+        }
+
+        return data;
+    }
+
     /**
      * Get grid data
      *
@@ -715,136 +615,25 @@ public class HYSPLITConcDataInfo extends DataInfo implements IGridDataInfo {
     @Override
     public GridData getGridData_LonLat(int timeIdx, int varIdx, int levelIdx) {
         try {
-            RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r");
-            int i, j, nBytes;
-            byte[] aBytes = new byte[4];
             int xNum = this.getXDimension().getLength();
             int yNum = this.getYDimension().getLength();
-            double[][] dataArray = new double[xNum][yNum];
+            float[] data = this.readGrid(timeIdx, varIdx, levelIdx);
             double[][] newDataArray = new double[yNum][xNum];
-
-            //Record #1            
-            br.skipBytes(36);
-
-            //Record #2
-            nBytes = (8 * 4 + 8) * _loc_num;
-            br.skipBytes(nBytes);
-
-            //Record #3
-            String fName = new File(this.getFileName()).getName().toLowerCase();
-            if (fName.contains("gemzint")) {
-                br.skipBytes(28);   //For vertical concentration file gemzint
-            } else {
-                br.skipBytes(32);
-            }
-
-            //Record #4
-            nBytes = 12 + this.getZDimension().getLength() * 4;
-            br.skipBytes(nBytes);
-
-            //Record #5
-            nBytes = 12 + this.getVariableNum() * 4;
-            br.skipBytes(nBytes);
-
-            //Record Data
-            int t, k;
-            int aLevel, aN, IP, JP;
-            String aType;
-            double aConc;
-            for (t = 0; t < this.getTimeNum(); t++) {
-                br.skipBytes(64);
-
-                for (i = 0; i < this.getVariableNum(); i++) {
-                    for (j = 0; j < this.getZDimension().getLength(); j++) {
-                        if (t == timeIdx && i == varIdx && j == levelIdx) {
-                            if (br.getFilePointer() + 28 > br.length()) {
-                                break;
-                            }
-                            if (_pack_flag == 1) {
-                                br.skipBytes(8);
-                                br.read(aBytes);
-                                aType = new String(aBytes);
-                                aLevel = br.readInt();
-                                aN = br.readInt();
-                                for (k = 0; k < aN; k++) {
-                                    if (br.getFilePointer() + 8 > br.length()) {
-                                        break;
-                                    }
-                                    IP = br.readShort();
-                                    JP = br.readShort();
-                                    aConc = br.readFloat();
-                                    if (IP >= 0 && IP < xNum && JP >= 0 && JP < yNum) {
-                                        dataArray[IP][JP] = aConc;
-                                    }
-                                }
-                            } else {
-                                br.skipBytes(8);
-                                br.read(aBytes);
-                                aType = new String(aBytes);
-                                aLevel = br.readInt();
-                                for (JP = 0; JP < yNum; JP++) {
-                                    for (IP = 0; IP < xNum; IP++) {
-                                        aConc = br.readFloat();
-                                        dataArray[IP][JP] = aConc;
-                                    }
-                                }
-                            }
-                        } else {
-                            if (br.getFilePointer() + 28 > br.length()) {
-                                break;
-                            }
-                            if (_pack_flag == 1) {
-                                br.skipBytes(8);
-                                br.read(aBytes);
-                                aType = new String(aBytes);
-                                aLevel = br.readInt();
-                                aN = br.readInt();
-                                for (k = 0; k < aN; k++) {
-                                    if (br.getFilePointer() + 8 > br.length()) {
-                                        break;
-                                    }
-                                    IP = br.readShort();
-                                    JP = br.readShort();
-                                    br.skipBytes(4);
-                                }
-                            } else {
-                                br.skipBytes(8);
-                                br.read(aBytes);
-                                aType = new String(aBytes);
-                                aLevel = br.readInt();
-                                for (JP = 0; JP < yNum; JP++) {
-                                    for (IP = 0; IP < xNum; IP++) {
-                                        br.skipBytes(4);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-
-                if (br.getFilePointer() + 10 > br.length()) {
-                    break;
-                }
-            }
-
-            br.close();
-
-            double[] newX = this.getXDimension().getValues();
-            for (i = 0; i < xNum; i++) {
-                for (j = 0; j < yNum; j++) {
-                    newDataArray[j][i] = dataArray[i][j];
+            for (int i = 0; i < yNum; i++) {
+                for (int j = 0; j < xNum; j++) {
+                    newDataArray[i][j] = data[i * xNum + j];
                 }
             }
 
             GridData gridData = new GridData();
             gridData.data = newDataArray;
-            gridData.xArray = newX;
+            gridData.xArray = this.getXDimension().getValues();
             gridData.yArray = this.getYDimension().getValues();
             gridData.missingValue = this.getMissingValue();
 
             return gridData;
         } catch (IOException ex) {
-            Logger.getLogger(ASCIIGridDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            Logger.getLogger(HYSPLITConcDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         }
     }
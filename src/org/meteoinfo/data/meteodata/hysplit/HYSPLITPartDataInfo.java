@@ -24,17 +24,23 @@ import org.meteoinfo.data.meteodata.Variable;
 import org.meteoinfo.global.Extent;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.meteoinfo.data.meteodata.MappedFile;
 import org.meteoinfo.data.meteodata.MeteoDataType;
 import org.meteoinfo.global.util.DateUtil;
 import ucar.ma2.Array;
+import ucar.ma2.DataType;
 import ucar.nc2.Attribute;
 
 /**
@@ -45,6 +51,10 @@ public class HYSPLITPartDataInfo extends DataInfo implements IStationDataInfo {
 
     // <editor-fold desc="Variables">
     private List<List<Integer>> _parameters = new ArrayList<List<Integer>>();
+    //File position of each time
+    private List<Long> _positions = new ArrayList<>();
+    //Maximum bytes read at one time
+    private static final int BLOCK_SIZE = 1 << 20;
     // </editor-fold>
     // <editor-fold desc="Constructor">
     /**
@@ -66,17 +76,22 @@ public class HYSPLITPartDataInfo extends DataInfo implements IStationDataInfo {
             int year, month, day, hour;
             List<Date> times = new ArrayList<Date>();
             _parameters = new ArrayList<List<Integer>>();
+            _positions = new ArrayList<>();
+            byte[] head = new byte[28];
+            ByteBuffer hb = ByteBuffer.wrap(head).order(ByteOrder.BIG_ENDIAN);
 
-            while (br.getFilePointer() < br.length() - 28) {
+            long length = br.length();
+            long pos = 0;
+            while (pos < length - 28) {
                 //Read head
-                int pos = (int) br.getFilePointer();
-                br.skipBytes(4);
-                int particleNum = br.readInt();
-                int pollutantNum = br.readInt();
-                year = br.readInt();
-                month = br.readInt();
-                day = br.readInt();
-                hour = br.readInt();                
+                br.seek(pos);
+                br.readFully(head);
+                int particleNum = hb.getInt(4);
+                int pollutantNum = hb.getInt(8);
+                year = hb.getInt(12);
+                month = hb.getInt(16);
+                day = hb.getInt(20);
+                hour = hb.getInt(24);
                 if (year < 50) {
                     year = 2000 + year;
                 } else {
@@ -87,12 +102,12 @@ public class HYSPLITPartDataInfo extends DataInfo implements IStationDataInfo {
                 List<Integer> data = new ArrayList<Integer>();
                 data.add(particleNum);
                 data.add(pollutantNum);
-                data.add(pos);
                 _parameters.add(data);
+                _positions.add(pos);
 
                 //Skip data
-                int len = (8 + pollutantNum * 4 + 60) * particleNum + 4;
-                br.skipBytes(len);
+                long len = (long) (8 + pollutantNum * 4 + 60) * particleNum + 4;
+                pos += 28 + len;
             }
 
             br.close();
@@ -166,60 +181,116 @@ public class HYSPLITPartDataInfo extends DataInfo implements IStationDataInfo {
         return null;
     }
 
+    /**
+     * Decode the particles of a time. Blocks of particle records are read at
+     * once and the values are taken from the bytes in the buffer.
+     *
+     * @param timeIdx Time index
+     * @param lon Longitude array
+     * @param lat Latitude array
+     * @param height Height array
+     * @param mass Mass array of particle number * pollutant number, may be
+     * null
+     * @throws IOException
+     */
+    private void readParticles(int timeIdx, float[] lon, float[] lat, float[] height, float[] mass)
+            throws IOException {
+        int particleNum = _parameters.get(timeIdx).get(0);
+        int pollutantNum = _parameters.get(timeIdx).get(1);
+        long pos = _positions.get(timeIdx) + 28;
+        int recLen = 8 + pollutantNum * 4 + 60;
+        int locOffset = 8 + pollutantNum * 4 + 8;
+        int blockNum = Math.max(1, BLOCK_SIZE / recLen);
+        byte[] bytes = new byte[Math.min(blockNum, Math.max(1, particleNum)) * recLen];
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
+        try (MappedFile mf = new MappedFile(this.getFileName())) {
+            for (int i = 0; i < particleNum; i += blockNum) {
+                int n = Math.min(blockNum, particleNum - i);
+                mf.readBytes(pos + (long) i * recLen, bytes, 0, n * recLen);
+                for (int j = 0; j < n; j++) {
+                    int p = j * recLen;
+                    if (mass != null) {
+                        for (int k = 0; k < pollutantNum; k++) {
+                            mass[(i + j) * pollutantNum + k] = buf.getFloat(p + 8 + k * 4);
+                        }
+                    }
+                    p += locOffset;
+                    lat[i + j] = buf.getFloat(p);
+                    lon[i + j] = buf.getFloat(p + 4);
+                    height[i + j] = buf.getFloat(p + 8);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get particle data of a time as column arrays: "lon", "lat" and
+     * "height" arrays of particle number, and "mass" array of particle number
+     * * pollutant number.
+     *
+     * @param timeIdx Time index
+     * @return Column arrays by name
+     */
+    public Map<String, Array> getParticleArrays(int timeIdx) {
+        try {
+            int particleNum = _parameters.get(timeIdx).get(0);
+            int pollutantNum = _parameters.get(timeIdx).get(1);
+            float[] lon = new float[particleNum];
+            float[] lat = new float[particleNum];
+            float[] height = new float[particleNum];
+            float[] mass = new float[particleNum * pollutantNum];
+            this.readParticles(timeIdx, lon, lat, height, mass);
+
+            Map<String, Array> arrays = new LinkedHashMap<>();
+            arrays.put("lon", Array.factory(DataType.FLOAT, new int[]{particleNum}, lon));
+            arrays.put("lat", Array.factory(DataType.FLOAT, new int[]{particleNum}, lat));
+            arrays.put("height", Array.factory(DataType.FLOAT, new int[]{particleNum}, height));
+            arrays.put("mass", Array.factory(DataType.FLOAT, new int[]{particleNum, pollutantNum}, mass));
+            return arrays;
+        } catch (IOException ex) {
+            Logger.getLogger(HYSPLITPartDataInfo.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+    }
+
     @Override
     public StationData getStationData(int timeIdx, int varIdx, int levelIdx) {
         try {
             StationData stationData = new StationData();
-            List<String> stations = new ArrayList<String>();
             int particleNum = _parameters.get(timeIdx).get(0);
-            int pollutantNum = _parameters.get(timeIdx).get(1);
-            int pos = _parameters.get(timeIdx).get(2);
-            double[][] discreteData = new double[particleNum][3];
+            float[] lon = new float[particleNum];
+            float[] lat = new float[particleNum];
+            float[] alt = new float[particleNum];
+            this.readParticles(timeIdx, lon, lat, alt, null);
 
-            RandomAccessFile br = new RandomAccessFile(this.getFileName(), "r");
-            byte[] aBytes;
-            int i, j;
-            float lon, lat, alt;
+            List<String> stations = new ArrayList<String>(particleNum);
+            double[][] discreteData = new double[particleNum][3];
             float minX, maxX, minY, maxY;
             minX = 0;
             maxX = 0;
             minY = 0;
             maxY = 0;
-
-            br.seek(pos);
-            br.skipBytes(28);
-            for (i = 0; i < particleNum; i++) {
-                br.skipBytes(8);
-                for (j = 0; j < pollutantNum; j++) {
-                    br.skipBytes(4);
-                }
-                br.skipBytes(8);
-                lat = br.readFloat();
-                lon = br.readFloat();
-                alt = br.readFloat();
-
-                discreteData[i][0] = lon;
-                discreteData[i][1] = lat;
-                discreteData[i][2] = alt;
+            for (int i = 0; i < particleNum; i++) {
+                discreteData[i][0] = lon[i];
+                discreteData[i][1] = lat[i];
+                discreteData[i][2] = alt[i];
                 stations.add("P" + String.valueOf(i + 1));
 
-                br.skipBytes(40);
-
                 if (i == 0) {
-                    minX = lon;
+                    minX = lon[i];
                     maxX = minX;
-                    minY = lat;
+                    minY = lat[i];
                     maxY = minY;
                 } else {
-                    if (minX > lon) {
-                        minX = lon;
-                    } else if (maxX < lon) {
-                        maxX = lon;
+                    if (minX > lon[i]) {
+                        minX = lon[i];
+                    } else if (maxX < lon[i]) {
+                        maxX = lon[i];
                     }
-                    if (minY > lat) {
-                        minY = lat;
-                    } else if (maxY < lat) {
-                        maxY = lat;
+                    if (minY > lat[i]) {
+                        minY = lat[i];
+                    } else if (maxY < lat[i]) {
+                        maxY = lat[i];
                     }
                 }
             }
@@ -229,8 +300,6 @@ public class HYSPLITPartDataInfo extends DataInfo implements IStationDataInfo {
             dataExtent.minY = minY;
             dataExtent.maxY = maxY;
 
-            br.close();
-
             stationData.data = discreteData;
             stationData.dataExtent = dataExtent;
             stationData.stations = stations;
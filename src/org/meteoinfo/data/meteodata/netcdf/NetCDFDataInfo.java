@@ -34,13 +34,14 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.swing.JOptionPane;
 import org.meteoinfo.data.ArrayMath;
 import org.meteoinfo.data.GridArray;
 import org.meteoinfo.data.meteodata.MeteoDataType;
 import org.meteoinfo.global.util.DateUtil;
+import org.meteoinfo.global.util.ParallelUtil;
 import org.meteoinfo.projection.KnownCoordinateSystems;
 import org.meteoinfo.projection.ProjectionInfo;
 import org.meteoinfo.projection.Reproject;
@@ -68,6 +69,13 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
     private Conventions _convention = Conventions.CF;
     private NetcdfFile ncfile = null;
     private boolean keepOpen = false;
+    //The file handle is not thread safe, the reads are done one at a time
+    private final ReentrantLock fileLock = new ReentrantLock();
+    //Number of nested reads using the file handle
+    private int fileUsers = 0;
+    private boolean unpackFloat = false;
+    //Minimum data size in bytes to read in parallel
+    private static final long PARALLEL_READ_SIZE = 16L << 20;
     private List<ucar.nc2.Variable> _variables = new ArrayList<>();
     private List<ucar.nc2.Dimension> _dimensions = new ArrayList<>();
     private List<Dimension> _miDims = new ArrayList<>();
@@ -100,6 +108,24 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
         return this.ncfile;
     }
 
+    /**
+     * Get if packed data is unpacked to float array, otherwise to double array
+     *
+     * @return Boolean
+     */
+    public boolean isUnpackFloat() {
+        return this.unpackFloat;
+    }
+
+    /**
+     * Set if packed data is unpacked to float array
+     *
+     * @param value Boolean
+     */
+    public void setUnpackFloat(boolean value) {
+        this.unpackFloat = value;
+    }
+
     /**
      * Get MeteoInfo dimensions
      *
@@ -176,8 +202,7 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
     public void readDataInfo(String fileName) {
         this.setFileName(fileName);
         try {
-            //ncfile = NetcdfFile.open(fileName);
-            ncfile = NetcdfDataset.openFile(fileName, null);
+            ncfile = NetCDFFilePool.acquire(fileName);
             readDataInfo();
         } catch (IOException ex) {
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
@@ -324,12 +349,8 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         } finally {
             if (null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
+                NetCDFFilePool.release(ncfile);
+                ncfile = null;
             }
         }
     }
@@ -338,8 +359,12 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
     public void readDataInfo(String fileName, boolean keepOpen) {
         this.setFileName(fileName);
         try {
-            //ncfile = NetcdfFile.open(fileName);
-            ncfile = NetcdfDataset.openFile(fileName, null);
+            //A file kept open is not shared with the file pool
+            if (keepOpen) {
+                ncfile = NetcdfDataset.openFile(fileName, null);
+            } else {
+                ncfile = NetCDFFilePool.acquire(fileName);
+            }
             _fileTypeStr = ncfile.getFileTypeDescription();
             _fileTypeId = ncfile.getFileTypeId();
 //            if (_fileTypeId.equals("GRIB2")){
@@ -456,18 +481,55 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
         } finally {
             this.keepOpen = keepOpen;
-            if (!keepOpen) {
-                if (null != ncfile) {
-                    try {
-                        ncfile.close();
-                        ncfile = null;
-                    } catch (IOException ex) {
-                        Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                }
+            this.releaseFile();
+        }
+    }
+
+    /**
+     * Open the data file if it is not open. The file handle is taken from the
+     * netCDF file pool. The file is locked for the current thread until it is
+     * released, so each open must be followed by a release.
+     *
+     * @throws IOException
+     */
+    private void openFile() throws IOException {
+        fileLock.lock();
+        fileUsers += 1;
+        if (ncfile == null) {
+            ncfile = NetCDFFilePool.acquire(this.getFileName());
+        }
+    }
+
+    /**
+     * Give the data file back to the netCDF file pool unless it is kept open
+     */
+    private void releaseFile() {
+        if (!fileLock.isHeldByCurrentThread()) {
+            if (!this.keepOpen && null != ncfile) {
+                NetCDFFilePool.release(ncfile);
+                ncfile = null;
             }
+            return;
+        }
+        try {
+            fileUsers -= 1;
+            if (!this.keepOpen && fileUsers == 0 && null != ncfile) {
+                NetCDFFilePool.release(ncfile);
+                ncfile = null;
+            }
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Close the data file
+     */
+    public void close() {
+        if (null != ncfile) {
+            NetCDFFilePool.release(ncfile);
+            ncfile = null;
         }
-        this.keepOpen = true;
     }
 
     private int getDimensionIndex(ucar.nc2.Dimension dim) {
@@ -561,7 +623,7 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
         }
     }
 
-    private Conventions getConvention() {
+    Conventions getConvention() {
         Conventions convention = _convention;
         boolean isIOAPI = false;
         boolean isWRFOUT = false;
@@ -1424,17 +1486,17 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
         int yNum = yDim.getLength();
 
         //List<String> varNameList = this.getVariableNames();
-        _yVar = ncfile.findVariable("XLAT");
+        _yVar = NetCDFFilePool.findVariable(ncfile, "XLAT");
         if (_yVar == null) {
-            _yVar = ncfile.findVariable("XLAT_M");
+            _yVar = NetCDFFilePool.findVariable(ncfile, "XLAT_M");
         }
 
-        _xVar = ncfile.findVariable("XLONG");
+        _xVar = NetCDFFilePool.findVariable(ncfile, "XLONG");
         if (_xVar == null) {
-            _xVar = ncfile.findVariable("XLONG_M");
+            _xVar = NetCDFFilePool.findVariable(ncfile, "XLONG_M");
         }
 
-        _levelVar = ncfile.findVariable("ZNU");
+        _levelVar = NetCDFFilePool.findVariable(ncfile, "ZNU");
 
         //Get X/Y Array
         double dx = Double.parseDouble(getGlobalAttStr("DX"));
@@ -1516,7 +1578,7 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
         }
         if (zDim != null) {
             int lNum = zDim.getLength();
-            ucar.nc2.Variable levelVar = ncfile.findVariable("ZNW");
+            ucar.nc2.Variable levelVar = NetCDFFilePool.findVariable(ncfile, "ZNW");
             if (levelVar != null) {
                 dimLen = lNum;
                 Array larray = levelVar.read().reduce();
@@ -1538,7 +1600,7 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
         zDim = this.findDimension("soil_layers_stag");
         if (zDim != null) {
             int lNum = zDim.getLength();
-            ucar.nc2.Variable levelVar = ncfile.findVariable("ZS");
+            ucar.nc2.Variable levelVar = NetCDFFilePool.findVariable(ncfile, "ZS");
             if (levelVar != null) {
                 dimLen = lNum;
                 Array larray = levelVar.read().reduce();
@@ -2007,6 +2069,29 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
         return tVarIdx;
     }
 
+    /**
+     * Unpack read data of a variable if it has scale_factor or add_offset
+     * attributes. The fill values are set to NaN.
+     *
+     * @param var The variable
+     * @param data Read data
+     * @return Unpacked data
+     */
+    Array unpack(ucar.nc2.Variable var, Array data) {
+        double[] packData = this.getPackData(var);
+        double add_offset = packData[0];
+        double scale_factor = packData[1];
+        if (add_offset == 0 && scale_factor == 1) {
+            return data;
+        }
+
+        Double fillValue = null;
+        if (var.findAttribute("_FillValue") != null || var.findAttribute("missing_value") != null) {
+            fillValue = packData[2];
+        }
+        return ArrayMath.unpack(data, scale_factor, add_offset, fillValue, this.unpackFloat);
+    }
+
     private double[] getPackData(ucar.nc2.Variable var) {
         double add_offset, scale_factor, missingValue = this.getMissingValue();
         add_offset = 0;
@@ -2055,15 +2140,13 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
     @Override
     public GridData getGridData_LonLat(int timeIdx, int varIdx, int levelIdx) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfDataset.openFile(this.getFileName(), null);
-            }
+            this.openFile();
 
             int i, j;
             //int tVarIdx = this.getTrueVarIndex(varIdx);
             int tVarIdx = varIdx;
             //ucar.nc2.Variable var = _variables.get(tVarIdx);
-            //var = ncfile.findVariable(var.getShortName());
+            //var = NetCDFFilePool.findVariable(ncfile, var.getShortName());
             ucar.nc2.Variable var = ncfile.getVariables().get(tVarIdx);
 
             //Get pack info
@@ -2166,29 +2249,20 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
     @Override
     public GridData getGridData_TimeLat(int lonIdx, int varIdx, int levelIdx) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfDataset.openFile(this.getFileName(), null);
-            }
+            this.openFile();
 
             int i, j;
             //int tVarIdx = this.getTrueVarIndex(varIdx);
             int tVarIdx = varIdx;
             ucar.nc2.Variable var = _variables.get(tVarIdx);
-            var = ncfile.findVariable(var.getShortName());
+            var = NetCDFFilePool.findVariable(ncfile, var.getShortName());
 
             //Get pack info            
             double add_offset, scale_factor, missingValue;
@@ -2261,28 +2335,20 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (null != ncfile) {
-                try {
-                    ncfile.close();
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
     @Override
     public GridData getGridData_TimeLon(int latIdx, int varIdx, int levelIdx) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfDataset.openFile(this.getFileName(), null);
-            }
+            this.openFile();
 
             int i, j;
             //int tVarIdx = this.getTrueVarIndex(varIdx);
             int tVarIdx = varIdx;
             ucar.nc2.Variable var = _variables.get(tVarIdx);
-            var = ncfile.findVariable(var.getShortName());
+            var = NetCDFFilePool.findVariable(ncfile, var.getShortName());
 
             //Get pack info            
             double add_offset, scale_factor, missingValue;
@@ -2351,29 +2417,20 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
     @Override
     public GridData getGridData_LevelLat(int lonIdx, int varIdx, int timeIdx) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfDataset.openFile(this.getFileName(), null);
-            }
+            this.openFile();
 
             int i, j;
             //int tVarIdx = this.getTrueVarIndex(varIdx);
             int tVarIdx = varIdx;
             ucar.nc2.Variable var = _variables.get(tVarIdx);
-            var = ncfile.findVariable(var.getShortName());
+            var = NetCDFFilePool.findVariable(ncfile, var.getShortName());
 
             //Get pack info            
             double add_offset, scale_factor, missingValue;
@@ -2447,29 +2504,20 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
     @Override
     public GridData getGridData_LevelLon(int latIdx, int varIdx, int timeIdx) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfDataset.openFile(this.getFileName(), null);
-            }
+            this.openFile();
 
             int i, j;
             //int tVarIdx = this.getTrueVarIndex(varIdx);
             int tVarIdx = varIdx;
             ucar.nc2.Variable var = _variables.get(tVarIdx);
-            var = ncfile.findVariable(var.getShortName());
+            var = NetCDFFilePool.findVariable(ncfile, var.getShortName());
 
             //Get pack info            
             double add_offset, scale_factor, missingValue;
@@ -2538,29 +2586,20 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
     @Override
     public GridData getGridData_LevelTime(int latIdx, int varIdx, int lonIdx) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfDataset.openFile(this.getFileName(), null);
-            }
+            this.openFile();
 
             int i, j;
             //int tVarIdx = this.getTrueVarIndex(varIdx);
             int tVarIdx = varIdx;
             ucar.nc2.Variable var = _variables.get(tVarIdx);
-            var = ncfile.findVariable(var.getShortName());
+            var = NetCDFFilePool.findVariable(ncfile, var.getShortName());
 
             //Get pack info            
             double add_offset, scale_factor, missingValue;
@@ -2634,29 +2673,20 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
     @Override
     public GridData getGridData_Time(int lonIdx, int latIdx, int varIdx, int levelIdx) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfDataset.openFile(this.getFileName(), null);
-            }
+            this.openFile();
 
             int i;
             //int tVarIdx = this.getTrueVarIndex(varIdx);
             int tVarIdx = varIdx;
             ucar.nc2.Variable var = _variables.get(tVarIdx);
-            var = ncfile.findVariable(var.getShortName());
+            var = NetCDFFilePool.findVariable(ncfile, var.getShortName());
 
             //Get pack info            
             double add_offset, scale_factor, missingValue;
@@ -2721,29 +2751,20 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
     @Override
     public GridData getGridData_Level(int lonIdx, int latIdx, int varIdx, int timeIdx) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfDataset.openFile(this.getFileName(), null);
-            }
+            this.openFile();
 
             int i;
             //int tVarIdx = this.getTrueVarIndex(varIdx);
             int tVarIdx = varIdx;
             ucar.nc2.Variable var = _variables.get(tVarIdx);
-            var = ncfile.findVariable(var.getShortName());
+            var = NetCDFFilePool.findVariable(ncfile, var.getShortName());
 
             //Get pack info            
             double add_offset, scale_factor, missingValue;
@@ -2808,29 +2829,20 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
     @Override
     public GridData getGridData_Lon(int timeIdx, int latIdx, int varIdx, int levelIdx) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfDataset.openFile(this.getFileName(), null);
-            }
+            this.openFile();
 
             int i;
             //int tVarIdx = this.getTrueVarIndex(varIdx);
             int tVarIdx = varIdx;
             ucar.nc2.Variable var = _variables.get(tVarIdx);
-            var = ncfile.findVariable(var.getShortName());
+            var = NetCDFFilePool.findVariable(ncfile, var.getShortName());
 
             //Get pack info            
             double add_offset, scale_factor, missingValue;
@@ -2895,29 +2907,20 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
     @Override
     public GridData getGridData_Lat(int timeIdx, int lonIdx, int varIdx, int levelIdx) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfDataset.openFile(this.getFileName(), null);
-            }
+            this.openFile();
 
             int i;
             //int tVarIdx = this.getTrueVarIndex(varIdx);
             int tVarIdx = varIdx;
             ucar.nc2.Variable var = _variables.get(tVarIdx);
-            var = ncfile.findVariable(var.getShortName());
+            var = NetCDFFilePool.findVariable(ncfile, var.getShortName());
 
             //Get pack info            
             double add_offset, scale_factor, missingValue;
@@ -2982,32 +2985,23 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
     @Override
     public StationData getStationData(int timeIdx, int varIdx, int levelIdx) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfFile.open(this.getFileName());
-            }
+            this.openFile();
 
             int i;
             int tVarIdx = varIdx;
             ucar.nc2.Variable var = ncfile.getVariables().get(tVarIdx);
 
             //Get long/lat data
-            //ucar.nc2.Variable lonvar = ncfile.findVariable("Longitude");
+            //ucar.nc2.Variable lonvar = NetCDFFilePool.findVariable(ncfile, "Longitude");
             ucar.nc2.Variable lonvar = this.findNCVariable("Longitude");
-            //ucar.nc2.Variable latvar = ncfile.findVariable("Latitude");
+            //ucar.nc2.Variable latvar = NetCDFFilePool.findVariable(ncfile, "Latitude");
             ucar.nc2.Variable latvar = this.findNCVariable("Latitude");
             lonvar = ncfile.getVariables().get(this._variables.indexOf(lonvar));
             latvar = ncfile.getVariables().get(this._variables.indexOf(latvar));
@@ -3117,14 +3111,7 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
@@ -3147,10 +3134,8 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
     @Override
     public Array read(String varName) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfFile.open(this.getFileName());
-            }
-            ucar.nc2.Variable var = ncfile.findVariable(varName);
+            this.openFile();
+            ucar.nc2.Variable var = NetCDFFilePool.findVariable(ncfile, varName);
 
             Array data = var.read();
 
@@ -3159,14 +3144,7 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
@@ -3181,20 +3159,27 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
      */
     @Override
     public Array read(String varName, int[] origin, int[] size, int[] stride) {
+        return read(varName, origin, size, stride, null);
+    }
+
+    /**
+     * Read array data of the variable. Large sections are read in parallel by
+     * chunks with NetCDFReadPlanner, the listener is notified after each
+     * chunk is read. The chunks of a file kept open are read serially through
+     * its open handle.
+     *
+     * @param varName Variable name
+     * @param origin The origin array
+     * @param size The size array
+     * @param stride The stride array
+     * @param listener Read listener, may be null
+     * @return Array data, null if the reading is cancelled
+     */
+    public Array read(String varName, int[] origin, int[] size, int[] stride,
+            NetCDFReadPlanner.ReadListener listener) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfDataset.openFile(this.getFileName(), null);
-            }
-            ucar.nc2.Variable var = ncfile.findVariable(varName);
-            if (var == null) {
-                List<ucar.nc2.Variable> vars = ncfile.getVariables();
-                for (ucar.nc2.Variable v : vars) {
-                    if (v.getShortName().equals(varName)) {
-                        var = v;
-                        break;
-                    }
-                }
-            }
+            this.openFile();
+            ucar.nc2.Variable var = NetCDFFilePool.findVariable(ncfile, varName);
 
             if (var == null) {
                 System.out.println("Variable not exist: " + varName);
@@ -3228,33 +3213,30 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
                 MAMath.copy(data, r);
             } else {
                 Section section = new Section(origin, size, stride);
-                data = var.read(section);
+                boolean planned = listener != null || (!this.keepOpen
+                        && ParallelUtil.getThreadNum() > 1
+                        && section.computeSize() * var.getElementSize() >= PARALLEL_READ_SIZE);
+                if (planned) {
+                    NetCDFReadPlanner planner = this.keepOpen ? new NetCDFReadPlanner(ncfile, varName)
+                            : new NetCDFReadPlanner(this.getFileName(), varName);
+                    data = planner.read(section, listener);
+                    if (data == null) {
+                        return null;
+                    }
+                } else {
+                    data = var.read(section);
+                }
             }
 
-            //Get pack info
-            double add_offset, scale_factor, missingValue;
-            double[] packData = this.getPackData(var);
-            add_offset = packData[0];
-            scale_factor = packData[1];
-            missingValue = packData[2];
-            if (add_offset != 0 || scale_factor != 1) {
-                //ArrayMath.fill_value = missingValue;
-                data = ArrayMath.add(ArrayMath.mul(data, scale_factor), add_offset);
-            }
+            //Unpack data
+            data = this.unpack(var, data);
 
             return data;
         } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
@@ -3268,10 +3250,8 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
      */
     public Array read(String varName, int[] origin, int[] size) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfFile.open(this.getFileName());
-            }
-            ucar.nc2.Variable var = ncfile.findVariable(varName);
+            this.openFile();
+            ucar.nc2.Variable var = NetCDFFilePool.findVariable(ncfile, varName);
 
             Section section = new Section(origin, size);
             Array data = var.read(section);
@@ -3281,14 +3261,7 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
@@ -3302,47 +3275,28 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
      */
     public Array read_pack(String varName, int[] origin, int[] size) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfFile.open(this.getFileName());
-            }
-            ucar.nc2.Variable var = ncfile.findVariable(varName);
+            this.openFile();
+            ucar.nc2.Variable var = NetCDFFilePool.findVariable(ncfile, varName);
 
             Section section = new Section(origin, size);
             Array data = var.read(section);
 
-            //Get pack info
-            double add_offset, scale_factor, missingValue;
-            double[] packData = this.getPackData(var);
-            add_offset = packData[0];
-            scale_factor = packData[1];
-            missingValue = packData[2];
-            if (add_offset != 0 || scale_factor != 1) {
-                //ArrayMath.fill_value = missingValue;
-                data = ArrayMath.add(ArrayMath.mul(data, scale_factor), add_offset);
-            }
+            //Unpack data
+            data = this.unpack(var, data);
 
             return data;
         } catch (IOException | InvalidRangeException ex) {
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
     public Array read(String varName, String key) {
         try {
-            if (ncfile == null) {
-                ncfile = NetcdfFile.open(this.getFileName());
-            }
-            ucar.nc2.Variable var = ncfile.findVariable(varName);
+            this.openFile();
+            ucar.nc2.Variable var = NetCDFFilePool.findVariable(ncfile, varName);
 
             Array data = var.read(key);
 
@@ -3351,14 +3305,7 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
             Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
             return null;
         } finally {
-            if (!this.keepOpen && null != ncfile) {
-                try {
-                    ncfile.close();
-                    ncfile = null;
-                } catch (IOException ex) {
-                    Logger.getLogger(NetCDFDataInfo.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+            this.releaseFile();
         }
     }
 
@@ -3487,8 +3434,7 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
         //Check number of selected files
         int fNum = inFiles.size();
         if (fNum < 2) {
-            JOptionPane.showMessageDialog(null, "There should be at least two files!", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
+            throw new IllegalArgumentException("There should be at least two files!");
         }
 
         //Check top two files to decide joining time or variables
@@ -3504,8 +3450,7 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
         //If can be joined
         int dataJoinType = getDataJoinType(aDataInfo, bDataInfo, tDimName);
         if (dataJoinType == 0) {
-            JOptionPane.showMessageDialog(null, "Data dimensions are not same!", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
+            throw new IllegalArgumentException("Data dimensions are not same!");
         }
 
         //Join data
@@ -3530,7 +3475,8 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
     }
 
     /**
-     * Join data files by time
+     * Join data files by time. The data is copied slab by slab with
+     * NetCDFJoiner.
      *
      * @param inFiles Input nc files
      * @param outFile Output nc file
@@ -3540,190 +3486,13 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
      * @throws java.text.ParseException
      */
     public static void joinDataFiles_Time(List<String> inFiles, String outFile, String timeDimStr) throws IOException, InvalidRangeException, ParseException {
-        //Check number of selected files
-        int fNum = inFiles.size();
-        if (fNum < 2) {
-            JOptionPane.showMessageDialog(null, "There should be at least two files!", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        //Open the first file
-        int i;
-        String aFile = inFiles.get(0);
-        NetCDFDataInfo aDataInfo = new NetCDFDataInfo();
-        aDataInfo.readDataInfo(aFile);
-
-        switch (aDataInfo.getConvention()) {
-            case WRFOUT:
-                timeDimStr = "Time";
-                break;
-        }
-
-        //Change time dimension as unlimit
-        for (i = 0; i < aDataInfo.getDimensions().size(); i++) {
-            Dimension aDimS = aDataInfo.getDimensions().get(i);
-            if (aDimS.getShortName().equals(timeDimStr)) {
-                aDimS.setUnlimited(true);
-                break;
-            }
-        }
-
-        List<String> varNames = new ArrayList<>();
-        for (Variable var : aDataInfo.getVariables()) {
-            if (MIMath.isNumeric(var.getName().substring(0, 1))) {
-                var.setName('V' + var.getName());
-            }
-            varNames.add(var.getName());
-        }
-
-        //Create output nc file and write the data of the first file
-        NetcdfFileWriter ncfilew = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, outFile);
-
-        //Define dimensions
-        List<ucar.nc2.Dimension> dims = new ArrayList<>();
-        for (Dimension dim : aDataInfo._miDims) {
-            if (dim.getShortName().equals(timeDimStr)) {
-                dims.add(ncfilew.addUnlimitedDimension(dim.getShortName()));
-            } else {
-                dims.add(ncfilew.addDimension(null, dim.getShortName(), dim.getLength()));
-            }
-        }
-
-        //Define global attributes
-        for (ucar.nc2.Attribute attr : aDataInfo._gAtts) {
-            ncfilew.addGroupAttribute(null, attr);
-        }
-
-        //Define variables
-        for (ucar.nc2.Variable var : aDataInfo._variables) {
-            List<ucar.nc2.Dimension> vdims = new ArrayList<>();
-            for (ucar.nc2.Dimension dim : var.getDimensions()) {
-                for (ucar.nc2.Dimension vdim : dims) {
-                    if (vdim.getShortName().equals(dim.getShortName())) {
-                        vdims.add(vdim);
-                        break;
-                    }
-                }
-            }
-            ucar.nc2.Variable nvar = ncfilew.addVariable(null, var.getShortName(), var.getDataType(), vdims);
-            if (var.getDimensions().size() == 1 && var.getDimensions().get(0).getShortName().equals(timeDimStr)) {
-                nvar.addAttribute(new ucar.nc2.Attribute("units", "hours since 1800-1-1 00:00:00"));
-                nvar.addAttribute(new ucar.nc2.Attribute("long_name", "Time"));
-                nvar.addAttribute(new ucar.nc2.Attribute("standard_name", "time"));
-                nvar.addAttribute(new ucar.nc2.Attribute("axis", "T"));
-            } else {
-                for (ucar.nc2.Attribute attr : var.getAttributes()) {
-                    nvar.addAttribute(attr);
-                }
-            }
-        }
-
-        SimpleDateFormat format = new SimpleDateFormat("yyyy-M-d HH:mm:ss");
-        Date sTime = format.parse("1800-1-1 00:00:00");
-
-        //Create netCDF file
-        ncfilew.create();
-
-        //Join data                        
-        //Add data
-        int tDimNum = 0;
-        for (i = 0; i < fNum; i++) {
-            aFile = inFiles.get(i);
-            aDataInfo = new NetCDFDataInfo();
-            aDataInfo.readDataInfo(aFile);
-
-            if (i == 0) {
-                for (ucar.nc2.Variable var : ncfilew.getNetcdfFile().getVariables()) {
-                    List<String> dimNames = new ArrayList<>();
-                    for (ucar.nc2.Dimension dim : var.getDimensions()) {
-                        dimNames.add(dim.getShortName());
-                    }
-                    if (!dimNames.contains(timeDimStr)) {
-                        Array varaData = aDataInfo.read(var.getShortName());
-                        ncfilew.write(var, varaData);
-                    }
-                }
-            }
-
-            for (ucar.nc2.Variable var : ncfilew.getNetcdfFile().getVariables()) {
-                if (!varNames.contains(var.getShortName())) {
-                    continue;
-                }
-
-                List<String> dimNames = new ArrayList<>();
-                for (ucar.nc2.Dimension dim : var.getDimensions()) {
-                    dimNames.add(dim.getShortName());
-                }
-                if (!dimNames.contains(timeDimStr)) {
-                    continue;
-                }
-
-                ucar.nc2.Variable dvar = aDataInfo.findNCVariable(var.getShortName());
-                int tDimIdx = dimNames.indexOf(timeDimStr);
-                int dimNum = var.getDimensions().size();
-                int[] start = new int[dimNum];
-                int[] count = new int[dimNum];
-                if (dimNum == 4) {
-                    start[2] = 0;
-                    count[2] = dvar.getDimensions().get(2).getLength();
-                    start[3] = 0;
-                    count[3] = dvar.getDimensions().get(3).getLength();
-                    for (int d1 = 0; d1 < dvar.getDimensions().get(0).getLength(); d1++) {
-                        start[0] = d1;
-                        count[0] = 1;
-                        for (int d2 = 0; d2 < dvar.getDimensions().get(1).getLength(); d2++) {
-                            start[0] = d1;
-                            start[1] = d2;
-                            count[1] = 1;
-
-                            Array varaData = aDataInfo.read(dvar.getShortName(), start, count);
-                            start[tDimIdx] += tDimNum;
-                            ncfilew.write(var, start, varaData);
-                        }
-                    }
-                } else if (dimNum == 3) {
-                    start[1] = 0;
-                    count[1] = dvar.getDimensions().get(1).getLength();
-                    start[2] = 0;
-                    count[2] = dvar.getDimensions().get(2).getLength();
-                    for (int d1 = 0; d1 < dvar.getDimensions().get(0).getLength(); d1++) {
-                        start[0] = d1;
-                        count[0] = 1;
-
-                        Array varaData = aDataInfo.read(dvar.getShortName(), start, count);
-                        start[tDimIdx] += tDimNum;
-                        ncfilew.write(var, start, varaData);
-                    }
-                } else {
-                    for (int v = 0; v < dvar.getDimensions().size(); v++) {
-                        start[v] = 0;
-                        count[v] = dvar.getDimension(v).getLength();
-                    }
-                    Array varaData = aDataInfo.read(dvar.getShortName());
-                    start[tDimIdx] += tDimNum;
-                    if (dimNum == 1) {
-                        List<Integer> times = aDataInfo.getTimeValues(sTime, "hours");
-                        varaData = Array.factory(dvar.getDataType(), dvar.getShape());
-                        for (int j = 0; j < times.size(); j++) {
-                            varaData.setDouble(j, times.get(j));
-                        }
-                        if (i > 0) {
-                            var.getDimension(0).setLength(var.getDimension(0).getLength() + varaData.getShape()[0]);
-                        }
-                    }
-                    ncfilew.write(var, start, varaData);
-                }
-            }
-            tDimNum += aDataInfo.findDimension(timeDimStr).getLength();
-        }
-
-        //Close data file
-        ncfilew.flush();
-        ncfilew.close();
+        NetCDFJoiner joiner = new NetCDFJoiner(inFiles, outFile);
+        joiner.joinTime(timeDimStr);
     }
 
     /**
-     * Join data files by time
+     * Join data files by time, the packed variables are unpacked to double
+     * values. The data is copied slab by slab with NetCDFJoiner.
      *
      * @param inFiles Input nc files
      * @param outFile Output nc file
@@ -3733,205 +3502,14 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
      * @throws java.text.ParseException
      */
     public static void joinDataFiles_Time_pack(List<String> inFiles, String outFile, String timeDimStr) throws IOException, InvalidRangeException, ParseException {
-        //Check number of selected files
-        int fNum = inFiles.size();
-        if (fNum < 2) {
-            JOptionPane.showMessageDialog(null, "There should be at least two files!", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        //Open the first file
-        int i;
-        String aFile = inFiles.get(0);
-        NetCDFDataInfo aDataInfo = new NetCDFDataInfo();
-        aDataInfo.readDataInfo(aFile);
-
-        switch (aDataInfo.getConvention()) {
-            case WRFOUT:
-                timeDimStr = "Time";
-                break;
-        }
-
-        //Change time dimension as unlimit
-        for (i = 0; i < aDataInfo.getDimensions().size(); i++) {
-            Dimension aDimS = aDataInfo.getDimensions().get(i);
-            if (aDimS.getShortName().equals(timeDimStr)) {
-                aDimS.setUnlimited(true);
-                break;
-            }
-        }
-
-        List<String> varNames = new ArrayList<>();
-        for (Variable var : aDataInfo.getVariables()) {
-            if (MIMath.isNumeric(var.getName().substring(0, 1))) {
-                var.setName('V' + var.getName());
-            }
-            varNames.add(var.getName());
-        }
-
-        //Create output nc file and write the data of the first file
-        NetcdfFileWriter ncfilew = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, outFile);
-
-        //Define dimensions
-        List<ucar.nc2.Dimension> dims = new ArrayList<>();
-        for (Dimension dim : aDataInfo._miDims) {
-            if (dim.getShortName().equals(timeDimStr)) {
-                dims.add(ncfilew.addUnlimitedDimension(dim.getShortName()));
-            } else {
-                dims.add(ncfilew.addDimension(null, dim.getShortName(), dim.getLength()));
-            }
-        }
-
-        //Define global attributes
-        for (ucar.nc2.Attribute attr : aDataInfo._gAtts) {
-            ncfilew.addGroupAttribute(null, attr);
-        }
-
-        //Define variables
-        for (ucar.nc2.Variable var : aDataInfo._variables) {
-            List<ucar.nc2.Dimension> vdims = new ArrayList<>();
-            for (ucar.nc2.Dimension dim : var.getDimensions()) {
-                for (ucar.nc2.Dimension vdim : dims) {
-                    if (vdim.getShortName().equals(dim.getShortName())) {
-                        vdims.add(vdim);
-                        break;
-                    }
-                }
-            }
-            ucar.nc2.Variable nvar;
-            if (var.findAttribute("add_offset") != null || var.findAttribute("scale_factor") != null) {
-                nvar = ncfilew.addVariable(null, var.getShortName(), DataType.DOUBLE, vdims);
-            } else {
-                nvar = ncfilew.addVariable(null, var.getShortName(), var.getDataType(), vdims);
-            }
-            if (var.getDimensions().size() == 1 && var.getDimensions().get(0).getShortName().equals(timeDimStr)) {
-                nvar.addAttribute(new ucar.nc2.Attribute("units", "hours since 1800-1-1 00:00:00"));
-                nvar.addAttribute(new ucar.nc2.Attribute("long_name", "Time"));
-                nvar.addAttribute(new ucar.nc2.Attribute("standard_name", "time"));
-                nvar.addAttribute(new ucar.nc2.Attribute("axis", "T"));
-            } else {
-                for (ucar.nc2.Attribute attr : var.getAttributes()) {
-                    if (!attr.getShortName().equals("add_offset") && !attr.getShortName().equals("scale_factor")) {
-                        nvar.addAttribute(attr);
-                    }
-                }
-            }
-        }
-
-        SimpleDateFormat format = new SimpleDateFormat("yyyy-M-d HH:mm:ss");
-        Date sTime = format.parse("1800-1-1 00:00:00");
-
-        //Create netCDF file
-        ncfilew.create();
-
-        //Join data                        
-        //Add data
-        int tDimNum = 0;
-        for (i = 0; i < fNum; i++) {
-            aFile = inFiles.get(i);
-            aDataInfo = new NetCDFDataInfo();
-            aDataInfo.readDataInfo(aFile);
-
-            if (i == 0) {
-                for (ucar.nc2.Variable var : ncfilew.getNetcdfFile().getVariables()) {
-                    List<String> dimNames = new ArrayList<>();
-                    for (ucar.nc2.Dimension dim : var.getDimensions()) {
-                        dimNames.add(dim.getShortName());
-                    }
-                    if (!dimNames.contains(timeDimStr)) {
-                        Array varaData = aDataInfo.read(var.getShortName());
-                        ncfilew.write(var, varaData);
-                    }
-                }
-            }
-
-            for (ucar.nc2.Variable var : ncfilew.getNetcdfFile().getVariables()) {
-                if (!varNames.contains(var.getShortName())) {
-                    continue;
-                }
-
-                List<String> dimNames = new ArrayList<>();
-                for (ucar.nc2.Dimension dim : var.getDimensions()) {
-                    dimNames.add(dim.getShortName());
-                }
-                if (!dimNames.contains(timeDimStr)) {
-                    continue;
-                }
-
-                ucar.nc2.Variable dvar = aDataInfo.findNCVariable(var.getShortName());
-                int tDimIdx = dimNames.indexOf(timeDimStr);
-                int dimNum = var.getDimensions().size();
-                int[] start = new int[dimNum];
-                int[] count = new int[dimNum];
-                if (dimNum == 4) {
-                    start[2] = 0;
-                    count[2] = dvar.getDimensions().get(2).getLength();
-                    start[3] = 0;
-                    count[3] = dvar.getDimensions().get(3).getLength();
-                    for (int d1 = 0; d1 < dvar.getDimensions().get(0).getLength(); d1++) {
-                        start[0] = d1;
-                        count[0] = 1;
-                        for (int d2 = 0; d2 < dvar.getDimensions().get(1).getLength(); d2++) {
-                            start[0] = d1;
-                            start[1] = d2;
-                            count[1] = 1;
-                            Array varaData;
-                            if (dvar.findAttribute("add_offset") != null || dvar.findAttribute("scale_factor") != null) {
-                                varaData = aDataInfo.read_pack(dvar.getShortName(), start, count);
-                            } else {
-                                varaData = aDataInfo.read(dvar.getShortName(), start, count);
-                            }
-                            start[tDimIdx] += tDimNum;
-                            ncfilew.write(var, start, varaData);
-                        }
-                    }
-                } else if (dimNum == 3) {
-                    start[1] = 0;
-                    count[1] = dvar.getDimensions().get(1).getLength();
-                    start[2] = 0;
-                    count[2] = dvar.getDimensions().get(2).getLength();
-                    for (int d1 = 0; d1 < dvar.getDimensions().get(0).getLength(); d1++) {
-                        start[0] = d1;
-                        count[0] = 1;
-                        Array varaData;
-                        if (dvar.findAttribute("add_offset") != null || dvar.findAttribute("scale_factor") != null) {
-                            varaData = aDataInfo.read_pack(dvar.getShortName(), start, count);
-                        } else {
-                            varaData = aDataInfo.read(dvar.getShortName(), start, count);
-                        }
-                        start[tDimIdx] += tDimNum;
-                        ncfilew.write(var, start, varaData);
-                    }
-                } else {
-                    for (int v = 0; v < dvar.getDimensions().size(); v++) {
-                        start[v] = 0;
-                        count[v] = dvar.getDimension(v).getLength();
-                    }
-                    Array varaData = aDataInfo.read(dvar.getShortName());
-                    start[tDimIdx] += tDimNum;
-                    if (dimNum == 1) {
-                        List<Integer> times = aDataInfo.getTimeValues(sTime, "hours");
-                        varaData = Array.factory(dvar.getDataType(), dvar.getShape());
-                        for (int j = 0; j < times.size(); j++) {
-                            varaData.setDouble(j, times.get(j));
-                        }
-                        if (i > 0) {
-                            var.getDimension(0).setLength(var.getDimension(0).getLength() + varaData.getShape()[0]);
-                        }
-                    }
-                    ncfilew.write(var, start, varaData);
-                }
-            }
-            tDimNum += aDataInfo.findDimension(timeDimStr).getLength();
-        }
-
-        //Close data file
-        ncfilew.flush();
-        ncfilew.close();
+        NetCDFJoiner joiner = new NetCDFJoiner(inFiles, outFile);
+        joiner.setUnpack(true);
+        joiner.joinTime(timeDimStr);
     }
 
     /**
-     * Join data files by variable
+     * Join data files by variable. The data is copied slab by slab with
+     * NetCDFJoiner.
      *
      * @param inFiles Input nc files
      * @param outFile Output nc file
@@ -3939,87 +3517,8 @@ public class NetCDFDataInfo extends DataInfo implements IGridDataInfo, IStationD
      * @throws ucar.ma2.InvalidRangeException
      */
     public static void joinDataFiles_Variable(List<String> inFiles, String outFile) throws IOException, InvalidRangeException {
-        //Check number of selected files
-        int fNum = inFiles.size();
-        if (fNum < 2) {
-            JOptionPane.showMessageDialog(null, "There should be at least two files!", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        //Open a file
-        String aFile = inFiles.get(0);
-        NetCDFDataInfo aDataInfo = new NetCDFDataInfo();
-        aDataInfo.readDataInfo(aFile);
-
-        //Create nc file writer
-        NetcdfFileWriter ncfile = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, outFile);
-
-        //Define dimensions
-        for (Dimension dim : aDataInfo._miDims) {
-            ncfile.addDimension(null, dim.getShortName(), dim.getLength(), dim.isShared(),
-                    dim.isUnlimited(), dim.isVariableLength());
-        }
-
-        //Define global attributes
-        for (ucar.nc2.Attribute attr : aDataInfo._gAtts) {
-            ncfile.addGroupAttribute(null, attr);
-        }
-
-        //Define variables
-        List<ucar.nc2.Variable> nvars = new ArrayList<>();
-        for (ucar.nc2.Variable var : aDataInfo._variables) {
-            ucar.nc2.Variable nvar = ncfile.addVariable(null, var.getShortName(), var.getDataType(), var.getDimensions());
-            for (ucar.nc2.Attribute attr : var.getAttributes()) {
-                nvar.addAttribute(attr);
-            }
-            nvars.add(nvar);
-        }
-
-        //Add variables from more files
-        List<List<ucar.nc2.Variable>> mvars = new ArrayList<>();
-        List<NetCDFDataInfo> mncf = new ArrayList<>();
-        List<String> varNames = aDataInfo.getVariableNames();
-        for (int i = 1; i < fNum; i++) {
-            NetCDFDataInfo df = new NetCDFDataInfo();
-            df.readDataInfo(inFiles.get(i));
-            List<ucar.nc2.Variable> vars = new ArrayList<>();
-            for (ucar.nc2.Variable var : df._variables) {
-                if (!varNames.contains(var.getShortName())) {
-                    ucar.nc2.Variable nvar = ncfile.addVariable(null, var.getShortName(), var.getDataType(), var.getDimensions());
-                    for (ucar.nc2.Attribute attr : var.getAttributes()) {
-                        nvar.addAttribute(attr);
-                    }
-                    vars.add(nvar);
-                    varNames.add(var.getShortName());
-                }
-            }
-            mncf.add(df);
-            mvars.add(vars);
-        }
-
-        //Create netCDF file
-        ncfile.create();
-
-        //Write variable data
-        for (ucar.nc2.Variable nvar : nvars) {
-            ncfile.write(nvar, aDataInfo.read(nvar.getShortName()));
-        }
-
-        //Add data in more files
-        for (int i = 0; i < mncf.size(); i++) {
-            List<ucar.nc2.Variable> vars = mvars.get(i);
-            if (vars.isEmpty()) {
-                continue;
-            }
-            NetCDFDataInfo df = mncf.get(i);
-            for (ucar.nc2.Variable nvar : vars) {
-                ncfile.write(nvar, df.read(nvar.getShortName()));
-            }
-        }
-
-        //Close data file
-        ncfile.flush();
-        ncfile.close();
+        NetCDFJoiner joiner = new NetCDFJoiner(inFiles, outFile);
+        joiner.joinVariables();
     }
 
     private static int getDataJoinType(NetCDFDataInfo aDataInfo, NetCDFDataInfo bDataInfo, String tDimName) {
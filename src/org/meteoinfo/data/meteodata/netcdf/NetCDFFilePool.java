@@ -0,0 +1,343 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.data.meteodata.netcdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.dataset.NetcdfDataset;
+
+/**
+ * Process wide pool of open netCDF file handles. A handle is used by one
+ * caller at a time: it is taken with acquire and given back with release, and
+ * the released handles are kept open for the next reads of the same file.
+ * The least recently used handles are closed when more than the maximum
+ * number of files are open, and handles which have not been used for the idle
+ * timeout are closed by a background timer. A released handle is not used
+ * again if the size or the modified time of the file has changed.
+ * <p>
+ * The variables found by name are cached with each handle.
+ *
+ * @author Yaqiang Wang
+ */
+public class NetCDFFilePool {
+
+    // <editor-fold desc="Variables">
+    private static boolean enabled = true;
+    private static int maxOpenFiles = 32;
+    private static long idleTimeout = 60000;
+    //All pooled handles
+    private static final Map<NetcdfFile, Entry> handles = new IdentityHashMap<>();
+    //Released handles, least recently released first
+    private static final LinkedHashSet<Entry> idle = new LinkedHashSet<>();
+    private static Timer timer = null;
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    private NetCDFFilePool() {
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get if the pool is enabled. If not, the handles are closed when they are
+     * released.
+     *
+     * @return Boolean
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set if the pool is enabled
+     *
+     * @param value Boolean
+     */
+    public static void setEnabled(boolean value) {
+        enabled = value;
+        if (!value) {
+            closeAll();
+        }
+    }
+
+    /**
+     * Get maximum open file number
+     *
+     * @return Maximum open file number
+     */
+    public static int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    /**
+     * Set maximum open file number
+     *
+     * @param value Maximum open file number
+     */
+    public static void setMaxOpenFiles(int value) {
+        List<Entry> closing;
+        synchronized (handles) {
+            maxOpenFiles = value;
+            closing = trim();
+        }
+        close(closing);
+    }
+
+    /**
+     * Get idle timeout
+     *
+     * @return Idle timeout in milliseconds
+     */
+    public static long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Set idle timeout
+     *
+     * @param value Idle timeout in milliseconds
+     */
+    public static void setIdleTimeout(long value) {
+        synchronized (handles) {
+            idleTimeout = value;
+            if (timer != null) {
+                timer.cancel();
+                timer = null;
+            }
+        }
+    }
+
+    /**
+     * Get open file number
+     *
+     * @return Open file number
+     */
+    public static int getOpenFileNumber() {
+        synchronized (handles) {
+            return handles.size();
+        }
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    /**
+     * Acquire a handle of a netCDF file. A released handle of the file is used
+     * if there is one, otherwise the file is opened.
+     *
+     * @param fileName File name
+     * @return NetCDF file handle
+     * @throws IOException
+     */
+    public static NetcdfFile acquire(String fileName) throws IOException {
+        File file = new File(fileName);
+        long length = file.length();
+        long modified = file.lastModified();
+        List<Entry> closing = new ArrayList<>();
+        Entry entry = null;
+        synchronized (handles) {
+            Iterator<Entry> it = idle.iterator();
+            while (it.hasNext()) {
+                Entry e = it.next();
+                if (e.fileName.equals(fileName)) {
+                    it.remove();
+                    if (entry == null && e.length == length && e.modified == modified) {
+                        entry = e;
+                    } else {
+                        handles.remove(e.file);
+                        closing.add(e);
+                    }
+                }
+            }
+        }
+        close(closing);
+        if (entry != null) {
+            return entry.file;
+        }
+
+        NetcdfFile ncfile = NetcdfDataset.openFile(fileName, null);
+        if (enabled) {
+            entry = new Entry(fileName, ncfile, length, modified);
+            synchronized (handles) {
+                handles.put(ncfile, entry);
+            }
+        }
+        return ncfile;
+    }
+
+    /**
+     * Release a handle. The handle is kept open in the pool, a handle not
+     * from the pool is closed.
+     *
+     * @param ncfile NetCDF file handle
+     */
+    public static void release(NetcdfFile ncfile) {
+        List<Entry> closing = new ArrayList<>();
+        synchronized (handles) {
+            Entry entry = handles.get(ncfile);
+            if (entry == null || !enabled) {
+                handles.remove(ncfile);
+                closing.add(new Entry(null, ncfile, 0, 0));
+            } else {
+                entry.released = System.currentTimeMillis();
+                idle.add(entry);
+                closing.addAll(trim());
+                if (timer == null && idleTimeout > 0) {
+                    timer = new Timer("NetCDF file pool", true);
+                    long period = Math.max(1000, idleTimeout / 2);
+                    timer.schedule(new TimerTask() {
+                        @Override
+                        public void run() {
+                            closeIdle();
+                        }
+                    }, period, period);
+                }
+            }
+        }
+        close(closing);
+    }
+
+    /**
+     * Find a variable by full name or short name
+     *
+     * @param ncfile NetCDF file handle
+     * @param varName Variable name
+     * @return The variable, null if not found
+     */
+    public static ucar.nc2.Variable findVariable(NetcdfFile ncfile, String varName) {
+        Entry entry;
+        synchronized (handles) {
+            entry = handles.get(ncfile);
+        }
+        if (entry != null) {
+            synchronized (entry) {
+                ucar.nc2.Variable var = entry.variables.get(varName);
+                if (var == null) {
+                    var = lookup(ncfile, varName);
+                    if (var != null) {
+                        entry.variables.put(varName, var);
+                    }
+                }
+                return var;
+            }
+        }
+
+        return lookup(ncfile, varName);
+    }
+
+    private static ucar.nc2.Variable lookup(NetcdfFile ncfile, String varName) {
+        ucar.nc2.Variable var = ncfile.findVariable(varName);
+        if (var == null) {
+            for (ucar.nc2.Variable v : ncfile.getVariables()) {
+                if (v.getShortName().equals(varName)) {
+                    var = v;
+                    break;
+                }
+            }
+        }
+        return var;
+    }
+
+    /**
+     * Close all released handles. The handles in use are closed when they are
+     * released.
+     */
+    public static void closeAll() {
+        List<Entry> closing;
+        synchronized (handles) {
+            closing = new ArrayList<>(idle);
+            idle.clear();
+            handles.clear();
+        }
+        close(closing);
+    }
+
+    /**
+     * Close the handles not used for the idle timeout
+     */
+    private static void closeIdle() {
+        List<Entry> closing = new ArrayList<>();
+        synchronized (handles) {
+            long time = System.currentTimeMillis() - idleTimeout;
+            Iterator<Entry> it = idle.iterator();
+            while (it.hasNext()) {
+                Entry e = it.next();
+                if (e.released > time) {
+                    break;
+                }
+                it.remove();
+                handles.remove(e.file);
+                closing.add(e);
+            }
+        }
+        close(closing);
+    }
+
+    /**
+     * Remove least recently used released handles while too many files are
+     * open
+     *
+     * @return Removed handles to be closed
+     */
+    private static List<Entry> trim() {
+        List<Entry> closing = new ArrayList<>();
+        Iterator<Entry> it = idle.iterator();
+        while (handles.size() > maxOpenFiles && it.hasNext()) {
+            Entry e = it.next();
+            it.remove();
+            handles.remove(e.file);
+            closing.add(e);
+        }
+        return closing;
+    }
+
+    private static void close(List<Entry> entries) {
+        for (Entry e : entries) {
+            try {
+                e.file.close();
+            } catch (IOException ex) {
+                Logger.getLogger(NetCDFFilePool.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    private static class Entry {
+
+        final String fileName;
+        final NetcdfFile file;
+        final long length;
+        final long modified;
+        final Map<String, ucar.nc2.Variable> variables = new HashMap<>();
+        long released;
+
+        Entry(String fileName, NetcdfFile file, long length, long modified) {
+            this.fileName = fileName;
+            this.file = file;
+            this.length = length;
+            this.modified = modified;
+        }
+    }
+    // </editor-fold>
+}
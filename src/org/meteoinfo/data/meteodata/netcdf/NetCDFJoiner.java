@@ -0,0 +1,541 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.data.meteodata.netcdf;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.meteoinfo.global.MIMath;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.ma2.Section;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriter;
+
+/**
+ * Streaming joiner of netCDF data files. The variable data is copied slab by
+ * slab, so the memory used is limited by the slab size and the prefetched
+ * slab number whatever the size of the files. The input files are read by a
+ * background thread which runs ahead of the writing, so the next file is
+ * opened and read while the current one is written. Errors are thrown as
+ * exceptions, and a listener gets the progress after each input file and may
+ * cancel the joining.
+ *
+ * @author Yaqiang Wang
+ */
+public class NetCDFJoiner {
+
+    // <editor-fold desc="Variables">
+    private final List<String> inFiles;
+    private final String outFile;
+    private boolean unpack = false;
+    private long slabSize = 32L << 20;
+    private int prefetch = 2;
+    private NetCDFReadPlanner.ReadListener listener = null;
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor
+     *
+     * @param inFiles Input netCDF data files
+     * @param outFile Output netCDF data file
+     */
+    public NetCDFJoiner(List<String> inFiles, String outFile) {
+        if (inFiles.size() < 2) {
+            throw new IllegalArgumentException("There should be at least two files!");
+        }
+        this.inFiles = inFiles;
+        this.outFile = outFile;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get if the packed variables are unpacked to double values
+     *
+     * @return Boolean
+     */
+    public boolean isUnpack() {
+        return this.unpack;
+    }
+
+    /**
+     * Set if the packed variables are unpacked to double values
+     *
+     * @param value Boolean
+     */
+    public void setUnpack(boolean value) {
+        this.unpack = value;
+    }
+
+    /**
+     * Get maximum slab size in bytes
+     *
+     * @return Slab size
+     */
+    public long getSlabSize() {
+        return this.slabSize;
+    }
+
+    /**
+     * Set maximum slab size in bytes
+     *
+     * @param value Slab size
+     */
+    public void setSlabSize(long value) {
+        this.slabSize = Math.max(1, value);
+    }
+
+    /**
+     * Get the number of slabs read ahead of the writing
+     *
+     * @return Prefetched slab number
+     */
+    public int getPrefetch() {
+        return this.prefetch;
+    }
+
+    /**
+     * Set the number of slabs read ahead of the writing
+     *
+     * @param value Prefetched slab number
+     */
+    public void setPrefetch(int value) {
+        this.prefetch = Math.max(1, value);
+    }
+
+    /**
+     * Get listener
+     *
+     * @return Listener
+     */
+    public NetCDFReadPlanner.ReadListener getListener() {
+        return this.listener;
+    }
+
+    /**
+     * Set listener. The progress is the number of joined input files.
+     *
+     * @param value Listener
+     */
+    public void setListener(NetCDFReadPlanner.ReadListener value) {
+        this.listener = value;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    /**
+     * Join the data files by time. The dimensions, global attributes and
+     * variables are defined by the first file, the time dimension is
+     * unlimited in the output file. The variables without the time dimension
+     * are written from the first file, and the time variable is written as
+     * hours since 1800-1-1.
+     *
+     * @param timeDimName Time dimension name
+     * @return False if the joining is cancelled
+     * @throws IOException
+     * @throws InvalidRangeException
+     */
+    public boolean joinTime(String timeDimName) throws IOException, InvalidRangeException {
+        NetCDFDataInfo aDataInfo = new NetCDFDataInfo();
+        aDataInfo.readDataInfo(inFiles.get(0));
+        switch (aDataInfo.getConvention()) {
+            case WRFOUT:
+                timeDimName = "Time";
+                break;
+        }
+        if (aDataInfo.findDimension(timeDimName) == null) {
+            throw new IOException("Time dimension not exist: " + timeDimName);
+        }
+
+        //Define output file
+        NetcdfFileWriter ncfilew = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, outFile);
+        List<ucar.nc2.Dimension> dims = new ArrayList<>();
+        for (ucar.nc2.Dimension dim : aDataInfo.getNCDimensions()) {
+            if (dim.getShortName().equals(timeDimName)) {
+                dims.add(ncfilew.addUnlimitedDimension(dim.getShortName()));
+            } else {
+                dims.add(ncfilew.addDimension(null, dim.getShortName(), dim.getLength()));
+            }
+        }
+        for (Attribute attr : aDataInfo.getGlobalAttributes()) {
+            ncfilew.addGroupAttribute(null, attr);
+        }
+        final Map<String, ucar.nc2.Variable> outVars = new LinkedHashMap<>();
+        for (ucar.nc2.Variable var : aDataInfo.getNCVariables()) {
+            List<ucar.nc2.Dimension> vdims = new ArrayList<>();
+            for (ucar.nc2.Dimension dim : var.getDimensions()) {
+                for (ucar.nc2.Dimension vdim : dims) {
+                    if (vdim.getShortName().equals(dim.getShortName())) {
+                        vdims.add(vdim);
+                        break;
+                    }
+                }
+            }
+            String name = var.getShortName();
+            if (MIMath.isNumeric(name.substring(0, 1))) {
+                name = 'V' + name;
+            }
+            boolean packed = var.findAttribute("add_offset") != null || var.findAttribute("scale_factor") != null;
+            DataType dataType = unpack && packed ? DataType.DOUBLE : var.getDataType();
+            ucar.nc2.Variable nvar = ncfilew.addVariable(null, name, dataType, vdims);
+            if (isTimeVariable(var, timeDimName)) {
+                nvar.addAttribute(new Attribute("units", "hours since 1800-1-1 00:00:00"));
+                nvar.addAttribute(new Attribute("long_name", "Time"));
+                nvar.addAttribute(new Attribute("standard_name", "time"));
+                nvar.addAttribute(new Attribute("axis", "T"));
+            } else {
+                for (Attribute attr : var.getAttributes()) {
+                    if (unpack && packed && (attr.getShortName().equals("add_offset")
+                            || attr.getShortName().equals("scale_factor"))) {
+                        continue;
+                    }
+                    nvar.addAttribute(attr);
+                }
+            }
+            outVars.put(var.getShortName(), nvar);
+        }
+        ncfilew.create();
+
+        final String tDimName = timeDimName;
+        final Date sTime;
+        try {
+            sTime = new SimpleDateFormat("yyyy-M-d HH:mm:ss").parse("1800-1-1 00:00:00");
+        } catch (ParseException ex) {
+            throw new IOException(ex);
+        }
+        SlabReader reader = new SlabReader() {
+            @Override
+            void readFile(int fIdx, String fileName, NetcdfFile ncfile, NetCDFDataInfo dataInfo)
+                    throws IOException, InvalidRangeException, InterruptedException {
+                ucar.nc2.Dimension tDim = findDimension(ncfile, tDimName);
+                if (tDim == null) {
+                    throw new IOException("Time dimension not exist: " + fileName);
+                }
+                for (Map.Entry<String, ucar.nc2.Variable> e : outVars.entrySet()) {
+                    ucar.nc2.Variable nvar = e.getValue();
+                    int tDimIdx = nvar.findDimensionIndex(tDimName);
+                    if (tDimIdx < 0 && fIdx > 0) {
+                        continue;
+                    }
+                    ucar.nc2.Variable var = NetCDFFilePool.findVariable(ncfile, e.getKey());
+                    checkVariable(fileName, var, nvar, tDimIdx);
+                    int[] offset = new int[var.getRank()];
+                    if (tDimIdx >= 0) {
+                        offset[tDimIdx] = this.timeNum;
+                    }
+                    if (isTimeVariable(var, tDimName)) {
+                        List<Integer> times = dataInfo.getTimeValues(sTime, "hours");
+                        Array data = Array.factory(nvar.getDataType(), var.getShape());
+                        for (int j = 0; j < times.size() && j < data.getSize(); j++) {
+                            data.setDouble(j, times.get(j));
+                        }
+                        put(nvar, offset, data);
+                    } else {
+                        readSlabs(var, nvar, offset, dataInfo);
+                    }
+                }
+                this.timeNum += tDim.getLength();
+            }
+        };
+
+        return this.write(ncfilew, reader);
+    }
+
+    /**
+     * Join the data files by variable. All files should have the same
+     * dimensions, the variables of the first file and the variables not in
+     * the former files are written.
+     *
+     * @return False if the joining is cancelled
+     * @throws IOException
+     * @throws InvalidRangeException
+     */
+    public boolean joinVariables() throws IOException, InvalidRangeException {
+        NetCDFDataInfo aDataInfo = new NetCDFDataInfo();
+        aDataInfo.readDataInfo(inFiles.get(0));
+        NetcdfFileWriter ncfilew = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, outFile);
+        for (ucar.nc2.Dimension dim : aDataInfo.getNCDimensions()) {
+            ncfilew.addDimension(null, dim.getShortName(), dim.getLength(), dim.isShared(),
+                    dim.isUnlimited(), dim.isVariableLength());
+        }
+        for (Attribute attr : aDataInfo.getGlobalAttributes()) {
+            ncfilew.addGroupAttribute(null, attr);
+        }
+
+        //Output variables of each file
+        final List<List<ucar.nc2.Variable>> fileVars = new ArrayList<>();
+        List<String> varNames = new ArrayList<>();
+        for (int i = 0; i < inFiles.size(); i++) {
+            NetCDFDataInfo df = aDataInfo;
+            if (i > 0) {
+                df = new NetCDFDataInfo();
+                df.readDataInfo(inFiles.get(i));
+            }
+            List<ucar.nc2.Variable> vars = new ArrayList<>();
+            for (ucar.nc2.Variable var : df.getNCVariables()) {
+                if (!varNames.contains(var.getShortName())) {
+                    ucar.nc2.Variable nvar = ncfilew.addVariable(null, var.getShortName(), var.getDataType(),
+                            var.getDimensions());
+                    for (Attribute attr : var.getAttributes()) {
+                        nvar.addAttribute(attr);
+                    }
+                    vars.add(nvar);
+                    varNames.add(var.getShortName());
+                }
+            }
+            fileVars.add(vars);
+        }
+        ncfilew.create();
+
+        SlabReader reader = new SlabReader() {
+            @Override
+            void readFile(int fIdx, String fileName, NetcdfFile ncfile, NetCDFDataInfo dataInfo)
+                    throws IOException, InvalidRangeException, InterruptedException {
+                for (ucar.nc2.Variable nvar : fileVars.get(fIdx)) {
+                    ucar.nc2.Variable var = NetCDFFilePool.findVariable(ncfile, nvar.getShortName());
+                    checkVariable(fileName, var, nvar, -1);
+                    readSlabs(var, nvar, new int[var.getRank()], null);
+                }
+            }
+        };
+
+        return this.write(ncfilew, reader);
+    }
+
+    /**
+     * Write the slabs of the reader to the output file
+     */
+    private boolean write(NetcdfFileWriter ncfilew, SlabReader reader) throws IOException,
+            InvalidRangeException {
+        Thread thread = new Thread(reader, "NetCDF join reader");
+        thread.setDaemon(true);
+        thread.start();
+        boolean completed = false;
+        try {
+            while (true) {
+                Slab slab = reader.queue.take();
+                if (slab == Slab.END) {
+                    break;
+                }
+                if (slab.var == null) {
+                    //End of an input file
+                    if (listener != null) {
+                        listener.progress(slab.fileIdx + 1, inFiles.size());
+                        if (listener.isCancelled()) {
+                            return false;
+                        }
+                    }
+                    continue;
+                }
+                ncfilew.write(slab.var, slab.origin, slab.data);
+            }
+            if (reader.error instanceof IOException) {
+                throw (IOException) reader.error;
+            } else if (reader.error instanceof InvalidRangeException) {
+                throw (InvalidRangeException) reader.error;
+            } else if (reader.error != null) {
+                throw new IOException(reader.error);
+            }
+            completed = true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } finally {
+            if (!completed) {
+                thread.interrupt();
+            }
+            ncfilew.flush();
+            ncfilew.close();
+        }
+
+        return true;
+    }
+
+    private static boolean isTimeVariable(ucar.nc2.Variable var, String timeDimName) {
+        return var.getRank() == 1 && var.getDimension(0).getShortName().equals(timeDimName);
+    }
+
+    private static ucar.nc2.Dimension findDimension(NetcdfFile ncfile, String dimName) {
+        for (ucar.nc2.Dimension dim : ncfile.getDimensions()) {
+            if (dimName.equals(dim.getShortName())) {
+                return dim;
+            }
+        }
+        return null;
+    }
+
+    private static void checkVariable(String fileName, ucar.nc2.Variable var, ucar.nc2.Variable nvar,
+            int tDimIdx) throws IOException {
+        if (var == null) {
+            throw new IOException("Variable " + nvar.getShortName() + " not exist: " + fileName);
+        }
+        if (var.getRank() != nvar.getRank()) {
+            throw new IOException("Data dimensions are not same: " + fileName);
+        }
+        for (int i = 0; i < var.getRank(); i++) {
+            if (i != tDimIdx && !nvar.getDimension(i).isUnlimited()
+                    && var.getDimension(i).getLength() != nvar.getDimension(i).getLength()) {
+                throw new IOException("Data dimensions are not same: " + fileName);
+            }
+        }
+    }
+
+    private static class Slab {
+
+        static final Slab END = new Slab(null, null, null, -1);
+        final ucar.nc2.Variable var;
+        final int[] origin;
+        final Array data;
+        final int fileIdx;
+
+        Slab(ucar.nc2.Variable var, int[] origin, Array data, int fileIdx) {
+            this.var = var;
+            this.origin = origin;
+            this.data = data;
+            this.fileIdx = fileIdx;
+        }
+    }
+
+    /**
+     * Background reader of the input files. The slabs are put in a bounded
+     * queue, an empty slab marks the end of each file.
+     */
+    private abstract class SlabReader implements Runnable {
+
+        final BlockingQueue<Slab> queue = new ArrayBlockingQueue<>(prefetch);
+        volatile Exception error = null;
+        int timeNum = 0;
+
+        abstract void readFile(int fIdx, String fileName, NetcdfFile ncfile, NetCDFDataInfo dataInfo)
+                throws IOException, InvalidRangeException, InterruptedException;
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < inFiles.size(); i++) {
+                    String fileName = inFiles.get(i);
+                    //Open the file first to throw the error of a bad file
+                    NetcdfFile ncfile = NetCDFFilePool.acquire(fileName);
+                    NetCDFFilePool.release(ncfile);
+                    NetCDFDataInfo dataInfo = new NetCDFDataInfo();
+                    dataInfo.readDataInfo(fileName);
+                    ncfile = NetCDFFilePool.acquire(fileName);
+                    try {
+                        readFile(i, fileName, ncfile, dataInfo);
+                    } finally {
+                        NetCDFFilePool.release(ncfile);
+                    }
+                    queue.put(new Slab(null, null, null, i));
+                }
+            } catch (InterruptedException ex) {
+                return;
+            } catch (Exception ex) {
+                error = ex;
+            }
+            try {
+                queue.put(Slab.END);
+            } catch (InterruptedException ex) {
+            }
+        }
+
+        /**
+         * Put a slab into the queue
+         */
+        void put(ucar.nc2.Variable nvar, int[] origin, Array data) throws InterruptedException {
+            queue.put(new Slab(nvar, origin, data, -1));
+        }
+
+        /**
+         * Read a variable slab by slab. A slab is a block along one dimension,
+         * the outer dimensions are read one index at a time.
+         */
+        void readSlabs(ucar.nc2.Variable var, ucar.nc2.Variable nvar, int[] offset,
+                NetCDFDataInfo dataInfo) throws IOException, InvalidRangeException, InterruptedException {
+            int[] shape = var.getShape();
+            int rank = shape.length;
+            for (int s : shape) {
+                if (s == 0) {
+                    return;
+                }
+            }
+            if (rank == 0) {
+                put(nvar, offset, convert(var, nvar, var.read(), dataInfo));
+                return;
+            }
+
+            //Split dimension and block length
+            long inner = var.getElementSize();
+            int d = rank - 1;
+            while (d > 0 && inner * shape[d] <= slabSize) {
+                inner *= shape[d];
+                d -= 1;
+            }
+            int step = (int) Math.max(1, Math.min(shape[d], slabSize / inner));
+
+            int[] origin = new int[rank];
+            int[] size = shape.clone();
+            for (int i = 0; i < d; i++) {
+                size[i] = 1;
+            }
+            while (true) {
+                for (int k = 0; k < shape[d]; k += step) {
+                    origin[d] = k;
+                    size[d] = Math.min(step, shape[d] - k);
+                    Array data = var.read(new Section(origin, size));
+                    int[] wOrigin = new int[rank];
+                    for (int i = 0; i < rank; i++) {
+                        wOrigin[i] = origin[i] + offset[i];
+                    }
+                    put(nvar, wOrigin, convert(var, nvar, data, dataInfo));
+                }
+                //Next index of the outer dimensions
+                int i = d - 1;
+                while (i >= 0 && ++origin[i] == shape[i]) {
+                    origin[i] = 0;
+                    i -= 1;
+                }
+                if (i < 0) {
+                    break;
+                }
+            }
+        }
+
+        private Array convert(ucar.nc2.Variable var, ucar.nc2.Variable nvar, Array data,
+                NetCDFDataInfo dataInfo) {
+            if (dataInfo == null || nvar.getDataType() == var.getDataType()) {
+                return data;
+            }
+            data = dataInfo.unpack(var, data);
+            if (data.getElementType() != nvar.getDataType().getPrimitiveClassType()) {
+                Array r = Array.factory(nvar.getDataType(), data.getShape());
+                MAMath.copyDouble(r, data);
+                data = r;
+            }
+            return data;
+        }
+    }
+    // </editor-fold>
+}
@@ -0,0 +1,353 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.data.meteodata.netcdf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.meteoinfo.global.util.ParallelUtil;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.ma2.Section;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+
+/**
+ * Parallel reader of a section of a large netCDF variable. The section is
+ * split into sub-sections along the chunk boundaries of the variable
+ * (_ChunkSizes attribute of netCDF-4/HDF5 data, otherwise along the first
+ * dimension), so each chunk is read and decompressed by one worker. Each
+ * worker reads with its own file handle from the netCDF file pool, and the
+ * sub-section data is copied directly into the result array. A planner
+ * created with an open file handle reads the sub-sections serially through
+ * that handle.
+ *
+ * @author Yaqiang Wang
+ */
+public class NetCDFReadPlanner {
+
+    /**
+     * Read listener for progress and cancellation. The methods are called
+     * from the worker threads.
+     */
+    public interface ReadListener {
+
+        /**
+         * Sub-section read
+         *
+         * @param done Read sub-section number
+         * @param total Total sub-section number
+         */
+        void progress(int done, int total);
+
+        /**
+         * Check if the reading is cancelled
+         *
+         * @return Boolean
+         */
+        boolean isCancelled();
+    }
+
+    // <editor-fold desc="Variables">
+    private final String fileName;
+    private final String varName;
+    private NetcdfFile ncfile = null;
+    private int[] shape;
+    private int[] chunkShape;
+    private int elementSize;
+    private boolean unsigned;
+    private ucar.ma2.DataType dataType;
+    private int minTaskSize = 1 << 20;
+    private int threadNum = ParallelUtil.getThreadNum();
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor
+     *
+     * @param fileName NetCDF file name
+     * @param varName Variable name
+     * @throws IOException
+     */
+    public NetCDFReadPlanner(String fileName, String varName) throws IOException {
+        this.fileName = fileName;
+        this.varName = varName;
+        NetcdfFile nc = NetCDFFilePool.acquire(fileName);
+        try {
+            init(nc);
+        } finally {
+            NetCDFFilePool.release(nc);
+        }
+    }
+
+    /**
+     * Constructor with an open file handle. The handle is not thread safe,
+     * so the sub-sections are read one by one in the calling thread.
+     *
+     * @param ncfile Open netCDF file
+     * @param varName Variable name
+     * @throws IOException
+     */
+    public NetCDFReadPlanner(NetcdfFile ncfile, String varName) throws IOException {
+        this.fileName = ncfile.getLocation();
+        this.varName = varName;
+        this.ncfile = ncfile;
+        this.threadNum = 1;
+        init(ncfile);
+    }
+
+    private void init(NetcdfFile nc) throws IOException {
+        ucar.nc2.Variable var = NetCDFFilePool.findVariable(nc, varName);
+        if (var == null) {
+            throw new IOException("Variable not exist: " + varName);
+        }
+        this.shape = var.getShape();
+        this.dataType = var.getDataType();
+        this.elementSize = var.getElementSize();
+        this.unsigned = var.isUnsigned();
+        this.chunkShape = new int[shape.length];
+        Attribute att = var.findAttribute("_ChunkSizes");
+        if (att != null && att.getLength() == shape.length) {
+            for (int i = 0; i < shape.length; i++) {
+                chunkShape[i] = Math.max(1, att.getNumericValue(i).intValue());
+            }
+        } else {
+            for (int i = 0; i < shape.length; i++) {
+                chunkShape[i] = i == 0 ? 1 : Math.max(1, shape[i]);
+            }
+        }
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get chunk shape
+     *
+     * @return Chunk shape
+     */
+    public int[] getChunkShape() {
+        return this.chunkShape;
+    }
+
+    /**
+     * Get minimum data size in bytes read by one task
+     *
+     * @return Minimum task size
+     */
+    public int getMinTaskSize() {
+        return this.minTaskSize;
+    }
+
+    /**
+     * Set minimum data size in bytes read by one task
+     *
+     * @param value Minimum task size
+     */
+    public void setMinTaskSize(int value) {
+        this.minTaskSize = value;
+    }
+
+    /**
+     * Get worker thread number
+     *
+     * @return Thread number
+     */
+    public int getThreadNum() {
+        return this.threadNum;
+    }
+
+    /**
+     * Set worker thread number, a planner with an open file handle always
+     * uses one thread
+     *
+     * @param value Thread number
+     */
+    public void setThreadNum(int value) {
+        this.threadNum = this.ncfile == null ? Math.max(1, value) : 1;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    /**
+     * Split a section into chunk aligned sub-sections. The dimensions are
+     * split from the first one until there are enough sub-sections for the
+     * workers, the other dimensions are not split.
+     *
+     * @param section The section
+     * @return Sub-sections
+     * @throws InvalidRangeException
+     */
+    public List<Section> plan(Section section) throws InvalidRangeException {
+        int rank = section.getRank();
+        long total = section.computeSize() * elementSize;
+        long target = Math.max(1, Math.min(threadNum * 4L, total / Math.max(1, minTaskSize)));
+
+        //Block ranges (first, last) of each split dimension
+        List<List<int[]>> blocks = new ArrayList<>();
+        long n = 1;
+        for (int d = 0; d < rank && n < target; d++) {
+            int first = section.getOrigin(d);
+            int stride = section.getStride(d);
+            int last = first + (section.getShape(d) - 1) * stride;
+            int c = chunkShape[d];
+            List<int[]> dBlocks = new ArrayList<>();
+            for (int k = first / c; k <= last / c; k++) {
+                int lo = Math.max(first, k * c);
+                int hi = Math.min(last, k * c + c - 1);
+                int start = first + (lo - first + stride - 1) / stride * stride;
+                if (start <= hi) {
+                    dBlocks.add(new int[]{start, start + (hi - start) / stride * stride});
+                }
+            }
+            //Join neighbour blocks if there are more than needed
+            int group = (int) Math.max(1, n * dBlocks.size() / target);
+            if (group > 1) {
+                List<int[]> joined = new ArrayList<>();
+                for (int i = 0; i < dBlocks.size(); i += group) {
+                    int j = Math.min(dBlocks.size(), i + group) - 1;
+                    joined.add(new int[]{dBlocks.get(i)[0], dBlocks.get(j)[1]});
+                }
+                dBlocks = joined;
+            }
+            blocks.add(dBlocks);
+            n *= dBlocks.size();
+        }
+
+        List<Section> sections = new ArrayList<>();
+        int[] origin = section.getOrigin();
+        int[] stride = section.getStride();
+        int[] size = new int[rank];
+        for (int i = 0; i < rank; i++) {
+            size[i] = section.getRange(i).last() - origin[i] + 1;
+        }
+        addSections(sections, blocks, 0, origin, size, stride);
+        return sections;
+    }
+
+    private void addSections(List<Section> sections, List<List<int[]>> blocks, int d,
+            int[] origin, int[] size, int[] stride) throws InvalidRangeException {
+        if (d == blocks.size()) {
+            sections.add(new Section(origin.clone(), size.clone(), stride));
+            return;
+        }
+        for (int[] b : blocks.get(d)) {
+            origin[d] = b[0];
+            size[d] = b[1] - b[0] + 1;
+            addSections(sections, blocks, d + 1, origin, size, stride);
+        }
+    }
+
+    /**
+     * Read a section of the variable
+     *
+     * @param section The section
+     * @return Data array
+     * @throws IOException
+     * @throws InvalidRangeException
+     */
+    public Array read(Section section) throws IOException, InvalidRangeException {
+        return read(section, null);
+    }
+
+    /**
+     * Read a section of the variable
+     *
+     * @param section The section
+     * @param listener Read listener, may be null
+     * @return Data array, null if the reading is cancelled
+     * @throws IOException
+     * @throws InvalidRangeException
+     */
+    public Array read(Section section, final ReadListener listener) throws IOException, InvalidRangeException {
+        final Section fullSection = section.getRank() == 0 ? section : new Section(section.getRanges(),
+                shape);
+        final List<Section> sections = plan(fullSection);
+        final Array r = Array.factory(dataType, fullSection.getShape());
+        r.setUnsigned(unsigned);
+        final AtomicInteger next = new AtomicInteger(0);
+        final AtomicInteger done = new AtomicInteger(0);
+        final Exception[] error = new Exception[1];
+        final boolean[] cancelled = new boolean[1];
+        int workerNum = Math.min(threadNum, sections.size());
+        ParallelUtil.parallelFor(workerNum, 1, workerNum, new ParallelUtil.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int w = start; w < end; w++) {
+                    runWorker();
+                }
+            }
+
+            private void runWorker() {
+                NetcdfFile nc = ncfile;
+                try {
+                    int i;
+                    while ((i = next.getAndIncrement()) < sections.size()) {
+                        synchronized (error) {
+                            if (error[0] != null || cancelled[0]) {
+                                return;
+                            }
+                            if (listener != null && listener.isCancelled()) {
+                                cancelled[0] = true;
+                                return;
+                            }
+                        }
+                        if (nc == null) {
+                            nc = NetCDFFilePool.acquire(fileName);
+                        }
+                        ucar.nc2.Variable var = NetCDFFilePool.findVariable(nc, varName);
+                        Section s = sections.get(i);
+                        Array a = var.read(s);
+                        MAMath.copy(r.sectionNoReduce(destOrigin(fullSection, s), s.getShape(), null), a);
+                        int n = done.incrementAndGet();
+                        if (listener != null) {
+                            listener.progress(n, sections.size());
+                        }
+                    }
+                } catch (IOException | InvalidRangeException ex) {
+                    synchronized (error) {
+                        if (error[0] == null) {
+                            error[0] = ex;
+                        }
+                    }
+                } finally {
+                    if (nc != null && nc != ncfile) {
+                        NetCDFFilePool.release(nc);
+                    }
+                }
+            }
+        });
+
+        if (error[0] instanceof IOException) {
+            throw (IOException) error[0];
+        } else if (error[0] instanceof InvalidRangeException) {
+            throw (InvalidRangeException) error[0];
+        }
+        if (cancelled[0]) {
+            return null;
+        }
+
+        return r;
+    }
+
+    private static int[] destOrigin(Section section, Section sub) {
+        int[] r = new int[section.getRank()];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = (sub.getOrigin(i) - section.getOrigin(i)) / section.getStride(i);
+        }
+        return r;
+    }
+    // </editor-fold>
+}
@@ -17,6 +17,9 @@ import org.meteoinfo.global.Direction;
 import org.meteoinfo.global.Extent;
 import org.meteoinfo.global.MIMath;
 import org.meteoinfo.global.PointD;
+import org.meteoinfo.jts.geom.Coordinate;
+import org.meteoinfo.jts.geom.GeometryFactory;
+import org.meteoinfo.jts.simplify.DouglasPeuckerSimplifier;
 import org.meteoinfo.map.GridLabel;
 import org.meteoinfo.shape.Line;
 import org.meteoinfo.shape.Polygon;
@@ -257,20 +260,18 @@ public class GeoComputation {
             return false;
         }
 
-        List<PolygonShape> polygons = new ArrayList<>();
-        if (onlySel) {
-            for (Shape aShape : aLayer.getShapes()) {
-                if (aShape.isSelected()) {
-                    polygons.add((PolygonShape) aShape);
-                }
+        List<? extends Shape> shapes = aLayer.getShapes();
+        for (int i : aLayer.queryShapes(aPoint)) {
+            Shape aShape = shapes.get(i);
+            if (onlySel && !aShape.isSelected()) {
+                continue;
             }
-        } else {
-            for (Shape aShape : aLayer.getShapes()) {
-                polygons.add((PolygonShape) aShape);
+            if (pointInPolygon((PolygonShape) aShape, aPoint)) {
+                return true;
             }
         }
 
-        return pointInPolygons(polygons, aPoint);
+        return false;
     }
 
     /**
@@ -383,6 +384,111 @@ public class GeoComputation {
         return null;
     }
 
+    /**
+     * Simplify a point list by Douglas-Peucker algorithm. The result holds the
+     * original point objects, so Z/M values of the kept points are preserved.
+     *
+     * @param points The point list
+     * @param tolerance Distance tolerance
+     * @return Simplified point list
+     */
+    public static List<PointD> simplifyPoints(List<? extends PointD> points, double tolerance) {
+        int n = points.size();
+        Coordinate[] cs = new Coordinate[n];
+        for (int i = 0; i < n; i++) {
+            PointD p = points.get(i);
+            cs[i] = new Coordinate(p.X, p.Y);
+        }
+        Coordinate[] rcs = DouglasPeuckerSimplifier.simplify(new GeometryFactory().createLineString(cs),
+                tolerance).getCoordinates();
+        List<PointD> r = new ArrayList<>(rcs.length);
+        //The kept coordinates are a subsequence of the original ones
+        int i = 0;
+        for (Coordinate c : rcs) {
+            while (i < n && (cs[i].x != c.x || cs[i].y != c.y)) {
+                i++;
+            }
+            if (i < n) {
+                r.add(points.get(i++));
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Simplify a polyline by Douglas-Peucker algorithm
+     *
+     * @param line The polyline
+     * @param tolerance Distance tolerance
+     * @return Simplified polyline, or the polyline itself if nothing removed
+     */
+    public static Polyline simplifyPolyline(Polyline line, double tolerance) {
+        List<? extends PointD> points = line.getPointList();
+        if (points.size() <= 4) {
+            return line;
+        }
+        List<PointD> rPoints = simplifyPoints(points, tolerance);
+        if (rPoints.size() == points.size()) {
+            return line;
+        }
+        Polyline r = new Polyline();
+        r.setPointList(rPoints);
+        return r;
+    }
+
+    /**
+     * Simplify a polygon by Douglas-Peucker algorithm. A hole collapsed by the
+     * simplification is removed, a collapsed outline keeps four original
+     * points so the polygon still covers its position.
+     *
+     * @param polygon The polygon
+     * @param tolerance Distance tolerance
+     * @return Simplified polygon, or the polygon itself if nothing removed
+     */
+    public static Polygon simplifyPolygon(Polygon polygon, double tolerance) {
+        List<? extends PointD> outLine = polygon.getOutLine();
+        int n = outLine.size();
+        boolean changed = false;
+        List<? extends PointD> rOutLine = outLine;
+        if (n > 4) {
+            List<PointD> sPoints = simplifyPoints(outLine, tolerance);
+            if (sPoints.size() < 4) {
+                sPoints = new ArrayList<>();
+                sPoints.add(outLine.get(0));
+                sPoints.add(outLine.get(n / 3));
+                sPoints.add(outLine.get(2 * n / 3));
+                sPoints.add(outLine.get(n - 1));
+            }
+            if (sPoints.size() < n) {
+                rOutLine = sPoints;
+                changed = true;
+            }
+        }
+        List<List<? extends PointD>> rHoles = new ArrayList<>();
+        for (List<? extends PointD> hole : polygon.getHoleLines()) {
+            if (hole.size() <= 4) {
+                rHoles.add(hole);
+                continue;
+            }
+            List<PointD> sPoints = simplifyPoints(hole, tolerance);
+            if (sPoints.size() < hole.size()) {
+                changed = true;
+                if (sPoints.size() >= 4) {
+                    rHoles.add(sPoints);
+                }
+            } else {
+                rHoles.add(hole);
+            }
+        }
+        if (!changed) {
+            return polygon;
+        }
+        Polygon r = new Polygon();
+        r.setOutLine(rOutLine);
+        r.setHoleLines(rHoles);
+        return r;
+    }
+
     // </editor-fold>
     // <editor-fold desc="Earth">
     private static double rad(double d) {
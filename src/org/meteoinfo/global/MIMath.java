@@ -19,6 +19,7 @@ import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.List;
 import org.meteoinfo.global.util.BigDecimalUtil;
+import org.meteoinfo.shape.PackedPointList;
 import org.meteoinfo.shape.PointZ;
 import org.meteoinfo.shape.Shape;
 
@@ -212,6 +213,9 @@ public class MIMath {
      * @return extent
      */
     public static Extent getPointsExtent(List<? extends PointD> PList) {
+        if (PList instanceof PackedPointList) {
+            return ((PackedPointList) PList).getExtent();
+        }
         if (PList.get(0) instanceof PointZ){
             Extent3D cET = new Extent3D();
             for (int i = 0; i < PList.size(); i++) {
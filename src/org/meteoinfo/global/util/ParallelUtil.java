@@ -0,0 +1,146 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.meteoinfo.global.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Shared fork/join pool for data parallel loops. The thread number is a
+ * global switch, setting it to 1 runs every loop serially in the calling
+ * thread.
+ *
+ * @author Yaqiang Wang
+ */
+public class ParallelUtil {
+
+    private static int threadNum = Runtime.getRuntime().availableProcessors();
+    private static ForkJoinPool pool = null;
+
+    /**
+     * Range task interface. A task instance processes a continuous index range
+     * and may allocate its working buffers once per call.
+     */
+    public interface RangeTask {
+
+        /**
+         * Process index range
+         *
+         * @param start Start index (inclusive)
+         * @param end End index (exclusive)
+         */
+        void run(int start, int end);
+    }
+
+    /**
+     * Get thread number
+     *
+     * @return Thread number
+     */
+    public static synchronized int getThreadNum() {
+        return threadNum;
+    }
+
+    /**
+     * Set thread number. Value less than 1 means the processor number. A new
+     * pool is created for the later loops, the old pool is not shut down so
+     * the loops still running on it can finish, its idle worker threads are
+     * daemon threads and exit by themselves.
+     *
+     * @param value Thread number
+     */
+    public static synchronized void setThreadNum(int value) {
+        if (value < 1) {
+            value = Runtime.getRuntime().availableProcessors();
+        }
+        if (value != threadNum) {
+            threadNum = value;
+            pool = null;
+        }
+    }
+
+    /**
+     * Get the fork/join pool
+     *
+     * @return The pool
+     */
+    public static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(threadNum);
+        }
+        return pool;
+    }
+
+    /**
+     * Run a range task over [0, n) with the global thread number
+     *
+     * @param n Index number
+     * @param minChunk Minimum index number processed by one task
+     * @param task The range task
+     */
+    public static void parallelFor(int n, int minChunk, RangeTask task) {
+        parallelFor(n, minChunk, getThreadNum(), task);
+    }
+
+    /**
+     * Run a range task over [0, n)
+     *
+     * @param n Index number
+     * @param minChunk Minimum index number processed by one task
+     * @param nThreads Thread number, 1 means serial
+     * @param task The range task
+     */
+    public static void parallelFor(int n, int minChunk, int nThreads, RangeTask task) {
+        if (n <= 0) {
+            return;
+        }
+        minChunk = Math.max(1, minChunk);
+        if (nThreads <= 1 || n <= minChunk) {
+            task.run(0, n);
+            return;
+        }
+
+        //Several chunks per thread for load balancing
+        int chunk = Math.max(minChunk, n / (nThreads * 4));
+        RangeAction action = new RangeAction(task, 0, n, chunk);
+        boolean shared = nThreads == getThreadNum();
+        ForkJoinPool fjp = shared ? getPool() : new ForkJoinPool(nThreads);
+        try {
+            fjp.invoke(action);
+        } finally {
+            if (!shared) {
+                fjp.shutdown();
+            }
+        }
+    }
+
+    private static class RangeAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final RangeTask task;
+        private final int start;
+        private final int end;
+        private final int chunk;
+
+        RangeAction(RangeTask task, int start, int end, int chunk) {
+            this.task = task;
+            this.start = start;
+            this.end = end;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= chunk) {
+                task.run(start, end);
+            } else {
+                int mid = (start + end) >>> 1;
+                invokeAll(new RangeAction(task, start, mid, chunk),
+                        new RangeAction(task, mid, end, chunk));
+            }
+        }
+    }
+}
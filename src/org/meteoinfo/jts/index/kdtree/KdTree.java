@@ -131,6 +131,15 @@ public class KdTree {
     return false;
   }
 
+  /**
+   * Gets the root node of this tree.
+   *
+   * @return the root node, or null if the tree is empty
+   */
+  public KdNode getRoot() {
+    return root;
+  }
+
   /**
    * Inserts a new point in the kd-tree, with no data.
    * 
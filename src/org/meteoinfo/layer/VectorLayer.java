@@ -16,6 +16,7 @@ package org.meteoinfo.layer;
 import org.meteoinfo.data.mapdata.AttributeTable;
 import org.meteoinfo.data.mapdata.Field;
 import org.meteoinfo.data.mapdata.ShapeFileManage;
+import org.meteoinfo.data.mapdata.ShapeFileReader;
 import org.meteoinfo.geoprocess.GeoComputation;
 import org.meteoinfo.global.Extent;
 import org.meteoinfo.global.GenericFileFilter;
@@ -45,8 +46,14 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFileChooser;
@@ -61,8 +68,10 @@ import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import org.meteoinfo.global.DataConvert;
 import org.meteoinfo.jts.geom.Coordinate;
+import org.meteoinfo.jts.geom.Envelope;
 import org.meteoinfo.jts.geom.Geometry;
 import org.meteoinfo.jts.geom.GeometryFactory;
+import org.meteoinfo.jts.index.strtree.STRtree;
 import org.meteoinfo.jts.operation.union.CascadedPolygonUnion;
 import org.meteoinfo.table.DataColumnCollection;
 import org.meteoinfo.table.DataTable;
@@ -111,6 +120,14 @@ public class VectorLayer extends MapLayer {
     private boolean editing = false;
     private Shape editingShape;
     private final UndoManager undoManager = new UndoManager();
+    //Spatial index of shape indexes, built lazily and dropped after edits
+    private STRtree _spatialIndex = null;
+    //Simplified polygons/polylines of the shapes by tolerance level
+    private final Map<Integer, List<List<? extends Polygon>>> _simplifiedPolygons = new LinkedHashMap<>();
+    private final Map<Integer, List<List<? extends Polyline>>> _simplifiedPolylines = new LinkedHashMap<>();
+    //Shape file reader of the lazy mode and the record indexes of the loaded shapes
+    private ShapeFileReader _shapeFileReader = null;
+    private List<Integer> _recordIndexes = null;
     // </editor-fold>
 
     // <editor-fold desc="Constructor">
@@ -189,6 +206,7 @@ public class VectorLayer extends MapLayer {
      */
     public void setShapes(List<? extends Shape> shapes) {
         _shapeList = (List<Shape>) shapes;
+        this.invalidateSpatialIndex();
     }
 
     /**
@@ -419,6 +437,7 @@ public class VectorLayer extends MapLayer {
      */
     public void setEditing(boolean value) {
         editing = value;
+        this.invalidateSpatialIndex();
     }
 
     /**
@@ -437,6 +456,8 @@ public class VectorLayer extends MapLayer {
      */
     public void setEditingShape(Shape value) {
         editingShape = value;
+        editingShape.unpackPoints();
+        this.invalidateSpatialIndex();
         for (Shape shape : _shapeList) {
             shape.setEditing(false);
         }
@@ -648,6 +669,208 @@ public class VectorLayer extends MapLayer {
         updateLayerExtent(aShape);
     }
 
+    /**
+     * Drop the spatial index and the simplified shape cache, they will be
+     * rebuilt when needed. Call it after the shape coordinates were changed
+     * outside of the layer.
+     */
+    public void invalidateSpatialIndex() {
+        _spatialIndex = null;
+        _simplifiedPolygons.clear();
+        _simplifiedPolylines.clear();
+    }
+
+    private synchronized STRtree getSpatialIndex() {
+        if (_spatialIndex == null) {
+            STRtree tree = new STRtree();
+            for (int i = 0; i < _shapeList.size(); i++) {
+                Extent ext = _shapeList.get(i).getExtent();
+                if (ext != null) {
+                    tree.insert(new Envelope(ext.minX, ext.maxX, ext.minY, ext.maxY), i);
+                }
+            }
+            tree.build();
+            _spatialIndex = tree;
+        }
+        return _spatialIndex;
+    }
+
+    /**
+     * Get the indexes of the shapes whose extents intersect an extent
+     *
+     * @param extent The extent
+     * @return Shape indexes in ascending order
+     */
+    public List<Integer> queryShapes(Extent extent) {
+        return queryShapes(new Envelope(extent.minX, extent.maxX, extent.minY, extent.maxY));
+    }
+
+    /**
+     * Get the indexes of the shapes whose extents contain a point
+     *
+     * @param p The point
+     * @return Shape indexes in ascending order
+     */
+    public List<Integer> queryShapes(PointD p) {
+        return queryShapes(new Envelope(p.X, p.X, p.Y, p.Y));
+    }
+
+    /**
+     * Store the points of the polyline and polygon shapes packed in
+     * coordinate arrays to reduce the memory of large layers. The shapes
+     * being edited are unpacked.
+     *
+     * @param floatPrecision If store the coordinates as float values
+     */
+    public void packPoints(boolean floatPrecision) {
+        for (Shape shape : _shapeList) {
+            if (shape instanceof PolygonShape) {
+                ((PolygonShape) shape).packPoints(floatPrecision);
+            } else if (shape instanceof PolylineShape) {
+                ((PolylineShape) shape).packPoints(floatPrecision);
+            }
+        }
+        _simplifiedPolygons.clear();
+        _simplifiedPolylines.clear();
+    }
+
+    /**
+     * Get if the layer is in lazy mode, the shapes and the attribute rows are
+     * read from the shape file by extent
+     *
+     * @return Boolean
+     */
+    public boolean isLazy() {
+        return _shapeFileReader != null;
+    }
+
+    /**
+     * Get shape file reader of the lazy mode
+     *
+     * @return Shape file reader, null if the layer is not in lazy mode
+     */
+    public ShapeFileReader getShapeFileReader() {
+        return _shapeFileReader;
+    }
+
+    /**
+     * Set shape file reader of the lazy mode
+     *
+     * @param reader Shape file reader
+     */
+    public void setShapeFileReader(ShapeFileReader reader) {
+        _shapeFileReader = reader;
+        _recordIndexes = null;
+    }
+
+    /**
+     * Get the shape file record index of a shape
+     *
+     * @param idx Shape index
+     * @return Record index, same as the shape index if the layer is not in
+     * lazy mode
+     */
+    public int getRecordIndex(int idx) {
+        return _recordIndexes == null ? idx : _recordIndexes.get(idx);
+    }
+
+    /**
+     * Load the shapes and the attribute rows intersecting an extent from the
+     * shape file of a lazy layer. The loaded shapes are replaced, and the
+     * layer extent is kept as the extent of the whole file. Edits of the
+     * loaded shapes are not written back to the shape file.
+     *
+     * @param extent The extent
+     * @throws Exception
+     */
+    public void loadExtent(Extent extent) throws Exception {
+        if (_shapeFileReader == null) {
+            return;
+        }
+
+        List<Integer> records = _shapeFileReader.query(extent);
+        _attributeTable = _shapeFileReader.readAttributes(records);
+        _recordIndexes = records;
+        this.setShapes(_shapeFileReader.getShapes(records));
+        this.updateLegendIndexes();
+    }
+
+    /**
+     * Get simplified polygons of a polygon shape for drawing. The tolerance
+     * is rounded down to a power of 2 and the results are cached for the
+     * recently used tolerance levels.
+     *
+     * @param idx Shape index
+     * @param tolerance Distance tolerance
+     * @return Simplified polygons
+     */
+    public List<? extends Polygon> getSimplifiedPolygons(int idx, double tolerance) {
+        List<List<? extends Polygon>> parts = this.getSimplifiedCache(_simplifiedPolygons, tolerance);
+        if (parts.get(idx) == null) {
+            double tol = this.getSimplifyLevelTolerance(tolerance);
+            List<Polygon> polygons = new ArrayList<>();
+            for (Polygon polygon : ((PolygonShape) _shapeList.get(idx)).getPolygons()) {
+                polygons.add(GeoComputation.simplifyPolygon(polygon, tol));
+            }
+            parts.set(idx, polygons);
+        }
+        return parts.get(idx);
+    }
+
+    /**
+     * Get simplified polylines of a polyline shape for drawing. The
+     * tolerance is rounded down to a power of 2 and the results are cached
+     * for the recently used tolerance levels.
+     *
+     * @param idx Shape index
+     * @param tolerance Distance tolerance
+     * @return Simplified polylines
+     */
+    public List<? extends Polyline> getSimplifiedPolylines(int idx, double tolerance) {
+        List<List<? extends Polyline>> parts = this.getSimplifiedCache(_simplifiedPolylines, tolerance);
+        if (parts.get(idx) == null) {
+            double tol = this.getSimplifyLevelTolerance(tolerance);
+            List<Polyline> polylines = new ArrayList<>();
+            for (Polyline line : ((PolylineShape) _shapeList.get(idx)).getPolylines()) {
+                polylines.add(GeoComputation.simplifyPolyline(line, tol));
+            }
+            parts.set(idx, polylines);
+        }
+        return parts.get(idx);
+    }
+
+    private static int getSimplifyLevel(double tolerance) {
+        return (int) Math.floor(Math.log(tolerance) / Math.log(2));
+    }
+
+    private double getSimplifyLevelTolerance(double tolerance) {
+        return Math.pow(2, getSimplifyLevel(tolerance));
+    }
+
+    private <T> List<List<? extends T>> getSimplifiedCache(Map<Integer, List<List<? extends T>>> cache,
+            double tolerance) {
+        int level = getSimplifyLevel(tolerance);
+        List<List<? extends T>> parts = cache.remove(level);
+        if (parts == null || parts.size() != _shapeList.size()) {
+            parts = new ArrayList<>(Collections.<List<? extends T>>nCopies(_shapeList.size(), null));
+        }
+        //Keep the most recent levels at the end
+        cache.put(level, parts);
+        if (cache.size() > 3) {
+            cache.remove(cache.keySet().iterator().next());
+        }
+        return parts;
+    }
+
+    private List<Integer> queryShapes(Envelope env) {
+        List<Integer> r = new ArrayList<>();
+        for (Object o : getSpatialIndex().query(env)) {
+            r.add((Integer) o);
+        }
+        Collections.sort(r);
+        return r;
+    }
+
     /**
      * Find a shape contains anthor shape
      *
@@ -655,7 +878,8 @@ public class VectorLayer extends MapLayer {
      * @return Result shape
      */
     public Shape findShape_contains(Shape other) {
-        for (Shape s : this._shapeList) {
+        for (int i : this.queryShapes(other.getExtent())) {
+            Shape s = this._shapeList.get(i);
             if (s.contains(other)) {
                 return s;
             }
@@ -671,7 +895,8 @@ public class VectorLayer extends MapLayer {
      * @return Result shape
      */
     public Shape findShape_crosses(Shape other) {
-        for (Shape s : this._shapeList) {
+        for (int i : this.queryShapes(other.getExtent())) {
+            Shape s = this._shapeList.get(i);
             if (s.crosses(other)) {
                 return s;
             }
@@ -738,8 +963,21 @@ public class VectorLayer extends MapLayer {
      * @return Selected shapes
      */
     public List<Integer> selectShapes(Extent aExtent, List<Shape> shapes, boolean isSingleSel) {
+        List<Integer> candidates = this.queryShapes(aExtent);
+        if (shapes != _shapeList) {
+            Set<Shape> subset = Collections.newSetFromMap(new IdentityHashMap<Shape, Boolean>());
+            subset.addAll(shapes);
+            List<Integer> inSubset = new ArrayList<>();
+            for (int idx : candidates) {
+                if (subset.contains(_shapeList.get(idx))) {
+                    inSubset.add(idx);
+                }
+            }
+            candidates = inSubset;
+        }
+
         List<Integer> selectedShapes = new ArrayList<>();
-        int i, j;
+        int i, j, idx;
         PointD sp = aExtent.getCenterPoint();
 
         switch (this.getShapeType()) {
@@ -750,10 +988,11 @@ public class VectorLayer extends MapLayer {
             case WindBarb:
             case WeatherSymbol:
             case StationModel:
-                for (i = 0; i < shapes.size(); i++) {
-                    PointShape aPS = (PointShape) shapes.get(i);
+                for (i = 0; i < candidates.size(); i++) {
+                    idx = candidates.get(i);
+                    PointShape aPS = (PointShape) _shapeList.get(idx);
                     if (MIMath.pointInExtent(aPS.getPoint(), aExtent)) {
-                        selectedShapes.add(_shapeList.indexOf(aPS));
+                        selectedShapes.add(idx);
                         if (isSingleSel) {
                             break;
                         }
@@ -765,21 +1004,22 @@ public class VectorLayer extends MapLayer {
             case PolylineZ:
                 Object sel;
                 List<Double> dislist = new ArrayList<>();
-                for (i = 0; i < shapes.size(); i++) {
-                    PolylineShape aPLS = (PolylineShape) shapes.get(i);
+                for (i = 0; i < candidates.size(); i++) {
+                    idx = candidates.get(i);
+                    PolylineShape aPLS = (PolylineShape) _shapeList.get(idx);
                     if (MIMath.isExtentCross(aExtent, aPLS.getExtent())) {
                         sel = GeoComputation.selectPolylineShape(sp, aPLS, aExtent.getWidth() / 2);
                         if (sel != null) {
                             if (dislist.size() > 0) {
                                 for (j = 0; j < dislist.size(); j++) {
                                     if ((Double) sel < dislist.get(j)) {
-                                        selectedShapes.add(j, _shapeList.indexOf(aPLS));
+                                        selectedShapes.add(j, idx);
                                         dislist.add(j, (Double) sel);
                                         break;
                                     }
                                 }
                             } else {
-                                selectedShapes.add(_shapeList.indexOf(aPLS));
+                                selectedShapes.add(idx);
                                 dislist.add((Double) sel);
                             }
                             if (isSingleSel) {
@@ -792,19 +1032,20 @@ public class VectorLayer extends MapLayer {
             case Polygon:
             case PolygonM:
             case PolygonZ:
-                for (i = shapes.size() - 1; i >= 0; i--) {
-                    PolygonShape aPGS = (PolygonShape) shapes.get(i);
+                for (i = candidates.size() - 1; i >= 0; i--) {
+                    idx = candidates.get(i);
+                    PolygonShape aPGS = (PolygonShape) _shapeList.get(idx);
                     if (isSingleSel) {
                         if (GeoComputation.pointInPolygon(aPGS, sp)) {
-                            selectedShapes.add(_shapeList.indexOf(aPGS));
+                            selectedShapes.add(idx);
                             break;
                         }
                     } else if (GeoComputation.pointInPolygon(aPGS, sp)) {
-                        selectedShapes.add(_shapeList.indexOf(aPGS));
+                        selectedShapes.add(idx);
                     } else if (MIMath.isExtentCross(aExtent, aPGS.getExtent())) {
                         for (j = 0; j < aPGS.getPolygons().get(0).getOutLine().size(); j++) {
                             if (MIMath.pointInExtent(aPGS.getPolygons().get(0).getOutLine().get(j), aExtent)) {
-                                selectedShapes.add(_shapeList.indexOf(aPGS));
+                                selectedShapes.add(idx);
                                 break;
                             }
                         }
@@ -824,7 +1065,7 @@ public class VectorLayer extends MapLayer {
      */
     public List<Integer> selectShapes(PolygonShape polygonShape) {
         List<Integer> selIdxs = new ArrayList<>();
-        for (int i = 0; i < _shapeList.size(); i++) {
+        for (int i : this.queryShapes(polygonShape.getExtent())) {
             boolean isIn = false;
             List<PointD> points = (List<PointD>) _shapeList.get(i).getPoints();
             for (PointD aPoint : points) {
@@ -870,17 +1111,13 @@ public class VectorLayer extends MapLayer {
      * @param selType Selection type
      */
     public void sqlSelect(String expression, SelectType selType) {
-        List<DataRow> rows = this._attributeTable.getTable().select(expression);
-        List<Integer> rowIdxs = new ArrayList<>();
-        for (DataRow row : rows) {
-            rowIdxs.add(row.getRowIndex());
-        }
+        BitSet rowIdxs = this._attributeTable.getTable().selectMask(expression);
 
         int i;
         switch (selType) {
             case NEW:    //Create a new selection
                 for (i = 0; i < this.getShapeNum(); i++) {
-                    if (rowIdxs.contains(i)) {
+                    if (rowIdxs.get(i)) {
                         this._shapeList.get(i).setSelected(true);
                     } else {
                         this._shapeList.get(i).setSelected(false);
@@ -889,14 +1126,14 @@ public class VectorLayer extends MapLayer {
                 break;
             case ADD_TO_CURRENT:    //Add to current selection
                 for (i = 0; i < this.getShapeNum(); i++) {
-                    if (rowIdxs.contains(i)) {
+                    if (rowIdxs.get(i)) {
                         this._shapeList.get(i).setSelected(true);
                     }
                 }
                 break;
             case REMOVE_FROM_CURRENT:    //Remove from current selection
                 for (i = 0; i < this.getShapeNum(); i++) {
-                    if (rowIdxs.contains(i)) {
+                    if (rowIdxs.get(i)) {
                         this._shapeList.get(i).setSelected(false);
                     }
                 }
@@ -904,7 +1141,7 @@ public class VectorLayer extends MapLayer {
             case SELECT_FROM_CURRENT:    //Select from current selection
                 for (i = 0; i < this.getShapeNum(); i++) {
                     if (this._shapeList.get(i).isSelected()) {
-                        if (!rowIdxs.contains(i)) {
+                        if (!rowIdxs.get(i)) {
                             this._shapeList.get(i).setSelected(false);
                         }
                     }
@@ -922,7 +1159,8 @@ public class VectorLayer extends MapLayer {
     public Shape selectShape(PointD p) {
         Coordinate c = new Coordinate(p.X, p.Y);
         Geometry point = new GeometryFactory().createPoint(c);
-        for (Shape shape : _shapeList) {
+        for (int i : this.queryShapes(p)) {
+            Shape shape = _shapeList.get(i);
             if (point.within(shape.toGeometry())) {
                 return shape;
             }
@@ -937,7 +1175,8 @@ public class VectorLayer extends MapLayer {
      * @return PolygonShape and polygon hole index
      */
     public Object[] selectPolygonHole(PointD p) {
-        for (Shape shape : _shapeList) {
+        for (int k : this.queryShapes(p)) {
+            Shape shape = _shapeList.get(k);
             int i = 0;
             for (Polygon poly : ((PolygonShape) shape).getPolygons()) {
                 if (poly.hasHole()) {
@@ -1414,10 +1653,12 @@ public class VectorLayer extends MapLayer {
         if (idx >= 0) {
             this._shapeList.remove(shape);
             this._attributeTable.getTable().removeRow(idx);
+            this.invalidateSpatialIndex();
         }
     }
 
     private void updateLayerExtent(Shape aShape) {
+        this.invalidateSpatialIndex();
         if (this.getShapeNum() == 1) {
             this.setExtent((Extent) aShape.getExtent().clone());
         } else {
@@ -2820,6 +3061,7 @@ public class VectorLayer extends MapLayer {
      * Update extent
      */
     public void updateExtent() {
+        this.invalidateSpatialIndex();
         for (int i = 0; i < _shapeList.size(); i++) {
             if (i == 0) {
                 this.setExtent((Extent) _shapeList.get(i).getExtent().clone());
@@ -0,0 +1,360 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.legend;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Comparator;
+import org.meteoinfo.global.MIMath;
+import org.meteoinfo.global.util.ParallelUtil;
+import ucar.ma2.Array;
+import ucar.ma2.Index;
+
+/**
+ * Lookup of the colors of grid values by the breaks of a legend scheme. The
+ * break of a graduated value is found from a table of value bins, or by binary
+ * search if the bin crosses a break value. Byte or short data are colored
+ * with a lookup table of all the possible values. Images are written
+ * directly into the pixel array of a TYPE_INT_ARGB image by row bands in
+ * parallel.
+ *
+ * @author Yaqiang Wang
+ */
+public class ColorLookup {
+
+    // <editor-fold desc="Variables">
+    private final boolean graduated;
+    private final double[] breakValues;
+    private final int[] breakColors;
+    private final boolean sorted;
+    private static final int BIN_NUM = 4096;
+    private final int[] bins;
+    private final double binMin;
+    private final double binMax;
+    private final double binScale;
+    private final double[] uniqueValues;
+    private final int[] uniqueColors;
+    private int undefColor = Color.white.getRGB();
+    private int defaultColor;
+    private double missingValue = Double.NaN;
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor. As the last break of a legend scheme has the same start
+     * and end values, only the breaks before the last one are searched, and
+     * the values not in these breaks have the default color, which is the
+     * color of the last break.
+     *
+     * @param ls Legend scheme
+     */
+    public ColorLookup(LegendScheme ls) {
+        int breakNum = ls.getBreakNum();
+        this.graduated = ls.getLegendType() == LegendType.GraduatedColor;
+        this.breakValues = new double[Math.max(0, breakNum - 1)];
+        this.breakColors = new int[breakValues.length];
+        for (int i = 0; i < breakNum; i++) {
+            ColorBreak cb = ls.getLegendBreaks().get(i);
+            if (i < breakValues.length) {
+                breakValues[i] = Double.parseDouble(cb.getEndValue().toString());
+                breakColors[i] = cb.getColor().getRGB();
+            }
+            if (cb.isNoData()) {
+                undefColor = cb.getColor().getRGB();
+            }
+        }
+        if (breakNum > 0) {
+            this.defaultColor = ls.getLegendBreaks().get(breakNum - 1).getColor().getRGB();
+        }
+
+        boolean s = true;
+        for (int i = 1; i < breakValues.length; i++) {
+            if (!(breakValues[i - 1] <= breakValues[i])) {
+                s = false;
+                break;
+            }
+        }
+        this.sorted = s;
+
+        //Break index of the value bins inside one break, -1 for the bins
+        //crossing a break value. The neighbour bins are included so the
+        //rounding of the bin index of a value never selects a wrong break.
+        int n = breakValues.length;
+        if (graduated && sorted && n >= 2 && breakValues[n - 1] > breakValues[0]
+                && !Double.isInfinite(breakValues[n - 1] - breakValues[0])) {
+            this.binMin = breakValues[0];
+            this.binMax = breakValues[n - 1];
+            this.binScale = BIN_NUM / (binMax - binMin);
+            this.bins = new int[BIN_NUM];
+            for (int b = 0; b < BIN_NUM; b++) {
+                int lo = searchBreak(binMin + (b - 1) / binScale);
+                int hi = searchBreak(binMin + (b + 2) / binScale);
+                bins[b] = lo == hi ? lo : -1;
+            }
+        } else {
+            this.bins = null;
+            this.binMin = this.binMax = this.binScale = Double.NaN;
+        }
+
+        //Unique values sorted with the color of the first break of each value
+        Integer[] idx = new Integer[breakValues.length];
+        n = 0;
+        for (int i = 0; i < breakValues.length; i++) {
+            if (!Double.isNaN(breakValues[i])) {
+                idx[n++] = i;
+            }
+        }
+        idx = Arrays.copyOf(idx, n);
+        Arrays.sort(idx, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int c = Double.compare(breakValues[a] + 0.0, breakValues[b] + 0.0);
+                return c != 0 ? c : Integer.compare(a, b);
+            }
+        });
+        double[] uv = new double[n];
+        int[] uc = new int[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            double v = breakValues[idx[i]] + 0.0;
+            if (m == 0 || uv[m - 1] != v) {
+                uv[m] = v;
+                uc[m] = breakColors[idx[i]];
+                m++;
+            }
+        }
+        this.uniqueValues = Arrays.copyOf(uv, m);
+        this.uniqueColors = Arrays.copyOf(uc, m);
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Set the color of undefined values
+     *
+     * @param value Color
+     */
+    public void setUndefColor(Color value) {
+        this.undefColor = value.getRGB();
+    }
+
+    /**
+     * Set the color of the values not in the breaks
+     *
+     * @param value Color
+     */
+    public void setDefaultColor(Color value) {
+        this.defaultColor = value.getRGB();
+    }
+
+    /**
+     * Set missing value, NaN values are always undefined
+     *
+     * @param value Missing value
+     */
+    public void setMissingValue(double value) {
+        this.missingValue = value;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    /**
+     * Get the ARGB color of a value
+     *
+     * @param v The value
+     * @return ARGB color
+     */
+    public int getRGB(double v) {
+        if (Double.isNaN(v) || (!Double.isNaN(missingValue) && MIMath.doubleEquals(v, missingValue))) {
+            return undefColor;
+        }
+        if (graduated) {
+            if (sorted) {
+                int k;
+                if (bins != null && v >= binMin && v < binMax) {
+                    k = bins[Math.min((int) ((v - binMin) * binScale), BIN_NUM - 1)];
+                    if (k < 0) {
+                        k = searchBreak(v);
+                    }
+                } else {
+                    k = searchBreak(v);
+                }
+                return k < breakValues.length ? breakColors[k] : defaultColor;
+            }
+            for (int k = 0; k < breakValues.length; k++) {
+                if (v < breakValues[k]) {
+                    return breakColors[k];
+                }
+            }
+            return defaultColor;
+        } else {
+            int k = Arrays.binarySearch(uniqueValues, v + 0.0);
+            return k >= 0 ? uniqueColors[k] : defaultColor;
+        }
+    }
+
+    /**
+     * Binary search of the first break with the end value larger than a
+     * value, the breaks must be sorted
+     *
+     * @param v The value
+     * @return Break index, the break number if the value is not less than all
+     * the break values
+     */
+    private int searchBreak(double v) {
+        int lo = 0;
+        int hi = breakValues.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (v < breakValues[mid]) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Create an image of grid data. The first data row is the bottom row of
+     * the image.
+     *
+     * @param data Grid data array of height * width values
+     * @param width Image width
+     * @param height Image height
+     * @return Image
+     */
+    public BufferedImage createImage(Array data, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        fill(data, width, height, pixels);
+        return image;
+    }
+
+    /**
+     * Fill the pixels of an image with the colors of grid data. The first
+     * data row is the bottom row of the image.
+     *
+     * @param data Grid data array of height * width values
+     * @param width Image width
+     * @param height Image height
+     * @param pixels ARGB pixels of the image
+     */
+    public void fill(final Array data, final int width, final int height, final int[] pixels) {
+        final Object storage = getStorage(data);
+        final int[] table = createTable(data, storage);
+        final Array flat = Array.factory(data.getDataType(), new int[]{(int) data.getSize()}, storage);
+        ParallelUtil.parallelFor(height, 16, new ParallelUtil.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int i = start; i < end; i++) {
+                    int p = (height - i - 1) * width;
+                    int d = i * width;
+                    if (table != null) {
+                        if (storage instanceof byte[]) {
+                            byte[] s = (byte[]) storage;
+                            for (int j = 0; j < width; j++) {
+                                pixels[p + j] = table[s[d + j] & 0xFF];
+                            }
+                        } else {
+                            short[] s = (short[]) storage;
+                            for (int j = 0; j < width; j++) {
+                                pixels[p + j] = table[s[d + j] & 0xFFFF];
+                            }
+                        }
+                    } else if (storage instanceof double[]) {
+                        double[] s = (double[]) storage;
+                        for (int j = 0; j < width; j++) {
+                            pixels[p + j] = getRGB(s[d + j]);
+                        }
+                    } else if (storage instanceof float[]) {
+                        float[] s = (float[]) storage;
+                        for (int j = 0; j < width; j++) {
+                            pixels[p + j] = getRGB(s[d + j]);
+                        }
+                    } else if (storage instanceof int[]) {
+                        int[] s = (int[]) storage;
+                        for (int j = 0; j < width; j++) {
+                            pixels[p + j] = getRGB(s[d + j]);
+                        }
+                    } else {
+                        for (int j = 0; j < width; j++) {
+                            pixels[p + j] = getRGB(flat.getDouble(d + j));
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Create the color table of all the possible values of byte or short
+     * data, indexed by the bits of the values
+     *
+     * @param data Data array
+     * @param storage Data storage
+     * @return Color table, null for other data types
+     */
+    private int[] createTable(Array data, Object storage) {
+        boolean unsigned = data.isUnsigned();
+        int[] table;
+        if (storage instanceof byte[]) {
+            table = new int[256];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = getRGB(unsigned ? i : (byte) i);
+            }
+        } else if (storage instanceof short[]) {
+            table = new int[65536];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = getRGB(unsigned ? i : (short) i);
+            }
+        } else {
+            table = null;
+        }
+        return table;
+    }
+
+    /**
+     * Get the data storage in the order of the array elements. The backing
+     * storage is used directly unless the array is a section or a permuted
+     * view of it.
+     *
+     * @param data Data array
+     * @return Storage
+     */
+    private static Object getStorage(Array data) {
+        Object storage = data.getStorage();
+        long n = data.getSize();
+        if (java.lang.reflect.Array.getLength(storage) == n) {
+            Index index = data.getIndex();
+            boolean canonical = true;
+            for (long k : new long[]{0, 1, data.getShape()[data.getRank() - 1], n - 1}) {
+                if (k < n) {
+                    index.setCurrentCounter((int) k);
+                    if (index.currentElement() != k) {
+                        canonical = false;
+                        break;
+                    }
+                }
+            }
+            if (canonical) {
+                return storage;
+            }
+        }
+        return data.copyTo1DJavaArray();
+    }
+    // </editor-fold>
+}
@@ -215,6 +215,7 @@ public class MapView extends JPanel implements IWebMapPanel {
     private boolean _antiAlias = false;
     private boolean _pointAntiAlias = true;
     private boolean _highSpeedWheelZoom = true;
+    private boolean _simplifyShapes = true;
     private boolean _lockViewUpdate = false;
     private LayerCollection layers = new LayerCollection();
     private int _selectedLayer;
@@ -778,6 +779,26 @@ public class MapView extends JPanel implements IWebMapPanel {
         _highSpeedWheelZoom = value;
     }
 
+    /**
+     * Get if polygons and polylines are simplified to the screen resolution
+     * for drawing
+     *
+     * @return Boolean
+     */
+    public boolean isSimplifyShapes() {
+        return _simplifyShapes;
+    }
+
+    /**
+     * Set if polygons and polylines are simplified to the screen resolution
+     * for drawing
+     *
+     * @param value Boolean
+     */
+    public void setSimplifyShapes(boolean value) {
+        _simplifyShapes = value;
+    }
+
     /**
      * Get selected graphics
      *
@@ -2177,7 +2198,7 @@ public class MapView extends JPanel implements IWebMapPanel {
                     }
                     slayer.updateExtent();
                     this.paintLayers();
-                    UndoableEdit edit = (new MapViewUndoRedo()).new MoveFeaturesEdit(this, selShapes, _mouseDownPoint, new Point(e.getX(), e.getY()));
+                    UndoableEdit edit = (new MapViewUndoRedo()).new MoveFeaturesEdit(this, slayer, selShapes, _mouseDownPoint, new Point(e.getX(), e.getY()));
                     slayer.getUndoManager().addEdit(edit);
                     this.fireUndoEditEvent(edit);
                 }
@@ -2441,11 +2462,12 @@ public class MapView extends JPanel implements IWebMapPanel {
                             pXY[0] = snapP.X;
                             pXY[1] = snapP.Y;
                         }
-                        edit = (new MapViewUndoRedo()).new MoveFeatureVerticeEdit(this, eShape,
+                        edit = (new MapViewUndoRedo()).new MoveFeatureVerticeEdit(this, layer, eShape,
                                 _editingVerticeIndex, pXY[0], pXY[1]);
                         layer.getUndoManager().addEdit(edit);
                         this.fireUndoEditEvent(edit);
                         eShape.moveVertice(_editingVerticeIndex, pXY[0], pXY[1]);
+                        layer.invalidateSpatialIndex();
                         paintLayers();
                     }
                 }
@@ -2781,11 +2803,12 @@ public class MapView extends JPanel implements IWebMapPanel {
                                             frmve.setVisible(true);
                                             if (frmve.isOK()) {
                                                 double[] xy = frmve.getXY();
-                                                UndoableEdit edit = (new MapViewUndoRedo()).new MoveFeatureVerticeEdit(MapView.this, fShape,
+                                                UndoableEdit edit = (new MapViewUndoRedo()).new MoveFeatureVerticeEdit(MapView.this, selLayer, fShape,
                                                         _editingVerticeIndex, xy[0], xy[1]);
                                                 selLayer.getUndoManager().addEdit(edit);
                                                 MapView.this.fireUndoEditEvent(edit);
                                                 fShape.moveVertice(_editingVerticeIndex, xy[0], xy[1]);
+                                                selLayer.invalidateSpatialIndex();
                                                 paintLayers();
                                             }
                                         }
@@ -2795,10 +2818,11 @@ public class MapView extends JPanel implements IWebMapPanel {
                                     jMenuItem_Remove.addActionListener(new ActionListener() {
                                         @Override
                                         public void actionPerformed(ActionEvent e) {
-                                            UndoableEdit edit = (new MapViewUndoRedo()).new RemoveFeatureVerticeEdit(MapView.this, fShape, _editingVerticeIndex);
+                                            UndoableEdit edit = (new MapViewUndoRedo()).new RemoveFeatureVerticeEdit(MapView.this, selLayer, fShape, _editingVerticeIndex);
                                             selLayer.getUndoManager().addEdit(edit);
                                             MapView.this.fireUndoEditEvent(edit);
                                             fShape.removeVerice(_editingVerticeIndex);
+                                            selLayer.invalidateSpatialIndex();
                                             paintLayers();
                                         }
                                     });
@@ -2826,7 +2850,7 @@ public class MapView extends JPanel implements IWebMapPanel {
                             jMenuItem_Reverse.addActionListener(new ActionListener() {
                                 @Override
                                 public void actionPerformed(ActionEvent e) {
-                                    onShapeReverseClick(sShape);
+                                    onShapeReverseClick(sLayer, sShape);
                                 }
                             });
                             jPopupMenu_Shape.add(jMenuItem_Reverse);
@@ -3109,10 +3133,11 @@ public class MapView extends JPanel implements IWebMapPanel {
                                 if (idx >= 0) {
                                     float[] pXY = screenToProj(e.getX(), e.getY());
                                     PointD point = new PointD(pXY[0], pXY[1]);
-                                    UndoableEdit edit = (new MapViewUndoRedo()).new AddFeatureVerticeEdit(this, eShape, idx, point);
+                                    UndoableEdit edit = (new MapViewUndoRedo()).new AddFeatureVerticeEdit(this, selLayer, eShape, idx, point);
                                     selLayer.getUndoManager().addEdit(edit);
                                     this.fireUndoEditEvent(edit);
                                     eShape.addVertice(idx, point);
+                                    selLayer.invalidateSpatialIndex();
                                     this.paintLayers();
                                 }
                             }
@@ -3229,16 +3254,18 @@ public class MapView extends JPanel implements IWebMapPanel {
             newPoints.add(new PointD(aP.X, aP.Y));
         }
 
-        UndoableEdit edit = (new MapViewUndoRedo()).new SmoothFeatureEdit(this, shape, newPoints);
+        UndoableEdit edit = (new MapViewUndoRedo()).new SmoothFeatureEdit(this, layer, shape, newPoints);
         layer.getUndoManager().addEdit(edit);
         this.fireUndoEditEvent(edit);
 
         shape.setPoints(newPoints);
+        layer.invalidateSpatialIndex();
         this.paintLayers();
     }
 
-    private void onShapeReverseClick(Shape shape) {
+    private void onShapeReverseClick(VectorLayer layer, Shape shape) {
         shape.reverse();
+        layer.invalidateSpatialIndex();
         this.paintLayers();
     }
 
@@ -5198,10 +5225,25 @@ public class MapView extends JPanel implements IWebMapPanel {
 //        }
     }
 
+    /**
+     * Get the indexes of the shapes of a layer inside the draw extent
+     */
+    private List<Integer> getDrawShapeIndexes(VectorLayer aLayer, double LonShift) {
+        return aLayer.queryShapes(MIMath.shiftExtentLon(_drawExtent, -LonShift));
+    }
+
+    /**
+     * Get simplification distance tolerance of half a pixel
+     */
+    private double getSimplifyTolerance() {
+        return 0.5 / Math.max(_scaleX, _scaleY);
+    }
+
     private void drawPolygonLayer(VectorLayer aLayer, Graphics2D g, double LonShift) {
         LegendScheme aLS = aLayer.getLegendScheme();
+        double tolerance = this.getSimplifyTolerance();
 
-        for (int s = 0; s < aLayer.getShapeNum(); s++) {
+        for (int s : this.getDrawShapeIndexes(aLayer, LonShift)) {
             PolygonShape aPGS = (PolygonShape) aLayer.getShapes().get(s);
             if (!aPGS.isVisible()) {
                 continue;
@@ -5213,7 +5255,11 @@ public class MapView extends JPanel implements IWebMapPanel {
 
             PolygonBreak aPGB = (PolygonBreak) aLS.getLegendBreaks().get(aPGS.getLegendIndex());
             if (aPGB.isDrawShape()) {
-                drawPolygonShape(g, aPGS, aPGB, LonShift);
+                if (_simplifyShapes && !aPGS.isEditing()) {
+                    drawPolygonShape(g, aPGS, aLayer.getSimplifiedPolygons(s, tolerance), aPGB, LonShift, false);
+                } else {
+                    drawPolygonShape(g, aPGS, aPGB, LonShift);
+                }
                 //System.out.println(aPGB.getColor().getAlpha());
             }
         }
@@ -5258,8 +5304,9 @@ public class MapView extends JPanel implements IWebMapPanel {
     private void drawPolylineLayer(VectorLayer aLayer, Graphics2D g, double LonShift) {
         LegendScheme aLS = aLayer.getLegendScheme();
 
+        List<Integer> shapeIdxs = this.getDrawShapeIndexes(aLayer, LonShift);
         if (aLS.isGeometry()) {
-            for (int s = 0; s < aLayer.getShapeNum(); s++) {
+            for (int s : shapeIdxs) {
                 PolylineShape aPLS = (PolylineShape) aLayer.getShapes().get(s);
                 if (!aPLS.isVisible()) {
                     continue;
@@ -5294,7 +5341,8 @@ public class MapView extends JPanel implements IWebMapPanel {
                     break;
             }
 
-            for (int s = 0; s < aLayer.getShapeNum(); s++) {
+            double tolerance = this.getSimplifyTolerance();
+            for (int s : shapeIdxs) {
                 PolylineShape aPLS = (PolylineShape) aLayer.getShapes().get(s);
                 if (!aPLS.isVisible()) {
                     continue;
@@ -5305,7 +5353,13 @@ public class MapView extends JPanel implements IWebMapPanel {
 
                 PolylineBreak aPLB = (PolylineBreak) aLS.getLegendBreaks().get(aPLS.getLegendIndex());
                 if (aPLB.getDrawPolyline() || aPLB.getDrawSymbol()) {
-                    drawPolylineShape(g, aPLS, aPLB, LonShift, isStreamline);
+                    //Symbols and streamline arrows are placed by vertex, keep all vertices for them
+                    if (_simplifyShapes && !isStreamline && !aPLB.getDrawSymbol() && !aPLS.isEditing()) {
+                        drawPolylineShape(g, aPLS, aLayer.getSimplifiedPolylines(s, tolerance), aPLB, LonShift,
+                                false, false, false);
+                    } else {
+                        drawPolylineShape(g, aPLS, aPLB, LonShift, isStreamline);
+                    }
                 }
             }
         }
@@ -5432,6 +5486,11 @@ public class MapView extends JPanel implements IWebMapPanel {
 
     private void drawPolylineShape(Graphics2D g, PolylineShape aPLS, PolylineBreak aPLB, double LonShift,
             boolean isStreamline, boolean isSelected, boolean isIdentifer) {
+        drawPolylineShape(g, aPLS, aPLS.getPolylines(), aPLB, LonShift, isStreamline, isSelected, isIdentifer);
+    }
+
+    private void drawPolylineShape(Graphics2D g, PolylineShape aPLS, List<? extends Polyline> polylines,
+            PolylineBreak aPLB, double LonShift, boolean isStreamline, boolean isSelected, boolean isIdentifer) {
         Extent shapeExtent = MIMath.shiftExtentLon(aPLS.getExtent(), LonShift);
         if (!MIMath.isExtentCross(shapeExtent, _drawExtent)) {
             return;
@@ -5455,7 +5514,7 @@ public class MapView extends JPanel implements IWebMapPanel {
 
         List<PointF> drawPs = new ArrayList<>();
         if (aPLB.getDrawPolyline()) {
-            for (Polyline aline : aPLS.getPolylines()) {
+            for (Polyline aline : polylines) {
                 double[] sXY;
                 PointF[] Points = new PointF[aline.getPointList().size()];
                 for (int i = 0; i < aline.getPointList().size(); i++) {
@@ -5610,13 +5669,18 @@ public class MapView extends JPanel implements IWebMapPanel {
 
     private void drawPolygonShape(Graphics2D g, PolygonShape aPGS, PolygonBreak aPGB, double LonShift,
             boolean isSelected) {
+        drawPolygonShape(g, aPGS, aPGS.getPolygons(), aPGB, LonShift, isSelected);
+    }
+
+    private void drawPolygonShape(Graphics2D g, PolygonShape aPGS, List<? extends Polygon> polygons,
+            PolygonBreak aPGB, double LonShift, boolean isSelected) {
         Extent shapeExtent = MIMath.shiftExtentLon(aPGS.getExtent(), LonShift);
         if (!MIMath.isExtentCross(shapeExtent, _drawExtent)) {
             return;
         }
 
         List<PointF> pointList = new ArrayList<>();
-        for (Polygon aPolygon : aPGS.getPolygons()) {
+        for (Polygon aPolygon : polygons) {
             pointList.addAll(drawPolygon(g, aPolygon, aPGB, LonShift, aPGS.isSelected()));
         }
 
@@ -7228,13 +7292,7 @@ public class MapView extends JPanel implements IWebMapPanel {
     }
 
     private void moveShape(Shape aShape, double xShift, double yShift) {
-        List<PointD> points = (List<PointD>) aShape.getPoints();
-        for (PointD aPoint : points) {
-            aPoint.X += xShift;
-            aPoint.Y += yShift;
-        }
-
-        aShape.setPoints(points);
+        aShape.move(xShift, yShift);
     }
 
     /**
@@ -7248,6 +7306,7 @@ public class MapView extends JPanel implements IWebMapPanel {
         double[] min = screenToProj((double) newRect.x, (double) newRect.y + newRect.height);
         double[] max = screenToProj((double) newRect.x + newRect.width, (double) newRect.y);
         Extent newExtent = new Extent(min[0], max[0], min[1], max[1]);
+        aShape.unpackPoints();
         List<PointD> points = (List<PointD>) aShape.getPoints();
         Extent aExtent = aShape.getExtent();
 
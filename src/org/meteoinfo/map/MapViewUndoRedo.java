@@ -478,12 +478,14 @@ public class MapViewUndoRedo {
     
     class MoveFeaturesEdit extends FeatureUndoableEdit {
         MapView mapView;
+        VectorLayer layer;
         List<Shape> shapes;
         Point fromPoint;
         Point toPoint;
         
-        public MoveFeaturesEdit(MapView mapView, List<Shape> shapes, Point fromPoint, Point toPoint){
+        public MoveFeaturesEdit(MapView mapView, VectorLayer layer, List<Shape> shapes, Point fromPoint, Point toPoint){
             this.mapView = mapView;
+            this.layer = layer;
             this.shapes = shapes;
             this.fromPoint = new Point(fromPoint.x, fromPoint.y);
             this.toPoint = new Point(toPoint.x, toPoint.y);
@@ -499,6 +501,7 @@ public class MapViewUndoRedo {
             super.undo();
             for (Shape shape : shapes)
                 mapView.moveShapeOnScreen(shape, toPoint, fromPoint);
+            layer.updateExtent();
             mapView.paintLayers();
         }
         
@@ -507,12 +510,14 @@ public class MapViewUndoRedo {
             super.redo();
             for (Shape shape : shapes)
                 mapView.moveShapeOnScreen(shape, fromPoint, toPoint);
+            layer.updateExtent();
             mapView.paintLayers();
         }
     }
     
     class MoveFeatureVerticeEdit extends FeatureUndoableEdit {
         MapView mapView;
+        VectorLayer layer;
         Shape shape;
         int verticeIdx;
         double newX;
@@ -520,8 +525,9 @@ public class MapViewUndoRedo {
         double oldX;
         double oldY;
         
-        public MoveFeatureVerticeEdit(MapView mapView, Shape shape, int vIdx, double newX, double newY){
+        public MoveFeatureVerticeEdit(MapView mapView, VectorLayer layer, Shape shape, int vIdx, double newX, double newY){
             this.mapView = mapView;
+            this.layer = layer;
             this.shape = shape;            
             this.verticeIdx = vIdx;
             this.newX = newX;
@@ -539,6 +545,7 @@ public class MapViewUndoRedo {
         public void undo() {
             super.undo();
             shape.moveVertice(verticeIdx, oldX, oldY);
+            layer.invalidateSpatialIndex();
             mapView.paintLayers();
         }
         
@@ -546,18 +553,21 @@ public class MapViewUndoRedo {
         public void redo(){
             super.redo();
             shape.moveVertice(verticeIdx, newX, newY);
+            layer.invalidateSpatialIndex();
             mapView.paintLayers();
         }
     }
     
     class AddFeatureVerticeEdit extends AbstractUndoableEdit {
         MapView mapView;
+        VectorLayer layer;
         Shape shape;
         int verticeIdx;
         PointD vertice;
         
-        public AddFeatureVerticeEdit(MapView mapView, Shape shape, int vIdx, PointD vertice){
+        public AddFeatureVerticeEdit(MapView mapView, VectorLayer layer, Shape shape, int vIdx, PointD vertice){
             this.mapView = mapView;
+            this.layer = layer;
             this.shape = shape;            
             this.verticeIdx = vIdx;
             this.vertice = vertice;
@@ -572,6 +582,7 @@ public class MapViewUndoRedo {
         public void undo() {
             super.undo();
             shape.removeVerice(verticeIdx);
+            layer.invalidateSpatialIndex();
             mapView.paintLayers();
         }
         
@@ -579,18 +590,21 @@ public class MapViewUndoRedo {
         public void redo(){
             super.redo();
             shape.addVertice(verticeIdx, vertice);
+            layer.invalidateSpatialIndex();
             mapView.paintLayers();
         }
     }
     
     class RemoveFeatureVerticeEdit extends AbstractUndoableEdit {
         MapView mapView;
+        VectorLayer layer;
         Shape shape;
         int verticeIdx;
         PointD vertice;
         
-        public RemoveFeatureVerticeEdit(MapView mapView, Shape shape, int vIdx){
+        public RemoveFeatureVerticeEdit(MapView mapView, VectorLayer layer, Shape shape, int vIdx){
             this.mapView = mapView;
+            this.layer = layer;
             this.shape = shape;            
             this.verticeIdx = vIdx;
             this.vertice = shape.getPoints().get(vIdx);
@@ -605,6 +619,7 @@ public class MapViewUndoRedo {
         public void undo() {
             super.undo();
             shape.addVertice(verticeIdx, vertice);
+            layer.invalidateSpatialIndex();
             mapView.paintLayers();
         }
         
@@ -612,6 +627,7 @@ public class MapViewUndoRedo {
         public void redo(){
             super.redo();
             shape.removeVerice(verticeIdx);
+            layer.invalidateSpatialIndex();
             mapView.paintLayers();
         }
     }
@@ -909,12 +925,14 @@ public class MapViewUndoRedo {
     
     class SmoothFeatureEdit extends AbstractUndoableEdit {
         MapView mapView;
+        VectorLayer layer;
         Shape shape;
         List<PointD> oldPoints;
         List<PointD> newPoints;
         
-        public SmoothFeatureEdit(MapView mapView, Shape shape, List<PointD> points){
+        public SmoothFeatureEdit(MapView mapView, VectorLayer layer, Shape shape, List<PointD> points){
             this.mapView = mapView;
+            this.layer = layer;
             this.shape = shape;
             this.newPoints = points;
             this.oldPoints = (List<PointD>)shape.getPoints();
@@ -929,6 +947,7 @@ public class MapViewUndoRedo {
         public void undo() {
             super.undo();
             shape.setPoints(oldPoints);
+            layer.invalidateSpatialIndex();
             mapView.paintLayers();
         }
         
@@ -936,6 +955,7 @@ public class MapViewUndoRedo {
         public void redo(){
             super.redo();
             shape.setPoints(newPoints);
+            layer.invalidateSpatialIndex();
             mapView.paintLayers();
         }
     }
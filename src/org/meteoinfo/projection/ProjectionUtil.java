@@ -847,10 +847,13 @@ public class ProjectionUtil {
             List<PointD> newPoints = new ArrayList<>();
             Polyline aPL = aPLS.getPolylines().get(i);
             Polyline bPL;
+            List<? extends PointD> pList = aPL.getPointList();
+            int n = pList.size();
+            double[] xs = new double[n];
+            double[] ys = new double[n];
             double x;
-            for (int j = 0; j < aPL.getPointList().size(); j++) {
-                double[][] points = new double[1][];
-                PointD wPoint = aPL.getPointList().get(j);
+            for (int j = 0; j < n; j++) {
+                PointD wPoint = pList.get(j);
                 x = wPoint.X;
                 if (fromProj.isLonLat()){
                     if (x > 180){
@@ -859,17 +862,16 @@ public class ProjectionUtil {
                         x += 360;
                     }                    
                 }
-                points[0] = new double[]{x, wPoint.Y};
-                try {
-                    Reproject.reprojectPoints(points, fromProj, toProj, 0, points.length);
-                    if (!Double.isNaN(points[0][0]) && !Double.isNaN(points[0][1])) {
-                        //wPoint = new PointD();
-                        wPoint.X = points[0][0];
-                        wPoint.Y = points[0][1];
-                        newPoints.add(wPoint);
-                    }
-                } catch (Exception e) {
-                    break;
+                xs[j] = x;
+                ys[j] = wPoint.Y;
+            }
+            Reproject.reprojectPoints(xs, ys, fromProj, toProj);
+            for (int j = 0; j < n; j++) {
+                if (!Double.isNaN(xs[j]) && !Double.isNaN(ys[j])) {
+                    PointD wPoint = pList.get(j);
+                    wPoint.X = xs[j];
+                    wPoint.Y = ys[j];
+                    newPoints.add(wPoint);
                 }
             }
 
@@ -992,20 +994,18 @@ public class ProjectionUtil {
             for (int r = 0; r < aPG.getRingNumber(); r++) {
                 List<PointD> pList = (List<PointD>)aPG.getRings().get(r);
                 List<PointD> newPoints = new ArrayList<>();
-                for (int j = 0; j < pList.size(); j++) {
-                    double[][] points = new double[1][];
+                int n = pList.size();
+                double[] xs = new double[n];
+                double[] ys = new double[n];
+                for (int j = 0; j < n; j++) {
                     PointD wPoint = pList.get(j);
-                    points[0] = new double[]{wPoint.X, wPoint.Y};
-                    try {
-                        Reproject.reprojectPoints(points, fromProj, toProj, 0, points.length);
-                        if (!Double.isNaN(points[0][0]) && !Double.isNaN(points[0][1])) {
-                            wPoint = new PointD();
-                            wPoint.X = points[0][0];
-                            wPoint.Y = points[0][1];
-                            newPoints.add(wPoint);
-                        }
-                    } catch (Exception e) {
-                        break;
+                    xs[j] = wPoint.X;
+                    ys[j] = wPoint.Y;
+                }
+                Reproject.reprojectPoints(xs, ys, fromProj, toProj);
+                for (int j = 0; j < n; j++) {
+                    if (!Double.isNaN(xs[j]) && !Double.isNaN(ys[j])) {
+                        newPoints.add(new PointD(xs[j], ys[j]));
                     }
                 }
 
@@ -1157,20 +1157,18 @@ public class ProjectionUtil {
             for (int r = 0; r < aPG.getRingNumber(); r++) {
                 List<PointD> pList = (List<PointD>)aPG.getRings().get(r);
                 List<PointD> newPoints = new ArrayList<>();
-                for (int j = 0; j < pList.size(); j++) {
-                    double[][] points = new double[1][];
+                int n = pList.size();
+                double[] xs = new double[n];
+                double[] ys = new double[n];
+                for (int j = 0; j < n; j++) {
                     PointD wPoint = pList.get(j);
-                    points[0] = new double[]{wPoint.X, wPoint.Y};
-                    try {
-                        Reproject.reprojectPoints(points, fromProj, toProj, 0, points.length);
-                        if (!Double.isNaN(points[0][0]) && !Double.isNaN(points[0][1])) {
-                            wPoint = new PointD();
-                            wPoint.X = points[0][0];
-                            wPoint.Y = points[0][1];
-                            newPoints.add(wPoint);
-                        }
-                    } catch (Exception e) {
-                        break;
+                    xs[j] = wPoint.X;
+                    ys[j] = wPoint.Y;
+                }
+                Reproject.reprojectPoints(xs, ys, fromProj, toProj);
+                for (int j = 0; j < n; j++) {
+                    if (!Double.isNaN(xs[j]) && !Double.isNaN(ys[j])) {
+                        newPoints.add(new PointD(xs[j], ys[j]));
                     }
                 }
 
@@ -13,10 +13,17 @@
  */
 package org.meteoinfo.projection;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.meteoinfo.global.PointD;
+import org.meteoinfo.global.util.ParallelUtil;
+import org.meteoinfo.projection.proj4j.CoordinateReferenceSystem;
 import org.meteoinfo.projection.proj4j.CoordinateTransform;
 import org.meteoinfo.projection.proj4j.CoordinateTransformFactory;
 import org.meteoinfo.projection.proj4j.ProjCoordinate;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
 
 /**
  *
@@ -25,6 +32,45 @@ import org.meteoinfo.projection.proj4j.ProjCoordinate;
 public class Reproject {
 
     private static final CoordinateTransformFactory ctFactory = new CoordinateTransformFactory();
+    private static final int TRANSFORM_CACHE_SIZE = 32;
+    private static final Map<TransformKey, CoordinateTransform> transformCache
+            = new LinkedHashMap<TransformKey, CoordinateTransform>(TRANSFORM_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TransformKey, CoordinateTransform> eldest) {
+            return size() > TRANSFORM_CACHE_SIZE;
+        }
+    };
+    private static final int PARALLEL_CHUNK = 4096;
+
+    /**
+     * Get the coordinate transform between two projections. Transforms are
+     * cached by the coordinate reference system pair. The returned transform
+     * is shared, use the thread safe transform methods with it.
+     *
+     * @param source Source projection info
+     * @param dest Destination projection info
+     * @return Coordinate transform
+     */
+    public static CoordinateTransform getTransform(ProjectionInfo source, ProjectionInfo dest) {
+        TransformKey key = new TransformKey(source.getCoordinateReferenceSystem(), dest.getCoordinateReferenceSystem());
+        synchronized (transformCache) {
+            CoordinateTransform trans = transformCache.get(key);
+            if (trans == null) {
+                trans = ctFactory.createTransform(key.source, key.dest);
+                transformCache.put(key, trans);
+            }
+            return trans;
+        }
+    }
+
+    /**
+     * Clear the coordinate transform cache
+     */
+    public static void clearTransformCache() {
+        synchronized (transformCache) {
+            transformCache.clear();
+        }
+    }
 
     /**
      * Reproject a point
@@ -62,7 +108,7 @@ public class Reproject {
      * @param numPoints Point number
      */
     public static void reprojectPoints(double[][] points, ProjectionInfo source, ProjectionInfo dest, int startIndex, int numPoints) {
-        CoordinateTransform trans = ctFactory.createTransform(source.getCoordinateReferenceSystem(), dest.getCoordinateReferenceSystem());
+        CoordinateTransform trans = getTransform(source, dest);
         if (source.getProjectionName() == ProjectionNames.LongLat) {
             for (int i = startIndex; i < startIndex + numPoints; i++) {
                 if (i >= points.length) {
@@ -73,15 +119,164 @@ public class Reproject {
                 }
             }
         }
+        ProjCoordinate p1 = new ProjCoordinate();
+        ProjCoordinate p2 = new ProjCoordinate();
+        ProjCoordinate geo = new ProjCoordinate();
         for (int i = startIndex; i < startIndex + numPoints; i++) {
             if (i >= points.length) {
                 break;
             }
-            ProjCoordinate p1 = new ProjCoordinate(points[i][0], points[i][1]);
-            ProjCoordinate p2 = new ProjCoordinate();
-            trans.transform(p1, p2);
+            p1.setValue(points[i][0], points[i][1]);
+            trans.transform(p1, p2, geo);
             points[i][0] = p2.x;
             points[i][1] = p2.y;
         }
     }
+
+    /**
+     * Reproject points in place. Points failed to reproject are set to NaN.
+     *
+     * @param xs X coordinates
+     * @param ys Y coordinates
+     * @param source Source projection info
+     * @param dest Destination projection info
+     */
+    public static void reprojectPoints(double[] xs, double[] ys, ProjectionInfo source, ProjectionInfo dest) {
+        reprojectPoints(xs, ys, source, dest, 0, xs.length);
+    }
+
+    /**
+     * Reproject points in place. Points failed to reproject are set to NaN.
+     *
+     * @param xs X coordinates
+     * @param ys Y coordinates
+     * @param source Source projection info
+     * @param dest Destination projection info
+     * @param start Start index (inclusive)
+     * @param end End index (exclusive)
+     */
+    public static void reprojectPoints(double[] xs, double[] ys, ProjectionInfo source, ProjectionInfo dest,
+            int start, int end) {
+        CoordinateTransform trans = getTransform(source, dest);
+        reprojectPoints(trans, source.getProjectionName() == ProjectionNames.LongLat, xs, ys, start, end);
+    }
+
+    /**
+     * Reproject points in place, optionally split across the threads of
+     * ParallelUtil. Points failed to reproject are set to NaN.
+     *
+     * @param xs X coordinates
+     * @param ys Y coordinates
+     * @param source Source projection info
+     * @param dest Destination projection info
+     * @param parallel Split the points across threads or not
+     */
+    public static void reprojectPoints(final double[] xs, final double[] ys, ProjectionInfo source,
+            ProjectionInfo dest, boolean parallel) {
+        if (!parallel) {
+            reprojectPoints(xs, ys, source, dest);
+            return;
+        }
+
+        final CoordinateTransform trans = getTransform(source, dest);
+        final boolean isLonLat = source.getProjectionName() == ProjectionNames.LongLat;
+        ParallelUtil.parallelFor(xs.length, PARALLEL_CHUNK, new ParallelUtil.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                reprojectPoints(trans, isLonLat, xs, ys, start, end);
+            }
+        });
+    }
+
+    private static void reprojectPoints(CoordinateTransform trans, boolean isLonLat, double[] xs, double[] ys,
+            int start, int end) {
+        if (isLonLat) {
+            for (int i = start; i < end; i++) {
+                if (xs[i] > 180.0) {
+                    xs[i] -= 360;
+                }
+            }
+        }
+        trans.transform(xs, ys, start, end);
+    }
+
+    /**
+     * Reproject coordinate arrays. Points failed to reproject are set to NaN.
+     *
+     * @param x X coordinate array
+     * @param y Y coordinate array
+     * @param source Source projection info
+     * @param dest Destination projection info
+     * @param parallel Split the points across threads or not
+     * @return Reprojected x and y double arrays with same shape of x
+     */
+    public static Array[] reprojectPoints(Array x, Array y, ProjectionInfo source, ProjectionInfo dest,
+            boolean parallel) {
+        double[] xs = toDoubles(x);
+        double[] ys = toDoubles(y);
+        reprojectPoints(xs, ys, source, dest, parallel);
+        return new Array[]{Array.factory(DataType.DOUBLE, x.getShape(), xs),
+            Array.factory(DataType.DOUBLE, x.getShape(), ys)};
+    }
+
+    /**
+     * Reproject coordinate arrays in place. Points failed to reproject are set
+     * to NaN.
+     *
+     * @param x X coordinate array
+     * @param y Y coordinate array
+     * @param source Source projection info
+     * @param dest Destination projection info
+     */
+    public static void reprojectPointsInPlace(Array x, Array y, ProjectionInfo source, ProjectionInfo dest) {
+        double[] xs = toDoubles(x);
+        double[] ys = toDoubles(y);
+        reprojectPoints(xs, ys, source, dest, xs.length > PARALLEL_CHUNK);
+        IndexIterator xIter = x.getIndexIterator();
+        IndexIterator yIter = y.getIndexIterator();
+        int i = 0;
+        while (xIter.hasNext()) {
+            xIter.setDoubleNext(xs[i]);
+            yIter.setDoubleNext(ys[i]);
+            i++;
+        }
+    }
+
+    private static double[] toDoubles(Array a) {
+        double[] r = new double[(int) a.getSize()];
+        IndexIterator iter = a.getIndexIterator();
+        int i = 0;
+        while (iter.hasNext()) {
+            r[i++] = iter.getDoubleNext();
+        }
+        return r;
+    }
+
+    /**
+     * Coordinate transform cache key
+     */
+    private static class TransformKey {
+
+        final CoordinateReferenceSystem source;
+        final CoordinateReferenceSystem dest;
+
+        TransformKey(CoordinateReferenceSystem source, CoordinateReferenceSystem dest) {
+            this.source = source;
+            this.dest = dest;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TransformKey)) {
+                return false;
+            }
+            TransformKey key = (TransformKey) obj;
+            return key.source == source && key.dest == dest;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(source) + System.identityHashCode(dest);
+        }
+    }
 }
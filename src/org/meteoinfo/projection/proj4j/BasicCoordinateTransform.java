@@ -111,6 +111,25 @@ implements CoordinateTransform
    * @throws Proj4jException if a computation error is encountered
 	 */
 	public ProjCoordinate transform( ProjCoordinate src, ProjCoordinate tgt )
+  throws Proj4jException
+	{
+    return transform(src, tgt, geoCoord);
+  }
+
+  /**
+   * Tranforms a coordinate using a caller supplied temporary coordinate.
+   * Unlike {@link #transform(ProjCoordinate, ProjCoordinate)} this method
+   * does not touch any state of this transform, so it is safe to call
+   * from several threads at the same time.
+   * 
+   * @param src the input coordinate to be transformed
+   * @param tgt the transformed coordinate
+   * @param geoCoord the temporary geographic coordinate
+   * @return the target coordinate which was passed in
+   * 
+   * @throws Proj4jException if a computation error is encountered
+   */
+  public ProjCoordinate transform( ProjCoordinate src, ProjCoordinate tgt, ProjCoordinate geoCoord )
   throws Proj4jException
 	{
 		// NOTE: this method may be called many times, so needs to be as efficient as possible
@@ -144,6 +163,39 @@ implements CoordinateTransform
 		return tgt;
 	}
   
+  /**
+   * Tranforms coordinate arrays in place. Points which fail to transform
+   * are set to NaN. This method is thread safe.
+   * 
+   * @param xs the x coordinates
+   * @param ys the y coordinates
+   * @param start the start index (inclusive)
+   * @param end the end index (exclusive)
+   * @return the number of points failed to transform
+   */
+  public int transform( double[] xs, double[] ys, int start, int end )
+  {
+    ProjCoordinate src = new ProjCoordinate();
+    ProjCoordinate tgt = new ProjCoordinate();
+    ProjCoordinate geo = new ProjCoordinate();
+    int failed = 0;
+    for (int i = start; i < end; i++) {
+      src.x = xs[i];
+      src.y = ys[i];
+      src.clearZ();
+      try {
+        transform(src, tgt, geo);
+        xs[i] = tgt.x;
+        ys[i] = tgt.y;
+      } catch (RuntimeException e) {
+        xs[i] = Double.NaN;
+        ys[i] = Double.NaN;
+        failed++;
+      }
+    }
+    return failed;
+  }
+  
   /**
    * 
    * Input:  long/lat/z coordinates in radians in the source datum
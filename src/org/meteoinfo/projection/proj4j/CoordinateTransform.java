@@ -28,4 +28,30 @@ public interface CoordinateTransform {
      */
     public ProjCoordinate transform(ProjCoordinate src, ProjCoordinate tgt)
             throws Proj4jException;
+
+    /**
+     * Tranforms a coordinate using a caller supplied temporary coordinate, so
+     * the call is thread safe.
+     *
+     * @param src the input coordinate to transform
+     * @param tgt the transformed coordinate
+     * @param geoCoord the temporary geographic coordinate
+     * @return the target coordinate which was passed in
+     *
+     * @throws Proj4jException if a computation error is encountered
+     */
+    public ProjCoordinate transform(ProjCoordinate src, ProjCoordinate tgt, ProjCoordinate geoCoord)
+            throws Proj4jException;
+
+    /**
+     * Tranforms coordinate arrays in place. Points which fail to transform
+     * are set to NaN. The call is thread safe.
+     *
+     * @param xs the x coordinates
+     * @param ys the y coordinates
+     * @param start the start index (inclusive)
+     * @param end the end index (exclusive)
+     * @return the number of points failed to transform
+     */
+    public int transform(double[] xs, double[] ys, int start, int end);
 }
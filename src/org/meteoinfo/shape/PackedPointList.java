@@ -0,0 +1,323 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.shape;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import org.meteoinfo.global.Extent;
+import org.meteoinfo.global.PointD;
+import org.meteoinfo.jts.geom.Coordinate;
+import org.meteoinfo.jts.geom.CoordinateSequence;
+import org.meteoinfo.jts.geom.Envelope;
+
+/**
+ * Point list with the coordinates packed in one x, y interleaved array of
+ * double or float values, which takes 16 or 8 bytes per point instead of a
+ * PointD object per point. The list has fixed size. A PointD created by get()
+ * is a copy of the coordinates, use set() to change a point. Sub lists are
+ * views on the same array, so the parts of a shape do not copy the
+ * coordinates.
+ *
+ * @author Yaqiang Wang
+ */
+public class PackedPointList extends AbstractList<PointD> implements RandomAccess {
+
+    // <editor-fold desc="Variables">
+    private final double[] dxy;
+    private final float[] fxy;
+    private final int offset;
+    private final int size;
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor
+     *
+     * @param xy Interleaved x, y coordinates
+     */
+    public PackedPointList(double[] xy) {
+        this(xy, null, 0, xy.length / 2);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param xy Interleaved x, y coordinates with float precision
+     */
+    public PackedPointList(float[] xy) {
+        this(null, xy, 0, xy.length / 2);
+    }
+
+    private PackedPointList(double[] dxy, float[] fxy, int offset, int size) {
+        this.dxy = dxy;
+        this.fxy = fxy;
+        this.offset = offset;
+        this.size = size;
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get if the coordinates have float precision
+     *
+     * @return Boolean
+     */
+    public boolean isFloat() {
+        return fxy != null;
+    }
+
+    /**
+     * Get x coordinate
+     *
+     * @param idx Point index
+     * @return X coordinate
+     */
+    public double getX(int idx) {
+        int i = (offset + idx) * 2;
+        return dxy != null ? dxy[i] : fxy[i];
+    }
+
+    /**
+     * Get y coordinate
+     *
+     * @param idx Point index
+     * @return Y coordinate
+     */
+    public double getY(int idx) {
+        int i = (offset + idx) * 2 + 1;
+        return dxy != null ? dxy[i] : fxy[i];
+    }
+
+    /**
+     * Set the coordinates of a point
+     *
+     * @param idx Point index
+     * @param x X coordinate
+     * @param y Y coordinate
+     */
+    public void setXY(int idx, double x, double y) {
+        int i = (offset + idx) * 2;
+        if (dxy != null) {
+            dxy[i] = x;
+            dxy[i + 1] = y;
+        } else {
+            fxy[i] = (float) x;
+            fxy[i + 1] = (float) y;
+        }
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    /**
+     * Pack a point list
+     *
+     * @param points The points
+     * @param floatPrecision If store the coordinates as float values
+     * @return Packed point list
+     */
+    public static PackedPointList pack(List<? extends PointD> points, boolean floatPrecision) {
+        int n = points.size();
+        PackedPointList r = floatPrecision ? new PackedPointList(new float[n * 2])
+                : new PackedPointList(new double[n * 2]);
+        if (points instanceof PackedPointList) {
+            PackedPointList pp = (PackedPointList) points;
+            for (int i = 0; i < n; i++) {
+                r.setXY(i, pp.getX(i), pp.getY(i));
+            }
+        } else {
+            int i = 0;
+            for (PointD p : points) {
+                r.setXY(i++, p.X, p.Y);
+            }
+        }
+        return r;
+    }
+
+    @Override
+    public PointD get(int idx) {
+        if (idx < 0 || idx >= size) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + size);
+        }
+        return new PointD(getX(idx), getY(idx));
+    }
+
+    @Override
+    public PointD set(int idx, PointD p) {
+        PointD old = get(idx);
+        setXY(idx, p.X, p.Y);
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public PackedPointList subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + size);
+        }
+        return new PackedPointList(dxy, fxy, offset + fromIndex, toIndex - fromIndex);
+    }
+
+    /**
+     * Get extent of the points
+     *
+     * @return Extent
+     */
+    public Extent getExtent() {
+        Extent extent = new Extent();
+        if (size == 0) {
+            return extent;
+        }
+        extent.minX = extent.maxX = getX(0);
+        extent.minY = extent.maxY = getY(0);
+        for (int i = 1; i < size; i++) {
+            double x = getX(i);
+            double y = getY(i);
+            if (x < extent.minX) {
+                extent.minX = x;
+            } else if (x > extent.maxX) {
+                extent.maxX = x;
+            }
+            if (y < extent.minY) {
+                extent.minY = y;
+            } else if (y > extent.maxY) {
+                extent.maxY = y;
+            }
+        }
+        return extent;
+    }
+
+    /**
+     * Get a coordinate sequence view of the points. The coordinates are not
+     * copied.
+     *
+     * @return Coordinate sequence
+     */
+    public CoordinateSequence toCoordinateSequence() {
+        return new Sequence(this);
+    }
+
+    /**
+     * Check if the first and the last points are same
+     *
+     * @return Boolean
+     */
+    public boolean isClosed() {
+        return size > 0 && getX(0) == getX(size - 1) && getY(0) == getY(size - 1);
+    }
+    // </editor-fold>
+
+    /**
+     * Two dimension coordinate sequence on a packed point list
+     */
+    public static class Sequence implements CoordinateSequence {
+
+        private final PackedPointList points;
+
+        /**
+         * Constructor
+         *
+         * @param points Packed point list
+         */
+        public Sequence(PackedPointList points) {
+            this.points = points;
+        }
+
+        @Override
+        public int getDimension() {
+            return 2;
+        }
+
+        @Override
+        public Coordinate getCoordinate(int i) {
+            return new Coordinate(points.getX(i), points.getY(i));
+        }
+
+        @Override
+        public Coordinate getCoordinateCopy(int i) {
+            return getCoordinate(i);
+        }
+
+        @Override
+        public void getCoordinate(int index, Coordinate coord) {
+            coord.x = points.getX(index);
+            coord.y = points.getY(index);
+        }
+
+        @Override
+        public double getX(int index) {
+            return points.getX(index);
+        }
+
+        @Override
+        public double getY(int index) {
+            return points.getY(index);
+        }
+
+        @Override
+        public double getOrdinate(int index, int ordinateIndex) {
+            switch (ordinateIndex) {
+                case CoordinateSequence.X:
+                    return points.getX(index);
+                case CoordinateSequence.Y:
+                    return points.getY(index);
+                default:
+                    return Double.NaN;
+            }
+        }
+
+        @Override
+        public int size() {
+            return points.size();
+        }
+
+        @Override
+        public void setOrdinate(int index, int ordinateIndex, double value) {
+            switch (ordinateIndex) {
+                case CoordinateSequence.X:
+                    points.setXY(index, value, points.getY(index));
+                    break;
+                case CoordinateSequence.Y:
+                    points.setXY(index, points.getX(index), value);
+                    break;
+            }
+        }
+
+        @Override
+        public Coordinate[] toCoordinateArray() {
+            Coordinate[] cs = new Coordinate[points.size()];
+            for (int i = 0; i < cs.length; i++) {
+                cs[i] = getCoordinate(i);
+            }
+            return cs;
+        }
+
+        @Override
+        public Envelope expandEnvelope(Envelope env) {
+            for (int i = 0; i < points.size(); i++) {
+                env.expandToInclude(points.getX(i), points.getY(i));
+            }
+            return env;
+        }
+
+        @Override
+        public Object clone() {
+            return new Sequence(PackedPointList.pack(points, points.isFloat()));
+        }
+    }
+}
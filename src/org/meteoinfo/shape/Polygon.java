@@ -198,6 +198,22 @@ public class Polygon {
      */
     public Geometry toGeometry(GeometryFactory factory) {
         PointD p;
+        if (isClosedPacked(_outLine)) {
+            //Use the packed coordinates directly if all rings are closed
+            LinearRing shell = factory.createLinearRing(((PackedPointList) _outLine).toCoordinateSequence());
+            LinearRing[] holes = new LinearRing[this._holeLines.size()];
+            int j = 0;
+            for (; j < holes.length; j++) {
+                List<? extends PointD> hole = this._holeLines.get(j);
+                if (!isClosedPacked(hole)) {
+                    break;
+                }
+                holes[j] = factory.createLinearRing(((PackedPointList) hole).toCoordinateSequence());
+            }
+            if (j == holes.length) {
+                return factory.createPolygon(shell, holes);
+            }
+        }
         Coordinate[] cs = new Coordinate[_outLine.size()];
         for (int i = 0; i < cs.length; i++) {
             p = _outLine.get(i);
@@ -231,5 +247,9 @@ public class Polygon {
         }
         return factory.createPolygon(shell, holes);
     }
+
+    private static boolean isClosedPacked(List<? extends PointD> ring) {
+        return ring instanceof PackedPointList && ring.size() > 3 && ((PackedPointList) ring).isClosed();
+    }
     // </editor-fold>
 }
@@ -333,11 +333,35 @@ public class PolygonShape extends Shape implements Cloneable {
     }
     
     protected void updatePolygons() {
-        _polygons = new ArrayList<>();
+        List<Polygon> polygons = new ArrayList<>();
         if (_numParts == 1) {
             Polygon aPolygon = new Polygon();
             aPolygon.setOutLine(_points);
-            ((List<Polygon>)_polygons).add(aPolygon);
+            polygons.add(aPolygon);
+        } else if (_points instanceof PackedPointList) {
+            //Parts are views on the packed coordinates
+            PackedPointList points = (PackedPointList) _points;
+            Polygon aPolygon = null;
+            int numPoints = this.getPointNum();
+            for (int p = 0; p < _numParts; p++) {
+                List<PointD> part = points.subList(parts[p], p == _numParts - 1 ? numPoints : parts[p + 1]);
+                if (GeoComputation.isClockwise(part)) {
+                    if (p > 0) {
+                        polygons.add(aPolygon);
+                    }
+
+                    aPolygon = new Polygon();
+                    aPolygon.setOutLine(part);
+                } else if (aPolygon == null) {
+                    List<PointD> reversed = new ArrayList<>(part);
+                    Collections.reverse(reversed);
+                    aPolygon = new Polygon();
+                    aPolygon.setOutLine(reversed);
+                } else {
+                    aPolygon.addHole(part);
+                }
+            }
+            polygons.add(aPolygon);
         } else {
             PointD[] Pointps;
             Polygon aPolygon = null;
@@ -357,7 +381,7 @@ public class PolygonShape extends Shape implements Cloneable {
                 
                 if (GeoComputation.isClockwise(Pointps)) {
                     if (p > 0) {
-                        ((List<Polygon>)_polygons).add(aPolygon);
+                        polygons.add(aPolygon);
                     }
                     
                     aPolygon = new Polygon();
@@ -370,10 +394,72 @@ public class PolygonShape extends Shape implements Cloneable {
                     aPolygon.addHole(Arrays.asList(Pointps));
                 }
             }
-            ((List<Polygon>)_polygons).add(aPolygon);
+            polygons.add(aPolygon);
         }
+        _polygons = polygons;
     }
     
+    /**
+     * Store the points packed in one coordinate array. The polygon rings
+     * become views on the array. Shapes with Z or M values are not packed.
+     *
+     * @param floatPrecision If store the coordinates as float values
+     */
+    public void packPoints(boolean floatPrecision) {
+        if (_points instanceof PackedPointList || _points.isEmpty()
+                || _points.get(0).getClass() != PointD.class) {
+            return;
+        }
+
+        List<PointD> points = new ArrayList<>(_points.size());
+        List<Integer> partList = new ArrayList<>();
+        for (Polygon polygon : _polygons) {
+            for (List<? extends PointD> ring : polygon.getRings()) {
+                partList.add(points.size());
+                points.addAll(ring);
+            }
+        }
+        PackedPointList packed = PackedPointList.pack(points, floatPrecision);
+        int idx = 0;
+        for (Polygon polygon : _polygons) {
+            int n = polygon.getOutLine().size();
+            polygon.setOutLine(packed.subList(idx, idx + n));
+            idx += n;
+            for (int i = 0; i < polygon.getHoleLineNumber(); i++) {
+                n = polygon.getHoleLine(i).size();
+                polygon.setHoleLine(i, packed.subList(idx, idx + n));
+                idx += n;
+            }
+        }
+        _points = packed;
+        _numParts = partList.size();
+        parts = new int[_numParts];
+        for (int i = 0; i < _numParts; i++) {
+            parts[i] = partList.get(i);
+        }
+    }
+
+    /**
+     * Replace packed point storage by a point list which can be edited
+     */
+    @Override
+    public void unpackPoints() {
+        if (!(_points instanceof PackedPointList)) {
+            return;
+        }
+
+        List<Polygon> polygons = new ArrayList<>();
+        for (Polygon polygon : _polygons) {
+            Polygon aPolygon = new Polygon();
+            aPolygon.setOutLine(new ArrayList<>(polygon.getOutLine()));
+            for (List<? extends PointD> hole : polygon.getHoleLines()) {
+                aPolygon.addHole(new ArrayList<>(hole));
+            }
+            polygons.add(aPolygon);
+        }
+        this.setPolygons(polygons);
+    }
+
     private void updatePartsPoints() {
         _numParts = 0;
         _points = new ArrayList<>();
@@ -456,6 +542,7 @@ public class PolygonShape extends Shape implements Cloneable {
      */
     @Override
     public void addVertice(int vIdx, PointD vertice) {        
+        this.unpackPoints();
         int partIdx = getPartIndex(vIdx);
         if (partIdx < _numParts - 1) {
             parts[partIdx + 1] += 1;
@@ -473,6 +560,7 @@ public class PolygonShape extends Shape implements Cloneable {
      */
     @Override
     public void removeVerice(int vIdx) {        
+        this.unpackPoints();
         int partIdx = getPartIndex(vIdx);
         if (partIdx < _numParts - 1) {
             parts[partIdx + 1] -= 1;
@@ -117,7 +117,9 @@ public class PolylineShape extends Shape implements Cloneable {
     @Override
     public Geometry toGeometry(GeometryFactory factory) {
         PointD p;
-        if (this.getPartNum() == 1) {
+        if (this.getPartNum() == 1 && this._points instanceof PackedPointList) {
+            return factory.createLineString(((PackedPointList) this._points).toCoordinateSequence());
+        } else if (this.getPartNum() == 1) {
             Coordinate[] cs = new Coordinate[this.getPointNum()];
             for (int i = 0; i < cs.length; i++) {
                 p = this._points.get(i);
@@ -128,6 +130,10 @@ public class PolylineShape extends Shape implements Cloneable {
             LineString[] lss = new LineString[this._polylines.size()];
             for (int j = 0; j < lss.length; j++) {
                 Polyline line = this._polylines.get(j);
+                if (line.getPointList() instanceof PackedPointList) {
+                    lss[j] = factory.createLineString(((PackedPointList) line.getPointList()).toCoordinateSequence());
+                    continue;
+                }
                 Coordinate[] cs = new Coordinate[line.getPointList().size()];
                 for (int i = 0; i < cs.length; i++) {
                     p = line.getPointList().get(i);
@@ -228,12 +234,63 @@ public class PolylineShape extends Shape implements Cloneable {
     // </editor-fold>
     // <editor-fold desc="Methods">
 
+    /**
+     * Store the points packed in one coordinate array. The polylines become
+     * views on the array. Shapes with Z or M values are not packed.
+     *
+     * @param floatPrecision If store the coordinates as float values
+     */
+    public void packPoints(boolean floatPrecision) {
+        if (_points instanceof PackedPointList || _points.isEmpty()
+                || _points.get(0).getClass() != PointD.class) {
+            return;
+        }
+
+        List<PointD> points = new ArrayList<>(_points.size());
+        for (Polyline line : _polylines) {
+            points.addAll(line.getPointList());
+        }
+        PackedPointList packed = PackedPointList.pack(points, floatPrecision);
+        _numParts = _polylines.size();
+        parts = new int[_numParts];
+        int idx = 0;
+        for (int i = 0; i < _numParts; i++) {
+            Polyline line = _polylines.get(i);
+            int n = line.getPointList().size();
+            parts[i] = idx;
+            line.setPointList(packed.subList(idx, idx + n));
+            idx += n;
+        }
+        _points = packed;
+    }
+
+    /**
+     * Replace packed point storage by a point list which can be edited
+     */
+    @Override
+    public void unpackPoints() {
+        if (!(_points instanceof PackedPointList)) {
+            return;
+        }
+
+        this.setPoints(new ArrayList<>(_points));
+    }
+
     private void updatePolyLines() {
         List<Polyline> polylines = new ArrayList<>();
         if (_numParts == 1) {
             Polyline aPolyLine = new Polyline();
             aPolyLine.setPointList(_points);
             polylines.add(aPolyLine);
+        } else if (_points instanceof PackedPointList) {
+            //Parts are views on the packed coordinates
+            PackedPointList points = (PackedPointList) _points;
+            int numPoints = this.getPointNum();
+            for (int p = 0; p < _numParts; p++) {
+                Polyline aPolyLine = new Polyline();
+                aPolyLine.setPointList(points.subList(parts[p], p == _numParts - 1 ? numPoints : parts[p + 1]));
+                polylines.add(aPolyLine);
+            }
         } else {
             PointD[] Pointps;
             Polyline aPolyLine;
@@ -304,6 +361,7 @@ public class PolylineShape extends Shape implements Cloneable {
      */
     @Override
     public void addVertice(int vIdx, PointD vertice) {
+        this.unpackPoints();
         int partIdx = getPartIndex(vIdx);
         if (partIdx < _numParts - 1) {
             parts[partIdx + 1] += 1;
@@ -321,6 +379,7 @@ public class PolylineShape extends Shape implements Cloneable {
      */
     @Override
     public void removeVerice(int vIdx) {
+        this.unpackPoints();
         int partIdx = getPartIndex(vIdx);
         if (partIdx < _numParts - 1) {
             parts[partIdx + 1] -= 1;
@@ -209,6 +209,12 @@ public abstract class Shape implements Cloneable{
     public void removeVerice(int vIdx){        
     }
 
+    /**
+     * Replace packed point storage by a point list which can be edited
+     */
+    public void unpackPoints() {
+    }
+
     /**
      * Vertice edited update
      *
@@ -217,6 +223,7 @@ public abstract class Shape implements Cloneable{
      * @param newY New Y
      */
     public void moveVertice(int vIdx, double newX, double newY) {
+        this.unpackPoints();
         List<PointD> points = (List<PointD>) getPoints();
         if (this.getShapeType().isPolygon()) {
             int last = points.size() - 1;
@@ -246,6 +253,7 @@ public abstract class Shape implements Cloneable{
      * @param yShift Y shift
      */
     public void move(double xShift, double yShift){
+        this.unpackPoints();
         List<PointD> points = (List<PointD>) this.getPoints();
         for (PointD aPoint : points) {
             aPoint.X += xShift;
@@ -0,0 +1,306 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of one data table column for SQL expression selection. A sorted index
+ * keeps the numeric values in ascending order and answers equality and range
+ * comparisons by binary search, a hash index groups the rows of each string
+ * value and answers equality comparisons. Values the index can not order
+ * (null, NaN or values of other types) are compared one by one.
+ * <p>
+ * An index is a snapshot of the column, the data table rebuilds it when the
+ * table has been modified.
+ *
+ * @author Yaqiang Wang
+ */
+public abstract class ColumnIndex {
+
+    // <editor-fold desc="Variables">
+    final String columnName;
+    final int rowCount;
+    final int modCount;
+    //Rows not in the index and their values
+    int[] otherRows;
+    Object[] otherValues;
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    ColumnIndex(DataTable table, String columnName) {
+        this.columnName = columnName;
+        this.rowCount = table.getRowCount();
+        this.modCount = table.modCount;
+    }
+
+    /**
+     * Create an index of a data table column. A sorted index is created for a
+     * numeric column, otherwise a hash index.
+     *
+     * @param table The data table
+     * @param columnName Column name
+     * @return The index
+     */
+    public static ColumnIndex create(DataTable table, String columnName) {
+        DataColumn col = table.findColumn(columnName);
+        if (col != null && col.getDataType().isNumeric()) {
+            return new SortedIndex(table, columnName);
+        } else {
+            return new HashIndex(table, columnName);
+        }
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get column name
+     *
+     * @return Column name
+     */
+    public String getColumnName() {
+        return this.columnName;
+    }
+
+    /**
+     * Check if the index is still valid for a data table
+     *
+     * @param table The data table
+     * @return Boolean
+     */
+    boolean isValid(DataTable table) {
+        return this.modCount == table.modCount && this.rowCount == table.getRowCount();
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    /**
+     * Select rows by a comparison
+     *
+     * @param opt Compare operator
+     * @param value Expression value token
+     * @return Bit set of the matching row positions, null if the comparison
+     * is not supported by the index
+     */
+    public abstract BitSet select(String opt, String value);
+
+    void setOthers(List<Integer> rows, List<Object> values) {
+        this.otherRows = new int[rows.size()];
+        for (int i = 0; i < otherRows.length; i++) {
+            otherRows[i] = rows.get(i);
+        }
+        this.otherValues = values.toArray();
+    }
+
+    void selectOthers(BitSet r, String opt, String value) {
+        for (int i = 0; i < otherRows.length; i++) {
+            if (SQLExpression.compare(otherValues[i], opt, value)) {
+                r.set(otherRows[i]);
+            }
+        }
+    }
+
+    /**
+     * Sorted index of a numeric column
+     */
+    static class SortedIndex extends ColumnIndex {
+
+        private final float[] keys;
+        private final int[] rows;
+
+        SortedIndex(DataTable table, String columnName) {
+            super(table, columnName);
+            int n = table.getRowCount();
+            DataRowCollection tableRows = table.getRows();
+            long[] packed = new long[n];
+            int m = 0;
+            List<Integer> others = new ArrayList<>();
+            List<Object> otherValues = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                Object o = tableRows.get(i).getValue(columnName);
+                float k = o instanceof Number ? ((Number) o).floatValue() : Float.NaN;
+                if (Float.isNaN(k)) {
+                    others.add(i);
+                    otherValues.add(o);
+                } else {
+                    //Sortable key bits in the high word, -0 counts as 0
+                    int bits = Float.floatToIntBits(k + 0.0f);
+                    bits ^= (bits >> 31) & 0x7fffffff;
+                    packed[m++] = ((long) bits << 32) | i;
+                }
+            }
+            Arrays.sort(packed, 0, m);
+            this.keys = new float[m];
+            this.rows = new int[m];
+            for (int i = 0; i < m; i++) {
+                int bits = (int) (packed[i] >> 32);
+                bits ^= (bits >> 31) & 0x7fffffff;
+                keys[i] = Float.intBitsToFloat(bits);
+                rows[i] = (int) packed[i];
+            }
+            this.setOthers(others, otherValues);
+        }
+
+        /**
+         * Get the first position with key not less than (or greater than) v
+         */
+        private int bound(float v, boolean upper) {
+            int lo = 0, hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid] < v || (upper && keys[mid] == v)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        @Override
+        public BitSet select(String opt, String value) {
+            int op = SQLPredicate.Compare.opCode(opt);
+            if (op == SQLPredicate.Compare.OTHER) {
+                return null;
+            }
+            BitSet r = new BitSet(rowCount);
+            if (value.equals("null")) {
+                if (op == SQLPredicate.Compare.NE) {
+                    this.setRows(r, 0, keys.length);
+                } else if (op != SQLPredicate.Compare.EQ) {
+                    return null;
+                }
+            } else {
+                float v = Convert.toFloat(value);
+                if (Float.isNaN(v)) {
+                    return null;
+                }
+                int lo = this.bound(v, false);
+                int hi = this.bound(v, true);
+                switch (op) {
+                    case SQLPredicate.Compare.LT:
+                        this.setRows(r, 0, lo);
+                        break;
+                    case SQLPredicate.Compare.LE:
+                        this.setRows(r, 0, hi);
+                        break;
+                    case SQLPredicate.Compare.GT:
+                        this.setRows(r, hi, keys.length);
+                        break;
+                    case SQLPredicate.Compare.GE:
+                        this.setRows(r, lo, keys.length);
+                        break;
+                    case SQLPredicate.Compare.EQ:
+                        this.setRows(r, lo, hi);
+                        break;
+                    default:
+                        this.setRows(r, 0, lo);
+                        this.setRows(r, hi, keys.length);
+                        break;
+                }
+            }
+            this.selectOthers(r, opt, value);
+            return r;
+        }
+
+        private void setRows(BitSet r, int start, int end) {
+            for (int i = start; i < end; i++) {
+                r.set(rows[i]);
+            }
+        }
+    }
+
+    /**
+     * Hash index of a string column
+     */
+    static class HashIndex extends ColumnIndex {
+
+        //Rows of each value, stored continuously from the value start position
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final int[] starts;
+        private final int[] rows;
+        private final BitSet indexed;
+
+        HashIndex(DataTable table, String columnName) {
+            super(table, columnName);
+            int n = table.getRowCount();
+            DataRowCollection tableRows = table.getRows();
+            int[] rowCodes = new int[n];
+            List<Integer> others = new ArrayList<>();
+            List<Object> otherValues = new ArrayList<>();
+            List<Integer> counts = new ArrayList<>();
+            this.indexed = new BitSet(n);
+            for (int i = 0; i < n; i++) {
+                Object o = tableRows.get(i).getValue(columnName);
+                if (o instanceof String) {
+                    Integer code = codes.get((String) o);
+                    if (code == null) {
+                        code = codes.size();
+                        codes.put((String) o, code);
+                        counts.add(0);
+                    }
+                    counts.set(code, counts.get(code) + 1);
+                    rowCodes[i] = code;
+                    indexed.set(i);
+                } else {
+                    rowCodes[i] = -1;
+                    others.add(i);
+                    otherValues.add(o);
+                }
+            }
+            this.starts = new int[counts.size() + 1];
+            for (int k = 0; k < counts.size(); k++) {
+                starts[k + 1] = starts[k] + counts.get(k);
+            }
+            this.rows = new int[starts[counts.size()]];
+            int[] pos = Arrays.copyOf(starts, counts.size());
+            for (int i = 0; i < n; i++) {
+                if (rowCodes[i] >= 0) {
+                    rows[pos[rowCodes[i]]++] = i;
+                }
+            }
+            this.setOthers(others, otherValues);
+        }
+
+        @Override
+        public BitSet select(String opt, String value) {
+            int op = SQLPredicate.Compare.opCode(opt);
+            if (op != SQLPredicate.Compare.EQ && op != SQLPredicate.Compare.NE) {
+                return null;
+            }
+            BitSet r = new BitSet(rowCount);
+            if (!value.equals("null")) {
+                Integer code = codes.get(value);
+                if (code != null) {
+                    for (int i = starts[code]; i < starts[code + 1]; i++) {
+                        r.set(rows[i]);
+                    }
+                }
+            }
+            if (op == SQLPredicate.Compare.NE) {
+                //String values never equal null
+                r.flip(0, rowCount);
+                r.and(indexed);
+            }
+            this.selectOthers(r, opt, value);
+            return r;
+        }
+    }
+    // </editor-fold>
+}
@@ -0,0 +1,468 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar storage of data table values. Each column is kept in one primitive
+ * array (int, float, double or bit set), string columns are dictionary
+ * encoded, and a bit set records which cells hold a value, so a cell never
+ * set reads as null. Data rows of a columnar data table are views on one row
+ * of the store.
+ * <p>
+ * Column names are case insensitive like the keys of the data row item map.
+ * A column holding a value which does not fit its primitive type is switched
+ * to object storage.
+ *
+ * @author Yaqiang Wang
+ */
+public class ColumnStore {
+
+    // <editor-fold desc="Variables">
+    private final Map<String, Vector> vectors = new LinkedHashMap<>();
+    private int rowCount = 0;
+    // </editor-fold>
+    // <editor-fold desc="Constructor">
+
+    /**
+     * Constructor
+     */
+    public ColumnStore() {
+    }
+    // </editor-fold>
+    // <editor-fold desc="Get Set Methods">
+
+    /**
+     * Get row number, including the rows no longer used by the data table
+     *
+     * @return Row number
+     */
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * Get column keys (lower case column names)
+     *
+     * @return Column keys
+     */
+    public List<String> getColumnKeys() {
+        return new ArrayList<>(this.vectors.keySet());
+    }
+    // </editor-fold>
+    // <editor-fold desc="Methods">
+
+    /**
+     * Add a new row
+     *
+     * @return The row index in the store
+     */
+    public int addRow() {
+        return this.rowCount++;
+    }
+
+    /**
+     * Remove all rows, the columns are kept
+     */
+    public void clearRows() {
+        for (Map.Entry<String, Vector> e : this.vectors.entrySet()) {
+            e.setValue(e.getValue().empty());
+        }
+        this.rowCount = 0;
+    }
+
+    /**
+     * Check if the store has a column
+     *
+     * @param columnName Column name
+     * @return Boolean
+     */
+    public boolean hasColumn(String columnName) {
+        return this.vectors.containsKey(columnName.toLowerCase());
+    }
+
+    /**
+     * Add a column if it is not in the store
+     *
+     * @param column The data column
+     */
+    public void addColumn(DataColumn column) {
+        String key = column.getColumnName().toLowerCase();
+        if (!this.vectors.containsKey(key)) {
+            this.vectors.put(key, Vector.create(column));
+        }
+    }
+
+    /**
+     * Remove a column
+     *
+     * @param columnName Column name
+     */
+    public void removeColumn(String columnName) {
+        this.vectors.remove(columnName.toLowerCase());
+    }
+
+    /**
+     * Rename a column
+     *
+     * @param oldName Old column name
+     * @param name New column name
+     */
+    public void renameColumn(String oldName, String name) {
+        oldName = oldName.toLowerCase();
+        name = name.toLowerCase();
+        if (!oldName.equals(name) && this.vectors.containsKey(oldName)) {
+            this.vectors.put(name, this.vectors.remove(oldName));
+        }
+    }
+
+    /**
+     * Get a value
+     *
+     * @param columnName Column name
+     * @param row Row index in the store
+     * @return The value, null if not set
+     */
+    public Object getValue(String columnName, int row) {
+        Vector v = this.vectors.get(columnName.toLowerCase());
+        if (v == null || !v.valid.get(row)) {
+            return null;
+        }
+        return v.get(row);
+    }
+
+    /**
+     * Get a value as double
+     *
+     * @param columnName Column name
+     * @param row Row index in the store
+     * @return The value, NaN if not set or not a number
+     */
+    public double getDouble(String columnName, int row) {
+        Vector v = this.vectors.get(columnName.toLowerCase());
+        if (v == null || !v.valid.get(row)) {
+            return Double.NaN;
+        }
+        return v.getDouble(row);
+    }
+
+    /**
+     * Set a value. The column is added if it is not in the store.
+     *
+     * @param column The data column
+     * @param row Row index in the store
+     * @param value The value
+     */
+    public void setValue(DataColumn column, int row, Object value) {
+        String key = column.getColumnName().toLowerCase();
+        Vector v = this.vectors.get(key);
+        if (v == null) {
+            v = Vector.create(column);
+            this.vectors.put(key, v);
+        }
+        if (value == null) {
+            v.valid.clear(row);
+            return;
+        }
+        if (!v.set(row, value)) {
+            v = v.toObjectVector();
+            this.vectors.put(key, v);
+            v.set(row, value);
+        }
+        v.valid.set(row);
+    }
+
+    /**
+     * Get the storage vector of a column
+     *
+     * @param columnName Column name
+     * @return The vector, null if the column is not in the store
+     */
+    Vector getVector(String columnName) {
+        return this.vectors.get(columnName.toLowerCase());
+    }
+
+    private static int grow(int capacity, int row) {
+        return Math.max(row + 1, Math.max(16, capacity + (capacity >> 1)));
+    }
+    // </editor-fold>
+    // <editor-fold desc="Vectors">
+
+    static abstract class Vector {
+
+        final BitSet valid = new BitSet();
+
+        static Vector create(DataColumn column) {
+            switch (column.getDataType()) {
+                case Integer:
+                    return new IntVector();
+                case Float:
+                    return new FloatVector();
+                case Double:
+                    return new DoubleVector();
+                case Boolean:
+                    return new BooleanVector();
+                case String:
+                    return new StringVector();
+                default:
+                    return new ObjectVector();
+            }
+        }
+
+        abstract Object get(int row);
+
+        double getDouble(int row) {
+            Object o = get(row);
+            return o instanceof Number ? ((Number) o).doubleValue() : Double.NaN;
+        }
+
+        /**
+         * Set a value
+         *
+         * @return False if the value type is not supported
+         */
+        abstract boolean set(int row, Object value);
+
+        abstract int capacity();
+
+        abstract Vector empty();
+
+        Vector toObjectVector() {
+            ObjectVector r = new ObjectVector();
+            r.values = new Object[this.capacity()];
+            for (int i = valid.nextSetBit(0); i >= 0; i = valid.nextSetBit(i + 1)) {
+                r.values[i] = this.get(i);
+            }
+            r.valid.or(this.valid);
+            return r;
+        }
+    }
+
+    static class IntVector extends Vector {
+
+        int[] values = new int[0];
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        boolean set(int row, Object value) {
+            if (!(value instanceof Integer)) {
+                return false;
+            }
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = (Integer) value;
+            return true;
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        Vector empty() {
+            return new IntVector();
+        }
+    }
+
+    static class FloatVector extends Vector {
+
+        float[] values = new float[0];
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        boolean set(int row, Object value) {
+            if (!(value instanceof Float)) {
+                return false;
+            }
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = (Float) value;
+            return true;
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        Vector empty() {
+            return new FloatVector();
+        }
+    }
+
+    static class DoubleVector extends Vector {
+
+        double[] values = new double[0];
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        boolean set(int row, Object value) {
+            if (!(value instanceof Double)) {
+                return false;
+            }
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = (Double) value;
+            return true;
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        Vector empty() {
+            return new DoubleVector();
+        }
+    }
+
+    static class BooleanVector extends Vector {
+
+        final BitSet values = new BitSet();
+
+        @Override
+        Object get(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        boolean set(int row, Object value) {
+            if (!(value instanceof Boolean)) {
+                return false;
+            }
+            values.set(row, (Boolean) value);
+            return true;
+        }
+
+        @Override
+        int capacity() {
+            return valid.length();
+        }
+
+        @Override
+        Vector empty() {
+            return new BooleanVector();
+        }
+    }
+
+    static class StringVector extends Vector {
+
+        int[] codes = new int[0];
+        final List<String> dict = new ArrayList<>();
+        final Map<String, Integer> lookup = new HashMap<>();
+
+        @Override
+        Object get(int row) {
+            return dict.get(codes[row]);
+        }
+
+        @Override
+        boolean set(int row, Object value) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+            Integer code = lookup.get((String) value);
+            if (code == null) {
+                code = dict.size();
+                dict.add((String) value);
+                lookup.put((String) value, code);
+            }
+            if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, grow(codes.length, row));
+            }
+            codes[row] = code;
+            return true;
+        }
+
+        @Override
+        int capacity() {
+            return codes.length;
+        }
+
+        @Override
+        Vector empty() {
+            return new StringVector();
+        }
+    }
+
+    static class ObjectVector extends Vector {
+
+        Object[] values = new Object[0];
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        boolean set(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = value;
+            return true;
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        Vector empty() {
+            return new ObjectVector();
+        }
+    }
+    // </editor-fold>
+}
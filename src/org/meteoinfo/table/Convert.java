@@ -0,0 +1,125 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.table;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Conversion of field values used by the SQL expressions
+ *
+ * @author yaqiang
+ */
+class Convert {
+
+    public static String toString(Object o) {
+        return toString(o, "");
+    }
+
+    public static String toString(Object o, String defValue) {
+        if (o == null) {
+            return defValue;
+        }
+        return o.toString();
+    }
+
+    public static int toInt(Object o) {
+        return toInt(o, 0);
+    }
+
+    public static int toInt(Object o, int defValue) {
+        if (o == null) {
+            return defValue;
+        }
+        if (o instanceof Integer) {
+            return (Integer) o;
+        }
+
+        try {
+            return (int) Float.parseFloat(o.toString());
+        } catch (Exception e) {
+            return defValue;
+        }
+    }
+
+    public static long toLong(Object o) {
+        if (o == null) {
+            return 0L;
+        }
+        if (o instanceof Long) {
+            return (Long) o;
+        }
+
+        try {
+            return Long.parseLong(o.toString());
+        } catch (Exception e) {
+            return 0L;
+        }
+    }
+
+    public static float toFloat(Object o) {
+        if (o == null) {
+            return 0F;
+        }
+        if (o instanceof Float) {
+            return (Float) o;
+        }
+
+        try {
+            return Float.parseFloat(o.toString());
+        } catch (Exception e) {
+            return 0F;
+        }
+    }
+
+    public static boolean toBool(Object o) {
+        if (o == null) {
+            return false;
+        }
+        if (o instanceof Boolean) {
+            return (Boolean) o;
+        }
+
+        try {
+            return Boolean.parseBoolean(o.toString());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    public static Date toDate(Object o) {
+        return toDate(o, new Date(System.currentTimeMillis()));
+    }
+
+    public static Date toDate(Object o, Date defValue) {
+        if (o == null) {
+            return defValue;
+        }
+
+        if (o instanceof java.util.Date) {
+            return (Date) o;
+        }
+
+        try {
+            if (o.toString().contains(":"))
+                return Timestamp.valueOf(o.toString());
+            else
+                return java.sql.Date.valueOf(o.toString());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        
+        return null;
+    }
+}
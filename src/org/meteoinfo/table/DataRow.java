@@ -14,13 +14,19 @@
 package org.meteoinfo.table;
 
 import java.text.SimpleDateFormat;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.meteoinfo.data.DataTypes;
 
 /**
+ * Data row. The values are kept in an item map, or in one row of a column
+ * store when the row belongs to a columnar data table.
  *
  * @author Yaqiang Wang
  */
@@ -29,7 +35,9 @@ public class DataRow {
     private int rowIndex = -1;
     private DataColumnCollection columns;
     private DataTable table;
-    private final Map<String, Object> itemMap = new LinkedHashMap<>();
+    private Map<String, Object> itemMap = new LinkedHashMap<>();
+    private ColumnStore store;
+    private int storeIndex = -1;
 
     /**
      * Constructor
@@ -73,6 +81,76 @@ public class DataRow {
         this.table = value;
     }
 
+    /**
+     * Get if the row is a view of a column store
+     *
+     * @return Boolean
+     */
+    public boolean isView() {
+        return this.store != null;
+    }
+
+    /**
+     * Get the column store of a view row
+     *
+     * @return Column store, null if the values are in the item map
+     */
+    public ColumnStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Get the row index in the column store
+     *
+     * @return Row index in the column store
+     */
+    public int getStoreIndex() {
+        return this.storeIndex;
+    }
+
+    /**
+     * Move the values into a new row of a column store and make this row a
+     * view of it
+     *
+     * @param value The column store
+     */
+    public void attach(ColumnStore value) {
+        if (this.store == value) {
+            return;
+        }
+        int idx = value.addRow();
+        if (this.store == null) {
+            if (this.columns != null) {
+                for (DataColumn col : this.columns) {
+                    value.setValue(col, idx, this.itemMap.get(col.getColumnName().toLowerCase()));
+                }
+            }
+        } else if (this.columns != null) {
+            for (DataColumn col : this.columns) {
+                value.setValue(col, idx, this.store.getValue(col.getColumnName(), this.storeIndex));
+            }
+        }
+        this.store = value;
+        this.storeIndex = idx;
+        this.itemMap = null;
+    }
+
+    /**
+     * Copy the values of a view row into its own item map
+     */
+    public void detach() {
+        if (this.store == null) {
+            return;
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (String key : this.store.getColumnKeys()) {
+            map.put(key, this.store.getValue(key, this.storeIndex));
+        }
+        this.itemMap = map;
+        this.store = null;
+        this.storeIndex = -1;
+    }
+
     /**
      * Set columns
      *
@@ -129,6 +207,13 @@ public class DataRow {
      */
     public void setValue(DataColumn column, Object value) {
         if (column != null) {
+            if (this.table != null) {
+                this.table.modCount++;
+            }
+            if (this.store != null) {
+                this.store.setValue(column, this.storeIndex, column.convertTo(value));
+                return;
+            }
             String lowerColumnName = column.getColumnName().toLowerCase();
             if (itemMap.containsKey(lowerColumnName)) {
                 itemMap.remove(lowerColumnName);
@@ -168,6 +253,10 @@ public class DataRow {
      */
     public void removeColumn(DataColumn column) {
         if (column != null) {
+            if (this.store != null) {
+                this.store.removeColumn(column.getColumnName());
+                return;
+            }
             String lowerColumnName = column.getColumnName().toLowerCase();
             if (itemMap.containsKey(lowerColumnName)) {
                 itemMap.remove(lowerColumnName);
@@ -182,6 +271,10 @@ public class DataRow {
      * @param name The new name
      */
     public void renameColumn(String oldName, String name) {
+        if (this.store != null) {
+            this.store.renameColumn(oldName, name);
+            return;
+        }
         oldName = oldName.toLowerCase();
         if (itemMap.containsKey(oldName)) {
             Object value = itemMap.get(oldName);
@@ -208,7 +301,10 @@ public class DataRow {
      * @return The value
      */
     public Object getValue(String columnName) {
-        return this.getItemMap().get(columnName.toLowerCase());
+        if (this.store != null) {
+            return this.store.getValue(columnName, this.storeIndex);
+        }
+        return this.itemMap.get(columnName.toLowerCase());
     }
 
     /**
@@ -253,11 +349,14 @@ public class DataRow {
     }
 
     /**
-     * Get item map
+     * Get item map. A read only map view is returned for a view row.
      *
      * @return The item map
      */
     public Map<String, Object> getItemMap() {
+        if (this.store != null) {
+            return new StoreMap();
+        }
         return itemMap;
     }
 
@@ -276,6 +375,15 @@ public class DataRow {
      * @param row The data row
      */
     public void copyFrom(DataRow row) {
+        if (this.table != null) {
+            this.table.modCount++;
+        }
+        if (this.store != null) {
+            for (DataColumn c : this.columns) {
+                this.store.setValue(c, this.storeIndex, row.getValue(c.toString()));
+            }
+            return;
+        }
         this.itemMap.clear();
         for (Object c : this.columns) {
             this.itemMap.put(c.toString().toLowerCase(), row.getValue(c.toString()));
@@ -325,4 +433,54 @@ public class DataRow {
 
         return row;
     }
+
+    /**
+     * Read only item map view of a column store row
+     */
+    private class StoreMap extends AbstractMap<String, Object> {
+
+        @Override
+        public Object get(Object key) {
+            return store.getValue(key.toString(), storeIndex);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return store.hasColumn(key.toString());
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            final List<String> keys = store.getColumnKeys();
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    final Iterator<String> it = keys.iterator();
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            String key = it.next();
+                            return new AbstractMap.SimpleImmutableEntry<>(key,
+                                    store.getValue(key, storeIndex));
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return keys.size();
+                }
+            };
+        }
+    }
 }
@@ -20,8 +20,11 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.meteoinfo.data.TableUtil;
@@ -42,6 +45,10 @@ public class DataTable {
     protected int nextRowIndex = 0;
 //private DataExpression dataExpression;
     protected Object tag;
+    protected ColumnStore store = null;
+    protected Map<String, ColumnIndex> indexes = new HashMap<>();
+    //Modification count for the validation of the column indexes
+    protected int modCount = 0;
 
     /**
      * Constructor
@@ -126,6 +133,48 @@ public class DataTable {
         this.tableName = tableName;
     }
 
+    /**
+     * Get if the row values are kept in a column store
+     *
+     * @return Boolean
+     */
+    public boolean isColumnar() {
+        return this.store != null;
+    }
+
+    /**
+     * Set if the row values are kept in a column store. The existing rows
+     * are moved into the store or back into their own item maps.
+     *
+     * @param value Boolean
+     */
+    public void setColumnar(boolean value) {
+        if (value == this.isColumnar()) {
+            return;
+        }
+        if (value) {
+            this.store = new ColumnStore();
+            for (DataRow row : this.rows) {
+                row.setColumns(this.columns);
+                row.attach(this.store);
+            }
+        } else {
+            for (DataRow row : this.rows) {
+                row.detach();
+            }
+            this.store = null;
+        }
+    }
+
+    /**
+     * Get the column store
+     *
+     * @return The column store, null if the table is not columnar
+     */
+    public ColumnStore getStore() {
+        return this.store;
+    }
+
     /**
      * Get data rows
      *
@@ -214,6 +263,9 @@ public class DataTable {
         nextRowIndex = nextRowIndex < this.rows.size() ? this.rows.size()
                 : nextRowIndex;
         tempRow.setColumns(this.columns);
+        if (this.store != null) {
+            tempRow.attach(this.store);
+        }
         tempRow.setRowIndex(nextRowIndex++);
         for (DataColumn col : columns) {
             switch (col.getDataType()) {
@@ -420,6 +472,7 @@ public class DataTable {
      */
     public void removeColumn(DataColumn column) {
         this.columns.remove(column);
+        this.indexes.remove(column.getColumnName().toLowerCase());
         for (DataRow row : this.rows) {
             row.setColumns(columns);
             row.removeColumn(column);
@@ -435,6 +488,7 @@ public class DataTable {
     public void renameColumn(DataColumn column, String fieldName) {
         String oldName = column.getColumnName();
         this.columns.renameColumn(column, fieldName);
+        this.renameIndex(oldName, fieldName);
         for (DataRow row : this.rows) {
             row.setColumns(columns);
             row.renameColumn(oldName, fieldName);
@@ -450,6 +504,7 @@ public class DataTable {
     public void renameColumn(String oldName, String newName) {
         DataColumn column = findColumn(oldName);
         this.columns.renameColumn(column, newName);
+        this.renameIndex(oldName, newName);
         for (DataRow row : this.rows) {
             row.setColumns(columns);
             row.renameColumn(oldName, newName);
@@ -480,6 +535,10 @@ public class DataTable {
         row.setColumns(this.columns);
         row.setRowIndex(nextRowIndex++);
         row.setTable(this);
+        if (this.store != null) {
+            row.attach(this.store);
+        }
+        this.modCount++;
         return this.rows.add(row);
     }
 
@@ -520,6 +579,10 @@ public class DataTable {
         row.setColumns(this.columns);
         row.setRowIndex(nextRowIndex++);
         row.setTable(this);
+        if (this.store != null) {
+            row.attach(this.store);
+        }
+        this.modCount++;
         for (DataColumn col : this.columns) {
             if (!colNames.contains(col.getColumnName())) {
                 row.setValue(col, null);
@@ -535,6 +598,7 @@ public class DataTable {
      */
     public void removeRow(int rowIdx) {
         this.rows.remove(rowIdx);
+        this.modCount++;
     }
 
     /**
@@ -544,6 +608,7 @@ public class DataTable {
      */
     public void removeRow(DataRow row) {
         this.rows.remove(row);
+        this.modCount++;
     }
 
     /**
@@ -553,6 +618,18 @@ public class DataTable {
      */
     public void removeRows(List<DataRow> rows) {
         this.rows.removeAll(rows);
+        this.modCount++;
+    }
+
+    /**
+     * Remove all rows
+     */
+    public void clearRows() {
+        this.rows.clear();
+        this.modCount++;
+        if (this.store != null) {
+            this.store.clearRows();
+        }
     }
 
     /**
@@ -562,7 +639,11 @@ public class DataTable {
      */
     public void setRows(List<DataRow> rows) {
         this.rows.clear();
+        this.modCount++;
         for (DataRow row : rows) {
+            if (this.store != null) {
+                row.attach(this.store);
+            }
             this.rows.add(row);
         }
     }
@@ -708,12 +789,12 @@ public class DataTable {
      * @return Selected data rows
      */
     public List<DataRow> select(String expression) {
-        SQLExpression e = new SQLExpression(expression);
+        BitSet mask = this.selectMask(expression);
         List<DataRow> dataRows = new ArrayList<>();
         for (int i = 0; i < this.rows.size(); i++) {
             DataRow row = this.rows.get(i);
             row.setRowIndex(i);
-            if (e.eval(row.getItemMap())) {
+            if (mask.get(i)) {
                 dataRows.add(row);
             }
         }
@@ -721,6 +802,73 @@ public class DataTable {
         return dataRows;
     }
 
+    /**
+     * Select data rows by SQL expression
+     *
+     * @param expression SQL expression
+     * @return Bit set of the selected row indices
+     */
+    public BitSet selectMask(String expression) {
+        SQLExpression e = new SQLExpression(expression);
+        return e.compile().evaluate(this);
+    }
+
+    /**
+     * Create an index of a column to speed up the SQL expression selection.
+     * A sorted index is created for a numeric column and a hash index for
+     * other columns.
+     *
+     * @param columnName Column name
+     */
+    public void createIndex(String columnName) {
+        this.indexes.put(columnName.toLowerCase(), ColumnIndex.create(this, columnName));
+    }
+
+    /**
+     * Remove the index of a column
+     *
+     * @param columnName Column name
+     */
+    public void dropIndex(String columnName) {
+        this.indexes.remove(columnName.toLowerCase());
+    }
+
+    /**
+     * Check if a column has an index
+     *
+     * @param columnName Column name
+     * @return Boolean
+     */
+    public boolean hasIndex(String columnName) {
+        return this.indexes.containsKey(columnName.toLowerCase());
+    }
+
+    /**
+     * Get the index of a column, which is rebuilt if the table has been
+     * modified after the index creation
+     *
+     * @param columnName Column name
+     * @return The index, null if the column has no index
+     */
+    ColumnIndex getIndex(String columnName) {
+        String key = columnName.toLowerCase();
+        ColumnIndex index = this.indexes.get(key);
+        if (index != null && !index.isValid(this)) {
+            index = ColumnIndex.create(this, columnName);
+            this.indexes.put(key, index);
+        }
+        return index;
+    }
+
+    private void renameIndex(String oldName, String newName) {
+        ColumnIndex index = this.indexes.remove(oldName.toLowerCase());
+        if (index != null) {
+            //Rebuilt with the new column name by next selection
+            this.indexes.put(newName.toLowerCase(), index);
+            this.modCount++;
+        }
+    }
+
     /**
      * Select and form a new data table
      *
@@ -1087,6 +1235,7 @@ public class DataTable {
         table.tableName = this.tableName;
         table.tag = this.tag;
         table.readOnly = this.readOnly;
+        table.setColumnar(this.isColumnar());
         for (DataColumn col : this.columns) {
             DataColumn newcol = (DataColumn) col.clone();
             //newcol.setTable(table);
@@ -1095,7 +1244,7 @@ public class DataTable {
 
         for (DataRow row : this.rows) {
             try {
-                DataRow newrow = this.newRow();
+                DataRow newrow = table.newRow();
                 newrow.copyFrom(row);
                 table.addRow(newrow);
             } catch (Exception ex) {
@@ -1116,6 +1265,7 @@ public class DataTable {
         table.tableName = this.tableName;
         table.tag = this.tag;
         table.readOnly = this.readOnly;
+        table.setColumnar(this.isColumnar());
         for (DataColumn col : this.columns) {
             Field newcol = new Field(col.getColumnName(), col.getDataType());
             newcol.setCaptionName(col.getCaptionName());
@@ -1127,7 +1277,7 @@ public class DataTable {
 
         for (DataRow row : this.rows) {
             try {
-                DataRow newrow = this.newRow();
+                DataRow newrow = table.newRow();
                 newrow.copyFrom(row);
                 table.addRow(newrow);
             } catch (Exception ex) {
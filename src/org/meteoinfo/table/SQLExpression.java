@@ -13,7 +13,6 @@
  */
 package org.meteoinfo.table;
 
-import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Map;
@@ -228,6 +227,84 @@ public class SQLExpression {
         String value = this.currentToken();
         this.nextToken();
 
+        return compare(field, opt, value);
+    }
+
+    /**
+     * Compile the expression to a predicate tree which is evaluated column by
+     * column over a data table
+     *
+     * @return The predicate
+     */
+    public SQLPredicate compile() {
+        this.nextToken();
+        SQLPredicate result = this.compileAndOr();
+        this.cur_token_index = -1;
+        return result;
+    }
+
+    private SQLPredicate compileAndOr() {
+        SQLPredicate result = this.compileNot();
+        String op;
+
+        while ((op = this.currentToken()).equalsIgnoreCase("and") || op.equalsIgnoreCase("or")) {
+            this.nextToken();
+
+            if (op.equalsIgnoreCase("and")) {
+                result = new SQLPredicate.And(result, this.compileNot());
+            } else {
+                result = new SQLPredicate.Or(result, this.compileNot());
+            }
+        }
+
+        return result;
+    }
+
+    private SQLPredicate compileNot() {
+        String op;
+
+        if ((op = this.currentToken()).equalsIgnoreCase("not")) {
+            this.nextToken();
+        }
+
+        SQLPredicate result = this.compileBrackets();
+
+        if (op.equalsIgnoreCase("not")) {
+            return new SQLPredicate.Not(result);
+        }
+
+        return result;
+    }
+
+    private SQLPredicate compileBrackets() {
+        SQLPredicate result;
+        if (this.currentToken().equals("(")) {
+            this.nextToken();
+            result = this.compileAndOr();
+            this.nextToken();
+        } else {
+            String field = this.currentToken();
+            this.nextToken();
+            String opt = this.currentToken();
+            this.nextToken();
+            String value = this.currentToken();
+            this.nextToken();
+            result = new SQLPredicate.Compare(field, opt, value);
+        }
+
+        return result;
+    }
+
+//<editor-fold  defaultstate="collapsed" desc="tool method">
+    /**
+     * Compare a field value with an expression value
+     *
+     * @param field Field value
+     * @param opt Compare operator
+     * @param value Expression value token
+     * @return Boolean
+     */
+    static boolean compare(Object field, String opt, String value) {
         switch (opt) {
             case "like":
                 return isLike(field, value);
@@ -248,10 +325,8 @@ public class SQLExpression {
         }
 
         return false;
-
     }
 
-//<editor-fold  defaultstate="collapsed" desc="tool method">
     private static boolean isLike(Object field, String value) {
         int len = value.length();
         if (value.startsWith("'%") && value.endsWith("%'")) {
@@ -344,106 +419,3 @@ public class SQLExpression {
     }
     // </editor-fold>
 }
-
-class Convert {
-
-    public static String toString(Object o) {
-        return toString(o, "");
-    }
-
-    public static String toString(Object o, String defValue) {
-        if (o == null) {
-            return defValue;
-        }
-        return o.toString();
-    }
-
-    public static int toInt(Object o) {
-        return toInt(o, 0);
-    }
-
-    public static int toInt(Object o, int defValue) {
-        if (o == null) {
-            return defValue;
-        }
-        if (o instanceof Integer) {
-            return (Integer) o;
-        }
-
-        try {
-            return (int) Float.parseFloat(o.toString());
-        } catch (Exception e) {
-            return defValue;
-        }
-    }
-
-    public static long toLong(Object o) {
-        if (o == null) {
-            return 0L;
-        }
-        if (o instanceof Long) {
-            return (Long) o;
-        }
-
-        try {
-            return Long.parseLong(o.toString());
-        } catch (Exception e) {
-            return 0L;
-        }
-    }
-
-    public static float toFloat(Object o) {
-        if (o == null) {
-            return 0F;
-        }
-        if (o instanceof Float) {
-            return (Float) o;
-        }
-
-        try {
-            return Float.parseFloat(o.toString());
-        } catch (Exception e) {
-            return 0F;
-        }
-    }
-
-    public static boolean toBool(Object o) {
-        if (o == null) {
-            return false;
-        }
-        if (o instanceof Boolean) {
-            return (Boolean) o;
-        }
-
-        try {
-            return Boolean.parseBoolean(o.toString());
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    public static Date toDate(Object o) {
-        return toDate(o, new Date(System.currentTimeMillis()));
-    }
-
-    public static Date toDate(Object o, Date defValue) {
-        if (o == null) {
-            return defValue;
-        }
-
-        if (o instanceof java.util.Date) {
-            return (Date) o;
-        }
-
-        try {
-            if (o.toString().contains(":"))
-                return Timestamp.valueOf(o.toString());
-            else
-                return java.sql.Date.valueOf(o.toString());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        
-        return null;
-    }
-}
\ No newline at end of file
@@ -0,0 +1,218 @@
+/* Copyright 2012 Yaqiang Wang,
+ * yaqiang.wang@gmail.com
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ */
+package org.meteoinfo.table;
+
+import java.util.BitSet;
+
+/**
+ * Compiled SQL expression. Each node evaluates to a bit set of the matching
+ * row positions of a data table, comparisons are done for one column at a
+ * time. Columns of a columnar data table are read from their primitive
+ * storage, and a column index of the data table is used for the comparisons
+ * it supports. The results are the same as SQLExpression.eval of each row.
+ *
+ * @author Yaqiang Wang
+ */
+public abstract class SQLPredicate {
+
+    /**
+     * Evaluate the predicate over the rows of a data table
+     *
+     * @param table The data table
+     * @return Bit set of the matching row positions
+     */
+    public BitSet evaluate(DataTable table) {
+        return this.evaluate(table, table.getRowCount());
+    }
+
+    abstract BitSet evaluate(DataTable table, int n);
+
+    static class And extends SQLPredicate {
+
+        private final SQLPredicate left;
+        private final SQLPredicate right;
+
+        And(SQLPredicate left, SQLPredicate right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        BitSet evaluate(DataTable table, int n) {
+            BitSet r = left.evaluate(table, n);
+            r.and(right.evaluate(table, n));
+            return r;
+        }
+    }
+
+    static class Or extends SQLPredicate {
+
+        private final SQLPredicate left;
+        private final SQLPredicate right;
+
+        Or(SQLPredicate left, SQLPredicate right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        BitSet evaluate(DataTable table, int n) {
+            BitSet r = left.evaluate(table, n);
+            r.or(right.evaluate(table, n));
+            return r;
+        }
+    }
+
+    static class Not extends SQLPredicate {
+
+        private final SQLPredicate predicate;
+
+        Not(SQLPredicate predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        BitSet evaluate(DataTable table, int n) {
+            BitSet r = predicate.evaluate(table, n);
+            r.flip(0, n);
+            return r;
+        }
+    }
+
+    static class Compare extends SQLPredicate {
+
+        static final int LT = 0;
+        static final int LE = 1;
+        static final int GT = 2;
+        static final int GE = 3;
+        static final int EQ = 4;
+        static final int NE = 5;
+        static final int OTHER = 6;
+
+        private final String field;
+        private final String opt;
+        private final String value;
+        private final int op;
+
+        Compare(String field, String opt, String value) {
+            this.field = field;
+            this.opt = opt;
+            this.value = value;
+            this.op = opCode(opt);
+        }
+
+        static int opCode(String opt) {
+            switch (opt) {
+                case "<":
+                    return LT;
+                case "<=":
+                    return LE;
+                case ">":
+                    return GT;
+                case ">=":
+                    return GE;
+                case "=":
+                    return EQ;
+                case "<>":
+                    return NE;
+                default:
+                    return OTHER;
+            }
+        }
+
+        static boolean compare(float a, float b, int op) {
+            switch (op) {
+                case LT:
+                    return a < b;
+                case LE:
+                    return a <= b;
+                case GT:
+                    return a > b;
+                case GE:
+                    return a >= b;
+                case EQ:
+                    return a == b;
+                default:
+                    return a != b;
+            }
+        }
+
+        @Override
+        BitSet evaluate(DataTable table, int n) {
+            ColumnIndex index = table.getIndex(field);
+            if (index != null) {
+                BitSet r = index.select(opt, value);
+                if (r != null) {
+                    return r;
+                }
+            }
+
+            BitSet r = new BitSet(n);
+            DataRowCollection rows = table.getRows();
+            ColumnStore store = table.getStore();
+            ColumnStore.Vector v = store == null ? null : store.getVector(field);
+            if (v == null) {
+                for (int i = 0; i < n; i++) {
+                    if (SQLExpression.compare(rows.get(i).getValue(field), opt, value)) {
+                        r.set(i);
+                    }
+                }
+                return r;
+            }
+
+            boolean isNumeric = op != OTHER && !value.equals("null")
+                    && (v instanceof ColumnStore.IntVector || v instanceof ColumnStore.FloatVector
+                    || v instanceof ColumnStore.DoubleVector);
+            float fv = isNumeric ? Convert.toFloat(value) : 0;
+            boolean[] codeMatch = null;
+            if (v instanceof ColumnStore.StringVector) {
+                //Compare each distinct string once
+                ColumnStore.StringVector sv = (ColumnStore.StringVector) v;
+                codeMatch = new boolean[sv.dict.size()];
+                for (int k = 0; k < codeMatch.length; k++) {
+                    codeMatch[k] = SQLExpression.compare(sv.dict.get(k), opt, value);
+                }
+            }
+            Boolean nullMatch = null;
+            for (int i = 0; i < n; i++) {
+                DataRow row = rows.get(i);
+                if (row.getStore() != store) {
+                    if (SQLExpression.compare(row.getValue(field), opt, value)) {
+                        r.set(i);
+                    }
+                    continue;
+                }
+                int s = row.getStoreIndex();
+                boolean match;
+                if (!v.valid.get(s)) {
+                    if (nullMatch == null) {
+                        nullMatch = SQLExpression.compare(null, opt, value);
+                    }
+                    match = nullMatch;
+                } else if (isNumeric) {
+                    match = compare((float) v.getDouble(s), fv, op);
+                } else if (codeMatch != null) {
+                    match = codeMatch[((ColumnStore.StringVector) v).codes[s]];
+                } else {
+                    match = SQLExpression.compare(v.get(s), opt, value);
+                }
+                if (match) {
+                    r.set(i);
+                }
+            }
+
+            return r;
+        }
+    }
+}